@@ -50,7 +50,9 @@ dependencies {
     implementation(libs.material)
     implementation(libs.constraintlayout)
     
-    // Room Database - Removed as we are using Firestore
+    // Room Database - local mirror of Firestore for reports and search
+    implementation(libs.room.runtime)
+    annotationProcessor(libs.room.compiler)
     
     // Lifecycle (ViewModel + LiveData)
     implementation(libs.lifecycle.viewmodel)
@@ -84,6 +86,7 @@ dependencies {
     
     // Testing
     testImplementation(libs.junit)
+    testImplementation(libs.mockito.core)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
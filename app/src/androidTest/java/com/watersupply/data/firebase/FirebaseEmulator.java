@@ -0,0 +1,40 @@
+package com.watersupply.data.firebase;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+/**
+ * Points the shared FirebaseAuth and FirebaseFirestore instances at the emulators started with
+ * {@code firebase emulators:start}. An instance accepts useEmulator once, before it is first
+ * used, and the instances outlive a test class, so every emulator test connects through here.
+ * 10.0.2.2 is the host machine as seen from the Android emulator.
+ */
+public final class FirebaseEmulator {
+    private static final String HOST = "10.0.2.2";
+    private static final int AUTH_PORT = 9099;
+    private static final int FIRESTORE_PORT = 8080;
+
+    private static boolean connected;
+    private static String familyId;
+
+    private FirebaseEmulator() {
+    }
+
+    /**
+     * Connect to the emulators on the first call and sign in anonymously
+     *
+     * @return the family id of the signed in user, the same for every caller
+     */
+    public static synchronized String connect() throws Exception {
+        if (!connected) {
+            FirebaseAuth.getInstance().useEmulator(HOST, AUTH_PORT);
+            FirebaseFirestore.getInstance().useEmulator(HOST, FIRESTORE_PORT);
+            connected = true;
+        }
+        if (familyId == null) {
+            familyId = Tasks.await(FirebaseAuth.getInstance().signInAnonymously()).getUser().getUid();
+        }
+        return familyId;
+    }
+}
@@ -0,0 +1,196 @@
+package com.watersupply.data.firebase;
+
+import androidx.lifecycle.LiveData;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.AggregateField;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+import com.watersupply.utils.BillingCalculator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs against the Firebase emulators, connected through {@link FirebaseEmulator}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ServerAggregatesEmulatorTest {
+    private static final long TIMEOUT_SECONDS = 30;
+    // How long to wait for a value that must not come
+    private static final long QUIET_SECONDS = 3;
+
+    private static FirebaseFirestore firestore;
+    private static String familyId;
+
+    // Tags this test's payments, so earlier runs and other tests don't change the totals
+    private String run;
+
+    @BeforeClass
+    public static void connectToEmulator() throws Exception {
+        familyId = FirebaseEmulator.connect();
+        firestore = FirebaseFirestore.getInstance();
+    }
+
+    @Before
+    public void startRun() {
+        run = UUID.randomUUID().toString();
+    }
+
+    @After
+    public void reconnect() throws Exception {
+        Tasks.await(firestore.enableNetwork());
+    }
+
+    private Query runPayments() {
+        return firestore.collection(FirestoreCollections.PAYMENTS)
+            .whereEqualTo("familyId", familyId)
+            .whereEqualTo("run", run);
+    }
+
+    private Task<Void> addPayment(double amount) {
+        Map<String, Object> payment = new HashMap<>();
+        payment.put("familyId", familyId);
+        payment.put("run", run);
+        payment.put("amount", amount);
+        return firestore.collection(FirestoreCollections.PAYMENTS).document().set(payment);
+    }
+
+    /**
+     * Every value the LiveData publishes from now on, observed on the main thread
+     */
+    private static <T> BlockingQueue<T> observe(LiveData<T> liveData) {
+        BlockingQueue<T> values = new LinkedBlockingQueue<>();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> liveData.observeForever(values::add));
+        return values;
+    }
+
+    private static <T> T next(BlockingQueue<T> values) throws InterruptedException {
+        T value = values.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull("No value published", value);
+        return value;
+    }
+
+    private static Task<Void> afterWrite(ServerAggregates aggregates, Task<Void> write) {
+        AtomicReference<Task<Void>> result = new AtomicReference<>();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+            result.set(aggregates.afterWrite(write, FirestoreCollections.PAYMENTS)));
+        return result.get();
+    }
+
+    @Test
+    public void aggregatesRefreshOnceTheWriteIsAcknowledged() throws Exception {
+        Tasks.await(addPayment(100.0));
+        ServerAggregates aggregates = new ServerAggregates();
+        ServerAggregateLiveData<Integer> count = (ServerAggregateLiveData<Integer>)
+            aggregates.count(FirestoreCollections.PAYMENTS, runPayments());
+        BlockingQueue<Integer> counts = observe(count);
+        BlockingQueue<Double> totals = observe(
+            aggregates.sumAmount(FirestoreCollections.PAYMENTS, runPayments(), "amount"));
+        assertEquals(1, (int) next(counts));
+        assertEquals(100.0, next(totals), 0.0);
+
+        Tasks.await(afterWrite(aggregates, addPayment(50.25)));
+
+        // An aggregation sent before the acknowledgement would publish the old values first
+        assertEquals(2, (int) next(counts));
+        assertEquals(150.25, next(totals), 0.0);
+        assertFalse(count.isCached());
+    }
+
+    @Test
+    public void onlyTheLatestRefreshPublishes() throws Exception {
+        Tasks.await(Tasks.whenAll(addPayment(1.0), addPayment(2.0), addPayment(3.0)));
+        ServerAggregateLiveData<Integer> count = (ServerAggregateLiveData<Integer>)
+            new ServerAggregates().count(FirestoreCollections.PAYMENTS, runPayments());
+        BlockingQueue<Integer> counts = observe(count);
+        assertEquals(3, (int) next(counts));
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            count.refresh();
+            count.refresh();
+            count.refresh();
+        });
+
+        assertEquals(3, (int) next(counts));
+        assertNull("A superseded refresh published", counts.poll(QUIET_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void offlineAggregatesComeFromTheCacheAndFollowLocalWrites() throws Exception {
+        Tasks.await(Tasks.whenAll(addPayment(10.0), addPayment(20.0)));
+        Tasks.await(runPayments().get(Source.SERVER)); // Puts the documents in the cache
+        Tasks.await(firestore.disableNetwork());
+
+        ServerAggregates aggregates = new ServerAggregates();
+        ServerAggregateLiveData<Double> total = (ServerAggregateLiveData<Double>)
+            aggregates.sumAmount(FirestoreCollections.PAYMENTS, runPayments(), "amount");
+        BlockingQueue<Double> totals = observe(total);
+        assertEquals(30.0, next(totals), 0.0);
+        assertTrue(total.isCached());
+
+        // The write stays pending while offline, but is already in the cache
+        Task<Void> write = afterWrite(aggregates, addPayment(5.5));
+        assertEquals(35.5, next(totals), 0.0);
+        assertFalse(write.isComplete());
+
+        Tasks.await(firestore.enableNetwork());
+        Tasks.await(write, TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(35.5, next(totals), 0.0);
+        assertFalse(total.isCached());
+    }
+
+    @Test
+    public void serverCountAndSumMatchCachedDocuments() throws Exception {
+        double[] amounts = {215.87, 380.84, 0.1, 0.2, 1250.0};
+        WriteBatch batch = firestore.batch();
+        for (double amount : amounts) {
+            Map<String, Object> payment = new HashMap<>();
+            payment.put("familyId", familyId);
+            payment.put("amount", amount);
+            batch.set(firestore.collection(FirestoreCollections.PAYMENTS).document(), payment);
+        }
+        Tasks.await(batch.commit());
+
+        Query query = firestore.collection(FirestoreCollections.PAYMENTS).whereEqualTo("familyId", familyId);
+        AggregateField.SumAggregateField sum = AggregateField.sum("amount");
+        AggregateQuerySnapshot server = Tasks.await(
+            query.aggregate(AggregateField.count(), sum).get(AggregateSource.SERVER));
+        QuerySnapshot cached = Tasks.await(query.get(Source.CACHE));
+
+        long paise = 0;
+        for (double amount : amounts) {
+            paise += BillingCalculator.toPaise(amount);
+        }
+        double serverTotal = server.getDouble(sum) != null ? server.getDouble(sum) : 0.0;
+
+        assertEquals(amounts.length, server.getCount());
+        assertEquals(amounts.length, cached.size());
+        assertEquals(BillingCalculator.fromPaise(paise), BillingCalculator.normalizeAmount(serverTotal), 0.0);
+    }
+}
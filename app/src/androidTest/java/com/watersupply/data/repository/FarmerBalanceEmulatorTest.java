@@ -0,0 +1,89 @@
+package com.watersupply.data.repository;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Source;
+import com.watersupply.data.firebase.BulkDeleter;
+import com.watersupply.data.firebase.CoalescingWriteQueue;
+import com.watersupply.data.firebase.FirebaseEmulator;
+import com.watersupply.data.firebase.FirebaseManager;
+import com.watersupply.data.firebase.FirestoreCollections;
+import com.watersupply.data.firebase.FirestoreQueryHub;
+import com.watersupply.data.firebase.ServerAggregates;
+import com.watersupply.data.models.Farmer;
+import com.watersupply.data.models.Payment;
+import com.watersupply.utils.BillingCalculator;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs against the Firebase emulators, connected through {@link FirebaseEmulator}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FarmerBalanceEmulatorTest {
+    private static final int PAYMENTS = 50;
+
+    private static FirebaseFirestore firestore;
+    private static String familyId;
+
+    @BeforeClass
+    public static void connectToEmulator() throws Exception {
+        familyId = FirebaseEmulator.connect();
+        firestore = FirebaseFirestore.getInstance();
+    }
+
+    @Test
+    public void parallelPaymentsLeaveExactBalance() throws Exception {
+        FirebaseManager firebaseManager = new FirebaseManager();
+        FirestoreQueryHub hub = new FirestoreQueryHub();
+        ServerAggregates serverAggregates = new ServerAggregates();
+        CoalescingWriteQueue writeQueue = new CoalescingWriteQueue(firebaseManager);
+        BulkDeleter bulkDeleter = new BulkDeleter();
+        FarmerRepository farmerRepository = new FarmerRepository(firebaseManager, hub, serverAggregates,
+            writeQueue, bulkDeleter);
+        PaymentRepository paymentRepository = new PaymentRepository(firebaseManager, farmerRepository, hub,
+            serverAggregates, new RollupRepository(firebaseManager, hub, bulkDeleter), writeQueue, bulkDeleter);
+
+        String farmerId = firestore.collection(FirestoreCollections.FARMERS).document().getId();
+        Farmer farmer = new Farmer();
+        farmer.setId(farmerId);
+        farmer.setFamilyId(familyId);
+        farmer.setName("Balance test");
+        farmer.setBalance(10000.0);
+        Tasks.await(firestore.collection(FirestoreCollections.FARMERS).document(farmerId).set(farmer));
+
+        // One main-thread turn per payment, so each goes out as its own batch and all are in flight together
+        List<Task<Void>> writes = new ArrayList<>();
+        long paidPaise = 0;
+        for (int i = 0; i < PAYMENTS; i++) {
+            Payment payment = new Payment();
+            payment.setFamilyId(familyId);
+            payment.setFarmerId(farmerId);
+            payment.setAmount(10.0 + i * 0.37);
+            payment.setPaymentDate("2026-01-" + String.format(Locale.US, "%02d", 1 + i % 28));
+            paidPaise += BillingCalculator.toPaise(payment.getAmount());
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                writes.add(paymentRepository.savePayment(payment)));
+        }
+        Tasks.await(Tasks.whenAll(writes), 60, TimeUnit.SECONDS);
+
+        DocumentSnapshot saved = Tasks.await(
+            firestore.collection(FirestoreCollections.FARMERS).document(farmerId).get(Source.SERVER));
+        long expected = BillingCalculator.toPaise(10000.0) - paidPaise;
+        assertEquals(expected, BillingCalculator.toPaise(saved.getDouble("balance")));
+    }
+}
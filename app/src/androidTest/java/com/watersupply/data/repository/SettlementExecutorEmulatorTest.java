@@ -0,0 +1,197 @@
+package com.watersupply.data.repository;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Source;
+import com.watersupply.data.firebase.BulkDeleter;
+import com.watersupply.data.firebase.DocumentFetcher;
+import com.watersupply.data.firebase.FirebaseEmulator;
+import com.watersupply.data.firebase.FirebaseManager;
+import com.watersupply.data.firebase.FirestoreCollections;
+import com.watersupply.data.firebase.FirestoreQueryHub;
+import com.watersupply.data.firebase.ServerAggregates;
+import com.watersupply.data.models.Farmer;
+import com.watersupply.data.models.Payment;
+import com.watersupply.data.models.Settlement;
+import com.watersupply.data.models.SettlementJournal;
+import com.watersupply.data.models.SupplyEntry;
+import com.watersupply.utils.BillingCalculator;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs against the Firebase emulators, connected through {@link FirebaseEmulator}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SettlementExecutorEmulatorTest {
+    private static FirebaseFirestore firestore;
+    private static String familyId;
+
+    @BeforeClass
+    public static void connectToEmulator() throws Exception {
+        familyId = FirebaseEmulator.connect();
+        firestore = FirebaseFirestore.getInstance();
+    }
+
+    @Test
+    public void deletingSettlementWithoutJournalRestoresBalanceOnce() throws Exception {
+        SettlementExecutor executor = newExecutor();
+        Settlement settlement = writeSettlement("settled");
+
+        delete(executor, settlement);
+        // A repeated delete finds the settlement gone and changes nothing
+        delete(executor, settlement);
+
+        assertRemoved(settlement);
+    }
+
+    @Test
+    public void recoveryFinishesInterruptedDelete() throws Exception {
+        SettlementExecutor executor = newExecutor();
+        // The entries were reverted, then the final transaction failed
+        Settlement settlement = writeSettlement("unsettled");
+        SettlementJournal journal = new SettlementJournal();
+        journal.setId(settlement.getId());
+        journal.setFamilyId(familyId);
+        journal.setFarmerId(settlement.getFarmerId());
+        journal.setState(SettlementJournal.STATE_DELETING);
+        journal.setSettlement(settlement);
+        journal.setCreatedAt(new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+        journal.setUpdatedAt(journal.getCreatedAt());
+        Tasks.await(firestore.collection(FirestoreCollections.SETTLEMENT_JOURNAL).document(settlement.getId())
+            .set(journal));
+
+        AtomicReference<Task<Void>> recovered = new AtomicReference<>();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+            recovered.set(executor.recoverInterrupted(familyId)));
+        Tasks.await(recovered.get(), 30, TimeUnit.SECONDS);
+
+        assertRemoved(settlement);
+    }
+
+    @Test
+    public void deleteRemovesOnlyTheJournaledPaymentAndUnlinksOthers() throws Exception {
+        SettlementExecutor executor = newExecutor();
+        Settlement settlement = writeSettlement("settled");
+        // A payment the user linked earlier, with a remark that looks like a settlement's own
+        Payment linked = writePayment(settlement, "Settlement: paid at the gate");
+        Payment created = writePayment(settlement, "Settlement: " + settlement.getId());
+        settlement.setSettledPaymentIds(Arrays.asList(linked.getId(), created.getId()));
+        Tasks.await(firestore.collection(FirestoreCollections.SETTLEMENTS).document(settlement.getId())
+            .set(settlement));
+        SettlementJournal journal = new SettlementJournal();
+        journal.setId(settlement.getId());
+        journal.setFamilyId(familyId);
+        journal.setFarmerId(settlement.getFarmerId());
+        journal.setState(SettlementJournal.STATE_COMMITTED);
+        journal.setSettlement(settlement);
+        journal.setNewPaymentId(created.getId());
+        journal.setCreatedAt(new Date());
+        journal.setUpdatedAt(new Date());
+        Tasks.await(firestore.collection(FirestoreCollections.SETTLEMENT_JOURNAL).document(settlement.getId())
+            .set(journal));
+
+        delete(executor, settlement);
+
+        assertRemoved(settlement);
+        DocumentSnapshot savedLinked = Tasks.await(firestore.collection(FirestoreCollections.PAYMENTS)
+            .document(linked.getId()).get(Source.SERVER));
+        assertTrue(savedLinked.exists());
+        assertEquals(Boolean.TRUE, savedLinked.getBoolean("unlinked"));
+        assertFalse(Tasks.await(firestore.collection(FirestoreCollections.PAYMENTS)
+            .document(created.getId()).get(Source.SERVER)).exists());
+    }
+
+    private static SettlementExecutor newExecutor() {
+        FirebaseManager firebaseManager = new FirebaseManager();
+        return new SettlementExecutor(firebaseManager,
+            new RollupRepository(firebaseManager, new FirestoreQueryHub(), new BulkDeleter()),
+            new DocumentFetcher(firebaseManager), new ServerAggregates());
+    }
+
+    /**
+     * Write a farmer with a zero balance, one entry of 250 and, as settlements were written before
+     * journals existed, the settlement alone
+     */
+    private static Settlement writeSettlement(String entryStatus) throws Exception {
+        String farmerId = firestore.collection(FirestoreCollections.FARMERS).document().getId();
+        String entryId = firestore.collection(FirestoreCollections.SUPPLY_ENTRIES).document().getId();
+        String settlementId = firestore.collection(FirestoreCollections.SETTLEMENTS).document().getId();
+
+        Farmer farmer = new Farmer();
+        farmer.setId(farmerId);
+        farmer.setFamilyId(familyId);
+        farmer.setName("Settlement test");
+        farmer.setBalance(0.0);
+        Tasks.await(firestore.collection(FirestoreCollections.FARMERS).document(farmerId).set(farmer));
+
+        SupplyEntry entry = new SupplyEntry();
+        entry.setId(entryId);
+        entry.setFamilyId(familyId);
+        entry.setFarmerId(farmerId);
+        entry.setAmount(250.0);
+        entry.setSettlementStatus(entryStatus);
+        if ("settled".equals(entryStatus)) {
+            entry.setSettlementId(settlementId);
+        }
+        Tasks.await(firestore.collection(FirestoreCollections.SUPPLY_ENTRIES).document(entryId).set(entry));
+
+        Settlement settlement = new Settlement();
+        settlement.setId(settlementId);
+        settlement.setFamilyId(familyId);
+        settlement.setFarmerId(farmerId);
+        settlement.setOutstandingAmount(250.0);
+        settlement.setSettledSupplyIds(Collections.singletonList(entryId));
+        Tasks.await(firestore.collection(FirestoreCollections.SETTLEMENTS).document(settlementId).set(settlement));
+        return settlement;
+    }
+
+    private static Payment writePayment(Settlement settlement, String remarks) throws Exception {
+        Payment payment = new Payment();
+        payment.setId(firestore.collection(FirestoreCollections.PAYMENTS).document().getId());
+        payment.setFamilyId(familyId);
+        payment.setFarmerId(settlement.getFarmerId());
+        payment.setAmount(100.0);
+        payment.setPaymentDate("2026-01-15");
+        payment.setRemarks(remarks);
+        payment.setSettlementId(settlement.getId());
+        Tasks.await(firestore.collection(FirestoreCollections.PAYMENTS).document(payment.getId()).set(payment));
+        return payment;
+    }
+
+    private static void delete(SettlementExecutor executor, Settlement settlement) throws Exception {
+        AtomicReference<Task<Void>> deleted = new AtomicReference<>();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> deleted.set(executor.delete(settlement)));
+        Tasks.await(deleted.get(), 30, TimeUnit.SECONDS);
+    }
+
+    private static void assertRemoved(Settlement settlement) throws Exception {
+        DocumentSnapshot savedFarmer = Tasks.await(firestore.collection(FirestoreCollections.FARMERS)
+            .document(settlement.getFarmerId()).get(Source.SERVER));
+        assertEquals(BillingCalculator.toPaise(250.0), BillingCalculator.toPaise(savedFarmer.getDouble("balance")));
+        DocumentSnapshot savedEntry = Tasks.await(firestore.collection(FirestoreCollections.SUPPLY_ENTRIES)
+            .document(settlement.getSettledSupplyIds().get(0)).get(Source.SERVER));
+        assertEquals("unsettled", savedEntry.getString("settlementStatus"));
+        assertFalse(Tasks.await(firestore.collection(FirestoreCollections.SETTLEMENTS)
+            .document(settlement.getId()).get(Source.SERVER)).exists());
+        assertFalse(Tasks.await(firestore.collection(FirestoreCollections.SETTLEMENT_JOURNAL)
+            .document(settlement.getId()).get(Source.SERVER)).exists());
+    }
+}
@@ -0,0 +1,103 @@
+package com.watersupply.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.watersupply.data.models.Payment;
+import com.watersupply.data.models.SupplyEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Renders a 10k-row all-farmers report on the device and logs the rendering rate in pages
+ * per second (tag ReportBenchmark). Run on a physical low-end phone for meaningful numbers.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ReportGeneratorBenchmarkTest {
+    private static final String TAG = "ReportBenchmark";
+    private static final int ROWS = 10_000;
+    private static final int FARMERS = 50;
+
+    @Test
+    public void tenThousandRowReport() throws Exception {
+        List<SupplyEntry> supplies = new ArrayList<>();
+        List<Payment> payments = new ArrayList<>();
+        Calendar day = Calendar.getInstance();
+        day.set(2024, Calendar.JANUARY, 1);
+        for (int i = 0; i < ROWS; i++) {
+            String farmerId = "farmer" + (i % FARMERS);
+            String farmerName = "Farmer number " + (i % FARMERS);
+            String date = String.format(Locale.US, "%tF", day);
+            if (i % 4 == 3) {
+                Payment payment = new Payment("user", farmerId, farmerName, 500 + i % 300);
+                payment.setPaymentDate(date);
+                payment.setPaymentMethod(i % 8 == 3 ? "Cash" : "UPI");
+                payments.add(payment);
+            } else {
+                SupplyEntry entry = new SupplyEntry("user", farmerId, farmerName);
+                entry.setDate(date);
+                entry.setStatus("completed");
+                entry.setTotalTimeUsed(1.5 + i % 5);
+                entry.setRate(120);
+                entry.setAmount(120 * (1.5 + i % 5));
+                supplies.add(entry);
+            }
+            if (i % 30 == 29) {
+                day.add(Calendar.DAY_OF_MONTH, 1);
+            }
+        }
+
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<File> result = new AtomicReference<>();
+        AtomicReference<ReportGenerator.Job> job = new AtomicReference<>();
+        AtomicReference<ReportGenerator.Progress> progress = new AtomicReference<>();
+        Calendar start = Calendar.getInstance();
+        start.set(2024, Calendar.JANUARY, 1);
+
+        long startNanos = System.nanoTime();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> job.set(
+            new ReportGenerator(context).generateReport("v1", "All Farmers", null, start.getTime(),
+                day.getTime(), supplies, payments, new HashMap<>(), new ReportGenerator.Callback() {
+                    @Override
+                    public void onComplete(File file) {
+                        result.set(file);
+                        progress.set(job.get().getProgress().getValue());
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        done.countDown();
+                    }
+                })));
+        assertTrue(done.await(5, TimeUnit.MINUTES));
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+        assertNotNull(result.get());
+        assertNotNull(progress.get());
+        assertEquals(ROWS, progress.get().rowsProcessed);
+        int pages = progress.get().pagesRendered;
+        Log.i(TAG, String.format(Locale.US, "%d rows, %d pages in %.2f s: %.1f pages/s",
+            ROWS, pages, seconds, pages / seconds));
+        result.get().delete();
+    }
+}
@@ -0,0 +1,173 @@
+package com.watersupply.data.backup;
+
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.watersupply.data.firebase.FirebaseManager;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Writes a family's farmers, supply entries, payments and settlements to a {@link CsvBackup}
+ * file on a background thread.
+ *
+ * Each collection is read {@link #PAGE_SIZE} documents at a time in document id order, and the
+ * next page is requested before the rows of the current one are written, so at most two pages
+ * are held however large the family is. Pages are read from the server, so an export started
+ * offline fails instead of writing only the cached documents.
+ */
+@Singleton
+public class BackupExporter {
+    private static final String TAG = "BackupExporter";
+    static final int PAGE_SIZE = 500;
+    private static final long PAGE_TIMEOUT_SECONDS = 60;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FirebaseFirestore firestore;
+    private final Executor executor = Executors.newSingleThreadExecutor();
+
+    @Inject
+    public BackupExporter(FirebaseManager firebaseManager) {
+        this.firestore = firebaseManager.getFirestore();
+    }
+
+    /**
+     * Start exporting the data of {@code familyId} to {@code file}. Exports run one at a time.
+     */
+    public Job export(String familyId, String userId, File file) {
+        Job job = new Job();
+        executor.execute(() -> run(job, familyId, userId, file));
+        return job;
+    }
+
+    /**
+     * One running export
+     */
+    public static final class Job {
+        private final MutableLiveData<Integer> written = new MutableLiveData<>(0);
+        private final TaskCompletionSource<Integer> result = new TaskCompletionSource<>();
+
+        private Job() {
+        }
+
+        /**
+         * Number of rows written so far, updated after each page
+         */
+        public LiveData<Integer> getWritten() {
+            return written;
+        }
+
+        /**
+         * Completes with the number of rows written once the file is closed. On failure the
+         * partial file is deleted.
+         */
+        public Task<Integer> getResult() {
+            return result.getTask();
+        }
+    }
+
+    private void run(Job job, String familyId, String userId, File file) {
+        int rows = 0;
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            writer.write("Water Supply Management - Data Backup\n");
+            writer.write("Exported: " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date()) + "\n");
+            writer.write("User ID: " + userId + "\n\n");
+
+            DateFormat dates = CsvBackup.newDateFormat();
+            for (CsvBackup.Section section : CsvBackup.SECTIONS) {
+                rows = writeSection(writer, section, familyId, dates, job, rows);
+            }
+        } catch (Exception e) {
+            Exception cause = e instanceof ExecutionException && e.getCause() instanceof Exception
+                ? (Exception) e.getCause() : e;
+            Log.e(TAG, "Export failed after " + rows + " rows", cause);
+            if (!file.delete()) {
+                Log.w(TAG, "Could not delete partial export " + file);
+            }
+            job.result.setException(cause);
+            return;
+        }
+        Log.d(TAG, "Exported " + rows + " rows to " + file);
+        job.result.setResult(rows);
+    }
+
+    private int writeSection(Writer writer, CsvBackup.Section section, String familyId,
+                             DateFormat dates, Job job, int rows) throws Exception {
+        writer.write("[" + section.collection + "]\n");
+        writeRow(writer, section.columns);
+
+        Query pageQuery = firestore.collection(section.collection)
+            .whereEqualTo("familyId", familyId)
+            .orderBy(FieldPath.documentId())
+            .limit(PAGE_SIZE);
+        Task<QuerySnapshot> next = pageQuery.get(Source.SERVER);
+        while (next != null) {
+            List<DocumentSnapshot> documents =
+                Tasks.await(next, PAGE_TIMEOUT_SECONDS, TimeUnit.SECONDS).getDocuments();
+            next = documents.size() < PAGE_SIZE ? null
+                : pageQuery.startAfter(documents.get(documents.size() - 1)).get(Source.SERVER);
+
+            for (DocumentSnapshot document : documents) {
+                writeDocument(writer, section.columns, document, dates);
+            }
+            rows += documents.size();
+            job.written.postValue(rows);
+        }
+        writer.write("\n");
+        return rows;
+    }
+
+    private static void writeRow(Writer writer, List<String> cells) throws IOException {
+        for (int i = 0; i < cells.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(CsvBackup.escapeCSV(cells.get(i)));
+        }
+        writer.write('\n');
+    }
+
+    private static void writeDocument(Writer writer, List<String> columns, DocumentSnapshot document,
+                                      DateFormat dates) throws IOException {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String column = columns.get(i);
+            String value = CsvBackup.ID.equals(column)
+                ? document.getId() : CsvBackup.format(document.get(column), dates);
+            writer.write(CsvBackup.escapeCSV(value));
+        }
+        writer.write('\n');
+    }
+}
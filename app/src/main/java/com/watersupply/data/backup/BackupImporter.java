@@ -0,0 +1,645 @@
+package com.watersupply.data.backup;
+
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+import com.watersupply.data.firebase.BatchPipeline;
+import com.watersupply.data.firebase.DocumentFetcher;
+import com.watersupply.data.firebase.FirebaseManager;
+import com.watersupply.data.firebase.FirestoreCollections;
+import com.watersupply.data.firebase.ServerAggregates;
+import com.watersupply.data.models.Farmer;
+import com.watersupply.data.models.Payment;
+import com.watersupply.data.models.SupplyEntry;
+import com.watersupply.data.repository.RollupRepository;
+import com.watersupply.utils.BillingCalculator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Adds the farmers, supply entries and payments of a {@link CsvBackup} file to a family on a
+ * background thread. Settlements are not restored; entries and payments keep their settled
+ * markers, so they stay out of the open items.
+ *
+ * The file is read one record at a time and rows are written in batches committed by a
+ * {@link BatchPipeline}. The file is only read as fast as batches are confirmed, so the pending
+ * writes queued offline stay bounded. Farmers are matched to the family's farmers by name, and
+ * rows that name an unknown farmer create one.
+ *
+ * Supply entries and payments are written under ids derived from the family and their backup
+ * ids, and each batch first reads which of its rows exist, so importing the same file again,
+ * or again after a failed import, skips the rows already written instead of adding them and
+ * their balance changes twice. Rows whose backup id is still a document of the family, as when
+ * a family restores its own backup, are skipped the same way. While offline the existing rows
+ * are looked up in the cache.
+ *
+ * Balances and rollups are not touched per row. The changes of a batch's rows are added up per
+ * farmer and per date and written in the same batch, as one increment per farmer and per
+ * rollup, so they are committed together with the rows or not at all.
+ */
+@Singleton
+public class BackupImporter {
+    private static final String TAG = "BackupImporter";
+    private static final long READ_TIMEOUT_MINUTES = 5;
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final FirebaseFirestore firestore;
+    private final RollupRepository rollupRepository;
+    private final ServerAggregates serverAggregates;
+    private final DocumentFetcher documentFetcher;
+    private final Executor executor = Executors.newSingleThreadExecutor();
+
+    @Inject
+    public BackupImporter(FirebaseManager firebaseManager, RollupRepository rollupRepository,
+                          ServerAggregates serverAggregates, DocumentFetcher documentFetcher) {
+        this.firestore = firebaseManager.getFirestore();
+        this.rollupRepository = rollupRepository;
+        this.serverAggregates = serverAggregates;
+        this.documentFetcher = documentFetcher;
+    }
+
+    /**
+     * Start importing {@code in} into {@code familyId}; the stream is closed when done.
+     * Imports run one at a time.
+     */
+    public Job importFrom(InputStream in, String familyId, String userId) {
+        Job job = new Job();
+        executor.execute(() -> new Run(job, familyId, userId).start(in));
+        serverAggregates.afterWrite(job.getResult(), FirestoreCollections.FARMERS,
+            FirestoreCollections.SUPPLY_ENTRIES, FirestoreCollections.PAYMENTS, FirestoreCollections.ROLLUPS);
+        return job;
+    }
+
+    /**
+     * One running import
+     */
+    public static final class Job {
+        private final MutableLiveData<Integer> imported = new MutableLiveData<>(0);
+        private final TaskCompletionSource<Result> result = new TaskCompletionSource<>();
+
+        private Job() {
+        }
+
+        /**
+         * Number of rows written so far, updated as each batch is confirmed
+         */
+        public LiveData<Integer> getImported() {
+            return imported;
+        }
+
+        /**
+         * Completes once every batch is confirmed, or fails with the first read or write error.
+         * Rows already written stay written, with their balance and rollup changes.
+         */
+        public Task<Result> getResult() {
+            return result.getTask();
+        }
+    }
+
+    public static final class Result {
+        public int farmers = 0;
+        public int supplyEntries = 0;
+        public int payments = 0;
+        public int skipped = 0;  // Rows of sections that are not imported
+        public int existing = 0; // Rows written by an earlier import of the same file
+        public int rejected = 0; // Rows that failed validation
+        public final List<String> errors = new ArrayList<>(); // The first few rejections
+
+        public int getImported() {
+            return farmers + supplyEntries + payments;
+        }
+    }
+
+    /**
+     * Balance and rollup changes of a set of rows, in paise and hundredths of an hour
+     */
+    private static final class Totals {
+        final Map<String, long[]> balances = new HashMap<>();      // farmerId -> {paise}
+        final Map<String, long[]> supplyDays = new HashMap<>();    // date -> {paise, hundredths, count}
+        final Map<String, long[]> paymentDays = new HashMap<>();   // date -> {paise, count}
+
+        static void add(Map<String, long[]> totals, String key, long... values) {
+            long[] sums = totals.get(key);
+            if (sums == null) {
+                totals.put(key, values.clone());
+                return;
+            }
+            for (int i = 0; i < values.length; i++) {
+                sums[i] += values[i];
+            }
+        }
+    }
+
+    /**
+     * A row to write, with its balance and rollup changes
+     */
+    private static final class PendingRow {
+        final String collection;
+        final String id;
+        final Object document;
+        final boolean derivedId; // Derived from the backup id, so it may have been written before
+        String exportedId;       // The backup id, when the document it came from may still exist
+        String farmerId;
+        String date;
+        long paise;
+        long hundredths;
+        boolean open; // Counts towards the farmer's balance
+
+        PendingRow(String collection, String id, Object document, boolean derivedId) {
+            this.collection = collection;
+            this.id = id;
+            this.document = document;
+            this.derivedId = derivedId;
+        }
+    }
+
+    /**
+     * Rows written in one batch, with their balance and rollup increments
+     */
+    private final class Chunk {
+        final List<PendingRow> rows = new ArrayList<>();
+        final Totals totals = new Totals();
+        final Result counts = new Result();
+        // Farmers and dates the rows may change, each counted once in operations
+        final Set<String> balances = new HashSet<>();
+        final Set<String> supplyDays = new HashSet<>();
+        final Set<String> paymentDays = new HashSet<>();
+        final String familyId;
+        int operations;
+
+        Chunk(String familyId) {
+            this.familyId = familyId;
+        }
+
+        /**
+         * Writes {@code row} adds to the batch: its own, its farmer's balance and, as each date
+         * touches its day and its month rollup, two for a new date
+         */
+        int operationsFor(PendingRow row) {
+            int operations = 1;
+            if (row.open && !balances.contains(row.farmerId)) {
+                operations++;
+            }
+            if (FirestoreCollections.SUPPLY_ENTRIES.equals(row.collection) && !supplyDays.contains(row.date)
+                    || FirestoreCollections.PAYMENTS.equals(row.collection) && !paymentDays.contains(row.date)) {
+                operations += 2;
+            }
+            return operations;
+        }
+
+        void add(PendingRow row) {
+            operations += operationsFor(row);
+            rows.add(row);
+            if (row.open) {
+                balances.add(row.farmerId);
+            }
+            if (FirestoreCollections.SUPPLY_ENTRIES.equals(row.collection)) {
+                supplyDays.add(row.date);
+            } else if (FirestoreCollections.PAYMENTS.equals(row.collection)) {
+                paymentDays.add(row.date);
+            }
+        }
+
+        /**
+         * Ids under which a row of {@code collection} may already exist in the family
+         */
+        List<String> possibleIds(String collection) {
+            List<String> ids = new ArrayList<>();
+            for (PendingRow row : rows) {
+                if (row.collection.equals(collection)) {
+                    if (row.derivedId) {
+                        ids.add(row.id);
+                    }
+                    if (row.exportedId != null) {
+                        ids.add(row.exportedId);
+                    }
+                }
+            }
+            return ids;
+        }
+
+        /**
+         * The batch of the rows that do not exist yet and of their balance and rollup
+         * increments, with their counts
+         */
+        WriteBatch write(Set<String> existingEntries, Set<String> existingPayments) {
+            WriteBatch batch = firestore.batch();
+            for (PendingRow row : rows) {
+                boolean entry = FirestoreCollections.SUPPLY_ENTRIES.equals(row.collection);
+                boolean payment = FirestoreCollections.PAYMENTS.equals(row.collection);
+                Set<String> existing = entry ? existingEntries : existingPayments;
+                if ((row.derivedId && existing.contains(row.id))
+                        || (row.exportedId != null && existing.contains(row.exportedId))) {
+                    counts.existing++;
+                    continue;
+                }
+                // Farmers are merged, as a balance increment of a batch committed first may
+                // already have created the document
+                if (row.document instanceof Map) {
+                    batch.set(firestore.collection(row.collection).document(row.id), row.document, SetOptions.merge());
+                } else {
+                    batch.set(firestore.collection(row.collection).document(row.id), row.document);
+                }
+                if (entry) {
+                    counts.supplyEntries++;
+                    if (row.open) {
+                        Totals.add(totals.balances, row.farmerId, row.paise);
+                    }
+                    Totals.add(totals.supplyDays, row.date, row.paise, row.hundredths, 1);
+                } else if (payment) {
+                    counts.payments++;
+                    if (row.open) {
+                        Totals.add(totals.balances, row.farmerId, -row.paise);
+                    }
+                    Totals.add(totals.paymentDays, row.date, row.paise, 1);
+                } else {
+                    counts.farmers++;
+                }
+            }
+            for (Map.Entry<String, long[]> balance : totals.balances.entrySet()) {
+                if (balance.getValue()[0] != 0) {
+                    batch.set(firestore.collection(FirestoreCollections.FARMERS).document(balance.getKey()),
+                        Collections.singletonMap("balance",
+                            FieldValue.increment(BillingCalculator.fromPaise(balance.getValue()[0]))),
+                        SetOptions.merge());
+                }
+            }
+            for (Map.Entry<String, long[]> day : totals.supplyDays.entrySet()) {
+                long[] sums = day.getValue();
+                rollupRepository.applySupplyTotals(batch, familyId, day.getKey(), sums[0], sums[1], sums[2]);
+            }
+            for (Map.Entry<String, long[]> day : totals.paymentDays.entrySet()) {
+                long[] sums = day.getValue();
+                rollupRepository.applyPaymentTotals(batch, familyId, day.getKey(), sums[0], sums[1]);
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * State of one import. Reads the file as the {@link BatchPipeline} asks for batches; runs on
+     * the executor.
+     */
+    private final class Run implements BatchPipeline.Producer<Chunk>, BatchPipeline.Listener<Chunk> {
+        private final Job job;
+        private final String familyId;
+        private final String userId;
+        private final Result result = new Result();
+        private final ArrayDeque<Chunk> full = new ArrayDeque<>(); // Chunks ready to commit
+        private final DateFormat dates = CsvBackup.newDateFormat();
+        private final FarmerIndex farmerIndex = new FarmerIndex();
+        private final Set<String> importedIds = new HashSet<>(); // Derived ids of the rows read so far
+        private CsvBackup.Reader reader;
+        private String section;
+        private Map<String, Integer> columns;
+        private boolean endOfFile;
+        private Chunk chunk;
+        private int imported;
+
+        Run(Job job, String familyId, String userId) {
+            this.job = job;
+            this.familyId = familyId;
+            this.userId = userId;
+        }
+
+        void start(InputStream in) {
+            reader = new CsvBackup.Reader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+            try {
+                loadFarmers();
+            } catch (Exception e) {
+                finish(e instanceof ExecutionException && e.getCause() instanceof Exception
+                    ? (Exception) e.getCause() : e);
+                return;
+            }
+            BatchPipeline.run(executor, this, this)
+                .addOnCompleteListener(executor, task -> finish(task.getException()));
+        }
+
+        private void finish(Exception failure) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to close backup", e);
+            }
+            if (failure != null) {
+                Log.e(TAG, "Import failed after " + imported + " rows", failure);
+                job.result.setException(failure);
+                return;
+            }
+            Log.d(TAG, "Imported " + result.getImported() + " rows, rejected " + result.rejected);
+            job.result.setResult(result);
+        }
+
+        @Override
+        public Task<BatchPipeline.Chunk<Chunk>> next() throws Exception {
+            while (full.isEmpty() && !endOfFile) {
+                List<String> record = reader.readRecord();
+                if (record == null) {
+                    endOfFile = true;
+                    if (chunk != null) {
+                        full.add(chunk);
+                        chunk = null;
+                    }
+                } else {
+                    readRecord(record);
+                }
+            }
+            Chunk next = full.poll();
+            if (next == null) {
+                return null;
+            }
+            Task<Set<String>> entries = documentFetcher.existing(FirestoreCollections.SUPPLY_ENTRIES, familyId,
+                next.possibleIds(FirestoreCollections.SUPPLY_ENTRIES), executor);
+            Task<Set<String>> payments = documentFetcher.existing(FirestoreCollections.PAYMENTS, familyId,
+                next.possibleIds(FirestoreCollections.PAYMENTS), executor);
+            return Tasks.whenAllSuccess(entries, payments).continueWith(executor, task -> {
+                if (!task.isSuccessful()) {
+                    throw task.getException();
+                }
+                WriteBatch batch = next.write(entries.getResult(), payments.getResult());
+                // Counted here, as a chunk without new rows is never committed
+                result.existing += next.counts.existing;
+                return new BatchPipeline.Chunk<>(batch, next.counts.getImported(), next);
+            });
+        }
+
+        @Override
+        public void onCommitted(Chunk confirmed, int writes) {
+            result.farmers += confirmed.counts.farmers;
+            result.supplyEntries += confirmed.counts.supplyEntries;
+            result.payments += confirmed.counts.payments;
+            imported += writes;
+            job.imported.postValue(imported);
+        }
+
+        private void readRecord(List<String> record) throws Exception {
+            String first = record.get(0).trim();
+            if (record.size() == 1 && first.isEmpty()) {
+                return;
+            }
+            if (record.size() == 1 && first.startsWith("[") && first.endsWith("]")) {
+                section = first.substring(1, first.length() - 1);
+                columns = null;
+            } else if (section == null) {
+                // Header lines before the first section
+            } else if (columns == null) {
+                columns = new HashMap<>();
+                for (int i = 0; i < record.size(); i++) {
+                    columns.put(record.get(i).trim(), i);
+                }
+            } else {
+                importRow(section, new ImportRow(columns, record), reader.getLineNumber());
+            }
+        }
+
+        private void loadFarmers() throws Exception {
+            List<DocumentSnapshot> documents = Tasks.await(farmers().whereEqualTo("familyId", familyId).get(),
+                READ_TIMEOUT_MINUTES, TimeUnit.MINUTES).getDocuments();
+            for (DocumentSnapshot document : documents) {
+                farmerIndex.add(document.getId(), document.getString("name"));
+            }
+        }
+
+        private void importRow(String section, ImportRow row, int lineNumber) throws Exception {
+            try {
+                if (FirestoreCollections.FARMERS.equals(section)) {
+                    importFarmer(row);
+                } else if (FirestoreCollections.SUPPLY_ENTRIES.equals(section)) {
+                    importSupplyEntry(row);
+                } else if (FirestoreCollections.PAYMENTS.equals(section)) {
+                    importPayment(row);
+                } else {
+                    result.skipped++;
+                }
+            } catch (ImportRow.InvalidException e) {
+                result.rejected++;
+                if (result.errors.size() < MAX_REPORTED_ERRORS) {
+                    result.errors.add("Line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+
+        private void importFarmer(ImportRow row) throws Exception {
+            String name = row.require("name");
+            String existingId = farmerIndex.byName(name);
+            String backupId = row.get(CsvBackup.ID);
+            if (existingId != null) {
+                if (backupId != null) {
+                    farmerIndex.map(backupId, existingId);
+                }
+                return;
+            }
+
+            Farmer farmer = new Farmer();
+            farmer.setUserId(userId);
+            farmer.setFamilyId(familyId);
+            farmer.setName(name);
+            farmer.setMobile(row.get("mobile"));
+            farmer.setFarmLocation(row.get("farmLocation"));
+            farmer.setDefaultRate(row.getNumber("defaultRate", 0));
+            farmer.setActive(!"false".equalsIgnoreCase(row.get("isActive")));
+            farmer.setCreatedAt(row.getDate("createdAt", dates));
+            String id = addFarmer(farmer);
+            if (backupId != null) {
+                farmerIndex.map(backupId, id);
+            }
+        }
+
+        /**
+         * The family id of a row's farmer, creating the farmer when only its name is known
+         */
+        private String resolveFarmer(ImportRow row) throws Exception {
+            String farmerId = row.get("farmerId");
+            String name = row.get("farmerName");
+            String id = farmerIndex.resolve(farmerId, name);
+            if (id != null) {
+                return id;
+            }
+            if (name == null) {
+                throw new ImportRow.InvalidException(
+                    farmerId != null ? "Unknown farmer " + farmerId : "Missing farmerName");
+            }
+            Farmer farmer = new Farmer(userId, name, null);
+            farmer.setFamilyId(familyId);
+            farmer.setDefaultRate(row.getNumber("rate", 0));
+            id = addFarmer(farmer);
+            if (farmerId != null) {
+                farmerIndex.map(farmerId, id);
+            }
+            return id;
+        }
+
+        private String addFarmer(Farmer farmer) {
+            String id = farmers().document().getId();
+            queue(new PendingRow(FirestoreCollections.FARMERS, id, farmerToMap(farmer), false));
+            farmerIndex.add(id, farmer.getName());
+            return id;
+        }
+
+        /**
+         * The id derived from the row's backup id, or null when it has none
+         *
+         * @throws ImportRow.InvalidException if an earlier row of the file has the same backup id
+         */
+        private String importedId(ImportRow row, String collection) throws ImportRow.InvalidException {
+            String id = row.importedId(familyId);
+            if (id != null && !importedIds.add(collection + "/" + id)) {
+                throw new ImportRow.InvalidException("Duplicate " + CsvBackup.ID + ": " + row.get(CsvBackup.ID));
+            }
+            return id;
+        }
+
+        /**
+         * A row writing {@code document} under {@code id}, or under a new id when null
+         */
+        private PendingRow pending(String collection, String id, ImportRow row, Object document) {
+            PendingRow pending = id != null ? new PendingRow(collection, id, document, true)
+                : new PendingRow(collection, firestore.collection(collection).document().getId(), document, false);
+            pending.exportedId = row.exportedId();
+            return pending;
+        }
+
+        private void importSupplyEntry(ImportRow row) throws Exception {
+            String date = row.requireDate("date");
+            double amount = row.requireNumber("amount");
+            String billingMethod = row.oneOf("billingMethod", "time", "time", "meter");
+            String status = row.oneOf("status", "completed", "completed", "draft");
+            String settlementId = row.get("settlementId");
+            String settlementStatus = row.oneOf("settlementStatus",
+                settlementId != null ? "settled" : "unsettled", "settled", "unsettled");
+            String id = importedId(row, FirestoreCollections.SUPPLY_ENTRIES);
+            String farmerId = resolveFarmer(row);
+
+            SupplyEntry entry = new SupplyEntry();
+            entry.setUserId(userId);
+            entry.setFamilyId(familyId);
+            entry.setFarmerId(farmerId);
+            entry.setFarmerName(farmerIndex.name(farmerId));
+            entry.setDate(date);
+            entry.setBillingMethod(billingMethod);
+            entry.setStartTime(row.get("startTime"));
+            entry.setStopTime(row.get("stopTime"));
+            entry.setPauseDuration(row.getNumber("pauseDuration", 0));
+            entry.setMeterReadingStart(row.getNumber("meterReadingStart"));
+            entry.setMeterReadingEnd(row.getNumber("meterReadingEnd"));
+            entry.setTotalTimeUsed(row.getNumber("totalTimeUsed"));
+            entry.setTotalWaterUsed(row.getNumber("totalWaterUsed"));
+            entry.setRate(row.getNumber("rate", 0));
+            entry.setAmount(amount);
+            entry.setRemarks(row.get("remarks"));
+            entry.setStatus(status);
+            entry.setSettlementStatus(settlementStatus);
+            entry.setSettlementId(settlementId);
+            Date createdAt = row.getDate("createdAt", dates);
+            entry.setCreatedAt(createdAt != null ? createdAt : new Date());
+            entry.setUpdatedAt(new Date());
+
+            PendingRow pending = pending(FirestoreCollections.SUPPLY_ENTRIES, id, row, entry);
+            pending.farmerId = farmerId;
+            pending.date = date;
+            pending.paise = BillingCalculator.toPaise(amount);
+            Double hours = entry.getTotalTimeUsed();
+            pending.hundredths = BillingCalculator.toHundredths(hours != null ? hours : 0.0);
+            pending.open = "unsettled".equals(settlementStatus);
+            queue(pending);
+        }
+
+        private void importPayment(ImportRow row) throws Exception {
+            String date = row.requireDate("paymentDate");
+            double amount = row.requireNumber("amount");
+            String id = importedId(row, FirestoreCollections.PAYMENTS);
+            String farmerId = resolveFarmer(row);
+
+            Payment payment = new Payment();
+            payment.setUserId(userId);
+            payment.setFamilyId(familyId);
+            payment.setFarmerId(farmerId);
+            payment.setFarmerName(farmerIndex.name(farmerId));
+            payment.setPaymentDate(date);
+            payment.setAmount(amount);
+            payment.setPaymentMethod(row.get("paymentMethod"));
+            payment.setTransactionId(row.get("transactionId"));
+            payment.setRemarks(row.get("remarks"));
+            payment.setSettlementId(row.get("settlementId"));
+            Date createdAt = row.getDate("createdAt", dates);
+            payment.setCreatedAt(createdAt != null ? createdAt : new Date());
+            payment.setUpdatedAt(new Date());
+
+            PendingRow pending = pending(FirestoreCollections.PAYMENTS, id, row, payment);
+            pending.farmerId = farmerId;
+            pending.date = date;
+            pending.paise = BillingCalculator.toPaise(amount);
+            pending.open = payment.isUnlinked();
+            queue(pending);
+        }
+
+        /**
+         * Add {@code row} to the current batch, queueing that batch first when the row's
+         * writes do not fit
+         */
+        private void queue(PendingRow row) {
+            if (chunk != null && chunk.operations + chunk.operationsFor(row) > BatchPipeline.MAX_OPERATIONS) {
+                full.add(chunk);
+                chunk = null;
+            }
+            if (chunk == null) {
+                chunk = new Chunk(familyId);
+            }
+            chunk.add(row);
+        }
+
+        /**
+         * A new farmer's fields, with a balance that only adds to one already written
+         */
+        private Map<String, Object> farmerToMap(Farmer farmer) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("userId", farmer.getUserId());
+            map.put("familyId", farmer.getFamilyId());
+            map.put("name", farmer.getName());
+            map.put("mobile", farmer.getMobile());
+            map.put("farmLocation", farmer.getFarmLocation());
+            map.put("defaultRate", farmer.getDefaultRate());
+            map.put("balance", FieldValue.increment(0));
+            map.put("isActive", farmer.isActive());
+            map.put("createdAt", farmer.getCreatedAt() != null ? farmer.getCreatedAt() : new Date());
+            map.put("updatedAt", new Date());
+            return map;
+        }
+
+        private CollectionReference farmers() {
+            return firestore.collection(FirestoreCollections.FARMERS);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.watersupply.data.backup;
+
+import com.google.firebase.Timestamp;
+import com.watersupply.data.firebase.FirestoreCollections;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Layout of a CSV backup: a few header lines, then one section per collection. A section is
+ * a "[collection]" line, a row of column names and one row per document, followed by a
+ * blank line. The "id" column holds the document id.
+ */
+public final class CsvBackup {
+    public static final String ID = "id";
+
+    public static final List<Section> SECTIONS = Arrays.asList(
+        new Section(FirestoreCollections.FARMERS,
+            ID, "name", "mobile", "farmLocation", "defaultRate", "balance", "isActive",
+            "createdAt", "updatedAt"),
+        new Section(FirestoreCollections.SUPPLY_ENTRIES,
+            ID, "farmerId", "farmerName", "date", "billingMethod", "startTime", "stopTime",
+            "pauseDuration", "meterReadingStart", "meterReadingEnd", "totalTimeUsed",
+            "totalWaterUsed", "rate", "amount", "remarks", "status", "settlementStatus",
+            "settlementId", "createdAt", "updatedAt"),
+        new Section(FirestoreCollections.PAYMENTS,
+            ID, "farmerId", "farmerName", "paymentDate", "amount", "paymentMethod",
+            "transactionId", "remarks", "settlementId", "createdAt", "updatedAt"),
+        new Section(FirestoreCollections.SETTLEMENTS,
+            ID, "farmerId", "farmerName", "settlementDate", "totalCharges",
+            "totalPreviousPayments", "outstandingAmount", "amountReceived", "adjustmentAmount",
+            "adjustmentType", "paymentMethod", "transactionId", "remarks", "settledSupplyIds",
+            "settledPaymentIds", "createdAt", "updatedAt")
+    );
+
+    // Separates the ids of a list column
+    static final String LIST_SEPARATOR = ";";
+    // Longest record accepted, so an unterminated quote cannot pull the whole file into memory
+    static final int MAX_RECORD_CHARS = 64 * 1024;
+
+    private CsvBackup() {
+    }
+
+    /**
+     * The columns written for one collection
+     */
+    public static final class Section {
+        public final String collection;
+        public final List<String> columns;
+
+        Section(String collection, String... columns) {
+            this.collection = collection;
+            this.columns = Arrays.asList(columns);
+        }
+    }
+
+    /**
+     * Format for timestamps, in UTC. Not thread-safe; one per export.
+     */
+    public static DateFormat newDateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format;
+    }
+
+    /**
+     * The cell text of a Firestore field value, not yet escaped
+     */
+    public static String format(Object value, DateFormat dates) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Timestamp) {
+            return dates.format(((Timestamp) value).toDate());
+        }
+        if (value instanceof Date) {
+            return dates.format((Date) value);
+        }
+        if (value instanceof Double || value instanceof Float) {
+            // Avoid the exponent notation Double.toString uses for large amounts
+            return BigDecimal.valueOf(((Number) value).doubleValue()).toPlainString();
+        }
+        if (value instanceof List) {
+            StringBuilder joined = new StringBuilder();
+            for (Object item : (List<?>) value) {
+                if (joined.length() > 0) {
+                    joined.append(LIST_SEPARATOR);
+                }
+                joined.append(item);
+            }
+            return joined.toString();
+        }
+        return value.toString();
+    }
+
+    public static String escapeCSV(String value) {
+        if (value == null) return "";
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    /**
+     * Reads the records of a CSV file one at a time. A quoted cell may span lines.
+     */
+    public static final class Reader implements Closeable {
+        private final BufferedReader in;
+        private final StringBuilder cell = new StringBuilder();
+        private int lineNumber;
+
+        public Reader(BufferedReader in) {
+            this.in = in;
+        }
+
+        /**
+         * Line on which the last record read ends, starting at 1
+         */
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * @return the cells of the next record, or null at the end of the file
+         */
+        public List<String> readRecord() throws IOException {
+            String line = in.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+            List<String> cells = new ArrayList<>();
+            cell.setLength(0);
+            int length = 0;
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == line.length()) {
+                    if (!quoted) {
+                        break;
+                    }
+                    length += line.length() + 1;
+                    line = in.readLine();
+                    if (line == null) {
+                        throw new IOException("Unterminated quote at line " + lineNumber);
+                    }
+                    lineNumber++;
+                    if (length + line.length() > MAX_RECORD_CHARS) {
+                        throw new IOException("Record too long at line " + lineNumber);
+                    }
+                    cell.append('\n');
+                    i = 0;
+                    continue;
+                }
+                char c = line.charAt(i++);
+                if (quoted) {
+                    if (c != '"') {
+                        cell.append(c);
+                    } else if (i < line.length() && line.charAt(i) == '"') {
+                        cell.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    cells.add(cell.toString());
+                    cell.setLength(0);
+                } else {
+                    cell.append(c);
+                }
+            }
+            cells.add(cell.toString());
+            return cells;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.watersupply.data.backup;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The farmers an import attributes rows to. Rows name their farmer by the id it had in the
+ * backup, which is only the family's id when the backup came from this family, and by name;
+ * farmers are matched by name, ignoring case, and each backup id is remembered once matched.
+ */
+final class FarmerIndex {
+    private final Map<String, String> ids = new HashMap<>();    // Backup or family id -> family id
+    private final Map<String, String> byName = new HashMap<>(); // Lower-case name -> family id
+    private final Map<String, String> names = new HashMap<>();  // Family id -> name
+
+    /**
+     * Add a farmer of the family
+     */
+    void add(String id, String name) {
+        ids.put(id, id);
+        if (name != null) {
+            byName.put(key(name), id);
+            names.put(id, name);
+        }
+    }
+
+    /**
+     * Remember that the farmer with {@code backupId} in the backup is {@code id} in the family
+     */
+    void map(String backupId, String id) {
+        ids.put(backupId, id);
+    }
+
+    /**
+     * The family id of the farmer with {@code name}, or null
+     */
+    String byName(String name) {
+        return byName.get(key(name));
+    }
+
+    /**
+     * The family id of a row's farmer, by its backup id and then by name, or null when neither
+     * matches. A match by name maps the backup id for the following rows.
+     *
+     * @param farmerId the farmer's id in the backup, or null
+     * @param name the farmer's name, or null
+     */
+    String resolve(String farmerId, String name) {
+        if (farmerId != null && ids.containsKey(farmerId)) {
+            return ids.get(farmerId);
+        }
+        String id = name != null ? byName(name) : null;
+        if (id != null && farmerId != null) {
+            map(farmerId, id);
+        }
+        return id;
+    }
+
+    /**
+     * The name of the family's farmer {@code id}, or null
+     */
+    String name(String id) {
+        return names.get(id);
+    }
+
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,166 @@
+package com.watersupply.data.backup;
+
+import com.watersupply.utils.EpochDays;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The cells of one backup row by column name, with the checks {@link BackupImporter} applies
+ * before writing it
+ */
+final class ImportRow {
+    // Bytes of the hash kept for a derived document id, as 40 hex digits
+    private static final int ID_BYTES = 20;
+    // Firestore's limit for a document id
+    private static final int MAX_ID_BYTES = 1500;
+
+    /**
+     * Rejects a row; the message is reported with the row's line number
+     */
+    static final class InvalidException extends Exception {
+        InvalidException(String message) {
+            super(message);
+        }
+    }
+
+    private final Map<String, Integer> columns;
+    private final List<String> cells;
+
+    ImportRow(Map<String, Integer> columns, List<String> cells) {
+        this.columns = columns;
+        this.cells = cells;
+    }
+
+    /**
+     * The trimmed cell, or null when the column is missing or the cell is empty
+     */
+    String get(String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= cells.size()) {
+            return null;
+        }
+        String value = cells.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    String require(String column) throws InvalidException {
+        String value = get(column);
+        if (value == null) {
+            throw new InvalidException("Missing " + column);
+        }
+        return value;
+    }
+
+    Double getNumber(String column) throws InvalidException {
+        String value = get(column);
+        if (value == null) {
+            return null;
+        }
+        try {
+            double number = Double.parseDouble(value);
+            if (Double.isNaN(number) || Double.isInfinite(number) || number < 0) {
+                throw new InvalidException("Invalid " + column + ": " + value);
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new InvalidException("Invalid " + column + ": " + value);
+        }
+    }
+
+    double getNumber(String column, double defaultValue) throws InvalidException {
+        Double number = getNumber(column);
+        return number != null ? number : defaultValue;
+    }
+
+    double requireNumber(String column) throws InvalidException {
+        Double number = getNumber(column);
+        if (number == null) {
+            throw new InvalidException("Missing " + column);
+        }
+        return number;
+    }
+
+    String requireDate(String column) throws InvalidException {
+        String date = require(column);
+        if (date.length() != 10 || EpochDays.parse(date) == EpochDays.NONE) {
+            throw new InvalidException("Invalid " + column + ": " + date);
+        }
+        return date;
+    }
+
+    /**
+     * A timestamp in the format of {@link CsvBackup#newDateFormat()}, or null when empty
+     */
+    Date getDate(String column, DateFormat dates) throws InvalidException {
+        String value = get(column);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return dates.parse(value);
+        } catch (ParseException e) {
+            throw new InvalidException("Invalid " + column + ": " + value);
+        }
+    }
+
+    String oneOf(String column, String defaultValue, String... allowed) throws InvalidException {
+        String value = get(column);
+        if (value == null) {
+            return defaultValue;
+        }
+        for (String option : allowed) {
+            if (option.equalsIgnoreCase(value)) {
+                return option;
+            }
+        }
+        throw new InvalidException("Invalid " + column + ": " + value);
+    }
+
+    /**
+     * The row's backup id when it can name a document, so the document it was exported from
+     * can be looked up; null otherwise
+     */
+    String exportedId() {
+        String backupId = get(CsvBackup.ID);
+        if (backupId == null || backupId.contains("/") || backupId.equals(".") || backupId.equals("..")
+                || (backupId.startsWith("__") && backupId.endsWith("__"))
+                || backupId.getBytes(StandardCharsets.UTF_8).length > MAX_ID_BYTES) {
+            return null;
+        }
+        return backupId;
+    }
+
+    /**
+     * The document id this row is imported under in {@code familyId}: a hash of the family and
+     * the row's backup id, so importing the same file again finds the rows it wrote before,
+     * and the same file imported into two families does not collide. Null when the row has no
+     * backup id.
+     */
+    String importedId(String familyId) {
+        String backupId = get(CsvBackup.ID);
+        if (backupId == null) {
+            return null;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every Java platform has SHA-256
+        }
+        digest.update(familyId.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '/');
+        byte[] hash = digest.digest(backupId.getBytes(StandardCharsets.UTF_8));
+        StringBuilder id = new StringBuilder(ID_BYTES * 2);
+        for (int i = 0; i < ID_BYTES; i++) {
+            id.append(Character.forDigit((hash[i] >> 4) & 0xf, 16)).append(Character.forDigit(hash[i] & 0xf, 16));
+        }
+        return id.toString();
+    }
+}
@@ -0,0 +1,282 @@
+package com.watersupply.data.firebase;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Commits a stream of write batches with at most {@link #MAX_IN_FLIGHT} committing at once.
+ *
+ * Batches come from a {@link Producer}, which is asked for the next one only while fewer than
+ * MAX_IN_FLIGHT are committing and no earlier request is pending. A producer that reads its
+ * writes from somewhere, such as a query page or a file, therefore stays at most MAX_IN_FLIGHT
+ * batches ahead of the server, which keeps memory and the offline write queue bounded however
+ * many documents there are.
+ *
+ * After the first failure no more batches are requested, and the result fails once the batches
+ * already committing have finished, so none of their {@link Listener#onCommitted} calls are lost.
+ * Producer and listener calls all run on the executor given to {@link #run}, one at a time.
+ */
+public final class BatchPipeline<T> {
+    // Firestore's limit of operations per batch
+    public static final int MAX_OPERATIONS = 500;
+    public static final int MAX_IN_FLIGHT = 4;
+
+    /**
+     * Supplies the batches to commit
+     */
+    public interface Producer<T> {
+        /**
+         * The next chunk, or null when there are no more. Not called again until the returned
+         * task completes.
+         */
+        Task<Chunk<T>> next() throws Exception;
+    }
+
+    /**
+     * Observes the batches as they commit
+     */
+    public interface Listener<T> {
+        /**
+         * A chunk's batch committed. Batches commit concurrently, so calls may come out of order.
+         */
+        default void onCommitted(T tag, int writes) {
+        }
+
+        /**
+         * This chunk and every chunk before it have committed. Calls come in order, which makes
+         * the tag of the latest call a safe point to resume from.
+         */
+        default void onCheckpoint(T tag) {
+        }
+    }
+
+    /**
+     * Adds the writes for one page of documents to a batch
+     */
+    public interface PageWriter {
+        /**
+         * @return the number of writes added, at most one per document
+         */
+        int write(WriteBatch batch, List<DocumentSnapshot> page) throws Exception;
+    }
+
+    /**
+     * Adds the writes for one item to a batch
+     */
+    public interface ItemWriter<I> {
+        void write(WriteBatch batch, I item) throws Exception;
+    }
+
+    /**
+     * One batch and what it is for
+     */
+    public static final class Chunk<T> {
+        final WriteBatch batch;
+        final int writes;
+        final T tag;
+
+        /**
+         * @param writes the count reported for the batch; 0 skips committing it
+         * @param tag passed back to the listener once the batch commits
+         */
+        public Chunk(WriteBatch batch, int writes, T tag) {
+            this.batch = batch;
+            this.writes = writes;
+            this.tag = tag;
+        }
+    }
+
+    private static final class Slot<T> {
+        final T tag;
+        boolean committed;
+
+        Slot(T tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final Executor executor;
+    private final Producer<T> producer;
+    private final Listener<T> listener;
+    private final TaskCompletionSource<Integer> result = new TaskCompletionSource<>();
+    private final ArrayDeque<Slot<T>> uncheckpointed = new ArrayDeque<>(); // In request order
+    private Exception failure;
+    private boolean requesting;
+    private boolean exhausted;
+    private int inFlight;
+    private int committed;
+
+    private BatchPipeline(Executor executor, Producer<T> producer, Listener<T> listener) {
+        this.executor = executor;
+        this.producer = producer;
+        this.listener = listener;
+    }
+
+    /**
+     * Commit every batch of {@code producer}.
+     *
+     * @param listener told about each committed batch, or null
+     * @return completes with the sum of the committed chunks' writes, or fails with the first
+     * producer or commit error
+     */
+    public static <T> Task<Integer> run(Executor executor, Producer<T> producer, Listener<T> listener) {
+        BatchPipeline<T> pipeline = new BatchPipeline<>(executor, producer, listener);
+        executor.execute(pipeline::pump);
+        return pipeline.result.getTask();
+    }
+
+    /**
+     * Batches built from the documents matching {@code query}, read {@link #MAX_OPERATIONS} at a
+     * time in document id order. Each chunk is tagged with the id of its page's last document,
+     * the cursor to resume after. The query must not already be ordered or limited.
+     *
+     * @param startAfter id of the document to resume after, or null to start at the beginning
+     * @param source where the pages are read from; {@link Source#SERVER} to fail rather than
+     * read a partial cache while offline
+     * @param executor runs {@code writer}; the executor the pipeline runs on
+     */
+    public static Producer<String> pages(Query query, String startAfter, Source source, Executor executor,
+                                         PageWriter writer) {
+        Query pageQuery = query.orderBy(FieldPath.documentId()).limit(MAX_OPERATIONS);
+        FirebaseFirestore firestore = query.getFirestore();
+        return new Producer<String>() {
+            private String cursor = startAfter;
+            private boolean exhausted;
+
+            @Override
+            public Task<Chunk<String>> next() {
+                if (exhausted) {
+                    return null;
+                }
+                Query page = cursor != null ? pageQuery.startAfter(cursor) : pageQuery;
+                return page.get(source).continueWith(executor, task -> {
+                    List<DocumentSnapshot> documents = task.getResult().getDocuments();
+                    exhausted = documents.size() < MAX_OPERATIONS;
+                    WriteBatch batch = firestore.batch();
+                    int writes = 0;
+                    if (!documents.isEmpty()) {
+                        cursor = documents.get(documents.size() - 1).getId();
+                        writes = writer.write(batch, documents);
+                    }
+                    return new Chunk<>(batch, writes, cursor);
+                });
+            }
+        };
+    }
+
+    /**
+     * {@link #pages(Query, String, Source, Executor, PageWriter)} from the start, reading from
+     * the server when online and the cache otherwise
+     */
+    public static Producer<String> pages(Query query, Executor executor, PageWriter writer) {
+        return pages(query, null, Source.DEFAULT, executor, writer);
+    }
+
+    /**
+     * Batches holding the writes for {@code items}, packed {@link #MAX_OPERATIONS} operations to a
+     * batch as they are requested. Each chunk reports the number of items it holds.
+     *
+     * @param operationsPerItem the most operations {@code writer} adds for one item
+     */
+    public static <I> Producer<Void> items(FirebaseFirestore firestore, Iterable<I> items, int operationsPerItem,
+                                           ItemWriter<I> writer) {
+        Iterator<I> iterator = items.iterator();
+        int perBatch = MAX_OPERATIONS / operationsPerItem;
+        return () -> {
+            if (!iterator.hasNext()) {
+                return null;
+            }
+            WriteBatch batch = firestore.batch();
+            int count = 0;
+            while (count < perBatch && iterator.hasNext()) {
+                writer.write(batch, iterator.next());
+                count++;
+            }
+            return Tasks.forResult(new Chunk<>(batch, count, null));
+        };
+    }
+
+    private void pump() {
+        if (failure == null && !exhausted && !requesting && inFlight < MAX_IN_FLIGHT) {
+            Task<Chunk<T>> next = null;
+            try {
+                next = producer.next();
+            } catch (Exception e) {
+                fail(e);
+            }
+            if (next != null) {
+                requesting = true;
+                next.addOnCompleteListener(executor, task -> {
+                    requesting = false;
+                    if (task.isSuccessful()) {
+                        submit(task.getResult());
+                    } else {
+                        fail(task.getException());
+                    }
+                    pump();
+                });
+            } else if (failure == null) {
+                exhausted = true;
+            }
+        }
+        if ((exhausted || failure != null) && !requesting && inFlight == 0) {
+            if (failure != null) {
+                result.trySetException(failure);
+            } else {
+                result.trySetResult(committed);
+            }
+        }
+    }
+
+    private void submit(Chunk<T> chunk) {
+        Slot<T> slot = new Slot<>(chunk.tag);
+        uncheckpointed.add(slot);
+        if (chunk.writes == 0) {
+            slot.committed = true;
+            checkpoint();
+            return;
+        }
+        inFlight++;
+        chunk.batch.commit().addOnCompleteListener(executor, task -> {
+            inFlight--;
+            if (task.isSuccessful()) {
+                committed += chunk.writes;
+                slot.committed = true;
+                if (listener != null) {
+                    listener.onCommitted(chunk.tag, chunk.writes);
+                }
+                checkpoint();
+            } else {
+                fail(task.getException());
+            }
+            pump();
+        });
+    }
+
+    private void checkpoint() {
+        while (!uncheckpointed.isEmpty() && uncheckpointed.peek().committed) {
+            T tag = uncheckpointed.poll().tag;
+            if (listener != null) {
+                listener.onCheckpoint(tag);
+            }
+        }
+    }
+
+    private void fail(Exception e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.watersupply.data.firebase;
+
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskExecutors;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Deletes every document matching a query in WriteBatch chunks.
+ *
+ * The query is read one page of {@link BatchPipeline#MAX_OPERATIONS} documents at a time, in
+ * document id order, and each page becomes one batch committed through a {@link BatchPipeline}.
+ * Paging by cursor keeps memory flat however large the collection is.
+ *
+ * Main thread only; the reads and commits complete on the main thread.
+ */
+@Singleton
+public class BulkDeleter {
+    private static final String TAG = "BulkDeleter";
+
+    @Inject
+    public BulkDeleter() {
+    }
+
+    /**
+     * Start deleting the documents matching {@code query}. The query must not already be
+     * ordered or limited.
+     */
+    public Job delete(Query query) {
+        Job job = new Job();
+        job.result = BatchPipeline.run(TaskExecutors.MAIN_THREAD,
+            BatchPipeline.pages(query, TaskExecutors.MAIN_THREAD, (batch, page) -> {
+                for (DocumentSnapshot document : page) {
+                    batch.delete(document.getReference());
+                }
+                return page.size();
+            }),
+            job);
+        job.result.addOnFailureListener(e ->
+            Log.e(TAG, "Bulk delete failed after " + job.deletedCount + " documents", e));
+        return job;
+    }
+
+    /**
+     * One running bulk delete
+     */
+    public static final class Job implements BatchPipeline.Listener<String> {
+        private final MutableLiveData<Integer> deleted = new MutableLiveData<>(0);
+        private Task<Integer> result;
+        private int deletedCount;
+
+        private Job() {
+        }
+
+        /**
+         * Number of documents deleted so far, updated as each batch commits
+         */
+        public LiveData<Integer> getDeleted() {
+            return deleted;
+        }
+
+        /**
+         * Completes with the number of documents deleted once every batch has committed, or
+         * fails with the first read or commit error.
+         */
+        public Task<Integer> getResult() {
+            return result;
+        }
+
+        @Override
+        public void onCommitted(String lastId, int writes) {
+            deletedCount += writes;
+            deleted.setValue(deletedCount);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.watersupply.data.firebase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a query after a snapshot, together with the document changes that led to it.
+ *
+ * Changes are in the order Firestore reports them and their indices refer to the query result:
+ * applying them one after another to the previous items gives {@link #getItems()}. Models of
+ * documents that did not change are the same instances as in the previous change set, so a
+ * consumer can find an old item by identity as well as by id.
+ *
+ * @param <T> The model class documents are converted to.
+ */
+public final class ChangeSet<T> {
+
+    public enum Type {
+        ADDED,
+        MODIFIED,
+        REMOVED
+    }
+
+    /**
+     * One document change. {@code oldIndex}/{@code oldItem} are -1/null for an added document,
+     * {@code newIndex}/{@code newItem} are -1/null for a removed one.
+     */
+    public static final class Change<T> {
+        private final Type type;
+        private final int oldIndex;
+        private final int newIndex;
+        private final T oldItem;
+        private final T newItem;
+
+        public Change(Type type, int oldIndex, int newIndex, T oldItem, T newItem) {
+            this.type = type;
+            this.oldIndex = oldIndex;
+            this.newIndex = newIndex;
+            this.oldItem = oldItem;
+            this.newItem = newItem;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public int getOldIndex() {
+            return oldIndex;
+        }
+
+        public int getNewIndex() {
+            return newIndex;
+        }
+
+        public T getOldItem() {
+            return oldItem;
+        }
+
+        public T getNewItem() {
+            return newItem;
+        }
+    }
+
+    private final List<T> items;
+    private final List<Change<T>> changes;
+    private final boolean reset;
+
+    public ChangeSet(List<T> items, List<Change<T>> changes, boolean reset) {
+        this.items = Collections.unmodifiableList(items);
+        this.changes = Collections.unmodifiableList(changes);
+        this.reset = reset;
+    }
+
+    /**
+     * A change set that replaces whatever the consumer showed before, e.g. the first result of
+     * a query or the current result again after a filter changed.
+     */
+    public static <T> ChangeSet<T> reset(List<T> items) {
+        return new ChangeSet<>(items, new ArrayList<>(), true);
+    }
+
+    /**
+     * Every item of the query result, in query order.
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Changes since the previous change set. Empty and meaningless when {@link #isReset()}.
+     */
+    public List<Change<T>> getChanges() {
+        return changes;
+    }
+
+    /**
+     * True when the items must be taken as a whole instead of applying the changes.
+     */
+    public boolean isReset() {
+        return reset;
+    }
+}
@@ -0,0 +1,246 @@
+package com.watersupply.data.firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+import com.watersupply.utils.BillingCalculator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Commits the writes submitted during one main-thread turn as a single WriteBatch.
+ *
+ * A document write and the counters it moves (e.g. a supply entry and its farmer's balance)
+ * go into the same batch, so they land together in one round trip, and offline they are queued
+ * together rather than one after the other's success callback. Money increments submitted for
+ * the same document field are merged, in paise, into one FieldValue.increment, so a burst of
+ * entries for one farmer produces a single balance write.
+ *
+ * Counter moves that belong to no document write can also wait a short time for others, see
+ * {@link #increment(long, Increment...)}.
+ *
+ * Main thread only. A batch is committed early when the next submission would take it past
+ * Firestore's limit of 500 operations. If a batch is rejected, e.g. because one of its
+ * documents was deleted, each submission in it is committed again in a batch of its own, so
+ * only the callers whose writes fail see the failure.
+ */
+@Singleton
+public class CoalescingWriteQueue {
+    private static final int MAX_OPERATIONS = 500;
+
+    /**
+     * A money delta on a numeric document field, merged with others on the same field.
+     */
+    public static final class Increment {
+        final DocumentReference document;
+        final String field;
+        final long paise;
+        final String timestampField; // Set to the time of the write along with the delta, or null
+
+        private Increment(DocumentReference document, String field, long paise, String timestampField) {
+            this.document = document;
+            this.field = field;
+            this.paise = paise;
+            this.timestampField = timestampField;
+        }
+
+        /**
+         * This increment, also setting {@code timestampField} of the document to the time of the write
+         */
+        public Increment stamping(String timestampField) {
+            return new Increment(document, field, paise, timestampField);
+        }
+    }
+
+    public static Increment increment(DocumentReference document, String field, double amount) {
+        return new Increment(document, field, BillingCalculator.toPaise(amount), null);
+    }
+
+    private final FirebaseFirestore firestore;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable flushTask = this::flush;
+    private Pending pending;
+    private long flushAt; // Uptime at which the pending batch is committed
+
+    @Inject
+    public CoalescingWriteQueue(FirebaseManager firebaseManager) {
+        this.firestore = firebaseManager.getFirestore();
+    }
+
+    /**
+     * Queue writes for the current batch.
+     *
+     * @param operations number of writes {@code writes} adds to the batch
+     * @param writes     adds the writes to a batch when it is committed, and again if they are
+     *                   committed on their own after the batch is rejected
+     * @param increments counters to move in the same batch
+     * @return completes when the batch holding these writes is committed
+     */
+    public Task<Void> submit(int operations, Consumer<WriteBatch> writes, Increment... increments) {
+        Pending batch = pendingWithin(0, operations + increments.length);
+        return batch.add(new Submission(operations, writes, increments));
+    }
+
+    /**
+     * Queue counter moves on their own, to be committed within {@code maxDelayMs}. Moves of the
+     * same field arriving meanwhile are merged into one increment, and any document write
+     * submitted meanwhile takes them along right away.
+     *
+     * @return completes when the batch holding these moves is committed
+     */
+    public Task<Void> increment(long maxDelayMs, Increment... increments) {
+        Pending batch = pendingWithin(maxDelayMs, increments.length);
+        return batch.add(new Submission(0, null, increments));
+    }
+
+    /**
+     * The batch to add to, committed no later than {@code delayMs} from now
+     */
+    private Pending pendingWithin(long delayMs, int operations) {
+        if (pending != null && pending.operations + operations > MAX_OPERATIONS) {
+            flush();
+        }
+        long due = SystemClock.uptimeMillis() + delayMs;
+        if (pending == null) {
+            pending = new Pending();
+            flushAt = due;
+            handler.postAtTime(flushTask, due);
+        } else if (due < flushAt) {
+            handler.removeCallbacks(flushTask);
+            flushAt = due;
+            handler.postAtTime(flushTask, due);
+        }
+        return pending;
+    }
+
+    private void flush() {
+        Pending batch = pending;
+        if (batch == null) {
+            return;
+        }
+        handler.removeCallbacks(flushTask);
+        pending = null;
+        batch.commit();
+    }
+
+    /**
+     * One caller's writes and counter moves, which always commit together
+     */
+    private static final class Submission {
+        final int operations;
+        final Consumer<WriteBatch> writes; // Null for counter moves alone
+        final Increment[] increments;
+        final TaskCompletionSource<Void> result = new TaskCompletionSource<>();
+
+        Submission(int operations, Consumer<WriteBatch> writes, Increment[] increments) {
+            this.operations = operations;
+            this.writes = writes;
+            this.increments = increments;
+        }
+    }
+
+    private final class Pending {
+        final List<Submission> submissions = new ArrayList<>();
+        final Set<String> documents = new HashSet<>();
+        int operations;
+
+        Task<Void> add(Submission submission) {
+            submissions.add(submission);
+            operations += submission.operations;
+            for (Increment increment : submission.increments) {
+                if (documents.add(increment.document.getPath())) {
+                    operations++; // One update per document, however many fields and deltas
+                }
+            }
+            return submission.result.getTask();
+        }
+
+        void commit() {
+            batchOf(submissions).commit().addOnCompleteListener(task -> {
+                if (task.isSuccessful()) {
+                    for (Submission submission : submissions) {
+                        submission.result.setResult(null);
+                    }
+                } else if (submissions.size() == 1) {
+                    submissions.get(0).result.setException(task.getException());
+                } else {
+                    // Nothing in the batch was applied; find out whose writes are rejected
+                    for (Submission submission : submissions) {
+                        batchOf(Collections.singletonList(submission)).commit()
+                            .addOnCompleteListener(own -> {
+                                if (own.isSuccessful()) {
+                                    submission.result.setResult(null);
+                                } else {
+                                    submission.result.setException(own.getException());
+                                }
+                            });
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * A batch with the writes of the submissions and their increments, merged per field
+     */
+    private WriteBatch batchOf(List<Submission> submissions) {
+        WriteBatch batch = firestore.batch();
+        // Merged deltas by document path, then field
+        Map<String, DocumentReference> documents = new LinkedHashMap<>();
+        Map<String, Map<String, Long>> deltas = new LinkedHashMap<>();
+        Map<String, Set<String>> timestamps = new LinkedHashMap<>();
+        for (Submission submission : submissions) {
+            if (submission.writes != null) {
+                submission.writes.accept(batch);
+            }
+            for (Increment increment : submission.increments) {
+                String path = increment.document.getPath();
+                documents.put(path, increment.document);
+                deltas.computeIfAbsent(path, key -> new LinkedHashMap<>())
+                    .merge(increment.field, increment.paise, Long::sum);
+                if (increment.timestampField != null) {
+                    timestamps.computeIfAbsent(path, key -> new LinkedHashSet<>()).add(increment.timestampField);
+                }
+            }
+        }
+
+        Date now = new Date();
+        for (Map.Entry<String, DocumentReference> document : documents.entrySet()) {
+            Map<String, Object> update = new LinkedHashMap<>();
+            for (Map.Entry<String, Long> delta : deltas.get(document.getKey()).entrySet()) {
+                if (delta.getValue() != 0) {
+                    update.put(delta.getKey(), FieldValue.increment(BillingCalculator.fromPaise(delta.getValue())));
+                }
+            }
+            if (!update.isEmpty()) {
+                Set<String> stamped = timestamps.get(document.getKey());
+                if (stamped != null) {
+                    for (String field : stamped) {
+                        update.put(field, now);
+                    }
+                }
+                batch.update(document.getValue(), update);
+            }
+        }
+        return batch;
+    }
+}
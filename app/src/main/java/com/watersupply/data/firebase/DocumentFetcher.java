@@ -0,0 +1,87 @@
+package com.watersupply.data.firebase;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Reads a known set of documents by id with {@code whereIn(documentId)} queries instead of one
+ * get() per document. Ids are sent in chunks of {@link #CHUNK_SIZE}, Firestore's limit for an
+ * in filter, and all chunks are queried at once.
+ */
+@Singleton
+public class DocumentFetcher {
+    static final int CHUNK_SIZE = 30;
+
+    private final FirebaseFirestore firestore;
+
+    @Inject
+    public DocumentFetcher(FirebaseManager firebaseManager) {
+        this.firestore = firebaseManager.getFirestore();
+    }
+
+    /**
+     * The documents of {@code familyId} in {@code collection} with the given ids, in no
+     * particular order. Ids without a document of the family are left out; duplicates are read
+     * once. Fails if any chunk fails.
+     */
+    public <T> Task<List<T>> fetch(String collection, String familyId, List<String> ids, Class<T> type) {
+        if (ids == null || ids.isEmpty()) {
+            return Tasks.forResult(new ArrayList<>());
+        }
+        // Security rules allow only queries constrained to the family, so it is part of the query
+        Query family = firestore.collection(collection).whereEqualTo("familyId", familyId);
+        return query(family, ids).continueWith(task -> {
+            List<T> documents = new ArrayList<>();
+            for (Object snapshot : task.getResult()) {
+                documents.addAll(((QuerySnapshot) snapshot).toObjects(type));
+            }
+            return documents;
+        });
+    }
+
+    /**
+     * Which of {@code ids} have a document of {@code familyId} in {@code collection}
+     *
+     * @param executor runs the continuation that collects the ids
+     */
+    public Task<Set<String>> existing(String collection, String familyId, List<String> ids, Executor executor) {
+        if (ids == null || ids.isEmpty()) {
+            return Tasks.forResult(new HashSet<>());
+        }
+        Query family = firestore.collection(collection).whereEqualTo("familyId", familyId);
+        return query(family, ids).continueWith(executor, task -> {
+            Set<String> existing = new HashSet<>();
+            for (Object snapshot : task.getResult()) {
+                for (DocumentSnapshot document : ((QuerySnapshot) snapshot).getDocuments()) {
+                    existing.add(document.getId());
+                }
+            }
+            return existing;
+        });
+    }
+
+    private static Task<List<Object>> query(Query query, List<String> ids) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<Task<QuerySnapshot>> chunks = new ArrayList<>();
+        for (int start = 0; start < distinct.size(); start += CHUNK_SIZE) {
+            List<String> chunk = distinct.subList(start, Math.min(start + CHUNK_SIZE, distinct.size()));
+            chunks.add(query.whereIn(FieldPath.documentId(), new ArrayList<>(chunk)).get());
+        }
+        return Tasks.whenAllSuccess(chunks);
+    }
+}
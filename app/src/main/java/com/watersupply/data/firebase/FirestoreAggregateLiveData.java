@@ -0,0 +1,91 @@
+package com.watersupply.data.firebase;
+
+import androidx.lifecycle.LiveData;
+
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+/**
+ * A LiveData that reduces a shared Firestore query to a single value (a count or a total)
+ * while it has active observers.
+ *
+ * @param <T> The reduced value type.
+ */
+public class FirestoreAggregateLiveData<T> extends LiveData<T> {
+
+    /**
+     * Reduces a snapshot to the published value. See {@link FirestoreQueryHub.Subscriber}
+     * for the meaning of {@code initial}.
+     */
+    public interface Reducer<T> {
+        T reduce(QuerySnapshot snapshot, boolean initial);
+    }
+
+    /**
+     * Converts a fixed-point sum back to the value shown to the user.
+     */
+    public interface Converter {
+        double convert(long fixedPoint);
+    }
+
+    private final FirestoreQueryHub hub;
+    private final Query query;
+    private final T fallback;
+    private ListenerRegistration registration;
+
+    private final FirestoreQueryHub.Subscriber subscriber;
+
+    public FirestoreAggregateLiveData(FirestoreQueryHub hub, Query query, T fallback, Reducer<T> reducer) {
+        this.hub = hub;
+        this.query = query;
+        this.fallback = fallback;
+        this.subscriber = new FirestoreQueryHub.Subscriber() {
+            @Override
+            public void onSnapshot(QuerySnapshot snapshot, boolean initial) {
+                setValue(reducer.reduce(snapshot, initial));
+            }
+
+            @Override
+            public void onError(FirebaseFirestoreException e) {
+                setValue(FirestoreAggregateLiveData.this.fallback);
+            }
+        };
+    }
+
+    /**
+     * Number of documents in the query result.
+     */
+    public static FirestoreAggregateLiveData<Integer> count(FirestoreQueryHub hub, Query query) {
+        return new FirestoreAggregateLiveData<>(hub, query, 0, (snapshot, initial) -> snapshot.size());
+    }
+
+    /**
+     * One column of an {@link IncrementalAggregate}, converted for display.
+     */
+    public static FirestoreAggregateLiveData<Double> sum(FirestoreQueryHub hub, Query query,
+                                                         IncrementalAggregate.Contribution contribution,
+                                                         Converter converter) {
+        IncrementalAggregate aggregate = new IncrementalAggregate(1, contribution);
+        return new FirestoreAggregateLiveData<>(hub, query, 0.0, (snapshot, initial) -> {
+            aggregate.accept(snapshot, initial);
+            return converter.convert(aggregate.sum(0));
+        });
+    }
+
+    @Override
+    protected void onActive() {
+        super.onActive();
+        registration = hub.subscribe(query, subscriber);
+    }
+
+    @Override
+    protected void onInactive() {
+        super.onInactive();
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+}
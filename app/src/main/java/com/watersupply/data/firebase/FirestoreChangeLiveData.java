@@ -0,0 +1,163 @@
+package com.watersupply.data.firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * A variant of {@link FirestoreQueryLiveData} that keeps the mapped result between snapshots
+ * and emits a {@link ChangeSet} built from the snapshot's document changes.
+ *
+ * Only added and modified documents are mapped, so an edit to one document of a large query
+ * costs one mapping instead of one per document. Snapshots are processed in order on the hub's
+ * mapping executor, and every change set is delivered with setValue on the main thread (never
+ * postValue, which could drop one and leave consumers out of step).
+ *
+ * @param <T> The model class to convert documents to.
+ */
+public class FirestoreChangeLiveData<T> extends LiveData<ChangeSet<T>> {
+    private static final String TAG = "FirestoreChangeLiveData";
+
+    private final FirestoreQueryHub hub;
+    private final Query query;
+    private final Class<T> type;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final SerialExecutor worker;
+    private ListenerRegistration registration;
+
+    // Query result as of the last processed snapshot; only touched by the worker
+    private List<T> items = new ArrayList<>();
+
+    private final FirestoreQueryHub.Subscriber subscriber = new FirestoreQueryHub.Subscriber() {
+        @Override
+        public void onSnapshot(QuerySnapshot querySnapshot, boolean initial) {
+            // A metadata-only snapshot (pending write confirmed) changes no document
+            if (!initial && querySnapshot.getDocumentChanges().isEmpty()) {
+                return;
+            }
+            worker.execute(() -> deliver(initial ? reset(querySnapshot) : applyChanges(querySnapshot)));
+        }
+
+        @Override
+        public void onError(FirebaseFirestoreException e) {
+            worker.execute(() -> {
+                items = new ArrayList<>();
+                deliver(ChangeSet.reset(new ArrayList<>())); // Return empty list on error
+            });
+        }
+    };
+
+    public FirestoreChangeLiveData(FirestoreQueryHub hub, Query query, Class<T> type) {
+        this.hub = hub;
+        this.query = query;
+        this.type = type;
+        this.worker = new SerialExecutor(hub.getMappingExecutor());
+    }
+
+    private ChangeSet<T> reset(QuerySnapshot snapshot) {
+        items = new ArrayList<>(hub.toObjects(query, snapshot, type));
+        return ChangeSet.reset(new ArrayList<>(items));
+    }
+
+    private ChangeSet<T> applyChanges(QuerySnapshot snapshot) {
+        List<ChangeSet.Change<T>> changes = new ArrayList<>();
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            int oldIndex = change.getOldIndex();
+            int newIndex = change.getNewIndex();
+            switch (change.getType()) {
+                case ADDED: {
+                    T added = change.getDocument().toObject(type);
+                    items.add(newIndex, added);
+                    changes.add(new ChangeSet.Change<>(ChangeSet.Type.ADDED, -1, newIndex, null, added));
+                    break;
+                }
+                case MODIFIED: {
+                    T previous = items.remove(oldIndex);
+                    T modified = change.getDocument().toObject(type);
+                    items.add(newIndex, modified);
+                    changes.add(new ChangeSet.Change<>(ChangeSet.Type.MODIFIED, oldIndex, newIndex, previous, modified));
+                    break;
+                }
+                case REMOVED: {
+                    T removed = items.remove(oldIndex);
+                    changes.add(new ChangeSet.Change<>(ChangeSet.Type.REMOVED, oldIndex, -1, removed, null));
+                    break;
+                }
+            }
+        }
+        // Copying references is a memory move; the changes themselves were O(changes)
+        return new ChangeSet<>(new ArrayList<>(items), changes, false);
+    }
+
+    private void deliver(ChangeSet<T> changeSet) {
+        handler.post(() -> setValue(changeSet));
+    }
+
+    @Override
+    protected void onActive() {
+        super.onActive();
+        registration = hub.subscribe(query, subscriber);
+    }
+
+    @Override
+    protected void onInactive() {
+        super.onInactive();
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    /**
+     * Runs tasks one at a time, in submission order, on a shared executor.
+     */
+    private static final class SerialExecutor implements Executor {
+        private final Executor executor;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean running;
+
+        SerialExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public synchronized void execute(Runnable task) {
+            tasks.add(task);
+            if (!running) {
+                running = true;
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Runnable task;
+                synchronized (this) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        running = false;
+                        return;
+                    }
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Change set task failed", e);
+                }
+            }
+        }
+    }
+}
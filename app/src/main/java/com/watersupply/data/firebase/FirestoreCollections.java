@@ -8,5 +8,8 @@ public class FirestoreCollections {
     public static final String FARMERS = "farmers";
     public static final String SUPPLY_ENTRIES = "supply_entries";
     public static final String PAYMENTS = "payments";
+    public static final String SETTLEMENTS = "settlements";
+    public static final String SETTLEMENT_JOURNAL = "settlement_journal";
+    public static final String ROLLUPS = "rollups";
     public static final String SETTINGS = "settings";
 }
@@ -0,0 +1,224 @@
+package com.watersupply.data.firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Shares one Firestore snapshot listener between every subscriber of an identical query.
+ *
+ * Screens such as the dashboard observe the same family-scoped collections through several
+ * LiveData objects (counts, totals, lists). The hub keeps a single ListenerRegistration per
+ * query, fans each snapshot out to all subscribers, and removes the listener a short grace
+ * period after the last subscriber leaves, so quick navigation does not re-read the collection.
+ *
+ * All methods must be called on the main thread, where Firestore delivers snapshots, except
+ * {@link #toObjects}, which is meant to run on the {@link #getMappingExecutor() mapping executor}.
+ */
+@Singleton
+public class FirestoreQueryHub {
+    private static final String TAG = "FirestoreQueryHub";
+    private static final long GRACE_PERIOD_MS = 10_000;
+    private static final int MAPPING_THREADS = 2;
+
+    /**
+     * Receives snapshots of a shared query.
+     */
+    public interface Subscriber {
+        /**
+         * @param initial true for the first snapshot this subscriber receives. It may be a
+         *                replay of the last snapshot, so its document changes must not be
+         *                treated as a delta - read the full result instead.
+         */
+        void onSnapshot(QuerySnapshot snapshot, boolean initial);
+
+        void onError(FirebaseFirestoreException e);
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Written on the main thread only; read from mapping threads by toObjects
+    private final Map<Query, SharedQuery> queries = new ConcurrentHashMap<>();
+    private final ExecutorService mappingExecutor = Executors.newFixedThreadPool(MAPPING_THREADS, new MappingThreadFactory());
+
+    @Inject
+    public FirestoreQueryHub() {
+    }
+
+    /**
+     * Subscribe to a query. Removing the returned registration unsubscribes.
+     */
+    public ListenerRegistration subscribe(Query query, Subscriber subscriber) {
+        SharedQuery shared = queries.get(query);
+        if (shared == null) {
+            shared = new SharedQuery(query);
+            queries.put(query, shared);
+            shared.start();
+        }
+        SharedQuery target = shared;
+        target.add(subscriber);
+        return () -> target.remove(subscriber);
+    }
+
+    /**
+     * Map a snapshot to model objects, reusing the result when several subscribers of the
+     * same query ask for the same snapshot and type. Safe to call from any thread; concurrent
+     * callers wait for a single mapping instead of repeating it.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> toObjects(Query query, QuerySnapshot snapshot, Class<T> type) {
+        SharedQuery shared = queries.get(query);
+        MappedSnapshot mapped = shared != null ? shared.mapped : null;
+        if (mapped == null || mapped.snapshot != snapshot) {
+            return snapshot.toObjects(type);
+        }
+        return (List<T>) mapped.objects.computeIfAbsent(type, snapshot::toObjects);
+    }
+
+    /**
+     * Background threads for turning snapshots into model objects, off the main thread.
+     */
+    public Executor getMappingExecutor() {
+        return mappingExecutor;
+    }
+
+    /**
+     * Number of Firestore listeners currently held open.
+     */
+    public int getActiveQueryCount() {
+        return queries.size();
+    }
+
+    private final class SharedQuery {
+        private final Query query;
+        private final List<Subscription> subscriptions = new ArrayList<>();
+        private final Runnable teardown = this::stopIfUnused;
+        private ListenerRegistration registration;
+        private QuerySnapshot lastSnapshot;
+        private volatile MappedSnapshot mapped;
+
+        SharedQuery(Query query) {
+            this.query = query;
+        }
+
+        void start() {
+            registration = query.addSnapshotListener(MetadataChanges.INCLUDE, (snapshot, e) -> {
+                if (e != null) {
+                    Log.e(TAG, "Listen failed.", e);
+                    for (Subscription subscription : new ArrayList<>(subscriptions)) {
+                        subscription.subscriber.onError(e);
+                    }
+                    // Firestore ends the listener after an error; the next subscriber starts a new one
+                    stop();
+                    return;
+                }
+                if (snapshot != null) {
+                    lastSnapshot = snapshot;
+                    mapped = new MappedSnapshot(snapshot);
+                    for (Subscription subscription : new ArrayList<>(subscriptions)) {
+                        subscription.deliver(snapshot);
+                    }
+                }
+            });
+        }
+
+        void add(Subscriber subscriber) {
+            handler.removeCallbacks(teardown);
+            Subscription subscription = new Subscription(subscriber);
+            subscriptions.add(subscription);
+            if (lastSnapshot != null) {
+                subscription.deliver(lastSnapshot);
+            }
+        }
+
+        void remove(Subscriber subscriber) {
+            for (int i = 0; i < subscriptions.size(); i++) {
+                if (subscriptions.get(i).subscriber == subscriber) {
+                    subscriptions.remove(i);
+                    break;
+                }
+            }
+            if (subscriptions.isEmpty() && registration != null) {
+                handler.postDelayed(teardown, GRACE_PERIOD_MS);
+            }
+        }
+
+        private void stopIfUnused() {
+            if (subscriptions.isEmpty()) {
+                stop();
+            }
+        }
+
+        private void stop() {
+            handler.removeCallbacks(teardown);
+            if (registration != null) {
+                registration.remove();
+                registration = null;
+            }
+            lastSnapshot = null;
+            mapped = null;
+            subscriptions.clear();
+            if (queries.get(query) == this) {
+                queries.remove(query);
+            }
+        }
+    }
+
+    /**
+     * Model objects mapped from one snapshot, by type. Replaced as a whole when a new snapshot
+     * arrives, so a mapping that finishes late can never be cached against a newer snapshot.
+     */
+    private static final class MappedSnapshot {
+        private final QuerySnapshot snapshot;
+        private final Map<Class<?>, List<?>> objects = new ConcurrentHashMap<>();
+
+        MappedSnapshot(QuerySnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+
+    private static final class MappingThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "firestore-mapping-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+
+    private static final class Subscription {
+        private final Subscriber subscriber;
+        private boolean initialised;
+
+        Subscription(Subscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void deliver(QuerySnapshot snapshot) {
+            boolean initial = !initialised;
+            initialised = true;
+            subscriber.onSnapshot(snapshot, initial);
+        }
+    }
+}
@@ -1,58 +1,81 @@
 package com.watersupply.data.firebase;
 
-import android.util.Log;
-
 import androidx.lifecycle.LiveData;
 
-import com.google.firebase.firestore.EventListener;
 import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.ListenerRegistration;
-import com.google.firebase.firestore.MetadataChanges;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A LiveData class that observes a Firestore Query and handles listener lifecycle.
- * It enables MetadataChanges to support immediate local updates (latency compensation).
+ * The listener is shared through {@link FirestoreQueryHub}, which enables MetadataChanges
+ * to support immediate local updates (latency compensation).
+ *
+ * Snapshots are mapped to model objects on the hub's mapping executor and published with
+ * postValue. Every snapshot takes a sequence number, and a mapping is only published if no
+ * newer one has been published before it, so a slow mapping can never overwrite a newer list.
  *
  * @param <T> The model class to convert documents to.
  */
 public class FirestoreQueryLiveData<T> extends LiveData<List<T>> {
-    private static final String TAG = "FirestoreQueryLiveData";
-
+    private final FirestoreQueryHub hub;
     private final Query query;
     private final Class<T> type;
     private ListenerRegistration registration;
 
-    private final EventListener<QuerySnapshot> listener = new EventListener<QuerySnapshot>() {
+    // Sequence of the newest snapshot or error handed off, and of the newest value posted
+    private final AtomicLong requested = new AtomicLong();
+    private final Object postLock = new Object();
+    private long posted;
+
+    private final FirestoreQueryHub.Subscriber subscriber = new FirestoreQueryHub.Subscriber() {
         @Override
-        public void onEvent(QuerySnapshot querySnapshot, FirebaseFirestoreException e) {
-            if (e != null) {
-                Log.e(TAG, "Listen failed.", e);
-                setValue(new ArrayList<>()); // Return empty list on error
+        public void onSnapshot(QuerySnapshot querySnapshot, boolean initial) {
+            // A metadata-only snapshot (pending write confirmed) maps to the same objects
+            if (!initial && querySnapshot.getDocumentChanges().isEmpty()) {
                 return;
             }
+            long sequence = requested.incrementAndGet();
+            hub.getMappingExecutor().execute(() -> {
+                if (sequence != requested.get()) {
+                    return; // Superseded before mapping started
+                }
+                // Copy so observers that sort in place do not disturb other subscribers
+                publish(sequence, new ArrayList<>(hub.toObjects(query, querySnapshot, type)));
+            });
+        }
 
-            if (querySnapshot != null) {
-                List<T> items = querySnapshot.toObjects(type);
-                setValue(items);
-            }
+        @Override
+        public void onError(FirebaseFirestoreException e) {
+            publish(requested.incrementAndGet(), new ArrayList<>()); // Return empty list on error
         }
     };
 
-    public FirestoreQueryLiveData(Query query, Class<T> type) {
+    public FirestoreQueryLiveData(FirestoreQueryHub hub, Query query, Class<T> type) {
+        this.hub = hub;
         this.query = query;
         this.type = type;
     }
 
+    private void publish(long sequence, List<T> value) {
+        synchronized (postLock) {
+            if (sequence <= posted) {
+                return;
+            }
+            posted = sequence;
+            postValue(value);
+        }
+    }
+
     @Override
     protected void onActive() {
         super.onActive();
-        // Listen for metadata changes to get immediate updates for local writes
-        registration = query.addSnapshotListener(MetadataChanges.INCLUDE, listener);
+        registration = hub.subscribe(query, subscriber);
     }
 
     @Override
@@ -0,0 +1,126 @@
+package com.watersupply.data.firebase;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Running sums over a Firestore query, maintained from {@link QuerySnapshot#getDocumentChanges()}.
+ *
+ * Each document's contribution is remembered by id, so an added document adds its values,
+ * a modified one replaces its old values and a removed one takes them back out. Only the
+ * changed documents are read on each snapshot, instead of re-summing the whole collection.
+ *
+ * Values are fixed-point longs (paise, hundredths of an hour) so the sums never drift.
+ */
+public class IncrementalAggregate {
+
+    /**
+     * Reads the values a single document contributes to the aggregate.
+     */
+    public interface Contribution {
+        void extract(DocumentSnapshot document, long[] out);
+    }
+
+    private final int width;
+    private final Contribution contribution;
+    private final Map<String, long[]> contributions = new HashMap<>();
+    private final long[] sums;
+
+    public IncrementalAggregate(int width, Contribution contribution) {
+        this.width = width;
+        this.contribution = contribution;
+        this.sums = new long[width];
+    }
+
+    /**
+     * Apply only the changes carried by this snapshot.
+     */
+    public void apply(QuerySnapshot snapshot) {
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            DocumentSnapshot document = change.getDocument();
+            if (change.getType() == DocumentChange.Type.REMOVED) {
+                remove(document.getId());
+            } else {
+                put(document.getId(), read(document));
+            }
+        }
+    }
+
+    /**
+     * Apply a snapshot from {@link FirestoreQueryHub}: the first one a subscriber sees
+     * rebuilds the state, later ones are applied as deltas.
+     */
+    public void accept(QuerySnapshot snapshot, boolean initial) {
+        if (initial) {
+            rebuild(snapshot);
+        } else {
+            apply(snapshot);
+        }
+    }
+
+    /**
+     * Discard the running state and rebuild it from every document in the snapshot.
+     * Needed when the snapshot did not start from an empty result, e.g. a late subscriber.
+     */
+    public void rebuild(QuerySnapshot snapshot) {
+        clear();
+        for (DocumentSnapshot document : snapshot.getDocuments()) {
+            put(document.getId(), read(document));
+        }
+    }
+
+    /**
+     * Set the contribution of a document, replacing any previous one.
+     */
+    public void put(String documentId, long[] values) {
+        long[] previous = contributions.put(documentId, values);
+        for (int i = 0; i < width; i++) {
+            sums[i] += values[i];
+            if (previous != null) {
+                sums[i] -= previous[i];
+            }
+        }
+    }
+
+    public void remove(String documentId) {
+        long[] previous = contributions.remove(documentId);
+        if (previous != null) {
+            for (int i = 0; i < width; i++) {
+                sums[i] -= previous[i];
+            }
+        }
+    }
+
+    public void clear() {
+        contributions.clear();
+        for (int i = 0; i < width; i++) {
+            sums[i] = 0;
+        }
+    }
+
+    public long sum(int index) {
+        return sums[index];
+    }
+
+    public int count() {
+        return contributions.size();
+    }
+
+    private long[] read(DocumentSnapshot document) {
+        long[] values = new long[width];
+        contribution.extract(document, values);
+        return values;
+    }
+
+    /**
+     * Null-safe numeric field read that skips model deserialization.
+     */
+    public static double number(DocumentSnapshot document, String field) {
+        Double value = document.getDouble(field);
+        return value != null ? value : 0.0;
+    }
+}
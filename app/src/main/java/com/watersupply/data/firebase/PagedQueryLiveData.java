@@ -0,0 +1,262 @@
+package com.watersupply.data.firebase;
+
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Live, cursor-paginated results of an ordered query, emitted as {@link ChangeSet}s over all
+ * loaded pages.
+ *
+ * Only the first page is read when the LiveData becomes active. {@link #loadMore()} adds the
+ * next page, starting after the last document of the current last page. That page (the
+ * frontier) is a {@code limit(pageSize)} query; when another page is added behind it, its
+ * listener is swapped for one ending at its last document. Every loaded page therefore covers
+ * a fixed range of the ordering, pages never overlap or leave gaps, and each one stays live.
+ *
+ * The query must have a total order (end with an orderBy on the document id) and its
+ * composite index must be deployed. Pages are small, so snapshots are mapped on the main thread.
+ *
+ * @param <T> The model class to convert documents to.
+ */
+public class PagedQueryLiveData<T> extends LiveData<ChangeSet<T>> {
+    private static final String TAG = "PagedQueryLiveData";
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    private final FirestoreQueryHub hub;
+    private final Query query;
+    private final Class<T> type;
+    private final int pageSize;
+    private final List<Page> pages = new ArrayList<>();
+    private boolean exhausted;
+    private boolean emitted;
+
+    public PagedQueryLiveData(FirestoreQueryHub hub, Query query, Class<T> type, int pageSize) {
+        this.hub = hub;
+        this.query = query;
+        this.type = type;
+        this.pageSize = pageSize;
+        pages.add(new Page(null));
+    }
+
+    /**
+     * Add the next page. Ignored while the last page is still loading or when the query has
+     * no more documents.
+     */
+    public void loadMore() {
+        Page frontier = pages.get(pages.size() - 1);
+        if (!canLoadMore()) {
+            return;
+        }
+        // Pin the frontier where it ends now; the new page starts right after it
+        DocumentSnapshot cursor = frontier.lastDocument;
+        frontier.bound(cursor);
+        Page next = new Page(cursor);
+        pages.add(next);
+        if (hasActiveObservers()) {
+            next.start();
+        }
+    }
+
+    public boolean canLoadMore() {
+        Page frontier = pages.get(pages.size() - 1);
+        return !exhausted && frontier.loaded && frontier.lastDocument != null;
+    }
+
+    @Override
+    protected void onActive() {
+        super.onActive();
+        for (Page page : pages) {
+            page.start();
+        }
+    }
+
+    @Override
+    protected void onInactive() {
+        super.onInactive();
+        for (Page page : pages) {
+            page.stop();
+        }
+    }
+
+    private int offsetOf(Page page) {
+        int offset = 0;
+        for (Page other : pages) {
+            if (other == page) {
+                break;
+            }
+            offset += other.items.size();
+        }
+        return offset;
+    }
+
+    private void emit(List<ChangeSet.Change<T>> changes) {
+        List<T> all = new ArrayList<>();
+        for (Page page : pages) {
+            all.addAll(page.items);
+        }
+        if (!emitted) {
+            // The first result replaces whatever an earlier query showed
+            emitted = true;
+            setValue(ChangeSet.reset(all));
+        } else {
+            setValue(new ChangeSet<>(all, changes, false));
+        }
+    }
+
+    private final class Page implements FirestoreQueryHub.Subscriber {
+        private final DocumentSnapshot start; // Exclusive; null for the first page
+        private DocumentSnapshot end; // Inclusive; null while this page is the frontier
+        private final List<T> items = new ArrayList<>();
+        private final List<String> ids = new ArrayList<>();
+        private DocumentSnapshot lastDocument;
+        private boolean loaded;
+        private ListenerRegistration registration;
+
+        Page(DocumentSnapshot start) {
+            this.start = start;
+        }
+
+        Query pageQuery() {
+            Query pageQuery = start != null ? query.startAfter(start) : query;
+            return end != null ? pageQuery.endAt(end) : pageQuery.limit(pageSize);
+        }
+
+        void start() {
+            if (registration == null) {
+                registration = hub.subscribe(pageQuery(), this);
+            }
+        }
+
+        void stop() {
+            if (registration != null) {
+                registration.remove();
+                registration = null;
+            }
+        }
+
+        void bound(DocumentSnapshot end) {
+            this.end = end;
+            if (registration != null) {
+                stop();
+                start();
+            }
+        }
+
+        @Override
+        public void onSnapshot(QuerySnapshot snapshot, boolean initial) {
+            int offset = offsetOf(this);
+            List<ChangeSet.Change<T>> changes = new ArrayList<>();
+            if (initial) {
+                replace(snapshot.getDocuments(), offset, changes);
+            } else {
+                for (DocumentChange change : snapshot.getDocumentChanges()) {
+                    apply(change, offset, changes);
+                }
+            }
+
+            List<DocumentSnapshot> documents = snapshot.getDocuments();
+            lastDocument = documents.isEmpty() ? null : documents.get(documents.size() - 1);
+            if (end == null) {
+                exhausted = documents.size() < pageSize;
+            }
+            loaded = true;
+            emit(changes);
+        }
+
+        @Override
+        public void onError(FirebaseFirestoreException e) {
+            Log.e(TAG, "Page listener failed", e);
+            if (end == null) {
+                exhausted = true; // Do not keep requesting pages of a failing query
+            }
+            loaded = true;
+            emit(new ArrayList<>());
+        }
+
+        private void apply(DocumentChange change, int offset, List<ChangeSet.Change<T>> changes) {
+            int oldIndex = change.getOldIndex();
+            int newIndex = change.getNewIndex();
+            switch (change.getType()) {
+                case ADDED: {
+                    T added = change.getDocument().toObject(type);
+                    items.add(newIndex, added);
+                    ids.add(newIndex, change.getDocument().getId());
+                    changes.add(new ChangeSet.Change<>(ChangeSet.Type.ADDED, -1, offset + newIndex, null, added));
+                    break;
+                }
+                case MODIFIED: {
+                    T previous = items.remove(oldIndex);
+                    ids.remove(oldIndex);
+                    T modified = change.getDocument().toObject(type);
+                    items.add(newIndex, modified);
+                    ids.add(newIndex, change.getDocument().getId());
+                    changes.add(new ChangeSet.Change<>(ChangeSet.Type.MODIFIED,
+                        offset + oldIndex, offset + newIndex, previous, modified));
+                    break;
+                }
+                case REMOVED: {
+                    T removed = items.remove(oldIndex);
+                    ids.remove(oldIndex);
+                    changes.add(new ChangeSet.Change<>(ChangeSet.Type.REMOVED, offset + oldIndex, -1, removed, null));
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Take a full result for this page (its first snapshot, or the first one after the
+         * listener was swapped or re-attached), expressed as changes against what it held.
+         */
+        private void replace(List<DocumentSnapshot> documents, int offset, List<ChangeSet.Change<T>> changes) {
+            Set<String> kept = new HashSet<>();
+            for (DocumentSnapshot document : documents) {
+                kept.add(document.getId());
+            }
+            for (int i = ids.size() - 1; i >= 0; i--) {
+                if (!kept.contains(ids.get(i))) {
+                    ids.remove(i);
+                    T removed = items.remove(i);
+                    changes.add(new ChangeSet.Change<>(ChangeSet.Type.REMOVED, offset + i, -1, removed, null));
+                }
+            }
+
+            Map<String, T> previous = new HashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                previous.put(ids.get(i), items.get(i));
+            }
+            for (int i = 0; i < documents.size(); i++) {
+                DocumentSnapshot document = documents.get(i);
+                String id = document.getId();
+                T item = document.toObject(type);
+                if (previous.containsKey(id)) {
+                    int from = ids.indexOf(id);
+                    ids.remove(from);
+                    items.remove(from);
+                    ids.add(i, id);
+                    items.add(i, item);
+                    changes.add(new ChangeSet.Change<>(ChangeSet.Type.MODIFIED,
+                        offset + from, offset + i, previous.get(id), item));
+                } else {
+                    ids.add(i, id);
+                    items.add(i, item);
+                    changes.add(new ChangeSet.Change<>(ChangeSet.Type.ADDED, -1, offset + i, null, item));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.watersupply.data.firebase;
+
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.google.firebase.firestore.AggregateQuery;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+/**
+ * A LiveData backed by a server-side aggregation query (count or sum).
+ *
+ * The value is refreshed whenever the LiveData becomes active and whenever
+ * {@link ServerAggregates#invalidate(String...)} is called for its collection.
+ * Aggregations only run on the server, so when offline the value is computed from the
+ * documents already in the local Firestore cache instead, and local writes are reflected
+ * through {@link #refreshCached()} until the server is reachable again.
+ *
+ * @param <T> The aggregated value type.
+ */
+public class ServerAggregateLiveData<T> extends LiveData<T> {
+    private static final String TAG = "ServerAggregateLiveData";
+
+    /**
+     * Reads the value from a server aggregation result.
+     */
+    public interface ServerReducer<T> {
+        T reduce(AggregateQuerySnapshot snapshot);
+    }
+
+    /**
+     * Computes the same value from cached documents.
+     */
+    public interface CacheReducer<T> {
+        T reduce(QuerySnapshot snapshot);
+    }
+
+    private final ServerAggregates owner;
+    private final String collection;
+    private final Query query;
+    private final AggregateQuery aggregateQuery;
+    private final ServerReducer<T> serverReducer;
+    private final CacheReducer<T> cacheReducer;
+    private final T fallback;
+
+    // Only the latest refresh may publish, an older response can arrive after a newer one
+    private int generation;
+    // The value was computed from cached documents
+    private boolean cached;
+
+    ServerAggregateLiveData(ServerAggregates owner, String collection, Query query,
+                            AggregateQuery aggregateQuery, T fallback,
+                            ServerReducer<T> serverReducer, CacheReducer<T> cacheReducer) {
+        this.owner = owner;
+        this.collection = collection;
+        this.query = query;
+        this.aggregateQuery = aggregateQuery;
+        this.fallback = fallback;
+        this.serverReducer = serverReducer;
+        this.cacheReducer = cacheReducer;
+    }
+
+    String getCollection() {
+        return collection;
+    }
+
+    void refresh() {
+        final int requested = ++generation;
+        aggregateQuery.get(AggregateSource.SERVER)
+            .addOnSuccessListener(snapshot -> {
+                if (requested == generation) {
+                    cached = false;
+                    setValue(serverReducer.reduce(snapshot));
+                }
+            })
+            .addOnFailureListener(e -> {
+                Log.w(TAG, "Aggregation failed, using cached documents: " + e.getMessage());
+                loadFromCache(requested);
+            });
+    }
+
+    /**
+     * Recompute the value from the cache if that is where it came from; a value from the
+     * server is kept, as the cache may hold only some of the documents.
+     */
+    void refreshCached() {
+        if (cached) {
+            loadFromCache(++generation);
+        }
+    }
+
+    boolean isCached() {
+        return cached;
+    }
+
+    private void loadFromCache(int requested) {
+        query.get(Source.CACHE)
+            .addOnSuccessListener(snapshot -> {
+                if (requested == generation) {
+                    cached = true;
+                    setValue(cacheReducer.reduce(snapshot));
+                }
+            })
+            .addOnFailureListener(e -> {
+                if (requested == generation && getValue() == null) {
+                    setValue(fallback);
+                }
+            });
+    }
+
+    @Override
+    protected void onActive() {
+        super.onActive();
+        owner.register(this);
+        refresh();
+    }
+
+    @Override
+    protected void onInactive() {
+        super.onInactive();
+        owner.unregister(this);
+    }
+}
@@ -0,0 +1,139 @@
+package com.watersupply.data.firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.LiveData;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.AggregateField;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+import com.watersupply.utils.BillingCalculator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Creates server-side count/sum LiveData and refreshes them after local writes.
+ *
+ * A count or total costs one aggregation read instead of downloading every document.
+ * Repositories pass their write tasks through {@link #afterWrite(Task, String...)} so the
+ * affected aggregates are refreshed once the server has acknowledged the write. An aggregation
+ * sent before that cannot see the pending write, so it would be a billed read of the old value;
+ * only aggregates already showing a value computed from the cache, as while offline, are
+ * recomputed from the cache right away.
+ */
+@Singleton
+public class ServerAggregates {
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<ServerAggregateLiveData<?>> active = new ArrayList<>();
+    private final Set<String> pendingCollections = new HashSet<>();
+    private final Set<String> pendingCachedCollections = new HashSet<>();
+    private final Runnable flush = this::refreshPending;
+
+    @Inject
+    public ServerAggregates() {
+    }
+
+    /**
+     * Number of documents matching the query.
+     */
+    public LiveData<Integer> count(String collection, Query query) {
+        return new ServerAggregateLiveData<>(this, collection, query, query.count(), 0,
+            snapshot -> (int) snapshot.getCount(),
+            querySnapshot -> querySnapshot.size());
+    }
+
+    /**
+     * Sum of a money field over the query, rounded to paise.
+     */
+    public LiveData<Double> sumAmount(String collection, Query query, String field) {
+        AggregateField.SumAggregateField sum = AggregateField.sum(field);
+        return new ServerAggregateLiveData<>(this, collection, query, query.aggregate(sum), 0.0,
+            snapshot -> {
+                Double value = snapshot.getDouble(sum);
+                return BillingCalculator.normalizeAmount(value != null ? value : 0.0);
+            },
+            querySnapshot -> {
+                long paise = 0;
+                for (DocumentSnapshot document : querySnapshot.getDocuments()) {
+                    paise += BillingCalculator.toPaise(IncrementalAggregate.number(document, field));
+                }
+                return BillingCalculator.fromPaise(paise);
+            });
+    }
+
+    /**
+     * Sum of an hours field over the query, rounded to hundredths.
+     */
+    public LiveData<Double> sumHours(String collection, Query query, String field) {
+        AggregateField.SumAggregateField sum = AggregateField.sum(field);
+        return new ServerAggregateLiveData<>(this, collection, query, query.aggregate(sum), 0.0,
+            snapshot -> {
+                Double value = snapshot.getDouble(sum);
+                return BillingCalculator.normalizeHours(value != null ? value : 0.0);
+            },
+            querySnapshot -> {
+                long hundredths = 0;
+                for (DocumentSnapshot document : querySnapshot.getDocuments()) {
+                    hundredths += BillingCalculator.toHundredths(IncrementalAggregate.number(document, field));
+                }
+                return BillingCalculator.fromHundredths(hundredths);
+            });
+    }
+
+    /**
+     * Refresh the active aggregates of the given collections when the write completes, and
+     * those computed from the cache now, as the pending write is already in the cache.
+     */
+    public <T> Task<T> afterWrite(Task<T> write, String... collections) {
+        post(pendingCachedCollections, collections);
+        write.addOnCompleteListener(task -> invalidate(collections));
+        return write;
+    }
+
+    /**
+     * Refresh the active aggregates of the given collections. Calls made in the same
+     * main-thread turn are coalesced into one refresh per aggregate.
+     */
+    public void invalidate(String... collections) {
+        post(pendingCollections, collections);
+    }
+
+    private void post(Set<String> pending, String... collections) {
+        handler.post(() -> {
+            boolean wasEmpty = pendingCollections.isEmpty() && pendingCachedCollections.isEmpty();
+            Collections.addAll(pending, collections);
+            if (wasEmpty) {
+                handler.post(flush);
+            }
+        });
+    }
+
+    void register(ServerAggregateLiveData<?> liveData) {
+        active.add(liveData);
+    }
+
+    void unregister(ServerAggregateLiveData<?> liveData) {
+        active.remove(liveData);
+    }
+
+    private void refreshPending() {
+        for (ServerAggregateLiveData<?> liveData : new ArrayList<>(active)) {
+            if (pendingCollections.contains(liveData.getCollection())) {
+                liveData.refresh();
+            } else if (pendingCachedCollections.contains(liveData.getCollection())) {
+                liveData.refreshCached();
+            }
+        }
+        pendingCollections.clear();
+        pendingCachedCollections.clear();
+    }
+}
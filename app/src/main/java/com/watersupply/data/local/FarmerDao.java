@@ -0,0 +1,22 @@
+package com.watersupply.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public abstract class FarmerDao extends MirrorDao<FarmerEntity> {
+
+    @Override
+    @Query("DELETE FROM farmers WHERE id IN (:ids)")
+    public abstract void deleteByIds(List<String> ids);
+
+    @Override
+    @Query("DELETE FROM farmers WHERE familyId = :familyId")
+    public abstract void deleteFamily(String familyId);
+
+    @Override
+    @Query("DELETE FROM farmers WHERE familyId IS NOT :familyId")
+    public abstract void deleteOtherFamilies(String familyId);
+}
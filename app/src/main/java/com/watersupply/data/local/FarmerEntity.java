@@ -0,0 +1,61 @@
+package com.watersupply.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import com.watersupply.data.models.Farmer;
+import com.watersupply.utils.BillingCalculator;
+
+/**
+ * Local copy of a farmers document. Money is kept in paise so SQL sums are exact.
+ */
+@Entity(tableName = "farmers", indices = {@Index({"familyId", "name"})})
+public class FarmerEntity {
+    @PrimaryKey
+    @NonNull
+    public String id = "";
+    public String userId;
+    public String familyId;
+    public String name;
+    public String mobile;
+    public String farmLocation;
+    public double defaultRate;
+    public long balance;
+    public boolean active;
+    public Long createdAt;
+    public Long updatedAt;
+
+    public static FarmerEntity from(Farmer farmer) {
+        FarmerEntity entity = new FarmerEntity();
+        entity.id = farmer.getId();
+        entity.userId = farmer.getUserId();
+        entity.familyId = farmer.getFamilyId();
+        entity.name = farmer.getName();
+        entity.mobile = farmer.getMobile();
+        entity.farmLocation = farmer.getFarmLocation();
+        entity.defaultRate = farmer.getDefaultRate();
+        entity.balance = BillingCalculator.toPaise(farmer.getBalance());
+        entity.active = farmer.isActive();
+        entity.createdAt = LocalDates.toMillis(farmer.getCreatedAt());
+        entity.updatedAt = LocalDates.toMillis(farmer.getUpdatedAt());
+        return entity;
+    }
+
+    public Farmer toModel() {
+        Farmer farmer = new Farmer();
+        farmer.setId(id);
+        farmer.setUserId(userId);
+        farmer.setFamilyId(familyId);
+        farmer.setName(name);
+        farmer.setMobile(mobile);
+        farmer.setFarmLocation(farmLocation);
+        farmer.setDefaultRate(defaultRate);
+        farmer.setBalance(BillingCalculator.fromPaise(balance));
+        farmer.setActive(active);
+        farmer.setCreatedAt(LocalDates.toDate(createdAt));
+        farmer.setUpdatedAt(LocalDates.toDate(updatedAt));
+        return farmer;
+    }
+}
@@ -0,0 +1,26 @@
+package com.watersupply.data.local;
+
+import androidx.room.Database;
+import androidx.room.RoomDatabase;
+
+/**
+ * SQLite mirror of the family's Firestore collections, for reports, range sums and search.
+ * Firestore stays the source of truth: {@link LocalMirror} rewrites these tables from snapshot
+ * listeners, so the schema can be dropped and rebuilt on any version change.
+ */
+@Database(entities = {
+    FarmerEntity.class,
+    SupplyEntryEntity.class,
+    PaymentEntity.class,
+    SettlementEntity.class
+}, version = 1, exportSchema = false)
+public abstract class LocalDatabase extends RoomDatabase {
+
+    public abstract FarmerDao farmerDao();
+
+    public abstract SupplyEntryDao supplyEntryDao();
+
+    public abstract PaymentDao paymentDao();
+
+    public abstract SettlementDao settlementDao();
+}
@@ -0,0 +1,20 @@
+package com.watersupply.data.local;
+
+import java.util.Date;
+
+/**
+ * Timestamps are stored as epoch milliseconds; null stays null.
+ */
+final class LocalDates {
+
+    private LocalDates() {
+    }
+
+    static Long toMillis(Date date) {
+        return date != null ? date.getTime() : null;
+    }
+
+    static Date toDate(Long millis) {
+        return millis != null ? new Date(millis) : null;
+    }
+}
@@ -0,0 +1,175 @@
+package com.watersupply.data.local;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.room.Room;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.watersupply.data.firebase.FirebaseManager;
+import com.watersupply.data.firebase.FirestoreCollections;
+import com.watersupply.data.firebase.FirestoreQueryHub;
+import com.watersupply.data.models.Farmer;
+import com.watersupply.data.models.Payment;
+import com.watersupply.data.models.Settlement;
+import com.watersupply.data.models.SupplyEntry;
+import com.watersupply.utils.Constants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import dagger.hilt.android.qualifiers.ApplicationContext;
+
+/**
+ * Keeps {@link LocalDatabase} in step with the family's Firestore collections.
+ *
+ * The mirror subscribes through {@link FirestoreQueryHub} with the same family queries the
+ * repositories use, so it shares their listeners instead of reading the collections again.
+ * A subscriber's first snapshot replaces the family's rows; later ones apply only the document
+ * changes, and if applying them fails the snapshot's full result replaces the rows instead. All
+ * writes go through one background thread, in snapshot order. Rows of any other family are
+ * dropped when mirroring starts, and every row on logout.
+ */
+@Singleton
+public class LocalMirror {
+    private static final String TAG = "LocalMirror";
+
+    private final FirebaseFirestore firestore;
+    private final FirestoreQueryHub hub;
+    private final LocalDatabase database;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private final List<ListenerRegistration> registrations = new ArrayList<>();
+    private String familyId;
+
+    @Inject
+    public LocalMirror(@ApplicationContext Context context, FirebaseManager firebaseManager, FirestoreQueryHub hub) {
+        this.firestore = firebaseManager.getFirestore();
+        this.hub = hub;
+        this.database = Room.databaseBuilder(context, LocalDatabase.class, Constants.DATABASE_NAME)
+            .fallbackToDestructiveMigration()
+            .build();
+    }
+
+    public LocalDatabase getDatabase() {
+        return database;
+    }
+
+    /**
+     * Mirror the collections of a family, dropping the listeners of the previous one.
+     * Calling it again for the same family does nothing. Main thread only.
+     */
+    public void start(String familyId) {
+        if (familyId == null || familyId.equals(this.familyId)) {
+            return;
+        }
+        stop();
+        this.familyId = familyId;
+        writer.execute(() -> {
+            for (MirrorDao<?> dao : daos()) {
+                dao.deleteOtherFamilies(familyId);
+            }
+        });
+
+        // Same shapes as the repositories' family queries, so the hub shares the listeners
+        mirror(firestore.collection(FirestoreCollections.FARMERS)
+                .whereEqualTo("familyId", familyId)
+                .whereEqualTo("isActive", true),
+            familyId, database.farmerDao(), doc -> FarmerEntity.from(doc.toObject(Farmer.class)));
+        mirror(firestore.collection(FirestoreCollections.SUPPLY_ENTRIES).whereEqualTo("familyId", familyId),
+            familyId, database.supplyEntryDao(), doc -> SupplyEntryEntity.from(doc.toObject(SupplyEntry.class)));
+        mirror(firestore.collection(FirestoreCollections.PAYMENTS).whereEqualTo("familyId", familyId),
+            familyId, database.paymentDao(), doc -> PaymentEntity.from(doc.toObject(Payment.class)));
+        mirror(firestore.collection(FirestoreCollections.SETTLEMENTS).whereEqualTo("familyId", familyId),
+            familyId, database.settlementDao(), doc -> SettlementEntity.from(doc.toObject(Settlement.class)));
+    }
+
+    public void stop() {
+        for (ListenerRegistration registration : registrations) {
+            registration.remove();
+        }
+        registrations.clear();
+        familyId = null;
+    }
+
+    /**
+     * Stop mirroring and delete every row, so nothing of this account stays on the device.
+     * Main thread only.
+     */
+    public void clear() {
+        stop();
+        writer.execute(database::clearAllTables);
+    }
+
+    private List<MirrorDao<?>> daos() {
+        return Arrays.asList(database.farmerDao(), database.supplyEntryDao(), database.paymentDao(),
+            database.settlementDao());
+    }
+
+    private <E> void mirror(Query query, String familyId, MirrorDao<E> dao, Function<DocumentSnapshot, E> toEntity) {
+        registrations.add(hub.subscribe(query, new FirestoreQueryHub.Subscriber() {
+            @Override
+            public void onSnapshot(QuerySnapshot snapshot, boolean initial) {
+                // A metadata-only snapshot (pending write confirmed) changes no row
+                if (!initial && snapshot.getDocumentChanges().isEmpty()) {
+                    return;
+                }
+                writer.execute(() -> {
+                    if (!initial) {
+                        try {
+                            applyChanges(snapshot, dao, toEntity);
+                            return;
+                        } catch (RuntimeException e) {
+                            Log.w(TAG, "Applying changes failed, replacing the family's rows", e);
+                        }
+                    }
+                    try {
+                        List<E> entities = new ArrayList<>();
+                        for (DocumentSnapshot document : snapshot.getDocuments()) {
+                            entities.add(toEntity.apply(document));
+                        }
+                        dao.replaceFamily(familyId, entities);
+                    } catch (RuntimeException e) {
+                        Log.e(TAG, "Mirror write failed", e);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(FirebaseFirestoreException e) {
+                Log.e(TAG, "Mirror listener failed", e);
+            }
+        }));
+    }
+
+    private static <E> void applyChanges(QuerySnapshot snapshot, MirrorDao<E> dao,
+                                         Function<DocumentSnapshot, E> toEntity) {
+        List<E> upserts = new ArrayList<>();
+        List<String> removals = new ArrayList<>();
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            if (change.getType() == DocumentChange.Type.REMOVED) {
+                removals.add(change.getDocument().getId());
+            } else {
+                upserts.add(toEntity.apply(change.getDocument()));
+            }
+        }
+        if (!removals.isEmpty()) {
+            dao.delete(removals);
+        }
+        if (!upserts.isEmpty()) {
+            dao.upsert(upserts);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.watersupply.data.local;
+
+import com.watersupply.utils.BillingCalculator;
+
+/**
+ * Count and fixed-point sums of a range query over the local mirror.
+ */
+public class LocalTotals {
+    public int count;
+    public long paise;
+    public long hundredths;
+
+    public double getAmount() {
+        return BillingCalculator.fromPaise(paise);
+    }
+
+    public double getHours() {
+        return BillingCalculator.fromHundredths(hundredths);
+    }
+}
@@ -0,0 +1,51 @@
+package com.watersupply.data.local;
+
+import androidx.room.Transaction;
+import androidx.room.Upsert;
+
+import java.util.List;
+
+/**
+ * Writes shared by the DAOs of mirrored collections. Each subclass maps the deletes to its table.
+ *
+ * @param <E> The entity class of the table.
+ */
+public abstract class MirrorDao<E> {
+    // Below SQLite's limit of 999 bound variables, which applies up to API 30
+    static final int MAX_IDS_PER_DELETE = 500;
+
+    @Upsert
+    public abstract void upsert(List<E> entities);
+
+    /**
+     * At most {@link #MAX_IDS_PER_DELETE} ids; {@link #delete} takes any number
+     */
+    public abstract void deleteByIds(List<String> ids);
+
+    public abstract void deleteFamily(String familyId);
+
+    /**
+     * Drop the rows left over from other families, e.g. after switching family
+     */
+    public abstract void deleteOtherFamilies(String familyId);
+
+    /**
+     * Delete the rows with the given ids, {@link #MAX_IDS_PER_DELETE} at a time, in one transaction
+     */
+    @Transaction
+    public void delete(List<String> ids) {
+        for (int start = 0; start < ids.size(); start += MAX_IDS_PER_DELETE) {
+            deleteByIds(ids.subList(start, Math.min(start + MAX_IDS_PER_DELETE, ids.size())));
+        }
+    }
+
+    /**
+     * Replace every row of a family with a full query result, in one transaction so readers
+     * never see the table half empty.
+     */
+    @Transaction
+    public void replaceFamily(String familyId, List<E> entities) {
+        deleteFamily(familyId);
+        upsert(entities);
+    }
+}
@@ -0,0 +1,70 @@
+package com.watersupply.data.local;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * Range queries and search over payments. Dates are inclusive yyyy-MM-dd bounds.
+ */
+@Dao
+public abstract class PaymentDao extends MirrorDao<PaymentEntity> {
+
+    // Payments match on their farmer name, or the mirrored farmer's when it was not denormalized,
+    // and on the payment method. Null date bounds leave that side open.
+    private static final String SEARCH = "SELECT p.* FROM payments p LEFT JOIN farmers f ON f.id = p.farmerId "
+        + "WHERE p.familyId = :familyId "
+        + "AND (:startDate IS NULL OR p.paymentDate >= :startDate) "
+        + "AND (:endDate IS NULL OR p.paymentDate <= :endDate) "
+        + "AND (COALESCE(NULLIF(p.farmerName, ''), f.name, '') LIKE :pattern ESCAPE '\\' "
+        + "OR COALESCE(p.paymentMethod, '') LIKE :pattern ESCAPE '\\') ";
+
+    @Override
+    @Query("DELETE FROM payments WHERE id IN (:ids)")
+    public abstract void deleteByIds(List<String> ids);
+
+    @Override
+    @Query("DELETE FROM payments WHERE familyId = :familyId")
+    public abstract void deleteFamily(String familyId);
+
+    @Override
+    @Query("DELETE FROM payments WHERE familyId IS NOT :familyId")
+    public abstract void deleteOtherFamilies(String familyId);
+
+    @Query("SELECT COUNT(*) AS count, COALESCE(SUM(amount), 0) AS paise, 0 AS hundredths FROM payments "
+        + "WHERE familyId = :familyId AND paymentDate >= :startDate AND paymentDate <= :endDate")
+    public abstract LiveData<LocalTotals> getTotals(String familyId, String startDate, String endDate);
+
+    @Query("SELECT COUNT(*) AS count, COALESCE(SUM(amount), 0) AS paise, 0 AS hundredths FROM payments "
+        + "WHERE familyId = :familyId AND farmerId = :farmerId "
+        + "AND paymentDate >= :startDate AND paymentDate <= :endDate")
+    public abstract LiveData<LocalTotals> getTotalsForFarmer(String familyId, String farmerId,
+                                                            String startDate, String endDate);
+
+    @Query("SELECT * FROM payments "
+        + "WHERE familyId = :familyId AND paymentDate >= :startDate AND paymentDate <= :endDate "
+        + "ORDER BY paymentDate, id")
+    public abstract LiveData<List<PaymentEntity>> getPayments(String familyId, String startDate, String endDate);
+
+    @Query("SELECT * FROM payments "
+        + "WHERE familyId = :familyId AND farmerId = :farmerId "
+        + "AND paymentDate >= :startDate AND paymentDate <= :endDate ORDER BY paymentDate, id")
+    public abstract LiveData<List<PaymentEntity>> getPaymentsForFarmer(String familyId, String farmerId,
+                                                                      String startDate, String endDate);
+
+    /**
+     * Payments matching a LIKE pattern, newest first
+     */
+    @Query(SEARCH + "ORDER BY p.paymentDate DESC, p.id DESC")
+    public abstract LiveData<List<PaymentEntity>> searchByDate(String familyId, String pattern,
+                                                              String startDate, String endDate);
+
+    /**
+     * Payments matching a LIKE pattern, largest first
+     */
+    @Query(SEARCH + "ORDER BY p.amount DESC, p.id")
+    public abstract LiveData<List<PaymentEntity>> searchByAmount(String familyId, String pattern,
+                                                                String startDate, String endDate);
+}
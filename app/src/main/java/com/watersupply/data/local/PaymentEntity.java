@@ -0,0 +1,70 @@
+package com.watersupply.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import com.watersupply.data.models.Payment;
+import com.watersupply.utils.BillingCalculator;
+
+/**
+ * Local copy of a payments document. The amount is kept in paise so SQL sums are exact.
+ */
+@Entity(tableName = "payments", indices = {
+    @Index({"familyId", "farmerId", "paymentDate"}),
+    @Index({"familyId", "paymentDate"})
+})
+public class PaymentEntity {
+    @PrimaryKey
+    @NonNull
+    public String id = "";
+    public String userId;
+    public String familyId;
+    public String farmerId;
+    public String farmerName;
+    public String paymentDate;
+    public long amount;
+    public String paymentMethod;
+    public String transactionId;
+    public String remarks;
+    public Long createdAt;
+    public Long updatedAt;
+    public String settlementId;
+
+    public static PaymentEntity from(Payment payment) {
+        PaymentEntity entity = new PaymentEntity();
+        entity.id = payment.getId();
+        entity.userId = payment.getUserId();
+        entity.familyId = payment.getFamilyId();
+        entity.farmerId = payment.getFarmerId();
+        entity.farmerName = payment.getFarmerName();
+        entity.paymentDate = payment.getPaymentDate();
+        entity.amount = BillingCalculator.toPaise(payment.getAmount());
+        entity.paymentMethod = payment.getPaymentMethod();
+        entity.transactionId = payment.getTransactionId();
+        entity.remarks = payment.getRemarks();
+        entity.createdAt = LocalDates.toMillis(payment.getCreatedAt());
+        entity.updatedAt = LocalDates.toMillis(payment.getUpdatedAt());
+        entity.settlementId = payment.getSettlementId();
+        return entity;
+    }
+
+    public Payment toModel() {
+        Payment payment = new Payment();
+        payment.setId(id);
+        payment.setUserId(userId);
+        payment.setFamilyId(familyId);
+        payment.setFarmerId(farmerId);
+        payment.setFarmerName(farmerName);
+        payment.setPaymentDate(paymentDate);
+        payment.setAmount(BillingCalculator.fromPaise(amount));
+        payment.setPaymentMethod(paymentMethod);
+        payment.setTransactionId(transactionId);
+        payment.setRemarks(remarks);
+        payment.setCreatedAt(LocalDates.toDate(createdAt));
+        payment.setUpdatedAt(LocalDates.toDate(updatedAt));
+        payment.setSettlementId(settlementId);
+        return payment;
+    }
+}
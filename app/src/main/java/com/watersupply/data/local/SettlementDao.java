@@ -0,0 +1,22 @@
+package com.watersupply.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public abstract class SettlementDao extends MirrorDao<SettlementEntity> {
+
+    @Override
+    @Query("DELETE FROM settlements WHERE id IN (:ids)")
+    public abstract void deleteByIds(List<String> ids);
+
+    @Override
+    @Query("DELETE FROM settlements WHERE familyId = :familyId")
+    public abstract void deleteFamily(String familyId);
+
+    @Override
+    @Query("DELETE FROM settlements WHERE familyId IS NOT :familyId")
+    public abstract void deleteOtherFamilies(String familyId);
+}
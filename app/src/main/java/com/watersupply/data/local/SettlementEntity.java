@@ -0,0 +1,61 @@
+package com.watersupply.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import com.watersupply.data.models.Settlement;
+import com.watersupply.utils.BillingCalculator;
+
+/**
+ * Local copy of the figures of a settlements document, in paise. The settled entry and payment
+ * id lists are not mirrored; settlement screens still read them from Firestore.
+ */
+@Entity(tableName = "settlements", indices = {
+    @Index({"familyId", "farmerId", "settlementDate"}),
+    @Index({"familyId", "settlementDate"})
+})
+public class SettlementEntity {
+    @PrimaryKey
+    @NonNull
+    public String id = "";
+    public String userId;
+    public String familyId;
+    public String farmerId;
+    public String farmerName;
+    public String settlementDate;
+    public long totalCharges;
+    public long totalPreviousPayments;
+    public long outstandingAmount;
+    public long amountReceived;
+    public long adjustmentAmount;
+    public String adjustmentType;
+    public String paymentMethod;
+    public String transactionId;
+    public String remarks;
+    public Long createdAt;
+    public Long updatedAt;
+
+    public static SettlementEntity from(Settlement settlement) {
+        SettlementEntity entity = new SettlementEntity();
+        entity.id = settlement.getId();
+        entity.userId = settlement.getUserId();
+        entity.familyId = settlement.getFamilyId();
+        entity.farmerId = settlement.getFarmerId();
+        entity.farmerName = settlement.getFarmerName();
+        entity.settlementDate = settlement.getSettlementDate();
+        entity.totalCharges = BillingCalculator.toPaise(settlement.getTotalCharges());
+        entity.totalPreviousPayments = BillingCalculator.toPaise(settlement.getTotalPreviousPayments());
+        entity.outstandingAmount = BillingCalculator.toPaise(settlement.getOutstandingAmount());
+        entity.amountReceived = BillingCalculator.toPaise(settlement.getAmountReceived());
+        entity.adjustmentAmount = BillingCalculator.toPaise(settlement.getAdjustmentAmount());
+        entity.adjustmentType = settlement.getAdjustmentType();
+        entity.paymentMethod = settlement.getPaymentMethod();
+        entity.transactionId = settlement.getTransactionId();
+        entity.remarks = settlement.getRemarks();
+        entity.createdAt = LocalDates.toMillis(settlement.getCreatedAt());
+        entity.updatedAt = LocalDates.toMillis(settlement.getUpdatedAt());
+        return entity;
+    }
+}
@@ -0,0 +1,51 @@
+package com.watersupply.data.local;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * Range queries over supply entries. Dates are inclusive yyyy-MM-dd bounds; drafts are not
+ * billed yet, so they are left out of the totals and lists.
+ */
+@Dao
+public abstract class SupplyEntryDao extends MirrorDao<SupplyEntryEntity> {
+
+    @Override
+    @Query("DELETE FROM supply_entries WHERE id IN (:ids)")
+    public abstract void deleteByIds(List<String> ids);
+
+    @Override
+    @Query("DELETE FROM supply_entries WHERE familyId = :familyId")
+    public abstract void deleteFamily(String familyId);
+
+    @Override
+    @Query("DELETE FROM supply_entries WHERE familyId IS NOT :familyId")
+    public abstract void deleteOtherFamilies(String familyId);
+
+    @Query("SELECT COUNT(*) AS count, COALESCE(SUM(amount), 0) AS paise, "
+        + "COALESCE(SUM(totalTimeUsed), 0) AS hundredths FROM supply_entries "
+        + "WHERE familyId = :familyId AND date >= :startDate AND date <= :endDate "
+        + "AND (status IS NULL OR status != 'draft')")
+    public abstract LiveData<LocalTotals> getTotals(String familyId, String startDate, String endDate);
+
+    @Query("SELECT COUNT(*) AS count, COALESCE(SUM(amount), 0) AS paise, "
+        + "COALESCE(SUM(totalTimeUsed), 0) AS hundredths FROM supply_entries "
+        + "WHERE familyId = :familyId AND farmerId = :farmerId AND date >= :startDate AND date <= :endDate "
+        + "AND (status IS NULL OR status != 'draft')")
+    public abstract LiveData<LocalTotals> getTotalsForFarmer(String familyId, String farmerId,
+                                                            String startDate, String endDate);
+
+    @Query("SELECT * FROM supply_entries "
+        + "WHERE familyId = :familyId AND date >= :startDate AND date <= :endDate "
+        + "AND (status IS NULL OR status != 'draft') ORDER BY date, id")
+    public abstract LiveData<List<SupplyEntryEntity>> getEntries(String familyId, String startDate, String endDate);
+
+    @Query("SELECT * FROM supply_entries "
+        + "WHERE familyId = :familyId AND farmerId = :farmerId AND date >= :startDate AND date <= :endDate "
+        + "AND (status IS NULL OR status != 'draft') ORDER BY date, id")
+    public abstract LiveData<List<SupplyEntryEntity>> getEntriesForFarmer(String familyId, String farmerId,
+                                                                         String startDate, String endDate);
+}
@@ -0,0 +1,99 @@
+package com.watersupply.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import com.watersupply.data.models.SupplyEntry;
+import com.watersupply.utils.BillingCalculator;
+
+/**
+ * Local copy of a supply_entries document. Amounts are kept in paise and hours in hundredths
+ * so SQL sums are exact; dates stay yyyy-MM-dd strings, which sort and range-compare correctly.
+ */
+@Entity(tableName = "supply_entries", indices = {
+    @Index({"familyId", "farmerId", "date"}),
+    @Index({"familyId", "date"})
+})
+public class SupplyEntryEntity {
+    @PrimaryKey
+    @NonNull
+    public String id = "";
+    public String userId;
+    public String familyId;
+    public String farmerId;
+    public String farmerName;
+    public String date;
+    public String billingMethod;
+    public String startTime;
+    public String stopTime;
+    public double pauseDuration;
+    public Double meterReadingStart;
+    public Double meterReadingEnd;
+    public Long totalTimeUsed;
+    public Double totalWaterUsed;
+    public double rate;
+    public long amount;
+    public String remarks;
+    public Long createdAt;
+    public Long updatedAt;
+    public String status;
+    public String settlementStatus;
+    public String settlementId;
+
+    public static SupplyEntryEntity from(SupplyEntry entry) {
+        SupplyEntryEntity entity = new SupplyEntryEntity();
+        entity.id = entry.getId();
+        entity.userId = entry.getUserId();
+        entity.familyId = entry.getFamilyId();
+        entity.farmerId = entry.getFarmerId();
+        entity.farmerName = entry.getFarmerName();
+        entity.date = entry.getDate();
+        entity.billingMethod = entry.getBillingMethod();
+        entity.startTime = entry.getStartTime();
+        entity.stopTime = entry.getStopTime();
+        entity.pauseDuration = entry.getPauseDuration();
+        entity.meterReadingStart = entry.getMeterReadingStart();
+        entity.meterReadingEnd = entry.getMeterReadingEnd();
+        entity.totalTimeUsed = entry.getTotalTimeUsed() != null
+            ? BillingCalculator.toHundredths(entry.getTotalTimeUsed()) : null;
+        entity.totalWaterUsed = entry.getTotalWaterUsed();
+        entity.rate = entry.getRate();
+        entity.amount = BillingCalculator.toPaise(entry.getAmount());
+        entity.remarks = entry.getRemarks();
+        entity.createdAt = LocalDates.toMillis(entry.getCreatedAt());
+        entity.updatedAt = LocalDates.toMillis(entry.getUpdatedAt());
+        entity.status = entry.getStatus();
+        entity.settlementStatus = entry.getSettlementStatus();
+        entity.settlementId = entry.getSettlementId();
+        return entity;
+    }
+
+    public SupplyEntry toModel() {
+        SupplyEntry entry = new SupplyEntry();
+        entry.setId(id);
+        entry.setUserId(userId);
+        entry.setFamilyId(familyId);
+        entry.setFarmerId(farmerId);
+        entry.setFarmerName(farmerName);
+        entry.setDate(date);
+        entry.setBillingMethod(billingMethod);
+        entry.setStartTime(startTime);
+        entry.setStopTime(stopTime);
+        entry.setPauseDuration(pauseDuration);
+        entry.setMeterReadingStart(meterReadingStart);
+        entry.setMeterReadingEnd(meterReadingEnd);
+        entry.setTotalTimeUsed(totalTimeUsed != null ? BillingCalculator.fromHundredths(totalTimeUsed) : null);
+        entry.setTotalWaterUsed(totalWaterUsed);
+        entry.setRate(rate);
+        entry.setAmount(BillingCalculator.fromPaise(amount));
+        entry.setRemarks(remarks);
+        entry.setCreatedAt(LocalDates.toDate(createdAt));
+        entry.setUpdatedAt(LocalDates.toDate(updatedAt));
+        entry.setStatus(status);
+        entry.setSettlementStatus(settlementStatus);
+        entry.setSettlementId(settlementId);
+        return entry;
+    }
+}
@@ -0,0 +1,43 @@
+package com.watersupply.data.migration;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+
+import java.util.Map;
+
+/**
+ * One versioned step of {@link MigrationRunner}: a pass over the documents of a query that
+ * updates the ones still in the old shape.
+ *
+ * Changes must be idempotent: a page may be visited again after an interruption, and a
+ * document already migrated must yield no changes.
+ */
+public abstract class DocumentMigration {
+    private final int version;
+    private final String name;
+
+    protected DocumentMigration(int version, String name) {
+        this.version = version;
+        this.name = name;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The documents to visit, unordered and unlimited; the runner pages through them
+     * in document id order.
+     */
+    public abstract Query query(FirebaseFirestore firestore, String userId, String familyId);
+
+    /**
+     * Fields to update on a document, or null when it needs none
+     */
+    public abstract Map<String, Object> changes(DocumentSnapshot document, String userId, String familyId);
+}
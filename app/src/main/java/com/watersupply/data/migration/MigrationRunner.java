@@ -0,0 +1,168 @@
+package com.watersupply.data.migration;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Source;
+import com.watersupply.data.firebase.BatchPipeline;
+import com.watersupply.data.firebase.FirebaseManager;
+import com.watersupply.data.repository.RollupRepository;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import dagger.hilt.android.qualifiers.ApplicationContext;
+
+/**
+ * Runs the {@link Migrations} a user has not completed yet, in version order, on a
+ * background thread some time after startup.
+ *
+ * Each migration pages through its query in document id order on a {@link BatchPipeline},
+ * turning each page into one batch. After a page's batch is confirmed (and every page before
+ * it), the id of its last document is saved as the migration's cursor, so an interrupted run
+ * continues from there. Pages are read from the server, so a pass run offline fails rather
+ * than migrate only the cached documents. A migration's version is saved as completed only
+ * after its last batch is confirmed; a failed one is retried on the next run.
+ *
+ * Once the document migrations are done, the rollups are backfilled for families that predate
+ * them; see {@link RollupRepository#backfillRollups}.
+ */
+@Singleton
+public class MigrationRunner {
+    private static final String TAG = "MigrationRunner";
+    private static final String PREF_VERSION = "migration_version";
+    private static final String PREF_CURSOR = "migration_cursor";
+    private static final String PREF_ROLLUPS_V1_COMPLETE = "rollups_v1_complete";
+    // Let the first screens load before migration reads compete with them
+    private static final long START_DELAY_MS = 5000;
+
+    private final FirebaseFirestore firestore;
+    private final SharedPreferences prefs;
+    private final RollupRepository rollupRepository;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final Set<String> scheduled = new HashSet<>(); // Users with a run scheduled or going
+
+    @Inject
+    public MigrationRunner(FirebaseManager firebaseManager, @ApplicationContext Context context,
+                           RollupRepository rollupRepository) {
+        this.firestore = firebaseManager.getFirestore();
+        this.prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
+        this.rollupRepository = rollupRepository;
+    }
+
+    /**
+     * Run the pending migrations of a user in the background. Ignored while a run for the
+     * user is scheduled or going.
+     */
+    public synchronized void schedule(String userId, String familyId) {
+        if (userId == null || familyId == null || !scheduled.add(userId)) {
+            return;
+        }
+        executor.schedule(() -> runFrom(0, userId, familyId), START_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void finished(String userId) {
+        scheduled.remove(userId);
+    }
+
+    // On the executor
+    private void runFrom(int index, String userId, String familyId) {
+        List<DocumentMigration> migrations = Migrations.ALL;
+        int completed = prefs.getInt(key(PREF_VERSION, userId), 0);
+        while (index < migrations.size() && migrations.get(index).getVersion() <= completed) {
+            index++;
+        }
+        if (index == migrations.size()) {
+            backfillRollups(userId, familyId);
+            return;
+        }
+
+        DocumentMigration migration = migrations.get(index);
+        int next = index + 1;
+        Log.d(TAG, "Running migration " + migration.getVersion() + " (" + migration.getName() + ") for " + userId);
+        pass(migration, userId, familyId).addOnCompleteListener(executor, task -> {
+            if (task.isSuccessful()) {
+                prefs.edit()
+                    .putInt(key(PREF_VERSION, userId), migration.getVersion())
+                    .remove(cursorKey(migration, userId))
+                    .apply();
+                Log.d(TAG, "Migration " + migration.getVersion() + " complete, " + task.getResult() + " documents updated");
+                runFrom(next, userId, familyId);
+            } else {
+                // Later migrations may depend on this one; retry all on the next run
+                Log.e(TAG, "Migration " + migration.getVersion() + " failed", task.getException());
+                finished(userId);
+            }
+        });
+    }
+
+    private void backfillRollups(String userId, String familyId) {
+        // Only a cache of the family's marker in Firestore, which decides whether it runs
+        String key = key(PREF_ROLLUPS_V1_COMPLETE, familyId);
+        if (prefs.getBoolean(key, false)) {
+            finished(userId);
+            return;
+        }
+        Log.d(TAG, "Starting rollup backfill for family: " + familyId);
+        rollupRepository.backfillRollups(familyId, userId, executor).addOnCompleteListener(executor, task -> {
+            if (!task.isSuccessful()) {
+                Log.e(TAG, "Rollup backfill failed", task.getException());
+            } else if (task.getResult()) {
+                prefs.edit().putBoolean(key, true).apply();
+            } else {
+                Log.d(TAG, "Rollup backfill for " + familyId + " is running on another device");
+            }
+            finished(userId);
+        });
+    }
+
+    /**
+     * One pass of a migration over its query, resuming after the saved cursor
+     *
+     * @return completes with the number of documents updated
+     */
+    private Task<Integer> pass(DocumentMigration migration, String userId, String familyId) {
+        String cursorKey = cursorKey(migration, userId);
+        BatchPipeline.Producer<String> pages = BatchPipeline.pages(
+            migration.query(firestore, userId, familyId), prefs.getString(cursorKey, null), Source.SERVER,
+            executor, (batch, page) -> {
+                int writes = 0;
+                for (DocumentSnapshot document : page) {
+                    Map<String, Object> changes = migration.changes(document, userId, familyId);
+                    if (changes != null) {
+                        batch.update(document.getReference(), changes);
+                        writes++;
+                    }
+                }
+                return writes;
+            });
+        return BatchPipeline.run(executor, pages, new BatchPipeline.Listener<String>() {
+            @Override
+            public void onCheckpoint(String lastId) {
+                if (lastId != null) {
+                    prefs.edit().putString(cursorKey, lastId).apply();
+                }
+            }
+        });
+    }
+
+    private static String key(String prefix, String id) {
+        return prefix + "_" + id;
+    }
+
+    private static String cursorKey(DocumentMigration migration, String userId) {
+        return PREF_CURSOR + "_" + migration.getVersion() + "_" + userId;
+    }
+}
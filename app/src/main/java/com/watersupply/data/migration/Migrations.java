@@ -0,0 +1,107 @@
+package com.watersupply.data.migration;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.watersupply.data.firebase.FirestoreCollections;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The document migrations, in the order they run. Append new ones with the next version;
+ * never renumber or remove a released one.
+ */
+final class Migrations {
+    static final List<DocumentMigration> ALL = Arrays.asList(
+        new FamilyIdBackfill(1, FirestoreCollections.FARMERS),
+        new FamilyIdBackfill(2, FirestoreCollections.SUPPLY_ENTRIES),
+        new FamilyIdBackfill(3, FirestoreCollections.PAYMENTS),
+        new SettlementStatusBackfill(4),
+        new UnlinkedPaymentBackfill(5)
+    );
+
+    private Migrations() {
+    }
+
+    /**
+     * Documents saved before families existed carry only the owner's userId. Farmers also
+     * predate the isActive flag.
+     */
+    static final class FamilyIdBackfill extends DocumentMigration {
+        private final String collection;
+
+        FamilyIdBackfill(int version, String collection) {
+            super(version, "familyId backfill of " + collection);
+            this.collection = collection;
+        }
+
+        @Override
+        public Query query(FirebaseFirestore firestore, String userId, String familyId) {
+            return firestore.collection(collection).whereEqualTo("userId", userId);
+        }
+
+        @Override
+        public Map<String, Object> changes(DocumentSnapshot document, String userId, String familyId) {
+            Map<String, Object> changes = new HashMap<>();
+            if (!document.contains("familyId")) {
+                changes.put("familyId", userId);
+            }
+            if (FirestoreCollections.FARMERS.equals(collection) && !document.contains("isActive")) {
+                changes.put("isActive", true);
+            }
+            return changes.isEmpty() ? null : changes;
+        }
+    }
+
+    /**
+     * Supply entries saved before settlements existed have no settlementStatus, so the
+     * server-side unsettled filter would miss them.
+     */
+    static final class SettlementStatusBackfill extends DocumentMigration {
+        SettlementStatusBackfill(int version) {
+            super(version, "settlementStatus backfill");
+        }
+
+        @Override
+        public Query query(FirebaseFirestore firestore, String userId, String familyId) {
+            return firestore.collection(FirestoreCollections.SUPPLY_ENTRIES).whereEqualTo("familyId", familyId);
+        }
+
+        @Override
+        public Map<String, Object> changes(DocumentSnapshot document, String userId, String familyId) {
+            if (document.contains("settlementStatus")) {
+                return null;
+            }
+            Map<String, Object> changes = new HashMap<>();
+            changes.put("settlementStatus", document.getString("settlementId") != null ? "settled" : "unsettled");
+            return changes;
+        }
+    }
+
+    /**
+     * Payments saved before the "unlinked" flag existed cannot be found by the unlinked filter.
+     */
+    static final class UnlinkedPaymentBackfill extends DocumentMigration {
+        UnlinkedPaymentBackfill(int version) {
+            super(version, "unlinked payment backfill");
+        }
+
+        @Override
+        public Query query(FirebaseFirestore firestore, String userId, String familyId) {
+            return firestore.collection(FirestoreCollections.PAYMENTS).whereEqualTo("familyId", familyId);
+        }
+
+        @Override
+        public Map<String, Object> changes(DocumentSnapshot document, String userId, String familyId) {
+            if (document.contains("unlinked")) {
+                return null;
+            }
+            Map<String, Object> changes = new HashMap<>();
+            changes.put("unlinked", document.getString("settlementId") == null);
+            return changes;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.watersupply.data.models;
 
 import com.google.firebase.firestore.DocumentId;
+import com.google.firebase.firestore.Exclude;
 import com.google.firebase.firestore.ServerTimestamp;
+import com.watersupply.utils.EpochDays;
 
 import java.util.Date;
 
@@ -27,6 +29,10 @@ public class Payment implements Serializable {
     @ServerTimestamp
     private Date updatedAt;
     private String settlementId; // null = standalone, non-null = part of settlement
+
+    // Parsed once from paymentDate for range filters; not stored in Firestore
+    private transient int epochDay;
+    private transient boolean epochDayParsed;
     
     // Required empty constructor for Firestore
     public Payment() {
@@ -86,6 +92,19 @@ public class Payment implements Serializable {
     
     public void setPaymentDate(String paymentDate) {
         this.paymentDate = paymentDate;
+        this.epochDayParsed = false;
+    }
+    
+    /**
+     * The payment date as days since 1970-01-01, or EpochDays.NONE if missing or malformed.
+     */
+    @Exclude
+    public int getEpochDay() {
+        if (!epochDayParsed) {
+            epochDay = EpochDays.parse(paymentDate);
+            epochDayParsed = true;
+        }
+        return epochDay;
     }
     
     public double getAmount() {
@@ -143,4 +162,16 @@ public class Payment implements Serializable {
     public void setSettlementId(String settlementId) {
         this.settlementId = settlementId;
     }
+
+    /**
+     * Stored alongside settlementId so unlinked payments can be queried: Firestore cannot
+     * filter on a field that was deleted or never written.
+     */
+    public boolean isUnlinked() {
+        return settlementId == null;
+    }
+
+    public void setUnlinked(boolean unlinked) {
+        // Derived from settlementId; the setter only lets Firestore map the stored field
+    }
 }
@@ -0,0 +1,71 @@
+package com.watersupply.data.models;
+
+import com.google.firebase.firestore.DocumentId;
+import com.google.firebase.firestore.Exclude;
+import com.watersupply.utils.BillingCalculator;
+
+/**
+ * Pre-aggregated totals of one family for one day or one month.
+ * Maintained with FieldValue.increment in the same batch as every supply/payment write,
+ * so dashboard periods can be read without scanning the raw collections.
+ * Money is stored in paise and hours in hundredths so increments stay exact.
+ */
+public class Rollup {
+    public static final String PERIOD_DAY = "day";
+    public static final String PERIOD_MONTH = "month";
+
+    @DocumentId
+    private String id;
+    private String familyId;
+    private String period;      // day | month
+    private String key;         // yyyy-MM-dd or yyyy-MM
+    private long revenuePaise;
+    private long hoursHundredths;
+    private long entryCount;
+    private long paymentsPaise;
+    private long paymentCount;
+    private long writes;        // Increments applied to a day, to tell whether it changed
+
+    // Required empty constructor for Firestore
+    public Rollup() {
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getFamilyId() { return familyId; }
+    public void setFamilyId(String familyId) { this.familyId = familyId; }
+
+    public String getPeriod() { return period; }
+    public void setPeriod(String period) { this.period = period; }
+
+    public String getKey() { return key; }
+    public void setKey(String key) { this.key = key; }
+
+    public long getRevenuePaise() { return revenuePaise; }
+    public void setRevenuePaise(long revenuePaise) { this.revenuePaise = revenuePaise; }
+
+    public long getHoursHundredths() { return hoursHundredths; }
+    public void setHoursHundredths(long hoursHundredths) { this.hoursHundredths = hoursHundredths; }
+
+    public long getEntryCount() { return entryCount; }
+    public void setEntryCount(long entryCount) { this.entryCount = entryCount; }
+
+    public long getPaymentsPaise() { return paymentsPaise; }
+    public void setPaymentsPaise(long paymentsPaise) { this.paymentsPaise = paymentsPaise; }
+
+    public long getPaymentCount() { return paymentCount; }
+    public void setPaymentCount(long paymentCount) { this.paymentCount = paymentCount; }
+
+    public long getWrites() { return writes; }
+    public void setWrites(long writes) { this.writes = writes; }
+
+    @Exclude
+    public double getRevenue() { return BillingCalculator.fromPaise(revenuePaise); }
+
+    @Exclude
+    public double getHours() { return BillingCalculator.fromHundredths(hoursHundredths); }
+
+    @Exclude
+    public double getPayments() { return BillingCalculator.fromPaise(paymentsPaise); }
+}
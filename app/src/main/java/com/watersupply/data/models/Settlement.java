@@ -1,7 +1,9 @@
 package com.watersupply.data.models;
 
 import com.google.firebase.firestore.DocumentId;
+import com.google.firebase.firestore.Exclude;
 import com.google.firebase.firestore.ServerTimestamp;
+import com.watersupply.utils.EpochDays;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -37,6 +39,10 @@ public class Settlement implements Serializable {
     @ServerTimestamp
     private Date updatedAt;
 
+    // Parsed once from settlementDate for range filters; not stored in Firestore
+    private transient int epochDay;
+    private transient boolean epochDayParsed;
+
     // Required empty constructor for Firestore
     public Settlement() {
         this.settledSupplyIds = new ArrayList<>();
@@ -60,7 +66,22 @@ public class Settlement implements Serializable {
     public void setFarmerName(String farmerName) { this.farmerName = farmerName; }
 
     public String getSettlementDate() { return settlementDate; }
-    public void setSettlementDate(String settlementDate) { this.settlementDate = settlementDate; }
+    public void setSettlementDate(String settlementDate) {
+        this.settlementDate = settlementDate;
+        this.epochDayParsed = false;
+    }
+
+    /**
+     * The settlement date as days since 1970-01-01, or EpochDays.NONE if missing or malformed.
+     */
+    @Exclude
+    public int getEpochDay() {
+        if (!epochDayParsed) {
+            epochDay = EpochDays.parse(settlementDate);
+            epochDayParsed = true;
+        }
+        return epochDay;
+    }
 
     public double getTotalCharges() { return totalCharges; }
     public void setTotalCharges(double totalCharges) { this.totalCharges = totalCharges; }
@@ -0,0 +1,60 @@
+package com.watersupply.data.models;
+
+import com.google.firebase.firestore.DocumentId;
+
+import java.util.Date;
+
+/**
+ * Journal of a settlement being applied in several batches, stored under the settlement's id.
+ * Holds everything needed to finish or undo the settlement after an interruption.
+ */
+public class SettlementJournal {
+    public static final String STATE_PENDING = "pending";
+    public static final String STATE_COMMITTING = "committing";
+    public static final String STATE_COMMITTED = "committed";
+    public static final String STATE_ROLLING_BACK = "rolling_back";
+    public static final String STATE_ROLLED_BACK = "rolled_back";
+    public static final String STATE_DELETING = "deleting";
+
+    @DocumentId
+    private String id;
+    private String familyId;
+    private String farmerId;
+    private String state;
+    private Settlement settlement;   // Written as is once the marks are applied
+    private Payment newPayment;      // Payment for the amount received, or null
+    private String newPaymentId;
+    private Date createdAt;
+    private Date updatedAt;
+
+    // Required empty constructor for Firestore
+    public SettlementJournal() {
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getFamilyId() { return familyId; }
+    public void setFamilyId(String familyId) { this.familyId = familyId; }
+
+    public String getFarmerId() { return farmerId; }
+    public void setFarmerId(String farmerId) { this.farmerId = farmerId; }
+
+    public String getState() { return state; }
+    public void setState(String state) { this.state = state; }
+
+    public Settlement getSettlement() { return settlement; }
+    public void setSettlement(Settlement settlement) { this.settlement = settlement; }
+
+    public Payment getNewPayment() { return newPayment; }
+    public void setNewPayment(Payment newPayment) { this.newPayment = newPayment; }
+
+    public String getNewPaymentId() { return newPaymentId; }
+    public void setNewPaymentId(String newPaymentId) { this.newPaymentId = newPaymentId; }
+
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+
+    public Date getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Date updatedAt) { this.updatedAt = updatedAt; }
+}
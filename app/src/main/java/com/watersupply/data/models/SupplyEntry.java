@@ -1,7 +1,9 @@
 package com.watersupply.data.models;
 
 import com.google.firebase.firestore.DocumentId;
+import com.google.firebase.firestore.Exclude;
 import com.google.firebase.firestore.ServerTimestamp;
+import com.watersupply.utils.EpochDays;
 
 import java.util.Date;
 
@@ -36,6 +38,10 @@ public class SupplyEntry implements Serializable {
     private String status; // "completed" or "draft"
     private String settlementStatus; // "unsettled" (default) or "settled"
     private String settlementId;     // links to Settlement that settled this entry
+
+    // Parsed once from date for range filters; not stored in Firestore
+    private transient int epochDay;
+    private transient boolean epochDayParsed;
     
     // Required empty constructor for Firestore
     public SupplyEntry() {
@@ -96,6 +102,19 @@ public class SupplyEntry implements Serializable {
     
     public void setDate(String date) {
         this.date = date;
+        this.epochDayParsed = false;
+    }
+    
+    /**
+     * The supply date as days since 1970-01-01, or EpochDays.NONE if missing or malformed.
+     */
+    @Exclude
+    public int getEpochDay() {
+        if (!epochDayParsed) {
+            epochDay = EpochDays.parse(date);
+            epochDayParsed = true;
+        }
+        return epochDay;
     }
     
     public String getBillingMethod() {
@@ -0,0 +1,110 @@
+package com.watersupply.data.repository;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Transformations;
+
+import com.watersupply.data.local.LocalDatabase;
+import com.watersupply.data.local.LocalMirror;
+import com.watersupply.data.local.LocalTotals;
+import com.watersupply.data.local.PaymentEntity;
+import com.watersupply.data.local.SupplyEntryEntity;
+import com.watersupply.data.models.Payment;
+import com.watersupply.data.models.SupplyEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Reports, range sums and search served from the local SQLite mirror instead of scanning
+ * snapshot lists. Results update whenever the mirror applies a snapshot.
+ *
+ * Dates are inclusive yyyy-MM-dd bounds. A null farmerId means all farmers.
+ */
+@Singleton
+public class AnalyticsRepository {
+    private final LocalMirror mirror;
+    private final LocalDatabase database;
+
+    @Inject
+    public AnalyticsRepository(LocalMirror mirror) {
+        this.mirror = mirror;
+        this.database = mirror.getDatabase();
+    }
+
+    public LiveData<LocalTotals> getSupplyTotals(String familyId, String farmerId, String startDate, String endDate) {
+        mirror.start(familyId);
+        return farmerId == null
+            ? database.supplyEntryDao().getTotals(familyId, startDate, dayEnd(endDate))
+            : database.supplyEntryDao().getTotalsForFarmer(familyId, farmerId, startDate, dayEnd(endDate));
+    }
+
+    public LiveData<LocalTotals> getPaymentTotals(String familyId, String farmerId, String startDate, String endDate) {
+        mirror.start(familyId);
+        return farmerId == null
+            ? database.paymentDao().getTotals(familyId, startDate, dayEnd(endDate))
+            : database.paymentDao().getTotalsForFarmer(familyId, farmerId, startDate, dayEnd(endDate));
+    }
+
+    /**
+     * Billed supply entries in the range, oldest first
+     */
+    public LiveData<List<SupplyEntry>> getSupplyEntries(String familyId, String farmerId, String startDate, String endDate) {
+        mirror.start(familyId);
+        LiveData<List<SupplyEntryEntity>> rows = farmerId == null
+            ? database.supplyEntryDao().getEntries(familyId, startDate, dayEnd(endDate))
+            : database.supplyEntryDao().getEntriesForFarmer(familyId, farmerId, startDate, dayEnd(endDate));
+        return Transformations.map(rows, entities -> {
+            List<SupplyEntry> entries = new ArrayList<>(entities.size());
+            for (SupplyEntryEntity entity : entities) {
+                entries.add(entity.toModel());
+            }
+            return entries;
+        });
+    }
+
+    /**
+     * Payments in the range, oldest first
+     */
+    public LiveData<List<Payment>> getPayments(String familyId, String farmerId, String startDate, String endDate) {
+        mirror.start(familyId);
+        LiveData<List<PaymentEntity>> rows = farmerId == null
+            ? database.paymentDao().getPayments(familyId, startDate, dayEnd(endDate))
+            : database.paymentDao().getPaymentsForFarmer(familyId, farmerId, startDate, dayEnd(endDate));
+        return Transformations.map(rows, AnalyticsRepository::toPayments);
+    }
+
+    /**
+     * Payments whose farmer name or method contains the text (case-insensitive), optionally
+     * within a date range (null bounds are open), newest or largest first.
+     */
+    public LiveData<List<Payment>> searchPayments(String familyId, String text, String startDate, String endDate,
+                                                  boolean byAmount) {
+        mirror.start(familyId);
+        String pattern = "%" + escapeLike(text) + "%";
+        String end = endDate != null ? dayEnd(endDate) : null;
+        LiveData<List<PaymentEntity>> rows = byAmount
+            ? database.paymentDao().searchByAmount(familyId, pattern, startDate, end)
+            : database.paymentDao().searchByDate(familyId, pattern, startDate, end);
+        return Transformations.map(rows, AnalyticsRepository::toPayments);
+    }
+
+    private static List<Payment> toPayments(List<PaymentEntity> entities) {
+        List<Payment> payments = new ArrayList<>(entities.size());
+        for (PaymentEntity entity : entities) {
+            payments.add(entity.toModel());
+        }
+        return payments;
+    }
+
+    // Dates may carry a time after the day
+    private static String dayEnd(String endDate) {
+        return endDate + "\uf8ff";
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
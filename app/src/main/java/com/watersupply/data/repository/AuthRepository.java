@@ -7,6 +7,7 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.watersupply.data.firebase.FirebaseManager;
+import com.watersupply.data.local.LocalMirror;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -24,12 +25,15 @@ public class AuthRepository {
     private final FirebaseAuth firebaseAuth;
     private final FirebaseFirestore firestore;
     private final SharedPreferences prefs;
+    private final LocalMirror localMirror;
     
     @Inject
-    public AuthRepository(FirebaseManager firebaseManager, @ApplicationContext Context context) {
+    public AuthRepository(FirebaseManager firebaseManager, @ApplicationContext Context context,
+                          LocalMirror localMirror) {
         this.firebaseAuth = firebaseManager.getAuth();
         this.firestore = firebaseManager.getFirestore();
         this.prefs = context.getSharedPreferences("user_session", Context.MODE_PRIVATE);
+        this.localMirror = localMirror;
     }
     
     /**
@@ -227,6 +231,7 @@ public class AuthRepository {
      * Logout user
      */
     public void logout() {
+        localMirror.clear();
         firebaseAuth.signOut();
         prefs.edit().clear().apply();
     }
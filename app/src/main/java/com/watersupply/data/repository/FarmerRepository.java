@@ -1,14 +1,22 @@
 package com.watersupply.data.repository;
 
 import androidx.lifecycle.LiveData;
-import androidx.lifecycle.MutableLiveData;
 
 import com.google.firebase.firestore.Filter;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.Query;
+import com.watersupply.data.firebase.BulkDeleter;
+import com.watersupply.data.firebase.ChangeSet;
+import com.watersupply.data.firebase.CoalescingWriteQueue;
 import com.watersupply.data.firebase.FirebaseManager;
+import com.watersupply.data.firebase.FirestoreAggregateLiveData;
+import com.watersupply.data.firebase.FirestoreChangeLiveData;
+import com.watersupply.data.firebase.FirestoreCollections;
 import com.watersupply.data.firebase.FirestoreDocumentLiveData;
+import com.watersupply.data.firebase.FirestoreQueryHub;
 import com.watersupply.data.firebase.FirestoreQueryLiveData;
+import com.watersupply.data.firebase.IncrementalAggregate;
+import com.watersupply.data.firebase.ServerAggregates;
 import com.watersupply.data.models.Farmer;
 
 import java.util.HashMap;
@@ -24,21 +32,44 @@ import javax.inject.Singleton;
 @Singleton
 public class FarmerRepository {
     private final FirebaseFirestore firestore;
+    private final FirestoreQueryHub queryHub;
+    private final ServerAggregates serverAggregates;
+    private final CoalescingWriteQueue writeQueue;
+    private final BulkDeleter bulkDeleter;
     
     @Inject
-    public FarmerRepository(FirebaseManager firebaseManager) {
+    public FarmerRepository(FirebaseManager firebaseManager, FirestoreQueryHub queryHub,
+                            ServerAggregates serverAggregates, CoalescingWriteQueue writeQueue,
+                            BulkDeleter bulkDeleter) {
         this.firestore = firebaseManager.getFirestore();
+        this.queryHub = queryHub;
+        this.serverAggregates = serverAggregates;
+        this.writeQueue = writeQueue;
+        this.bulkDeleter = bulkDeleter;
     }
     
     /**
-     * Get all farmers for a specific family (with real-time updates)
+     * Active farmers of a family. Lists, counts and balance totals all observe this one
+     * query so they share a single listener.
      */
-    public LiveData<List<Farmer>> getAllFarmers(String familyId) {
-        Query query = firestore.collection("farmers")
+    private Query activeFarmersQuery(String familyId) {
+        return firestore.collection("farmers")
             .whereEqualTo("familyId", familyId)
             .whereEqualTo("isActive", true);
-            
-        return new FirestoreQueryLiveData<>(query, Farmer.class);
+    }
+    
+    /**
+     * Get all farmers for a specific family (with real-time updates)
+     */
+    public LiveData<List<Farmer>> getAllFarmers(String familyId) {
+        return new FirestoreQueryLiveData<>(queryHub, activeFarmersQuery(familyId), Farmer.class);
+    }
+    
+    /**
+     * Active farmers of a family as change sets, for lists that apply edits in place
+     */
+    public LiveData<ChangeSet<Farmer>> getAllFarmerChanges(String familyId) {
+        return new FirestoreChangeLiveData<>(queryHub, activeFarmersQuery(familyId), Farmer.class);
     }
     
     /**
@@ -54,46 +85,45 @@ public class FarmerRepository {
             farmer.setFamilyId(farmer.getUserId());
         }
 
-        firestore.collection("farmers").document(farmer.getId())
-            .set(farmer)
+        serverAggregates.afterWrite(firestore.collection("farmers").document(farmer.getId())
+                .set(farmer), FirestoreCollections.FARMERS)
             .addOnSuccessListener(aVoid -> listener.onSuccess(farmer.getId()))
             .addOnFailureListener(e -> listener.onFailure(e.getMessage()));
     }
     
     /**
-     * Update farmer document
+     * Update farmer document. The balance is left as it is; it only changes through
+     * {@link #updateFarmerBalance} and the other increments.
      */
     public void updateFarmer(String farmerId, Farmer farmer, OnCompleteListener listener) {
-        firestore.collection("farmers").document(farmerId)
-            .update(farmerToMap(farmer))
+        serverAggregates.afterWrite(firestore.collection("farmers").document(farmerId)
+                .update(farmerToMap(farmer)), FirestoreCollections.FARMERS)
             .addOnSuccessListener(aVoid -> listener.onSuccess(farmerId))
             .addOnFailureListener(e -> listener.onFailure(e.getMessage()));
     }
     
     /**
-     * Update farmer balance
+     * Add {@code amount} to a farmer's balance (negative to reduce it).
+     *
+     * The change is a server-side increment, not a read followed by a write, so concurrent
+     * changes from several devices or screens are all applied. Changes made during the same
+     * main-thread turn are merged into one write.
      */
     public void updateFarmerBalance(String farmerId, double amount, OnCompleteListener listener) {
-        firestore.collection("farmers").document(farmerId)
-            .get()
-            .addOnSuccessListener(documentSnapshot -> {
-                if (documentSnapshot.exists()) {
-                    Farmer farmer = documentSnapshot.toObject(Farmer.class);
-                    if (farmer != null) {
-                        farmer.setBalance(farmer.getBalance() + amount);
-                        farmer.setUpdatedAt(new java.util.Date());
-                        
-                        firestore.collection("farmers").document(farmerId)
-                            .update("balance", farmer.getBalance(), "updatedAt", farmer.getUpdatedAt())
-                            .addOnSuccessListener(aVoid -> listener.onSuccess(farmerId))
-                            .addOnFailureListener(e -> listener.onFailure(e.getMessage()));
-                    }
-                } else {
-                    listener.onFailure("Farmer not found");
-                }
-            })
+        serverAggregates.afterWrite(writeQueue.increment(0, balanceIncrement(farmerId, amount)),
+                FirestoreCollections.FARMERS)
+            .addOnSuccessListener(aVoid -> listener.onSuccess(farmerId))
             .addOnFailureListener(e -> listener.onFailure(e.getMessage()));
     }
+    
+    /**
+     * An increment of a farmer's balance, for callers that write it in their own batch.
+     * Bumps the farmer's updatedAt along with it.
+     */
+    public CoalescingWriteQueue.Increment balanceIncrement(String farmerId, double amount) {
+        return CoalescingWriteQueue.increment(firestore.collection("farmers").document(farmerId), "balance", amount)
+            .stamping("updatedAt");
+    }
 
     /**
      * Update farmer details (name, mobile, location, rate)
@@ -124,21 +154,20 @@ public class FarmerRepository {
      * Delete farmer (soft delete - set isActive to false)
      */
     public void deleteFarmer(String farmerId, OnCompleteListener listener) {
-        firestore.collection("farmers").document(farmerId)
-            .update("isActive", false, "updatedAt", new java.util.Date())
+        serverAggregates.afterWrite(firestore.collection("farmers").document(farmerId)
+                .update("isActive", false, "updatedAt", new java.util.Date()), FirestoreCollections.FARMERS)
             .addOnSuccessListener(aVoid -> listener.onSuccess(farmerId))
             .addOnFailureListener(e -> listener.onFailure(e.getMessage()));
     }
     
-    public void deleteAllFarmers(String familyId) {
-        firestore.collection("farmers")
-            .whereEqualTo("familyId", familyId)
-            .get()
-            .addOnSuccessListener(querySnapshot -> {
-                for (com.google.firebase.firestore.DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                    doc.getReference().delete();
-                }
-            });
+    /**
+     * Delete every farmer of a family, active or not, in chunked batches
+     */
+    public BulkDeleter.Job deleteAllFarmers(String familyId) {
+        BulkDeleter.Job job = bulkDeleter.delete(firestore.collection("farmers")
+            .whereEqualTo("familyId", familyId));
+        serverAggregates.afterWrite(job.getResult(), FirestoreCollections.FARMERS);
+        return job;
     }
     
     /**
@@ -159,73 +188,34 @@ public class FarmerRepository {
      * Get farmer count for dashboard
      */
     public LiveData<Integer> getFarmerCount(String familyId) {
-        MutableLiveData<Integer> countLiveData = new MutableLiveData<>();
-        
-        firestore.collection("farmers")
-            .whereEqualTo("familyId", familyId)
-            .whereEqualTo("isActive", true)
-            .addSnapshotListener((querySnapshot, error) -> {
-                if (error != null || querySnapshot == null) {
-                    countLiveData.setValue(0);
-                    return;
-                }
-                countLiveData.setValue(querySnapshot.size());
-            });
-        
-        return countLiveData;
+        return serverAggregates.count(FirestoreCollections.FARMERS, activeFarmersQuery(familyId));
     }
 
     /**
      * Get count of farmers with outstanding balance
      */
     public LiveData<Integer> getFarmersWithBalanceCount(String familyId) {
-        MutableLiveData<Integer> countLiveData = new MutableLiveData<>();
+        // Counted from the shared active-farmers query instead of a separate balance > 0 listener
+        IncrementalAggregate aggregate = new IncrementalAggregate(1, (doc, out) ->
+            out[0] = IncrementalAggregate.number(doc, "balance") > 0 ? 1 : 0);
         
-        firestore.collection("farmers")
-            .whereEqualTo("familyId", familyId)
-            .whereEqualTo("isActive", true)
-            .whereGreaterThan("balance", 0)
-            .addSnapshotListener((querySnapshot, error) -> {
-                if (error != null || querySnapshot == null) {
-                    countLiveData.setValue(0);
-                    return;
-                }
-                countLiveData.setValue(querySnapshot.size());
+        return new FirestoreAggregateLiveData<>(queryHub, activeFarmersQuery(familyId), 0,
+            (querySnapshot, initial) -> {
+                aggregate.accept(querySnapshot, initial);
+                return (int) aggregate.sum(0);
             });
-        
-        return countLiveData;
     }
     
     /**
      * Get total balance across all farmers
      */
     public LiveData<Double> getTotalBalance(String familyId) {
-        MutableLiveData<Double> totalBalanceLiveData = new MutableLiveData<>();
-        
-        firestore.collection("farmers")
-            .whereEqualTo("familyId", familyId)
-            .whereEqualTo("isActive", true)
-            .addSnapshotListener((querySnapshot, error) -> {
-                if (error != null || querySnapshot == null) {
-                    totalBalanceLiveData.setValue(0.0);
-                    return;
-                }
-                
-                double total = 0.0;
-                for (com.google.firebase.firestore.DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                    Farmer farmer = doc.toObject(Farmer.class);
-                    if (farmer != null) {
-                        total += farmer.getBalance();
-                    }
-                }
-                totalBalanceLiveData.setValue(total);
-            });
-        
-        return totalBalanceLiveData;
+        return serverAggregates.sumAmount(FirestoreCollections.FARMERS, activeFarmersQuery(familyId), "balance");
     }
     
     /**
-     * Convert Farmer object to Map for Firestore
+     * Convert Farmer object to Map for Firestore, without the balance: writing back a balance
+     * read earlier would undo any increment committed since
      */
     private Map<String, Object> farmerToMap(Farmer farmer) {
         Map<String, Object> map = new HashMap<>();
@@ -235,7 +225,6 @@ public class FarmerRepository {
         map.put("mobile", farmer.getMobile());
         map.put("farmLocation", farmer.getFarmLocation());
         map.put("defaultRate", farmer.getDefaultRate());
-        map.put("balance", farmer.getBalance());
         map.put("isActive", farmer.isActive());
         map.put("createdAt", farmer.getCreatedAt() != null ? farmer.getCreatedAt() : new java.util.Date());
         map.put("updatedAt", new java.util.Date());
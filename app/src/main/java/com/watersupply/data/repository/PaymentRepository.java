@@ -1,15 +1,28 @@
 package com.watersupply.data.repository;
 
 import androidx.lifecycle.LiveData;
-import androidx.lifecycle.MutableLiveData;
 
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.Filter;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.WriteBatch;
+import com.watersupply.data.firebase.BulkDeleter;
+import com.watersupply.data.firebase.ChangeSet;
+import com.watersupply.data.firebase.CoalescingWriteQueue;
 import com.watersupply.data.firebase.FirebaseManager;
+import com.watersupply.data.firebase.FirestoreAggregateLiveData;
+import com.watersupply.data.firebase.FirestoreChangeLiveData;
+import com.watersupply.data.firebase.FirestoreCollections;
 import com.watersupply.data.firebase.FirestoreDocumentLiveData;
+import com.watersupply.data.firebase.FirestoreQueryHub;
 import com.watersupply.data.firebase.FirestoreQueryLiveData;
+import com.watersupply.data.firebase.IncrementalAggregate;
+import com.watersupply.data.firebase.PagedQueryLiveData;
+import com.watersupply.data.firebase.ServerAggregates;
 import com.watersupply.data.models.Payment;
+import com.watersupply.utils.BillingCalculator;
 
 import java.util.List;
 
@@ -23,19 +36,83 @@ import javax.inject.Singleton;
 public class PaymentRepository {
     private final FirebaseFirestore firestore;
     private final FarmerRepository farmerRepository;
+    private final FirestoreQueryHub queryHub;
+    private final ServerAggregates serverAggregates;
+    private final RollupRepository rollupRepository;
+    private final CoalescingWriteQueue writeQueue;
+    private final BulkDeleter bulkDeleter;
+    
+    // The payment document plus its daily and monthly rollups; an edit also reverses the old rollups
+    private static final int PAYMENT_WRITE_OPERATIONS = 3;
+    private static final int ROLLUP_OPERATIONS = 2;
     
     @Inject
-    public PaymentRepository(FirebaseManager firebaseManager, FarmerRepository farmerRepository) {
+    public PaymentRepository(FirebaseManager firebaseManager, FarmerRepository farmerRepository,
+                             FirestoreQueryHub queryHub, ServerAggregates serverAggregates,
+                             RollupRepository rollupRepository, CoalescingWriteQueue writeQueue,
+                             BulkDeleter bulkDeleter) {
         this.firestore = firebaseManager.getFirestore();
         this.farmerRepository = farmerRepository;
+        this.queryHub = queryHub;
+        this.serverAggregates = serverAggregates;
+        this.rollupRepository = rollupRepository;
+        this.writeQueue = writeQueue;
+        this.bulkDeleter = bulkDeleter;
     }
     
-    public LiveData<List<Payment>> getAllPayments(String familyId) {
-        // Revert to simple query to avoid index errors. Migration will fix data.
-        Query query = firestore.collection("payments")
+    /**
+     * All payments of a family. The list, count and totals share this query's listener.
+     */
+    private Query familyPaymentsQuery(String familyId) {
+        // Left unordered: every family-wide listener and aggregate shares this one query
+        return firestore.collection("payments")
             .whereEqualTo("familyId", familyId);
-            
-        return new FirestoreQueryLiveData<>(query, Payment.class);
+    }
+    
+    /**
+     * Payments of a family dated within [startDate, endDate]; either bound may be null.
+     */
+    private Query dateRangeQuery(String familyId, String startDate, String endDate) {
+        Query query = familyPaymentsQuery(familyId);
+        if (startDate != null) {
+            query = query.whereGreaterThanOrEqualTo("paymentDate", startDate);
+        }
+        if (endDate != null) {
+            // Dates may carry a time after the day
+            query = query.whereLessThanOrEqualTo("paymentDate", endDate + "\uf8ff");
+        }
+        return query;
+    }
+    
+    /**
+     * Payment history newest first, one page at a time. Needs the (familyId, paymentDate desc,
+     * __name__ desc) index from firestore.indexes.json.
+     */
+    public PagedQueryLiveData<Payment> getPaymentPages(String familyId, String startDate,
+                                                       String endDate, int pageSize) {
+        Query query = dateRangeQuery(familyId, startDate, endDate)
+            .orderBy("paymentDate", Query.Direction.DESCENDING)
+            .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+        return new PagedQueryLiveData<>(queryHub, query, Payment.class, pageSize);
+    }
+    
+    /**
+     * Every payment in the date range, read once (for export, where loaded pages are not enough).
+     */
+    public Task<List<Payment>> fetchPayments(String familyId, String startDate, String endDate) {
+        return dateRangeQuery(familyId, startDate, endDate).get()
+            .continueWith(task -> task.getResult().toObjects(Payment.class));
+    }
+    
+    public LiveData<List<Payment>> getAllPayments(String familyId) {
+        return new FirestoreQueryLiveData<>(queryHub, familyPaymentsQuery(familyId), Payment.class);
+    }
+    
+    /**
+     * All payments of a family as change sets, for lists that apply edits in place.
+     */
+    public LiveData<ChangeSet<Payment>> getAllPaymentChanges(String familyId) {
+        return new FirestoreChangeLiveData<>(queryHub, familyPaymentsQuery(familyId), Payment.class);
     }
     
     public LiveData<Payment> getPaymentById(String paymentId) {
@@ -50,71 +127,35 @@ public class PaymentRepository {
             .whereEqualTo("familyId", familyId)
             .whereEqualTo("farmerId", farmerId);
             
-        return new FirestoreQueryLiveData<>(query, Payment.class);
+        return new FirestoreQueryLiveData<>(queryHub, query, Payment.class);
     }
     
     public LiveData<Integer> getPaymentCount(String familyId) {
-        MutableLiveData<Integer> countLiveData = new MutableLiveData<>();
-        
-        firestore.collection("payments")
-            .whereEqualTo("familyId", familyId)
-            .addSnapshotListener((querySnapshot, error) -> {
-                if (error != null) {
-                    android.util.Log.e("PaymentRepository", "getPaymentCount failed: " + error.getMessage());
-                    return;
-                }
-                
-                if (querySnapshot == null) {
-                    countLiveData.setValue(0);
-                    return;
-                }
-                countLiveData.setValue(querySnapshot.size());
-            });
-            
-        return countLiveData;
+        return serverAggregates.count(FirestoreCollections.PAYMENTS, familyPaymentsQuery(familyId));
+    }
+    
+    public LiveData<Integer> getPaymentCount(String familyId, String startDate, String endDate) {
+        return serverAggregates.count(FirestoreCollections.PAYMENTS,
+            dateRangeQuery(familyId, startDate, endDate));
     }
     
     public LiveData<Double> getTotalPaymentsReceived(String familyId, String startDate) {
-        MutableLiveData<Double> totalLiveData = new MutableLiveData<>();
-        
-        firestore.collection("payments")
-            .whereEqualTo("familyId", familyId)
-            .whereGreaterThanOrEqualTo("paymentDate", startDate)
-            .addSnapshotListener((querySnapshot, error) -> {
-                if (error != null || querySnapshot == null) {
-                    totalLiveData.setValue(0.0);
-                    return;
-                }
-                
-                double total = 0.0;
-                for (Payment payment : querySnapshot.toObjects(Payment.class)) {
-                    total += payment.getAmount();
-                }
-                totalLiveData.setValue(total);
-            });
-            
-        return totalLiveData;
+        // The date bound is applied per document so the family listener can be shared
+        return FirestoreAggregateLiveData.sum(queryHub, familyPaymentsQuery(familyId), (doc, out) -> {
+            String paymentDate = doc.getString("paymentDate");
+            if (paymentDate != null && paymentDate.compareTo(startDate) >= 0) {
+                out[0] = BillingCalculator.toPaise(IncrementalAggregate.number(doc, "amount"));
+            }
+        }, BillingCalculator::fromPaise);
     }
     
     public LiveData<Double> getTotalPayments(String familyId) {
-        MutableLiveData<Double> totalLiveData = new MutableLiveData<>();
-        
-        firestore.collection("payments")
-            .whereEqualTo("familyId", familyId)
-            .addSnapshotListener((querySnapshot, error) -> {
-                if (error != null || querySnapshot == null) {
-                    totalLiveData.setValue(0.0);
-                    return;
-                }
-                
-                double total = 0.0;
-                for (Payment payment : querySnapshot.toObjects(Payment.class)) {
-                    total += payment.getAmount();
-                }
-                totalLiveData.setValue(total);
-            });
-            
-        return totalLiveData;
+        return serverAggregates.sumAmount(FirestoreCollections.PAYMENTS, familyPaymentsQuery(familyId), "amount");
+    }
+    
+    public LiveData<Double> getTotalPayments(String familyId, String startDate, String endDate) {
+        return serverAggregates.sumAmount(FirestoreCollections.PAYMENTS,
+            dateRangeQuery(familyId, startDate, endDate), "amount");
     }
     
     public void addPayment(Payment payment) {
@@ -132,76 +173,78 @@ public class PaymentRepository {
         }
         payment.setUpdatedAt(new java.util.Date());
         
-        firestore.collection("payments").document(payment.getId())
-            .set(payment);
+        WriteBatch batch = firestore.batch();
+        batch.set(firestore.collection("payments").document(payment.getId()), payment);
+        rollupRepository.applyPayment(batch, payment, 1);
+        serverAggregates.afterWrite(batch.commit(), FirestoreCollections.PAYMENTS, FirestoreCollections.ROLLUPS);
     }
     
-    public void savePayment(Payment payment) {
+    /**
+     * Save a payment and take it off the farmer's balance, in one batch.
+     *
+     * @return completes when the batch is committed
+     */
+    public Task<Void> savePayment(Payment payment) {
         if (payment.getId() == null) {
             payment.setId(firestore.collection("payments").document().getId());
         }
         
-        firestore.collection("payments").document(payment.getId())
-            .set(payment)
-            .addOnSuccessListener(aVoid -> {
-                // Update farmer balance
-                updateFarmerBalance(payment.getFarmerId(), payment.getAmount());
-            })
-            .addOnFailureListener(e -> {
-                // Handle error
-            });
+        // A payment received reduces the farmer's balance (debt)
+        Task<Void> commit = writeQueue.submit(PAYMENT_WRITE_OPERATIONS, batch -> {
+            batch.set(firestore.collection("payments").document(payment.getId()), payment);
+            rollupRepository.applyPayment(batch, payment, 1);
+        }, balanceChanges(payment.getFarmerId(), -payment.getAmount()));
+        return serverAggregates.afterWrite(commit,
+            FirestoreCollections.PAYMENTS, FirestoreCollections.ROLLUPS, FirestoreCollections.FARMERS);
     }
 
-    public void updatePayment(Payment payment, double oldAmount) {
-        firestore.collection("payments").document(payment.getId())
-            .set(payment)
-            .addOnSuccessListener(aVoid -> {
-                // Adjust farmer balance
-                // If payment increases (e.g. 100 -> 200), balance should decrease by 100 (more debt paid).
-                // We pass the "extra payment amount" to updateFarmerBalance, which negates it.
-                // Change = newAmount - oldAmount
-                // Example: 200 - 100 = 100. updateFarmerBalance(100) -> adds -100 to balance. Correct.
-                double balanceChange = payment.getAmount() - oldAmount;
-                updateFarmerBalance(payment.getFarmerId(), balanceChange);
-            });
+    /**
+     * @param oldPaymentDate payment date before editing, to move its rollup contribution
+     * @return completes when the batch is committed
+     */
+    public Task<Void> updatePayment(Payment payment, double oldAmount, String oldPaymentDate) {
+        // Paying more than before (e.g. 100 -> 200) reduces the balance by the difference
+        Task<Void> commit = writeQueue.submit(PAYMENT_WRITE_OPERATIONS + ROLLUP_OPERATIONS, batch -> {
+            batch.set(firestore.collection("payments").document(payment.getId()), payment);
+            rollupRepository.applyPayment(batch, payment.getFamilyId(), oldPaymentDate, oldAmount, -1);
+            rollupRepository.applyPayment(batch, payment, 1);
+        }, balanceChanges(payment.getFarmerId(), oldAmount - payment.getAmount()));
+        return serverAggregates.afterWrite(commit,
+            FirestoreCollections.PAYMENTS, FirestoreCollections.ROLLUPS, FirestoreCollections.FARMERS);
     }
 
-    public void deletePayment(Payment payment) {
-        firestore.collection("payments").document(payment.getId())
-            .delete()
-            .addOnSuccessListener(aVoid -> {
-                // Revert farmer balance: Add back the payment amount
-                // Payment reduced the balance, so deleting it should increase the balance (restore debt).
-                // updateFarmerBalance negates the input, so we pass negative to get positive increment.
-                updateFarmerBalance(payment.getFarmerId(), -payment.getAmount());
-            });
+    /**
+     * @return completes when the batch is committed
+     */
+    public Task<Void> deletePayment(Payment payment) {
+        // Deleting a payment restores the debt it had paid off
+        Task<Void> commit = writeQueue.submit(PAYMENT_WRITE_OPERATIONS, batch -> {
+            batch.delete(firestore.collection("payments").document(payment.getId()));
+            rollupRepository.applyPayment(batch, payment, -1);
+        }, balanceChanges(payment.getFarmerId(), payment.getAmount()));
+        return serverAggregates.afterWrite(commit,
+            FirestoreCollections.PAYMENTS, FirestoreCollections.ROLLUPS, FirestoreCollections.FARMERS);
     }
 
-    private void updateFarmerBalance(String farmerId, double amountReceived) {
-        // Amount received reduces the balance (credit)
-        // So we subtract the amount from the balance
-        farmerRepository.updateFarmerBalance(farmerId, -amountReceived, new FarmerRepository.OnCompleteListener() {
-            @Override
-            public void onSuccess(String documentId) {
-                // Balance updated successfully
-            }
-
-            @Override
-            public void onFailure(String error) {
-                // Failed to update balance
-                // In a real app, we might want to retry or log this
-            }
-        });
+    /**
+     * Balance increment of a farmer, or none when the payment has no farmer
+     */
+    private CoalescingWriteQueue.Increment[] balanceChanges(String farmerId, double amountChange) {
+        if (farmerId == null) {
+            return new CoalescingWriteQueue.Increment[0];
+        }
+        return new CoalescingWriteQueue.Increment[] {
+            farmerRepository.balanceIncrement(farmerId, amountChange)
+        };
     }
     
-    public void deleteAllPayments(String familyId) {
-        firestore.collection("payments")
-            .whereEqualTo("familyId", familyId)
-            .get()
-            .addOnSuccessListener(querySnapshot -> {
-                for (com.google.firebase.firestore.DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                    doc.getReference().delete();
-                }
-            });
+    /**
+     * Delete every payment of a family in chunked batches. Rollups and balances are left
+     * alone; callers clearing a family delete those too.
+     */
+    public BulkDeleter.Job deleteAllPayments(String familyId) {
+        BulkDeleter.Job job = bulkDeleter.delete(familyPaymentsQuery(familyId));
+        serverAggregates.afterWrite(job.getResult(), FirestoreCollections.PAYMENTS);
+        return job;
     }
 }
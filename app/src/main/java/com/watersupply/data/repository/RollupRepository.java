@@ -0,0 +1,454 @@
+package com.watersupply.data.repository;
+
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.Transaction;
+import com.google.firebase.firestore.WriteBatch;
+import com.watersupply.data.firebase.BatchPipeline;
+import com.watersupply.data.firebase.BulkDeleter;
+import com.watersupply.data.firebase.FirebaseManager;
+import com.watersupply.data.firebase.FirestoreAggregateLiveData;
+import com.watersupply.data.firebase.FirestoreCollections;
+import com.watersupply.data.firebase.FirestoreDocumentLiveData;
+import com.watersupply.data.firebase.FirestoreQueryHub;
+import com.watersupply.data.firebase.IncrementalAggregate;
+import com.watersupply.data.models.Payment;
+import com.watersupply.data.models.Rollup;
+import com.watersupply.data.models.SupplyEntry;
+import com.watersupply.utils.BillingCalculator;
+import com.watersupply.utils.DailyTotals;
+import com.watersupply.utils.EpochDays;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Repository for the per-family daily and monthly rollup documents.
+ *
+ * Supply and payment writes call {@link #applySupplyEntry} / {@link #applyPayment} with the
+ * same WriteBatch that writes the document, so a rollup can never miss or double count a write.
+ * Every increment also bumps the day rollup's {@code writes} count, which lets the backfill tell
+ * whether a day changed while it was being counted.
+ */
+@Singleton
+public class RollupRepository {
+    private static final String TAG = "RollupRepository";
+    // The counters of a rollup, in the order counters() returns them
+    private static final String[] COUNTERS = {
+        "revenuePaise", "hoursHundredths", "entryCount", "paymentsPaise", "paymentCount"
+    };
+    private static final String BACKFILL_CLAIMED = "claimed";
+    private static final String BACKFILL_RUNNING = "running";
+    private static final String BACKFILL_FAILED = "failed";
+    private static final String BACKFILL_COMPLETE = "complete";
+    // A running backfill not heard from this long belongs to a run that stopped
+    private static final long BACKFILL_STALE_AFTER_MS = 30 * 60 * 1000;
+    // Counting a day again while live writes keep changing it
+    private static final int MAX_DAY_ATTEMPTS = 5;
+
+    private final FirebaseFirestore firestore;
+    private final FirestoreQueryHub queryHub;
+    private final BulkDeleter bulkDeleter;
+
+    @Inject
+    public RollupRepository(FirebaseManager firebaseManager, FirestoreQueryHub queryHub, BulkDeleter bulkDeleter) {
+        this.firestore = firebaseManager.getFirestore();
+        this.queryHub = queryHub;
+        this.bulkDeleter = bulkDeleter;
+    }
+
+    public static String dayId(String familyId, String date) {
+        return familyId + "_day_" + date;
+    }
+
+    public static String monthId(String familyId, String month) {
+        return familyId + "_month_" + month;
+    }
+
+    /**
+     * Add (sign = 1) or take back (sign = -1) a supply entry's contribution.
+     */
+    public void applySupplyEntry(WriteBatch batch, SupplyEntry entry, int sign) {
+        applySupplyEntry(batch, entry.getFamilyId(), entry.getDate(), entry.getAmount(),
+            entry.getTotalTimeUsed(), sign);
+    }
+
+    public void applySupplyEntry(WriteBatch batch, String familyId, String date, double amount,
+                                 Double hours, int sign) {
+        applySupplyTotals(batch, familyId, date, sign * BillingCalculator.toPaise(amount),
+            sign * BillingCalculator.toHundredths(hours != null ? hours : 0.0), sign);
+    }
+
+    /**
+     * Add the combined contribution of {@code count} supply entries of one date, for bulk
+     * writers that merge many entries into one increment.
+     */
+    public void applySupplyTotals(WriteBatch batch, String familyId, String date, long revenuePaise,
+                                  long hoursHundredths, long count) {
+        if (!isValidDate(familyId, date)) return;
+
+        Map<String, Object> deltas = new HashMap<>();
+        deltas.put("revenuePaise", FieldValue.increment(revenuePaise));
+        deltas.put("hoursHundredths", FieldValue.increment(hoursHundredths));
+        deltas.put("entryCount", FieldValue.increment(count));
+        increment((doc, fields) -> batch.set(doc, fields, SetOptions.merge()), familyId, date, deltas);
+    }
+
+    /**
+     * Add (sign = 1) or take back (sign = -1) a payment's contribution.
+     */
+    public void applyPayment(WriteBatch batch, Payment payment, int sign) {
+        applyPayment(batch, payment.getFamilyId(), payment.getPaymentDate(), payment.getAmount(), sign);
+    }
+
+    public void applyPayment(WriteBatch batch, String familyId, String paymentDate, double amount, int sign) {
+        applyPayment((doc, fields) -> batch.set(doc, fields, SetOptions.merge()),
+            familyId, paymentDate, amount, sign);
+    }
+
+    /**
+     * Add the combined contribution of {@code count} payments of one date, for bulk writers
+     */
+    public void applyPaymentTotals(WriteBatch batch, String familyId, String paymentDate, long paymentsPaise,
+                                   long count) {
+        applyPaymentTotals((doc, fields) -> batch.set(doc, fields, SetOptions.merge()),
+            familyId, paymentDate, paymentsPaise, count);
+    }
+
+    /**
+     * Same as {@link #applyPayment(WriteBatch, Payment, int)}, for writes made in a transaction
+     */
+    public void applyPayment(Transaction transaction, Payment payment, int sign) {
+        applyPayment((doc, fields) -> transaction.set(doc, fields, SetOptions.merge()),
+            payment.getFamilyId(), payment.getPaymentDate(), payment.getAmount(), sign);
+    }
+
+    private void applyPayment(MergeWriter writer, String familyId, String paymentDate, double amount, int sign) {
+        applyPaymentTotals(writer, familyId, paymentDate, sign * BillingCalculator.toPaise(amount), sign);
+    }
+
+    private void applyPaymentTotals(MergeWriter writer, String familyId, String paymentDate, long paymentsPaise,
+                                    long count) {
+        if (!isValidDate(familyId, paymentDate)) return;
+
+        Map<String, Object> deltas = new HashMap<>();
+        deltas.put("paymentsPaise", FieldValue.increment(paymentsPaise));
+        deltas.put("paymentCount", FieldValue.increment(count));
+        increment(writer, familyId, paymentDate, deltas);
+    }
+
+    private void increment(MergeWriter writer, String familyId, String date, Map<String, Object> deltas) {
+        String day = date.substring(0, 10);
+        String month = date.substring(0, 7);
+
+        Map<String, Object> dayFields = new HashMap<>(deltas);
+        dayFields.put("writes", FieldValue.increment(1));
+        dayFields.put("familyId", familyId);
+        dayFields.put("period", Rollup.PERIOD_DAY);
+        dayFields.put("key", day);
+        writer.merge(rollups().document(dayId(familyId, day)), dayFields);
+
+        Map<String, Object> monthFields = new HashMap<>(deltas);
+        monthFields.put("familyId", familyId);
+        monthFields.put("period", Rollup.PERIOD_MONTH);
+        monthFields.put("key", month);
+        writer.merge(rollups().document(monthId(familyId, month)), monthFields);
+    }
+
+    private static boolean isValidDate(String familyId, String date) {
+        return familyId != null && date != null && date.length() >= 10;
+    }
+
+    /**
+     * Totals of one month (yyyy-MM). Emits null while no rollup exists for it.
+     */
+    public LiveData<Rollup> getMonthRollup(String familyId, String month) {
+        return new FirestoreDocumentLiveData<>(rollups().document(monthId(familyId, month)), Rollup.class);
+    }
+
+    /**
+     * Daily rollups between two dates (yyyy-MM-dd, inclusive) as a day-sorted index.
+     * Days without writes have no document. Only the days carried by each snapshot's
+     * document changes are updated, the rest of the index is kept as is.
+     */
+    public LiveData<DailyTotals> getDailyTotals(String familyId, String startDate, String endDate) {
+        DailyTotals totals = new DailyTotals();
+        return new FirestoreAggregateLiveData<>(queryHub, dayRollupsQuery(familyId, startDate, endDate),
+            new DailyTotals(), (snapshot, initial) -> {
+                if (initial) {
+                    totals.clear();
+                    for (DocumentSnapshot doc : snapshot.getDocuments()) {
+                        putDay(totals, doc);
+                    }
+                } else {
+                    for (DocumentChange change : snapshot.getDocumentChanges()) {
+                        if (change.getType() == DocumentChange.Type.REMOVED) {
+                            totals.remove(EpochDays.parse(change.getDocument().getString("key")));
+                        } else {
+                            putDay(totals, change.getDocument());
+                        }
+                    }
+                }
+                return totals;
+            });
+    }
+
+    private static void putDay(DailyTotals totals, DocumentSnapshot doc) {
+        int day = EpochDays.parse(doc.getString("key"));
+        if (day == EpochDays.NONE) return;
+        totals.put(day, counter(doc, "revenuePaise"), counter(doc, "hoursHundredths"), counter(doc, "entryCount"));
+    }
+
+    private static long counter(DocumentSnapshot doc, String field) {
+        Long value = doc.getLong(field);
+        return value != null ? value : 0;
+    }
+
+    private Query dayRollupsQuery(String familyId, String startDate, String endDate) {
+        return rollups()
+            .whereEqualTo("familyId", familyId)
+            .whereEqualTo("period", Rollup.PERIOD_DAY)
+            .whereGreaterThanOrEqualTo("key", startDate)
+            .whereLessThanOrEqualTo("key", endDate);
+    }
+
+    /**
+     * Backfill for families whose data predates rollups: bring every day rollup, and through the
+     * same deltas every month rollup, in line with the family's supply entries and payments.
+     *
+     * The work is claimed with a per-family marker document in a transaction, so it runs once
+     * per family rather than once per device, and is skipped while another device holds the
+     * claim. The days with data are found by paging through the source collections on a
+     * {@link BatchPipeline}. Each day is then counted again from the server and corrected by a
+     * transaction that adds the difference to its day and month rollups, only if the day rollup
+     * still holds what it held before the count; otherwise the day is counted again. Writes made
+     * meanwhile keep their own increments, and an offline device fails instead of counting its
+     * cache.
+     *
+     * @param executor runs the callbacks, one at a time
+     * @return completes with true once the family's rollups are backfilled, by this or an
+     * earlier run, or false while another device is running it
+     */
+    public Task<Boolean> backfillRollups(String familyId, String userId, Executor executor) {
+        DocumentReference marker = rollups().document(backfillId(familyId));
+        return claimBackfill(marker, familyId, userId).onSuccessTask(executor, outcome -> {
+            if (!BACKFILL_CLAIMED.equals(outcome)) {
+                return Tasks.forResult(BACKFILL_COMPLETE.equals(outcome));
+            }
+            Set<String> days = new TreeSet<>();
+            return scanDays(familyId, days, executor)
+                .onSuccessTask(executor, scanned -> correctDays(familyId, days.iterator(), executor))
+                .continueWithTask(executor, task -> {
+                    if (!task.isSuccessful()) {
+                        // Let the next run claim it straight away
+                        return marker.update("state", BACKFILL_FAILED, "updatedAt", new Date())
+                            .continueWith(executor, released -> {
+                                throw task.getException();
+                            });
+                    }
+                    Log.d(TAG, "Rollup backfill corrected " + task.getResult() + " of " + days.size()
+                        + " days for " + familyId);
+                    return marker.update("state", BACKFILL_COMPLETE, "updatedAt", new Date())
+                        .onSuccessTask(executor, aVoid -> Tasks.forResult(true));
+                });
+        });
+    }
+
+    /**
+     * @return {@link #BACKFILL_CLAIMED} when this run now holds the claim, or the state that
+     * keeps it from running: {@link #BACKFILL_COMPLETE} or {@link #BACKFILL_RUNNING}
+     */
+    private Task<String> claimBackfill(DocumentReference marker, String familyId, String userId) {
+        return firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(marker);
+            String state = snapshot.getString("state");
+            if (BACKFILL_COMPLETE.equals(state)) {
+                return BACKFILL_COMPLETE;
+            }
+            Date updatedAt = snapshot.getDate("updatedAt");
+            if (BACKFILL_RUNNING.equals(state) && updatedAt != null
+                    && updatedAt.getTime() > System.currentTimeMillis() - BACKFILL_STALE_AFTER_MS) {
+                return BACKFILL_RUNNING;
+            }
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("familyId", familyId);
+            fields.put("state", BACKFILL_RUNNING);
+            fields.put("claimedBy", userId);
+            fields.put("updatedAt", new Date());
+            transaction.set(marker, fields);
+            return BACKFILL_CLAIMED;
+        });
+    }
+
+    /**
+     * Collect the days that have supply entries, payments or a day rollup
+     */
+    private Task<Integer> scanDays(String familyId, Set<String> days, Executor executor) {
+        return scanDays(firestore.collection(FirestoreCollections.SUPPLY_ENTRIES)
+                .whereEqualTo("familyId", familyId), "date", days, executor)
+            .onSuccessTask(executor, count -> scanDays(firestore.collection(FirestoreCollections.PAYMENTS)
+                .whereEqualTo("familyId", familyId), "paymentDate", days, executor))
+            .onSuccessTask(executor, count -> scanDays(rollups()
+                .whereEqualTo("familyId", familyId)
+                .whereEqualTo("period", Rollup.PERIOD_DAY), "key", days, executor));
+    }
+
+    private static Task<Integer> scanDays(Query query, String dateField, Set<String> days, Executor executor) {
+        return BatchPipeline.run(executor, BatchPipeline.pages(query, null, Source.SERVER, executor,
+            (batch, page) -> {
+                for (DocumentSnapshot doc : page) {
+                    String date = doc.getString(dateField);
+                    if (date != null && date.length() >= 10) {
+                        days.add(date.substring(0, 10));
+                    }
+                }
+                return 0;
+            }), null);
+    }
+
+    /**
+     * Correct the days a few at a time
+     *
+     * @return completes with the number of days that needed a correction
+     */
+    private Task<Integer> correctDays(String familyId, Iterator<String> days, Executor executor) {
+        List<Task<Integer>> lanes = new ArrayList<>();
+        for (int i = 0; i < BatchPipeline.MAX_IN_FLIGHT; i++) {
+            lanes.add(correctRemaining(familyId, days, executor, 0));
+        }
+        return Tasks.whenAllSuccess(lanes).continueWith(executor, task -> {
+            int corrected = 0;
+            for (Object count : task.getResult()) {
+                corrected += (Integer) count;
+            }
+            return corrected;
+        });
+    }
+
+    private Task<Integer> correctRemaining(String familyId, Iterator<String> days, Executor executor,
+                                           int corrected) {
+        if (!days.hasNext()) {
+            return Tasks.forResult(corrected);
+        }
+        return correctDay(familyId, days.next(), executor, 1).onSuccessTask(executor, changed ->
+            correctRemaining(familyId, days, executor, changed ? corrected + 1 : corrected));
+    }
+
+    /**
+     * Count one day from the server and add the difference to its rollups
+     *
+     * @return completes with whether the day needed a correction
+     */
+    private Task<Boolean> correctDay(String familyId, String day, Executor executor, int attempt) {
+        DocumentReference dayRef = rollups().document(dayId(familyId, day));
+        String end = day + '\uf8ff';
+        Task<DocumentSnapshot> before = dayRef.get(Source.SERVER);
+        Task<QuerySnapshot> supplies = before.onSuccessTask(executor, snapshot ->
+            firestore.collection(FirestoreCollections.SUPPLY_ENTRIES)
+                .whereEqualTo("familyId", familyId)
+                .whereGreaterThanOrEqualTo("date", day)
+                .whereLessThan("date", end)
+                .get(Source.SERVER));
+        Task<QuerySnapshot> payments = before.onSuccessTask(executor, snapshot ->
+            firestore.collection(FirestoreCollections.PAYMENTS)
+                .whereEqualTo("familyId", familyId)
+                .whereGreaterThanOrEqualTo("paymentDate", day)
+                .whereLessThan("paymentDate", end)
+                .get(Source.SERVER));
+
+        return Tasks.whenAllSuccess(supplies, payments).onSuccessTask(executor, results -> {
+            long[] counted = new long[COUNTERS.length];
+            for (DocumentSnapshot doc : supplies.getResult().getDocuments()) {
+                counted[0] += BillingCalculator.toPaise(IncrementalAggregate.number(doc, "amount"));
+                counted[1] += BillingCalculator.toHundredths(IncrementalAggregate.number(doc, "totalTimeUsed"));
+                counted[2]++;
+            }
+            for (DocumentSnapshot doc : payments.getResult().getDocuments()) {
+                counted[3] += BillingCalculator.toPaise(IncrementalAggregate.number(doc, "amount"));
+                counted[4]++;
+            }
+            long[] seen = counters(before.getResult());
+            return firestore.runTransaction(transaction -> {
+                long[] current = counters(transaction.get(dayRef));
+                if (!Arrays.equals(seen, current)) {
+                    throw new FirebaseFirestoreException("Rollup of " + day + " changed while counting",
+                        FirebaseFirestoreException.Code.ABORTED);
+                }
+                Map<String, Object> deltas = new HashMap<>();
+                for (int i = 0; i < COUNTERS.length; i++) {
+                    if (counted[i] != current[i]) {
+                        deltas.put(COUNTERS[i], FieldValue.increment(counted[i] - current[i]));
+                    }
+                }
+                if (deltas.isEmpty()) {
+                    return false;
+                }
+                increment((doc, fields) -> transaction.set(doc, fields, SetOptions.merge()), familyId, day, deltas);
+                return true;
+            });
+        }).continueWithTask(executor, task -> {
+            Exception e = task.getException();
+            if (e instanceof FirebaseFirestoreException && attempt < MAX_DAY_ATTEMPTS
+                    && ((FirebaseFirestoreException) e).getCode() == FirebaseFirestoreException.Code.ABORTED) {
+                return correctDay(familyId, day, executor, attempt + 1);
+            }
+            return task;
+        });
+    }
+
+    /**
+     * The counters of a day rollup, and its write count last, so that any increment in between
+     * shows as a difference
+     */
+    private static long[] counters(DocumentSnapshot doc) {
+        long[] values = new long[COUNTERS.length + 1];
+        for (int i = 0; i < COUNTERS.length; i++) {
+            values[i] = counter(doc, COUNTERS[i]);
+        }
+        values[COUNTERS.length] = counter(doc, "writes");
+        return values;
+    }
+
+    private static String backfillId(String familyId) {
+        return familyId + "_backfill_v1";
+    }
+
+    public BulkDeleter.Job deleteAllRollups(String familyId) {
+        return bulkDeleter.delete(rollups().whereEqualTo("familyId", familyId));
+    }
+
+    private CollectionReference rollups() {
+        return firestore.collection(FirestoreCollections.ROLLUPS);
+    }
+
+    // A WriteBatch or Transaction set() with SetOptions.merge()
+    private interface MergeWriter {
+        void merge(DocumentReference document, Map<String, Object> fields);
+    }
+}
@@ -0,0 +1,512 @@
+package com.watersupply.data.repository;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskExecutors;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.watersupply.data.firebase.BatchPipeline;
+import com.watersupply.data.firebase.DocumentFetcher;
+import com.watersupply.data.firebase.FirebaseManager;
+import com.watersupply.data.firebase.FirestoreCollections;
+import com.watersupply.data.firebase.ServerAggregates;
+import com.watersupply.data.models.Payment;
+import com.watersupply.data.models.Settlement;
+import com.watersupply.data.models.SettlementJournal;
+import com.watersupply.data.models.SupplyEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Applies a settlement of any size, in as many batches as it needs, with a journal document
+ * that lets an interrupted settlement be resumed or rolled back.
+ *
+ * A settlement moves its journal through these states:
+ * <ul>
+ *   <li>pending: the journal holds the settlement and its new payment; nothing is applied.</li>
+ *   <li>committing: supply entries are marked settled and payments linked, in batches
+ *   committed by a {@link BatchPipeline}. Each update sets fixed values, so a batch can be
+ *   committed again safely.</li>
+ *   <li>committed: one transaction wrote the settlement, the new payment and its rollups,
+ *   took the outstanding amount off the farmer's balance and moved the journal here. It reads
+ *   the state first and only proceeds from committing, so it takes effect once however often
+ *   it is retried.</li>
+ * </ul>
+ * A settlement that fails while offline keeps its journal, and {@link #recoverInterrupted}
+ * resumes it later. Any other failure rolls it back: the journal moves to rolling_back, the
+ * marks this settlement made are undone, and it ends in rolled_back. The final transaction
+ * refuses a rolled back journal.
+ *
+ * Deleting a committed settlement moves its journal to deleting (creating one for settlements
+ * made before journals existed) before any mark is undone, so {@link #recoverInterrupted} can
+ * finish a delete that stopped part way.
+ */
+@Singleton
+public class SettlementExecutor {
+    private static final String TAG = "SettlementExecutor";
+    // A journal untouched this long belongs to a run that stopped, not one still going
+    private static final long STALE_AFTER_MS = 10 * 60 * 1000;
+
+    private final FirebaseFirestore firestore;
+    private final RollupRepository rollupRepository;
+    private final DocumentFetcher documentFetcher;
+    private final ServerAggregates serverAggregates;
+    private final Set<String> running = new HashSet<>();
+
+    @Inject
+    public SettlementExecutor(FirebaseManager firebaseManager, RollupRepository rollupRepository,
+                              DocumentFetcher documentFetcher, ServerAggregates serverAggregates) {
+        this.firestore = firebaseManager.getFirestore();
+        this.rollupRepository = rollupRepository;
+        this.documentFetcher = documentFetcher;
+        this.serverAggregates = serverAggregates;
+    }
+
+    /**
+     * Settle the given entries and payments.
+     *
+     * @param newPayment payment for the amount received now, or null; linked to the settlement
+     * @return completes with the settlement id once the journal is committed
+     */
+    public Task<String> execute(Settlement settlement, List<SupplyEntry> entries, List<Payment> payments,
+                                Payment newPayment) {
+        List<String> supplyIds = new ArrayList<>();
+        for (SupplyEntry entry : entries) {
+            if (entry.getId() != null) {
+                supplyIds.add(entry.getId());
+            }
+        }
+        List<String> paymentIds = new ArrayList<>();
+        for (Payment payment : payments) {
+            if (payment.getId() != null) {
+                paymentIds.add(payment.getId());
+            }
+        }
+        if (newPayment != null) {
+            paymentIds.add(newPayment.getId());
+        }
+        settlement.setSettledSupplyIds(supplyIds);
+        settlement.setSettledPaymentIds(paymentIds);
+
+        SettlementJournal journal = new SettlementJournal();
+        journal.setId(settlement.getId());
+        journal.setFamilyId(settlement.getFamilyId());
+        journal.setFarmerId(settlement.getFarmerId());
+        journal.setState(SettlementJournal.STATE_PENDING);
+        journal.setSettlement(settlement);
+        journal.setNewPayment(newPayment);
+        journal.setNewPaymentId(newPayment != null ? newPayment.getId() : null);
+        journal.setCreatedAt(new Date());
+        journal.setUpdatedAt(new Date());
+
+        running.add(journal.getId());
+        Task<String> result = journalRef(journal.getId()).set(journal)
+            .onSuccessTask(aVoid -> commit(journal, linkedSupplyIds(journal), linkedPaymentIds(journal)));
+        return finished(journal.getId(), result);
+    }
+
+    /**
+     * Finish a settlement whose journal is pending or committing. Marks are re-applied to the
+     * linked documents that still exist. Does nothing for a committed journal.
+     */
+    public Task<String> resume(String settlementId) {
+        if (!running.add(settlementId)) {
+            return Tasks.forException(new IllegalStateException("Settlement " + settlementId + " is running"));
+        }
+        Task<String> result = journalRef(settlementId).get().onSuccessTask(snapshot -> {
+            SettlementJournal journal = readJournal(snapshot);
+            if (journal == null) {
+                throw new IllegalStateException("No journal for settlement " + settlementId);
+            }
+            if (SettlementJournal.STATE_COMMITTED.equals(journal.getState())) {
+                return Tasks.forResult(settlementId);
+            }
+            if (!SettlementJournal.STATE_PENDING.equals(journal.getState())
+                    && !SettlementJournal.STATE_COMMITTING.equals(journal.getState())) {
+                throw new IllegalStateException("Settlement " + settlementId + " is " + journal.getState());
+            }
+            Task<List<SupplyEntry>> entries = documentFetcher.fetch(FirestoreCollections.SUPPLY_ENTRIES,
+                journal.getFamilyId(), linkedSupplyIds(journal), SupplyEntry.class);
+            Task<List<Payment>> payments = documentFetcher.fetch(FirestoreCollections.PAYMENTS,
+                journal.getFamilyId(), linkedPaymentIds(journal), Payment.class);
+            return Tasks.whenAllSuccess(entries, payments).onSuccessTask(results ->
+                commit(journal, idsOf(entries.getResult(), null), paymentIdsOf(payments.getResult(), null)));
+        });
+        return finished(settlementId, result);
+    }
+
+    /**
+     * Undo a settlement whose journal is not committed: entries and payments it marked are
+     * reverted and the journal ends in rolled_back. Safe to call again after an interruption.
+     * A committed settlement is reverted with {@link SettlementRepository#deleteSettlement}.
+     */
+    public Task<Void> rollBack(String settlementId) {
+        if (!running.add(settlementId)) {
+            return Tasks.forException(new IllegalStateException("Settlement " + settlementId + " is running"));
+        }
+        return finished(settlementId, rollingBack(settlementId));
+    }
+
+    /**
+     * Revert a committed settlement and delete it. The journal moves to deleting first; entries
+     * and payments linked to it are then reverted in batches, as in a rollback, and one
+     * transaction deletes the settlement, its journal and the payment it created, and adds the
+     * outstanding amount back to the farmer's balance. Safe to call again after an interruption,
+     * and does nothing once the settlement is gone.
+     */
+    public Task<Void> delete(Settlement settlement) {
+        String settlementId = settlement.getId();
+        if (!running.add(settlementId)) {
+            return Tasks.forException(new IllegalStateException("Settlement " + settlementId + " is running"));
+        }
+        Task<List<Payment>> payments = documentFetcher.fetch(FirestoreCollections.PAYMENTS,
+            settlement.getFamilyId(), settlement.getSettledPaymentIds(), Payment.class);
+        Task<Void> result = payments
+            .onSuccessTask(fetched -> startDeleting(settlement, legacyNewPaymentId(fetched)))
+            .onSuccessTask(journal -> {
+                if (journal == null) {
+                    return Tasks.forResult(null);
+                }
+                // The payment recorded for the amount received is deleted, not unlinked
+                List<Payment> created = new ArrayList<>();
+                List<Payment> linked = new ArrayList<>();
+                for (Payment payment : payments.getResult()) {
+                    if (payment.getId().equals(journal.getNewPaymentId())) {
+                        created.add(payment);
+                    } else {
+                        linked.add(payment);
+                    }
+                }
+                return documentFetcher.fetch(FirestoreCollections.SUPPLY_ENTRIES, settlement.getFamilyId(),
+                        settlement.getSettledSupplyIds(), SupplyEntry.class)
+                    .onSuccessTask(entries -> unmark(idsOf(entries, settlementId), paymentIdsOf(linked, settlementId)))
+                    .onSuccessTask(count -> serverAggregates.afterWrite(remove(settlement, created),
+                        FirestoreCollections.PAYMENTS, FirestoreCollections.FARMERS, FirestoreCollections.ROLLUPS));
+            });
+        return finished(settlementId, result);
+    }
+
+    /**
+     * Move the journal of a settlement being deleted to deleting, writing a new journal for a
+     * settlement that has none.
+     *
+     * @param legacyNewPaymentId the payment the settlement created, recorded in a new journal
+     * @return completes with the journal, or null if the settlement is already gone
+     */
+    private Task<SettlementJournal> startDeleting(Settlement settlement, String legacyNewPaymentId) {
+        DocumentReference ref = journalRef(settlement.getId());
+        DocumentReference settlementRef = firestore.collection(FirestoreCollections.SETTLEMENTS)
+            .document(settlement.getId());
+        return firestore.runTransaction(transaction -> {
+            SettlementJournal journal = readJournal(transaction.get(ref));
+            if (!transaction.get(settlementRef).exists()) {
+                return null;
+            }
+            if (journal != null) {
+                transaction.update(ref, "state", SettlementJournal.STATE_DELETING, "updatedAt", new Date());
+                return journal;
+            }
+            journal = new SettlementJournal();
+            journal.setId(settlement.getId());
+            journal.setFamilyId(settlement.getFamilyId());
+            journal.setFarmerId(settlement.getFarmerId());
+            journal.setState(SettlementJournal.STATE_DELETING);
+            journal.setSettlement(settlement);
+            journal.setNewPaymentId(legacyNewPaymentId);
+            journal.setCreatedAt(new Date());
+            journal.setUpdatedAt(new Date());
+            transaction.set(ref, journal);
+            return journal;
+        });
+    }
+
+    /**
+     * The payment a settlement made before journals existed created for the amount received.
+     * Those settlements recorded it only in the remark.
+     */
+    private static String legacyNewPaymentId(List<Payment> payments) {
+        for (Payment payment : payments) {
+            if (payment.getRemarks() != null && payment.getRemarks().startsWith("Settlement:")) {
+                return payment.getId();
+            }
+        }
+        return null;
+    }
+
+    private Task<Void> rollingBack(String settlementId) {
+        DocumentReference ref = journalRef(settlementId);
+        return firestore.runTransaction(transaction -> {
+            SettlementJournal journal = readJournal(transaction.get(ref));
+            if (journal == null || SettlementJournal.STATE_ROLLED_BACK.equals(journal.getState())) {
+                return null;
+            }
+            if (SettlementJournal.STATE_COMMITTED.equals(journal.getState())
+                    || SettlementJournal.STATE_DELETING.equals(journal.getState())) {
+                throw new FirebaseFirestoreException("Settlement " + settlementId + " is " + journal.getState(),
+                    FirebaseFirestoreException.Code.FAILED_PRECONDITION);
+            }
+            transaction.update(ref, "state", SettlementJournal.STATE_ROLLING_BACK, "updatedAt", new Date());
+            return journal;
+        }).onSuccessTask(journal -> journal == null ? Tasks.<Void>forResult(null) : revert(journal));
+    }
+
+    /**
+     * Resume (or finish rolling back or deleting) the family's settlements whose run stopped part way,
+     * e.g. because the app was killed. Journals updated recently are left to their own run.
+     *
+     * @return completes when every recovery attempt has finished, successful or not
+     */
+    public Task<Void> recoverInterrupted(String familyId) {
+        return firestore.collection(FirestoreCollections.SETTLEMENT_JOURNAL)
+            .whereEqualTo("familyId", familyId)
+            .whereIn("state", Arrays.asList(SettlementJournal.STATE_PENDING,
+                SettlementJournal.STATE_COMMITTING, SettlementJournal.STATE_ROLLING_BACK,
+                SettlementJournal.STATE_DELETING))
+            .get()
+            .continueWithTask(task -> {
+                List<Task<?>> recoveries = new ArrayList<>();
+                if (!task.isSuccessful()) {
+                    Log.e(TAG, "Failed to read settlement journals", task.getException());
+                    return Tasks.forResult(null);
+                }
+                long staleBefore = System.currentTimeMillis() - STALE_AFTER_MS;
+                for (DocumentSnapshot doc : task.getResult().getDocuments()) {
+                    SettlementJournal journal = readJournal(doc);
+                    Date updatedAt = journal.getUpdatedAt();
+                    if (running.contains(journal.getId())
+                            || (updatedAt != null && updatedAt.getTime() > staleBefore)) {
+                        continue;
+                    }
+                    Log.d(TAG, "Recovering settlement " + journal.getId() + " from " + journal.getState());
+                    if (SettlementJournal.STATE_ROLLING_BACK.equals(journal.getState())) {
+                        recoveries.add(rollBack(journal.getId()));
+                    } else if (SettlementJournal.STATE_DELETING.equals(journal.getState())) {
+                        recoveries.add(delete(journal.getSettlement()));
+                    } else {
+                        recoveries.add(resume(journal.getId()));
+                    }
+                }
+                return Tasks.whenAllComplete(recoveries).continueWith(done -> null);
+            });
+    }
+
+    private Task<String> commit(SettlementJournal journal, List<String> supplyIds, List<String> paymentIds) {
+        String settlementId = journal.getId();
+        Date now = new Date();
+        Map<String, Object> settled = new HashMap<>();
+        settled.put("settlementStatus", "settled");
+        settled.put("settlementId", settlementId);
+        settled.put("updatedAt", now);
+        Map<String, Object> linked = new HashMap<>();
+        linked.put("settlementId", settlementId);
+        linked.put("unlinked", false);
+        linked.put("updatedAt", now);
+
+        return journalRef(settlementId)
+            .update("state", SettlementJournal.STATE_COMMITTING, "updatedAt", now)
+            .onSuccessTask(aVoid -> updateAll(FirestoreCollections.SUPPLY_ENTRIES, supplyIds, settled))
+            .onSuccessTask(count -> updateAll(FirestoreCollections.PAYMENTS, paymentIds, linked))
+            .onSuccessTask(aVoid -> serverAggregates.afterWrite(finish(journal),
+                FirestoreCollections.PAYMENTS, FirestoreCollections.FARMERS, FirestoreCollections.ROLLUPS))
+            .continueWithTask(task -> {
+                if (task.isSuccessful()) {
+                    return Tasks.forResult(settlementId);
+                }
+                Exception failure = task.getException();
+                if (isOffline(failure)) {
+                    Log.e(TAG, "Settlement " + settlementId + " stopped; its journal allows resuming it", failure);
+                    return Tasks.forException(failure);
+                }
+                Log.e(TAG, "Settlement " + settlementId + " failed; rolling it back", failure);
+                return rollingBack(settlementId).continueWithTask(rolledBack -> {
+                    if (!rolledBack.isSuccessful()) {
+                        Log.e(TAG, "Rollback of settlement " + settlementId + " stopped", rolledBack.getException());
+                    }
+                    return Tasks.<String>forException(failure);
+                });
+            });
+    }
+
+    // Failures that a later resume can get past; anything else will fail again the same way
+    private static boolean isOffline(Exception e) {
+        if (!(e instanceof FirebaseFirestoreException)) {
+            return false;
+        }
+        FirebaseFirestoreException.Code code = ((FirebaseFirestoreException) e).getCode();
+        return code == FirebaseFirestoreException.Code.UNAVAILABLE
+            || code == FirebaseFirestoreException.Code.DEADLINE_EXCEEDED;
+    }
+
+    /**
+     * Write the settlement, the new payment and the balance change, and mark the journal
+     * committed, all in one transaction that runs only from the committing state. The
+     * outstanding amount is taken off as an increment, so balance changes made meanwhile by
+     * other writers are kept.
+     */
+    private Task<Void> finish(SettlementJournal journal) {
+        DocumentReference ref = journalRef(journal.getId());
+        Settlement settlement = journal.getSettlement();
+        Payment newPayment = journal.getNewPayment();
+        return firestore.runTransaction(transaction -> {
+            String state = transaction.get(ref).getString("state");
+            if (SettlementJournal.STATE_COMMITTED.equals(state)) {
+                return null;
+            }
+            if (!SettlementJournal.STATE_COMMITTING.equals(state)) {
+                throw new FirebaseFirestoreException("Settlement " + journal.getId() + " is " + state,
+                    FirebaseFirestoreException.Code.ABORTED);
+            }
+            transaction.set(firestore.collection(FirestoreCollections.SETTLEMENTS).document(journal.getId()),
+                settlement);
+            if (newPayment != null) {
+                transaction.set(firestore.collection(FirestoreCollections.PAYMENTS).document(newPayment.getId()),
+                    newPayment);
+                rollupRepository.applyPayment(transaction, newPayment, 1);
+            }
+            transaction.update(firestore.collection(FirestoreCollections.FARMERS).document(journal.getFarmerId()),
+                "balance", FieldValue.increment(-settlement.getOutstandingAmount()),
+                "updatedAt", new Date());
+            transaction.update(ref, "state", SettlementJournal.STATE_COMMITTED, "updatedAt", new Date());
+            return null;
+        });
+    }
+
+    /**
+     * Delete a settlement whose marks are undone, with its journal and the payments it created,
+     * and add its outstanding amount back to the farmer's balance. Does nothing once the
+     * settlement is gone, so the balance is restored once however often it is retried.
+     */
+    private Task<Void> remove(Settlement settlement, List<Payment> created) {
+        DocumentReference ref = firestore.collection(FirestoreCollections.SETTLEMENTS).document(settlement.getId());
+        return firestore.runTransaction(transaction -> {
+            if (!transaction.get(ref).exists()) {
+                return null;
+            }
+            for (Payment payment : created) {
+                transaction.delete(firestore.collection(FirestoreCollections.PAYMENTS).document(payment.getId()));
+                rollupRepository.applyPayment(transaction, payment, -1);
+            }
+            transaction.update(firestore.collection(FirestoreCollections.FARMERS).document(settlement.getFarmerId()),
+                "balance", FieldValue.increment(settlement.getOutstandingAmount()),
+                "updatedAt", new Date());
+            transaction.delete(ref);
+            transaction.delete(journalRef(settlement.getId()));
+            return null;
+        });
+    }
+
+    /**
+     * Undo the marks of a journal in rolling_back state. Only documents still pointing at this
+     * settlement are touched, so entries settled again since are left alone.
+     */
+    private Task<Void> revert(SettlementJournal journal) {
+        String settlementId = journal.getId();
+        Task<List<SupplyEntry>> entries = documentFetcher.fetch(FirestoreCollections.SUPPLY_ENTRIES,
+            journal.getFamilyId(), linkedSupplyIds(journal), SupplyEntry.class);
+        Task<List<Payment>> payments = documentFetcher.fetch(FirestoreCollections.PAYMENTS,
+            journal.getFamilyId(), linkedPaymentIds(journal), Payment.class);
+
+        return Tasks.whenAllSuccess(entries, payments)
+            .onSuccessTask(results -> unmark(idsOf(entries.getResult(), settlementId),
+                paymentIdsOf(payments.getResult(), settlementId)))
+            .onSuccessTask(aVoid -> journalRef(settlementId)
+                .update("state", SettlementJournal.STATE_ROLLED_BACK, "updatedAt", new Date()));
+    }
+
+    /**
+     * Mark the entries unsettled again and the payments unlinked, in batches
+     */
+    private Task<Integer> unmark(List<String> supplyIds, List<String> paymentIds) {
+        Date now = new Date();
+        Map<String, Object> unsettled = new HashMap<>();
+        unsettled.put("settlementStatus", "unsettled");
+        unsettled.put("settlementId", FieldValue.delete());
+        unsettled.put("updatedAt", now);
+        Map<String, Object> unlinked = new HashMap<>();
+        unlinked.put("settlementId", FieldValue.delete());
+        unlinked.put("unlinked", true);
+        unlinked.put("updatedAt", now);
+
+        return updateAll(FirestoreCollections.SUPPLY_ENTRIES, supplyIds, unsettled)
+            .onSuccessTask(count -> updateAll(FirestoreCollections.PAYMENTS, paymentIds, unlinked));
+    }
+
+    /**
+     * Apply the same update to every listed document, in batches committed by a
+     * {@link BatchPipeline}
+     */
+    private Task<Integer> updateAll(String collection, List<String> ids, Map<String, Object> fields) {
+        return BatchPipeline.run(TaskExecutors.MAIN_THREAD, BatchPipeline.items(firestore, ids, 1,
+            (batch, id) -> batch.update(firestore.collection(collection).document(id), fields)), null);
+    }
+
+    private <T> Task<T> finished(String settlementId, Task<T> result) {
+        result.addOnCompleteListener(task -> running.remove(settlementId));
+        return result;
+    }
+
+    private DocumentReference journalRef(String settlementId) {
+        return firestore.collection(FirestoreCollections.SETTLEMENT_JOURNAL).document(settlementId);
+    }
+
+    private static SettlementJournal readJournal(DocumentSnapshot snapshot) {
+        SettlementJournal journal = snapshot.exists() ? snapshot.toObject(SettlementJournal.class) : null;
+        if (journal != null) {
+            // Nested objects do not carry their own document ids
+            journal.getSettlement().setId(journal.getId());
+            if (journal.getNewPayment() != null) {
+                journal.getNewPayment().setId(journal.getNewPaymentId());
+            }
+        }
+        return journal;
+    }
+
+    private static List<String> linkedSupplyIds(SettlementJournal journal) {
+        return journal.getSettlement().getSettledSupplyIds();
+    }
+
+    // The new payment is written by the final transaction, not linked in chunks
+    private static List<String> linkedPaymentIds(SettlementJournal journal) {
+        List<String> ids = new ArrayList<>(journal.getSettlement().getSettledPaymentIds());
+        ids.remove(journal.getNewPaymentId());
+        return ids;
+    }
+
+    /**
+     * Ids of the entries, or of those linked to {@code settlementId} when it is not null
+     */
+    private static List<String> idsOf(List<SupplyEntry> entries, String settlementId) {
+        List<String> ids = new ArrayList<>();
+        for (SupplyEntry entry : entries) {
+            if (settlementId == null || settlementId.equals(entry.getSettlementId())) {
+                ids.add(entry.getId());
+            }
+        }
+        return ids;
+    }
+
+    private static List<String> paymentIdsOf(List<Payment> payments, String settlementId) {
+        List<String> ids = new ArrayList<>();
+        for (Payment payment : payments) {
+            if (settlementId == null || settlementId.equals(payment.getSettlementId())) {
+                ids.add(payment.getId());
+            }
+        }
+        return ids;
+    }
+}
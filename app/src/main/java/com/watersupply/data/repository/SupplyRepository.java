@@ -1,16 +1,28 @@
 package com.watersupply.data.repository;
 
 import androidx.lifecycle.LiveData;
-import androidx.lifecycle.MutableLiveData;
 
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.Filter;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.Query;
+import com.watersupply.data.firebase.BulkDeleter;
+import com.watersupply.data.firebase.ChangeSet;
+import com.watersupply.data.firebase.CoalescingWriteQueue;
 import com.watersupply.data.firebase.FirebaseManager;
+import com.watersupply.data.firebase.FirestoreAggregateLiveData;
+import com.watersupply.data.firebase.FirestoreChangeLiveData;
+import com.watersupply.data.firebase.FirestoreCollections;
+import com.watersupply.data.firebase.FirestoreQueryHub;
 import com.watersupply.data.firebase.FirestoreQueryLiveData;
+import com.watersupply.data.firebase.IncrementalAggregate;
+import com.watersupply.data.firebase.PagedQueryLiveData;
+import com.watersupply.data.firebase.ServerAggregates;
 import com.watersupply.data.models.SupplyEntry;
 import com.watersupply.utils.BillingCalculator;
 
+import java.util.Arrays;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -22,18 +34,96 @@ import javax.inject.Singleton;
 @Singleton
 public class SupplyRepository {
     private final FirebaseFirestore firestore;
+    private final FirestoreQueryHub queryHub;
+    private final ServerAggregates serverAggregates;
+    private final RollupRepository rollupRepository;
+    private final CoalescingWriteQueue writeQueue;
+    private final BulkDeleter bulkDeleter;
+    
+    // The entry document plus its daily and monthly rollups; an edit also reverses the old rollups
+    private static final int ENTRY_WRITE_OPERATIONS = 3;
+    private static final int ROLLUP_OPERATIONS = 2;
     
     @Inject
-    public SupplyRepository(FirebaseManager firebaseManager) {
+    public SupplyRepository(FirebaseManager firebaseManager, FirestoreQueryHub queryHub,
+                            ServerAggregates serverAggregates, RollupRepository rollupRepository,
+                            CoalescingWriteQueue writeQueue, BulkDeleter bulkDeleter) {
         this.firestore = firebaseManager.getFirestore();
+        this.queryHub = queryHub;
+        this.serverAggregates = serverAggregates;
+        this.rollupRepository = rollupRepository;
+        this.writeQueue = writeQueue;
+        this.bulkDeleter = bulkDeleter;
     }
     
-    public LiveData<List<SupplyEntry>> getAllSupplyEntries(String familyId) {
-        // Revert to simple query to avoid index errors. Migration will fix data.
-        Query query = firestore.collection("supply_entries")
+    /**
+     * All supply entries of a family. The list, count and totals share this query's listener.
+     */
+    private Query familyEntriesQuery(String familyId) {
+        // Left unordered: every family-wide listener and aggregate shares this one query
+        return firestore.collection("supply_entries")
             .whereEqualTo("familyId", familyId);
-            
-        return new FirestoreQueryLiveData<>(query, SupplyEntry.class);
+    }
+    
+    /**
+     * Entries of a family dated within [startDate, endDate]; either bound may be null.
+     */
+    private Query dateRangeQuery(String familyId, String startDate, String endDate) {
+        Query query = familyEntriesQuery(familyId);
+        if (startDate != null) {
+            query = query.whereGreaterThanOrEqualTo("date", startDate);
+        }
+        if (endDate != null) {
+            // Dates may carry a time after the day
+            query = query.whereLessThanOrEqualTo("date", endDate + "\uf8ff");
+        }
+        return query;
+    }
+    
+    /**
+     * Supply history newest first, one page at a time. Needs the (familyId, date desc,
+     * __name__ desc) index from firestore.indexes.json.
+     */
+    public PagedQueryLiveData<SupplyEntry> getSupplyEntryPages(String familyId, String startDate,
+                                                             String endDate, int pageSize) {
+        Query query = dateRangeQuery(familyId, startDate, endDate)
+            .orderBy("date", Query.Direction.DESCENDING)
+            .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+        return new PagedQueryLiveData<>(queryHub, query, SupplyEntry.class, pageSize);
+    }
+    
+    /**
+     * Every entry in the date range, read once (for export, where loaded pages are not enough).
+     */
+    public Task<List<SupplyEntry>> fetchSupplyEntries(String familyId, String startDate, String endDate) {
+        return dateRangeQuery(familyId, startDate, endDate).get()
+            .continueWith(task -> task.getResult().toObjects(SupplyEntry.class));
+    }
+    
+    public LiveData<Integer> getSupplyEntryCount(String familyId, String startDate, String endDate) {
+        return serverAggregates.count(FirestoreCollections.SUPPLY_ENTRIES,
+            dateRangeQuery(familyId, startDate, endDate));
+    }
+    
+    public LiveData<Double> getTotalTimeUsed(String familyId, String startDate, String endDate) {
+        return serverAggregates.sumHours(FirestoreCollections.SUPPLY_ENTRIES,
+            dateRangeQuery(familyId, startDate, endDate), "totalTimeUsed");
+    }
+    
+    public LiveData<Double> getTotalRevenue(String familyId, String startDate, String endDate) {
+        return serverAggregates.sumAmount(FirestoreCollections.SUPPLY_ENTRIES,
+            dateRangeQuery(familyId, startDate, endDate), "amount");
+    }
+    
+    public LiveData<List<SupplyEntry>> getAllSupplyEntries(String familyId) {
+        return new FirestoreQueryLiveData<>(queryHub, familyEntriesQuery(familyId), SupplyEntry.class);
+    }
+    
+    /**
+     * All supply entries of a family as change sets, for lists that apply edits in place.
+     */
+    public LiveData<ChangeSet<SupplyEntry>> getAllSupplyEntryChanges(String familyId) {
+        return new FirestoreChangeLiveData<>(queryHub, familyEntriesQuery(familyId), SupplyEntry.class);
     }
     
     public LiveData<List<SupplyEntry>> getSupplyEntriesByFarmer(String familyId, String farmerId) {
@@ -41,7 +131,7 @@ public class SupplyRepository {
             .whereEqualTo("familyId", familyId)
             .whereEqualTo("farmerId", farmerId);
             
-        return new FirestoreQueryLiveData<>(query, SupplyEntry.class);
+        return new FirestoreQueryLiveData<>(queryHub, query, SupplyEntry.class);
     }
 
     public LiveData<List<SupplyEntry>> getDraftSupplyEntries(String familyId) {
@@ -49,70 +139,27 @@ public class SupplyRepository {
             .whereEqualTo("familyId", familyId)
             .whereEqualTo("status", "draft");
             
-        return new FirestoreQueryLiveData<>(query, SupplyEntry.class);
+        return new FirestoreQueryLiveData<>(queryHub, query, SupplyEntry.class);
     }
     
     public LiveData<Integer> getSupplyEntryCount(String familyId) {
-        MutableLiveData<Integer> countLiveData = new MutableLiveData<>();
-        
-        firestore.collection("supply_entries")
-            .whereEqualTo("familyId", familyId)
-            .addSnapshotListener((querySnapshot, error) -> {
-                if (error != null || querySnapshot == null) {
-                    countLiveData.setValue(0);
-                    return;
-                }
-                countLiveData.setValue(querySnapshot.size());
-            });
-            
-        return countLiveData;
+        return serverAggregates.count(FirestoreCollections.SUPPLY_ENTRIES, familyEntriesQuery(familyId));
     }
     
     public LiveData<Double> getTotalTimeUsed(String familyId, String startDate) {
-        MutableLiveData<Double> totalTimeLiveData = new MutableLiveData<>();
-        
-        // Note: Firestore doesn't support aggregation queries in real-time listeners easily
-        // We'll fetch and calculate client-side for now
-        firestore.collection("supply_entries")
-            .whereEqualTo("familyId", familyId)
-            .whereGreaterThanOrEqualTo("date", startDate)
-            .addSnapshotListener((querySnapshot, error) -> {
-                if (error != null || querySnapshot == null) {
-                    totalTimeLiveData.setValue(0.0);
-                    return;
-                }
-                
-                double total = 0.0;
-                for (SupplyEntry entry : querySnapshot.toObjects(SupplyEntry.class)) {
-                    if (entry.getTotalTimeUsed() != null) {
-                        total = BillingCalculator.addHours(total, entry.getTotalTimeUsed());
-                    }
-                }
-                totalTimeLiveData.setValue(total);
-            });
-            
-        return totalTimeLiveData;
+        // The date bound is applied per document so the family listener can be shared
+        return FirestoreAggregateLiveData.sum(queryHub, familyEntriesQuery(familyId), (doc, out) -> {
+            String date = doc.getString("date");
+            if (date != null && date.compareTo(startDate) >= 0) {
+                out[0] = BillingCalculator.toHundredths(IncrementalAggregate.number(doc, "totalTimeUsed"));
+            }
+        }, BillingCalculator::fromHundredths);
     }
     
     public LiveData<Double> getTotalRevenue(String familyId) {
-        MutableLiveData<Double> revenueLiveData = new MutableLiveData<>();
-        
-        firestore.collection("supply_entries")
-            .whereEqualTo("familyId", familyId)
-            .addSnapshotListener((querySnapshot, error) -> {
-                if (error != null || querySnapshot == null) {
-                    revenueLiveData.setValue(0.0);
-                    return;
-                }
-                
-                double total = 0.0;
-                for (SupplyEntry entry : querySnapshot.toObjects(SupplyEntry.class)) {
-                    total = BillingCalculator.addAmounts(total, entry.getAmount());
-                }
-                revenueLiveData.setValue(total);
-            });
-            
-        return revenueLiveData;
+        return FirestoreAggregateLiveData.sum(queryHub, familyEntriesQuery(familyId),
+            (doc, out) -> out[0] = BillingCalculator.toPaise(IncrementalAggregate.number(doc, "amount")),
+            BillingCalculator::fromPaise);
     }
     
     public void addSupplyEntry(SupplyEntry entry) {
@@ -131,72 +178,79 @@ public class SupplyRepository {
         }
         entry.setUpdatedAt(new java.util.Date());
         
-        firestore.collection("supply_entries").document(entry.getId())
-            .set(entry)
-            .addOnSuccessListener(aVoid -> {
-                // Update farmer balance: Add the supply amount (increase debt)
-                updateFarmerBalance(entry.getFarmerId(), entry.getAmount());
-            });
+        // The entry, its daily/monthly rollups and the farmer's balance (debt) are one batch
+        Task<Void> commit = writeQueue.submit(ENTRY_WRITE_OPERATIONS, batch -> {
+            batch.set(firestore.collection("supply_entries").document(entry.getId()), entry);
+            rollupRepository.applySupplyEntry(batch, entry, 1);
+        }, balanceChanges(entry.getFarmerId(), entry.getAmount()));
+        serverAggregates.afterWrite(commit,
+            FirestoreCollections.SUPPLY_ENTRIES, FirestoreCollections.ROLLUPS, FirestoreCollections.FARMERS);
     }
     
-    public void updateSupplyEntry(SupplyEntry entry, double oldAmount, String oldFarmerId) {
+    /**
+     * @param oldDate  date of the entry before editing, to move its rollup contribution
+     * @param oldHours total hours of the entry before editing
+     */
+    public void updateSupplyEntry(SupplyEntry entry, double oldAmount, String oldFarmerId,
+                                  String oldDate, Double oldHours) {
         entry.setUpdatedAt(new java.util.Date());
         
-        firestore.collection("supply_entries").document(entry.getId())
-            .set(entry)
-            .addOnSuccessListener(aVoid -> {
-                // Adjust farmer balance
-                if (oldFarmerId != null && !oldFarmerId.equals(entry.getFarmerId())) {
-                    // Farmer changed
-                    // 1. Remove old amount from old farmer (decrease debt)
-                    updateFarmerBalance(oldFarmerId, -oldAmount);
-                    // 2. Add new amount to new farmer (increase debt)
-                    updateFarmerBalance(entry.getFarmerId(), entry.getAmount());
-                } else {
-                    // Farmer same
-                    // Change = newAmount - oldAmount
-                    double balanceChange = entry.getAmount() - oldAmount;
-                    if (balanceChange != 0) {
-                        updateFarmerBalance(entry.getFarmerId(), balanceChange);
-                    }
-                }
-            });
+        CoalescingWriteQueue.Increment[] balanceChanges;
+        if (oldFarmerId != null && !oldFarmerId.equals(entry.getFarmerId())) {
+            // Farmer changed: move the debt from the old farmer to the new one
+            balanceChanges = concat(balanceChanges(oldFarmerId, -oldAmount),
+                balanceChanges(entry.getFarmerId(), entry.getAmount()));
+        } else {
+            balanceChanges = balanceChanges(entry.getFarmerId(), entry.getAmount() - oldAmount);
+        }
+        
+        Task<Void> commit = writeQueue.submit(ENTRY_WRITE_OPERATIONS + ROLLUP_OPERATIONS, batch -> {
+            batch.set(firestore.collection("supply_entries").document(entry.getId()), entry);
+            rollupRepository.applySupplyEntry(batch, entry.getFamilyId(), oldDate, oldAmount, oldHours, -1);
+            rollupRepository.applySupplyEntry(batch, entry, 1);
+        }, balanceChanges);
+        serverAggregates.afterWrite(commit,
+            FirestoreCollections.SUPPLY_ENTRIES, FirestoreCollections.ROLLUPS, FirestoreCollections.FARMERS);
     }
     
     public void deleteSupplyEntry(SupplyEntry entry) {
         if (entry.getId() != null) {
-            firestore.collection("supply_entries").document(entry.getId())
-                .delete()
-                .addOnSuccessListener(aVoid -> {
-                    // Revert farmer balance: subtract the deleted supply amount
-                    // Supply entry increases balance (debt), so deleting it should decrease it.
-                    updateFarmerBalance(entry.getFarmerId(), -entry.getAmount());
-                });
+            // Deleting a supply entry takes its amount back off the farmer's debt, in the same batch
+            Task<Void> commit = writeQueue.submit(ENTRY_WRITE_OPERATIONS, batch -> {
+                batch.delete(firestore.collection("supply_entries").document(entry.getId()));
+                rollupRepository.applySupplyEntry(batch, entry, -1);
+            }, balanceChanges(entry.getFarmerId(), -entry.getAmount()));
+            serverAggregates.afterWrite(commit,
+                FirestoreCollections.SUPPLY_ENTRIES, FirestoreCollections.ROLLUPS, FirestoreCollections.FARMERS);
         }
     }
 
-    private void updateFarmerBalance(String farmerId, double amountChange) {
-        // We need to access FarmerRepository to update balance.
-        // Since we can't easily inject it due to circular dependency risk if not careful,
-        // we'll use a direct Firestore update here or we need to refactor.
-        // Given the current architecture in PaymentRepository, it seems FarmerRepository is injected there.
-        // Let's check imports.
-        // We need to add FarmerRepository to constructor.
-        
-        firestore.collection("farmers").document(farmerId)
-            .update("balance", com.google.firebase.firestore.FieldValue.increment(amountChange));
+    /**
+     * Balance increment of a farmer, or none when the entry has no farmer
+     */
+    private CoalescingWriteQueue.Increment[] balanceChanges(String farmerId, double amountChange) {
+        if (farmerId == null) {
+            return new CoalescingWriteQueue.Increment[0];
+        }
+        return new CoalescingWriteQueue.Increment[] {
+            CoalescingWriteQueue.increment(firestore.collection("farmers").document(farmerId), "balance", amountChange)
+        };
+    }
+
+    private static CoalescingWriteQueue.Increment[] concat(CoalescingWriteQueue.Increment[] first,
+                                                           CoalescingWriteQueue.Increment[] second) {
+        CoalescingWriteQueue.Increment[] all = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        return all;
     }
     
-    public void deleteAllSupplyEntries(String familyId) {
-        // Warning: This is a heavy operation in Firestore as it requires deleting documents one by one
-        // For now, we'll just query and delete in a batch
-        firestore.collection("supply_entries")
-            .whereEqualTo("familyId", familyId)
-            .get()
-            .addOnSuccessListener(querySnapshot -> {
-                for (com.google.firebase.firestore.DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                    doc.getReference().delete();
-                }
-            });
+    /**
+     * Delete every supply entry of a family in chunked batches. Rollups and balances are
+     * left alone; callers clearing a family delete those too.
+     */
+    public BulkDeleter.Job deleteAllSupplyEntries(String familyId) {
+        BulkDeleter.Job job = bulkDeleter.delete(familyEntriesQuery(familyId));
+        serverAggregates.afterWrite(job.getResult(), FirestoreCollections.SUPPLY_ENTRIES);
+        return job;
     }
 }
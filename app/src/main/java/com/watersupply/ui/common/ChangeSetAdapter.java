@@ -0,0 +1,191 @@
+package com.watersupply.ui.common;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.BatchingListUpdateCallback;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.watersupply.data.firebase.ChangeSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+/**
+ * RecyclerView adapter that can apply a {@link ChangeSet} directly instead of diffing lists.
+ *
+ * Items are kept filtered and sorted the way the screen shows them. For each document change
+ * the old row is found and the new one placed by binary search, and the result is dispatched
+ * as item range notifications, so one edit costs O(log n) plus a memory move rather than a
+ * DiffUtil pass over the whole list. Full lists (first load, filter or sort change) are still
+ * diffed in the background like ListAdapter does, and {@link #submitList} keeps working for
+ * screens that do not use change sets.
+ *
+ * @param <T> The model class shown in the rows.
+ */
+public abstract class ChangeSetAdapter<T, VH extends RecyclerView.ViewHolder> extends RecyclerView.Adapter<VH> {
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final DiffUtil.ItemCallback<T> itemCallback;
+    private List<T> items = new ArrayList<>();
+    private Comparator<? super T> order;
+    private int generation;
+    private boolean diffPending;
+
+    protected ChangeSetAdapter(@NonNull DiffUtil.ItemCallback<T> itemCallback) {
+        this.itemCallback = itemCallback;
+    }
+
+    public T getItem(int position) {
+        return items.get(position);
+    }
+
+    @Override
+    public int getItemCount() {
+        return items.size();
+    }
+
+    public List<T> getCurrentList() {
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * Show a complete list in the given order, diffing against the current rows.
+     */
+    public void submitList(List<T> list) {
+        order = null; // Rows are in the caller's order, so the next change set starts over
+        submit(list);
+    }
+
+    private void submit(List<T> list) {
+        List<T> newItems = list != null ? new ArrayList<>(list) : new ArrayList<>();
+        List<T> oldItems = items;
+        int submission = ++generation;
+
+        if (oldItems.isEmpty() || newItems.isEmpty()) {
+            // Nothing to diff against
+            diffPending = false;
+            items = newItems;
+            if (!oldItems.isEmpty()) {
+                notifyItemRangeRemoved(0, oldItems.size());
+            }
+            if (!newItems.isEmpty()) {
+                notifyItemRangeInserted(0, newItems.size());
+            }
+            return;
+        }
+
+        diffPending = true;
+        DIFF_EXECUTOR.execute(() -> {
+            DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                @Override
+                public int getOldListSize() {
+                    return oldItems.size();
+                }
+
+                @Override
+                public int getNewListSize() {
+                    return newItems.size();
+                }
+
+                @Override
+                public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                    return itemCallback.areItemsTheSame(oldItems.get(oldPosition), newItems.get(newPosition));
+                }
+
+                @Override
+                public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                    return itemCallback.areContentsTheSame(oldItems.get(oldPosition), newItems.get(newPosition));
+                }
+            });
+            handler.post(() -> {
+                if (submission != generation) {
+                    return; // A newer list was submitted meanwhile
+                }
+                diffPending = false;
+                items = newItems;
+                result.dispatchUpdatesTo(ChangeSetAdapter.this);
+            });
+        });
+    }
+
+    /**
+     * Apply a change set to the rows.
+     *
+     * @param visible which items the screen shows; must only change together with a reset
+     * @param order   how rows are sorted; must be a total order (break ties on the id)
+     */
+    public void applyChanges(ChangeSet<T> changeSet, Predicate<? super T> visible, Comparator<? super T> order) {
+        if (changeSet.isReset() || diffPending || order != this.order) {
+            this.order = order;
+            submit(select(changeSet.getItems(), visible, order));
+            return;
+        }
+
+        BatchingListUpdateCallback updates = new BatchingListUpdateCallback(new AdapterListUpdateCallback(this));
+        for (ChangeSet.Change<T> change : changeSet.getChanges()) {
+            T oldItem = change.getOldItem();
+            T newItem = change.getNewItem();
+            int from = oldItem != null && visible.test(oldItem) ? indexOf(oldItem) : -1;
+            boolean show = newItem != null && visible.test(newItem);
+
+            if (from >= 0) {
+                items.remove(from);
+                if (show) {
+                    int to = insertionPoint(newItem);
+                    items.add(to, newItem);
+                    if (from != to) {
+                        updates.onMoved(from, to);
+                    }
+                    updates.onChanged(to, 1, null);
+                } else {
+                    updates.onRemoved(from, 1);
+                }
+            } else if (show) {
+                int to = insertionPoint(newItem);
+                items.add(to, newItem);
+                updates.onInserted(to, 1);
+            }
+        }
+        updates.dispatchLastEvent();
+    }
+
+    private int indexOf(T item) {
+        int found = Collections.binarySearch(items, item, order);
+        if (found >= 0 && itemCallback.areItemsTheSame(items.get(found), item)) {
+            return found;
+        }
+        // Not where its sort key says; fall back to a scan so the row is never left behind
+        for (int i = 0; i < items.size(); i++) {
+            if (itemCallback.areItemsTheSame(items.get(i), item)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int insertionPoint(T item) {
+        int found = Collections.binarySearch(items, item, order);
+        return found >= 0 ? found : -found - 1;
+    }
+
+    private static <T> List<T> select(List<T> items, Predicate<? super T> visible, Comparator<? super T> order) {
+        List<T> selected = new ArrayList<>();
+        for (T item : items) {
+            if (visible.test(item)) {
+                selected.add(item);
+            }
+        }
+        selected.sort(order);
+        return selected;
+    }
+}
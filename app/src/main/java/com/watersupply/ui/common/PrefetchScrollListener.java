@@ -0,0 +1,49 @@
+package com.watersupply.ui.common;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Asks for the next page of a paged list while the user is still a few rows away from its end,
+ * so the page is usually there before it is scrolled into view.
+ */
+public class PrefetchScrollListener extends RecyclerView.OnScrollListener {
+    public static final int DEFAULT_PREFETCH_DISTANCE = 15;
+
+    private final BooleanSupplier canLoadMore;
+    private final Runnable loadMore;
+    private final int prefetchDistance;
+
+    public PrefetchScrollListener(BooleanSupplier canLoadMore, Runnable loadMore) {
+        this(canLoadMore, loadMore, DEFAULT_PREFETCH_DISTANCE);
+    }
+
+    public PrefetchScrollListener(BooleanSupplier canLoadMore, Runnable loadMore, int prefetchDistance) {
+        this.canLoadMore = canLoadMore;
+        this.loadMore = loadMore;
+        this.prefetchDistance = prefetchDistance;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        prefetch(recyclerView);
+    }
+
+    /**
+     * Load the next page if the end of the list is in reach. Also call this after rows were
+     * added or removed, since a short first page may not fill the screen and never scroll.
+     */
+    public void prefetch(RecyclerView recyclerView) {
+        if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager) || !canLoadMore.getAsBoolean()) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (lastVisible >= layoutManager.getItemCount() - prefetchDistance) {
+            loadMore.run();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.watersupply.ui.dashboard;
 
+import android.app.DatePickerDialog;
 import android.content.Intent;
 import android.os.Bundle;
 import android.view.LayoutInflater;
@@ -23,8 +24,10 @@ import com.watersupply.ui.farmers.FarmerListActivity;
 import com.watersupply.ui.supply.SupplyListActivity;
 import com.watersupply.ui.payments.PaymentListActivity;
 import com.watersupply.utils.CurrencyFormatter;
+import com.watersupply.utils.EpochDays;
 
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
 
@@ -132,19 +135,72 @@ public class DashboardFragment extends Fragment {
         binding.revenueChart.setPinchZoom(false);
         binding.revenueChart.setExtraBottomOffset(10f);
         
-        binding.btnWeekly.setOnClickListener(v -> {
-            chartPeriod = "week";
-            binding.btnWeekly.setBackgroundColor(getResources().getColor(R.color.md_theme_light_primary, null));
-            binding.btnMonthly.setBackgroundColor(getResources().getColor(R.color.md_theme_light_surfaceVariant, null));
-            viewModel.loadChartData("week");
-        });
-        
-        binding.btnMonthly.setOnClickListener(v -> {
-            chartPeriod = "month";
-            binding.btnMonthly.setBackgroundColor(getResources().getColor(R.color.md_theme_light_primary, null));
-            binding.btnWeekly.setBackgroundColor(getResources().getColor(R.color.md_theme_light_surfaceVariant, null));
-            viewModel.loadChartData("month");
-        });
+        binding.btnWeekly.setOnClickListener(v -> selectChartPeriod("week"));
+        binding.btnMonthly.setOnClickListener(v -> selectChartPeriod("month"));
+        binding.btnQuarterly.setOnClickListener(v -> selectChartPeriod("quarter"));
+        binding.btnCustom.setOnClickListener(v -> showCustomRangePicker());
+    }
+    
+    private void selectChartPeriod(String period) {
+        highlightChartPeriod(period);
+        viewModel.loadChartData(period);
+    }
+    
+    private void highlightChartPeriod(String period) {
+        chartPeriod = period;
+        int selected = getResources().getColor(R.color.md_theme_light_primary, null);
+        int unselected = getResources().getColor(R.color.md_theme_light_surfaceVariant, null);
+        binding.btnWeekly.setBackgroundColor("week".equals(period) ? selected : unselected);
+        binding.btnMonthly.setBackgroundColor("month".equals(period) ? selected : unselected);
+        binding.btnQuarterly.setBackgroundColor("quarter".equals(period) ? selected : unselected);
+        binding.btnCustom.setBackgroundColor("custom".equals(period) ? selected : unselected);
+    }
+    
+    /**
+     * Pick the first and last day of the chart range, up to today. Cancelling keeps the
+     * current period.
+     */
+    private void showCustomRangePicker() {
+        Calendar calendar = Calendar.getInstance();
+        long today = calendar.getTimeInMillis();
+        DatePickerDialog startPicker = new DatePickerDialog(requireContext(),
+            (view, year, month, day) -> {
+                calendar.set(year, month, day);
+                int fromDay = EpochDays.of(calendar);
+                
+                DatePickerDialog endPicker = new DatePickerDialog(requireContext(),
+                    (v, y, m, d) -> {
+                        calendar.set(y, m, d);
+                        int toDay = EpochDays.of(calendar);
+                        highlightChartPeriod("custom");
+                        viewModel.loadChartData(EpochDays.format(Math.min(fromDay, toDay)),
+                            EpochDays.format(Math.max(fromDay, toDay)));
+                    },
+                    year, month, day);
+                endPicker.getDatePicker().setMaxDate(today);
+                endPicker.setTitle("Select End Date");
+                endPicker.setOnCancelListener(dialog -> restoreChartPeriodToggle());
+                endPicker.show();
+            },
+            calendar.get(Calendar.YEAR),
+            calendar.get(Calendar.MONTH),
+            calendar.get(Calendar.DAY_OF_MONTH));
+        startPicker.getDatePicker().setMaxDate(today);
+        startPicker.setTitle("Select Start Date");
+        startPicker.setOnCancelListener(dialog -> restoreChartPeriodToggle());
+        startPicker.show();
+    }
+    
+    private void restoreChartPeriodToggle() {
+        if (binding == null) return;
+        int button;
+        switch (chartPeriod) {
+            case "week": button = R.id.btnWeekly; break;
+            case "month": button = R.id.btnMonthly; break;
+            case "quarter": button = R.id.btnQuarterly; break;
+            default: button = R.id.btnCustom; break;
+        }
+        binding.chartPeriodToggle.check(button);
     }
     
     private void observePeriodComparison() {
@@ -5,18 +5,21 @@ import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import com.watersupply.data.migration.MigrationRunner;
+import com.watersupply.data.models.Rollup;
 import com.watersupply.data.models.SupplyEntry;
 import com.watersupply.data.repository.AuthRepository;
 import com.watersupply.data.repository.FarmerRepository;
+import com.watersupply.data.repository.RollupRepository;
 import com.watersupply.data.repository.SupplyRepository;
 import com.watersupply.data.repository.PaymentRepository;
+import com.watersupply.utils.DailyTotals;
 import com.watersupply.utils.DateFormatter;
-import com.watersupply.utils.BillingCalculator;
+import com.watersupply.utils.EpochDays;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -30,16 +33,23 @@ import dagger.hilt.android.lifecycle.HiltViewModel;
  */
 @HiltViewModel
 public class DashboardViewModel extends ViewModel {
+    private static final String PERIOD_CUSTOM = "custom";
+    
     private final FarmerRepository farmerRepository;
     private final SupplyRepository supplyRepository;
     private final PaymentRepository paymentRepository;
+    private final RollupRepository rollupRepository;
     private final AuthRepository authRepository;
     private final String userId;
     private final String familyId;
     
     // Chart data LiveData
     private final MediatorLiveData<Map<String, Double>> revenueTrendData = new MediatorLiveData<>();
-    private final MutableLiveData<String> chartPeriod = new MutableLiveData<>("week");
+    private final MutableLiveData<String> chartPeriod = new MutableLiveData<>(RevenueTrend.PERIOD_WEEK);
+    private LiveData<DailyTotals> dailyTotals;
+    private int dailyTotalsFirstDay;
+    private int customFromDay;
+    private int customToDay;
     
     // Period comparison LiveData
     private final MediatorLiveData<Double> currentMonthRevenue = new MediatorLiveData<>();
@@ -51,31 +61,41 @@ public class DashboardViewModel extends ViewModel {
         FarmerRepository farmerRepository, 
         SupplyRepository supplyRepository,
         PaymentRepository paymentRepository,
+        RollupRepository rollupRepository,
         AuthRepository authRepository,
-        com.watersupply.data.migration.DataMigrationManager migrationManager
+        MigrationRunner migrationRunner
     ) {
         this.farmerRepository = farmerRepository;
         this.supplyRepository = supplyRepository;
         this.paymentRepository = paymentRepository;
+        this.rollupRepository = rollupRepository;
         this.authRepository = authRepository;
         this.userId = authRepository.getCurrentUserId();
         this.familyId = authRepository.getCurrentFamilyId();
         
-        // Trigger migration for legacy data
-        if (userId != null) {
-            migrationManager.checkAndMigrate(userId);
-        }
+        // Bring legacy data up to date in the background
+        migrationRunner.schedule(userId, familyId);
         
         // Setup reactive data binding
         if (familyId != null) {
-            LiveData<List<SupplyEntry>> allSupplyEntries = supplyRepository.getAllSupplyEntries(familyId);
+            // Chart and month comparison read pre-aggregated rollups: at most a quarter of day
+            // documents and 2 month documents, independent of how many entries the family has.
+            // Switching the chart period only re-reads the day index.
+            attachDailyTotals(EpochDays.today() - RevenueTrend.QUARTER_DAYS + 1);
+            revenueTrendData.addSource(chartPeriod, period -> updateChartData());
             
-            revenueTrendData.addSource(allSupplyEntries, entries -> updateChartData(entries, chartPeriod.getValue()));
-            revenueTrendData.addSource(chartPeriod, period -> updateChartData(allSupplyEntries.getValue(), period));
+            SimpleDateFormat monthFormat = new SimpleDateFormat("yyyy-MM", Locale.getDefault());
+            Calendar calendar = Calendar.getInstance();
+            String currentMonth = monthFormat.format(calendar.getTime());
+            calendar.add(Calendar.MONTH, -1);
+            String lastMonth = monthFormat.format(calendar.getTime());
+            LiveData<Rollup> currentMonthRollup = rollupRepository.getMonthRollup(familyId, currentMonth);
+            LiveData<Rollup> lastMonthRollup = rollupRepository.getMonthRollup(familyId, lastMonth);
             
-            currentMonthRevenue.addSource(allSupplyEntries, entries -> {
-                if (entries != null) calculatePeriodComparison(entries);
-            });
+            currentMonthRevenue.addSource(currentMonthRollup,
+                rollup -> calculatePeriodComparison(rollup, lastMonthRollup.getValue()));
+            currentMonthRevenue.addSource(lastMonthRollup,
+                rollup -> calculatePeriodComparison(currentMonthRollup.getValue(), rollup));
         }
     }
     
@@ -197,78 +217,52 @@ public class DashboardViewModel extends ViewModel {
         chartPeriod.setValue(period);
     }
     
-    private void updateChartData(List<SupplyEntry> entries, String period) {
-        if (entries == null || period == null) return;
-        
-        Map<String, Double> trendData = new LinkedHashMap<>();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        SimpleDateFormat labelFormat;
-        Calendar calendar = Calendar.getInstance();
+    /**
+     * Load revenue trend chart data for a custom date range (yyyy-MM-dd, inclusive)
+     */
+    public void loadChartData(String startDate, String endDate) {
+        int fromDay = EpochDays.parse(startDate);
+        int toDay = EpochDays.parse(endDate);
+        if (familyId == null || fromDay == EpochDays.NONE || toDay == EpochDays.NONE) return;
         
-        if ("week".equals(period)) {
-            labelFormat = new SimpleDateFormat("EEE", Locale.getDefault());
-            // Last 7 days
-            for (int i = 6; i >= 0; i--) {
-                calendar.setTimeInMillis(System.currentTimeMillis());
-                calendar.add(Calendar.DAY_OF_YEAR, -i);
-                String date = dateFormat.format(calendar.getTime());
-                String label = labelFormat.format(calendar.getTime());
-                
-                double revenue = 0.0;
-                for (SupplyEntry entry : entries) {
-                    if (entry.getDate() != null && entry.getDate().startsWith(date)) {
-                        revenue = BillingCalculator.addAmounts(revenue, entry.getAmount());
-                    }
-                }
-                trendData.put(label, revenue);
-            }
-        } else { // month
-            labelFormat = new SimpleDateFormat("dd", Locale.getDefault());
-            // Last 30 days
-            for (int i = 29; i >= 0; i -= 3) {
-                calendar.setTimeInMillis(System.currentTimeMillis());
-                calendar.add(Calendar.DAY_OF_YEAR, -i);
-                String date = dateFormat.format(calendar.getTime());
-                String label = labelFormat.format(calendar.getTime());
-                
-                double revenue = 0.0;
-                for (SupplyEntry entry : entries) {
-                    if (entry.getDate() != null && entry.getDate().startsWith(date)) {
-                        revenue = BillingCalculator.addAmounts(revenue, entry.getAmount());
-                    }
-                }
-                trendData.put(label, revenue);
-            }
+        customFromDay = fromDay;
+        customToDay = toDay;
+        if (fromDay < dailyTotalsFirstDay) {
+            // Older than the loaded days: widen the window once, later ranges reuse it
+            attachDailyTotals(fromDay);
+        }
+        chartPeriod.setValue(PERIOD_CUSTOM);
+    }
+    
+    private void attachDailyTotals(int firstDay) {
+        if (dailyTotals != null) {
+            revenueTrendData.removeSource(dailyTotals);
         }
+        dailyTotalsFirstDay = firstDay;
+        dailyTotals = rollupRepository.getDailyTotals(familyId,
+            EpochDays.format(firstDay), EpochDays.format(EpochDays.today()));
+        revenueTrendData.addSource(dailyTotals, totals -> updateChartData());
+    }
+    
+    private void updateChartData() {
+        DailyTotals totals = dailyTotals != null ? dailyTotals.getValue() : null;
+        String period = chartPeriod.getValue();
+        if (totals == null || period == null) return;
         
-        revenueTrendData.setValue(trendData);
+        if (PERIOD_CUSTOM.equals(period)) {
+            revenueTrendData.setValue(RevenueTrend.build(totals, customFromDay, customToDay));
+        } else {
+            revenueTrendData.setValue(RevenueTrend.build(totals, period, EpochDays.today()));
+        }
     }
     
     /**
-     * Calculate period comparison (this month vs last month)
+     * Calculate period comparison (this month vs last month) from the two month rollups.
+     * A missing rollup means no entries in that month.
      */
-    private void calculatePeriodComparison(List<SupplyEntry> entries) {
-        Calendar calendar = Calendar.getInstance();
-        SimpleDateFormat monthFormat = new SimpleDateFormat("yyyy-MM", Locale.getDefault());
-        
-        String currentMonth = monthFormat.format(calendar.getTime());
-        calendar.add(Calendar.MONTH, -1);
-        String lastMonth = monthFormat.format(calendar.getTime());
-        
-        double currentMonthTotal = 0.0;
-        double lastMonthTotal = 0.0;
-        
-        for (SupplyEntry entry : entries) {
-            if (entry.getDate() != null) {
-                if (entry.getDate().startsWith(currentMonth)) {
-                    currentMonthTotal = BillingCalculator.addAmounts(
-                        currentMonthTotal, entry.getAmount());
-                } else if (entry.getDate().startsWith(lastMonth)) {
-                    lastMonthTotal = BillingCalculator.addAmounts(
-                        lastMonthTotal, entry.getAmount());
-                }
-            }
-        }
+    private void calculatePeriodComparison(Rollup currentMonth, Rollup lastMonth) {
+        double currentMonthTotal = currentMonth != null ? currentMonth.getRevenue() : 0.0;
+        double lastMonthTotal = lastMonth != null ? lastMonth.getRevenue() : 0.0;
         
         currentMonthRevenue.setValue(currentMonthTotal);
         lastMonthRevenue.setValue(lastMonthTotal);
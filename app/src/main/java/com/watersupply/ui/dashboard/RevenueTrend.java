@@ -0,0 +1,84 @@
+package com.watersupply.ui.dashboard;
+
+import com.watersupply.utils.DailyTotals;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Builds the dashboard revenue chart series from the day-bucketed totals.
+ * Every point is a lookup or range sum over buckets, so the cost depends on the number of
+ * points, not on the number of entries. Kept free of Android types so it can be benchmarked.
+ */
+public final class RevenueTrend {
+    public static final String PERIOD_WEEK = "week";
+    public static final String PERIOD_MONTH = "month";
+    public static final String PERIOD_QUARTER = "quarter";
+
+    /**
+     * Days of history a period needs, counting today.
+     */
+    public static final int QUARTER_DAYS = 91;
+
+    private static final int MAX_DAILY_POINTS = 31;
+
+    private RevenueTrend() {
+    }
+
+    /**
+     * @param period {@link #PERIOD_WEEK} for the last 7 days, {@link #PERIOD_QUARTER} for the last
+     *               13 weeks, anything else for every third day of the last 30
+     * @param today  epoch day of the last day of the chart
+     * @return revenue by chart label, oldest first
+     */
+    public static Map<String, Double> build(DailyTotals totals, String period, int today) {
+        Map<String, Double> trendData = new LinkedHashMap<>();
+
+        if (PERIOD_WEEK.equals(period)) {
+            // Last 7 days
+            DateTimeFormatter labelFormat = DateTimeFormatter.ofPattern("EEE", Locale.getDefault());
+            for (int day = today - 6; day <= today; day++) {
+                trendData.put(label(day, labelFormat), totals.revenue(day));
+            }
+        } else if (PERIOD_QUARTER.equals(period)) {
+            // Last 13 weeks, one point per week
+            DateTimeFormatter labelFormat = DateTimeFormatter.ofPattern("dd MMM", Locale.getDefault());
+            for (int weekStart = today - QUARTER_DAYS + 1; weekStart <= today; weekStart += 7) {
+                trendData.put(label(weekStart, labelFormat), totals.revenue(weekStart, weekStart + 6));
+            }
+        } else { // month
+            // Last 30 days
+            DateTimeFormatter labelFormat = DateTimeFormatter.ofPattern("dd", Locale.getDefault());
+            for (int day = today - 29; day <= today; day += 3) {
+                trendData.put(label(day, labelFormat), totals.revenue(day));
+            }
+        }
+
+        return trendData;
+    }
+
+    /**
+     * Custom range: one point per day for up to a month, otherwise one point per week.
+     * Labels carry the year when the range spans more than one, so that no two points share
+     * a label.
+     */
+    public static Map<String, Double> build(DailyTotals totals, int fromDay, int toDay) {
+        Map<String, Double> trendData = new LinkedHashMap<>();
+        boolean spansYears = LocalDate.ofEpochDay(fromDay).getYear() != LocalDate.ofEpochDay(toDay).getYear();
+        DateTimeFormatter labelFormat = DateTimeFormatter.ofPattern(spansYears ? "dd MMM yy" : "dd MMM",
+            Locale.getDefault());
+        int step = toDay - fromDay + 1 <= MAX_DAILY_POINTS ? 1 : 7;
+        for (int start = fromDay; start <= toDay; start += step) {
+            int end = Math.min(start + step - 1, toDay);
+            trendData.put(label(start, labelFormat), totals.revenue(start, end));
+        }
+        return trendData;
+    }
+
+    private static String label(int epochDay, DateTimeFormatter format) {
+        return LocalDate.ofEpochDay(epochDay).format(format);
+    }
+}
@@ -213,20 +213,15 @@ public class FarmerDetailActivity extends AppCompatActivity {
     }
     
     private void observeSettlements() {
-        viewModel.getSettlements(farmerId).observe(this, settlements -> {
-            if (settlements == null || settlements.isEmpty()) {
+        viewModel.getSettlementChanges(farmerId).observe(this, changes -> {
+            // Sorted by date descending
+            settlementAdapter.applyChanges(changes, settlement -> true, FarmerDetailViewModel.SETTLEMENTS_NEWEST_FIRST);
+            if (changes.getItems().isEmpty()) {
                 binding.llNoSettlements.setVisibility(View.VISIBLE);
                 binding.rvSettlements.setVisibility(View.GONE);
             } else {
                 binding.llNoSettlements.setVisibility(View.GONE);
                 binding.rvSettlements.setVisibility(View.VISIBLE);
-                // Sort by date descending
-                java.util.Collections.sort(settlements, (s1, s2) -> {
-                    if (s1.getSettlementDate() == null) return 1;
-                    if (s2.getSettlementDate() == null) return -1;
-                    return s2.getSettlementDate().compareTo(s1.getSettlementDate());
-                });
-                settlementAdapter.submitList(settlements);
             }
         });
     }
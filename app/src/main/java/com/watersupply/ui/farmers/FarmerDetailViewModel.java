@@ -2,6 +2,7 @@ package com.watersupply.ui.farmers;
 
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.ViewModel;
+import com.watersupply.data.firebase.ChangeSet;
 import com.watersupply.data.models.Farmer;
 import com.watersupply.data.models.Payment;
 import com.watersupply.data.models.Settlement;
@@ -11,6 +12,7 @@ import com.watersupply.data.repository.PaymentRepository;
 import com.watersupply.data.repository.SettlementRepository;
 import com.watersupply.data.repository.SupplyRepository;
 import com.watersupply.data.repository.AuthRepository;
+import java.util.Comparator;
 import java.util.List;
 import javax.inject.Inject;
 import dagger.hilt.android.lifecycle.HiltViewModel;
@@ -75,8 +77,22 @@ public class FarmerDetailViewModel extends ViewModel {
         });
     }
     
-    public LiveData<List<Settlement>> getSettlements(String farmerId) {
-        return settlementRepository.getSettlementsByFarmer(familyId, farmerId);
+    /**
+     * Newest first; ties fall back to the document id so the order is total
+     */
+    public static final Comparator<Settlement> SETTLEMENTS_NEWEST_FIRST = (s1, s2) -> {
+        if (s1.getSettlementDate() == null || s2.getSettlementDate() == null) {
+            if (s1.getSettlementDate() != null) return -1;
+            if (s2.getSettlementDate() != null) return 1;
+        } else {
+            int dateComparison = s2.getSettlementDate().compareTo(s1.getSettlementDate());
+            if (dateComparison != 0) return dateComparison;
+        }
+        return Comparator.nullsLast(Comparator.<String>naturalOrder()).compare(s1.getId(), s2.getId());
+    };
+    
+    public LiveData<ChangeSet<Settlement>> getSettlementChanges(String farmerId) {
+        return settlementRepository.getSettlementChangesByFarmer(familyId, farmerId);
     }
     
     public void deleteFarmer(String farmerId) {
@@ -16,12 +16,10 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 
 import com.watersupply.R;
 import com.watersupply.databinding.ActivityFarmerListBinding;
+import com.watersupply.data.firebase.ChangeSet;
 import com.watersupply.data.models.Farmer;
 import com.watersupply.ui.farmers.adapters.FarmerAdapter;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import dagger.hilt.android.AndroidEntryPoint;
 
 /**
@@ -130,18 +128,18 @@ public class FarmerListActivity extends AppCompatActivity {
     }
     
     private void observeFarmers() {
-        viewModel.getFarmers().observe(this, this::updateUI);
+        viewModel.getFarmerChanges().observe(this, this::updateUI);
     }
     
-    private void updateUI(List<Farmer> farmers) {
+    private void updateUI(ChangeSet<Farmer> changes) {
         binding.progressBar.setVisibility(View.GONE);
-        if (farmers == null || farmers.isEmpty()) {
+        adapter.applyChanges(changes, viewModel::matchesFilter, viewModel.getComparator());
+        if (viewModel.getFilteredCount() == 0) {
             binding.emptyView.setVisibility(View.VISIBLE);
             binding.recyclerView.setVisibility(View.GONE);
         } else {
             binding.emptyView.setVisibility(View.GONE);
             binding.recyclerView.setVisibility(View.VISIBLE);
-            adapter.submitList(new ArrayList<>(farmers));
         }
     }
     
@@ -0,0 +1,89 @@
+package com.watersupply.ui.farmers;
+
+import com.watersupply.data.models.Farmer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Search and sorting of the farmer list.
+ * Kept free of Android types so it can be benchmarked on the JVM.
+ */
+public class FarmerListFilter {
+    private String currentSearchQuery = "";
+    private String currentSortMode = "name"; // "name" or "balance"
+
+    /**
+     * @param query lower-case, trimmed search text
+     */
+    public void setSearchQuery(String query) {
+        this.currentSearchQuery = query;
+    }
+
+    public void setSortMode(String sortMode) {
+        this.currentSortMode = sortMode;
+    }
+
+    private static final Comparator<String> BY_ID = Comparator.nullsLast(Comparator.<String>naturalOrder());
+
+    /**
+     * Alphabetical; ties fall back to the document id so the order is total
+     */
+    public static final Comparator<Farmer> BY_NAME = new Comparator<Farmer>() {
+        @Override
+        public int compare(Farmer f1, Farmer f2) {
+            int nameComparison = f1.getName().compareToIgnoreCase(f2.getName());
+            if (nameComparison != 0) return nameComparison;
+            return BY_ID.compare(f1.getId(), f2.getId());
+        }
+    };
+
+    /**
+     * Highest balance first; ties fall back to the document id so the order is total
+     */
+    public static final Comparator<Farmer> BY_BALANCE = new Comparator<Farmer>() {
+        @Override
+        public int compare(Farmer f1, Farmer f2) {
+            int balanceComparison = Double.compare(f2.getBalance(), f1.getBalance()); // Descending order
+            if (balanceComparison != 0) return balanceComparison;
+            return BY_ID.compare(f1.getId(), f2.getId());
+        }
+    };
+
+    /**
+     * Order of the current sort mode. The same instance is returned until the mode changes.
+     */
+    public Comparator<Farmer> comparator() {
+        return "balance".equals(currentSortMode) ? BY_BALANCE : BY_NAME;
+    }
+
+    /**
+     * Whether a farmer passes the search
+     */
+    public boolean matches(Farmer farmer) {
+        if (currentSearchQuery.isEmpty()) {
+            return true;
+        }
+        return farmer.getName().toLowerCase().contains(currentSearchQuery) ||
+            farmer.getMobile().contains(currentSearchQuery) ||
+            (farmer.getFarmLocation() != null && farmer.getFarmLocation().toLowerCase().contains(currentSearchQuery));
+    }
+
+    public List<Farmer> apply(List<Farmer> farmers) {
+        List<Farmer> result = new ArrayList<>();
+
+        // Apply search filter
+        for (Farmer farmer : farmers) {
+            if (matches(farmer)) {
+                result.add(farmer);
+            }
+        }
+
+        // Apply sorting
+        Collections.sort(result, comparator());
+
+        return result;
+    }
+}
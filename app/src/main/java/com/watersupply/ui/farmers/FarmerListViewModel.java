@@ -6,12 +6,12 @@ import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.Transformations;
 import androidx.lifecycle.ViewModel;
 
+import com.watersupply.data.firebase.ChangeSet;
 import com.watersupply.data.models.Farmer;
 import com.watersupply.data.repository.AuthRepository;
 import com.watersupply.data.repository.FarmerRepository;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
@@ -27,11 +27,11 @@ public class FarmerListViewModel extends ViewModel {
     private final FarmerRepository farmerRepository;
     private final String userId;
     private final String familyId;
-    private final MediatorLiveData<List<Farmer>> filteredFarmers = new MediatorLiveData<>();
-    private LiveData<List<Farmer>> allFarmersLiveData;
+    // Farmer changes; the list applies them with the filter and order below
+    private final MediatorLiveData<ChangeSet<Farmer>> farmerChanges = new MediatorLiveData<>();
     private List<Farmer> cachedFarmers = new ArrayList<>();
-    private String currentSearchQuery = "";
-    private String currentSortMode = "name"; // "name" or "balance"
+    private final FarmerListFilter filter = new FarmerListFilter();
+    private int filteredCount = 0;
     
     @Inject
     public FarmerListViewModel(FarmerRepository farmerRepository, AuthRepository authRepository) {
@@ -40,10 +40,18 @@ public class FarmerListViewModel extends ViewModel {
         this.familyId = authRepository.getCurrentFamilyId();
         
         if (familyId != null) {
-            allFarmersLiveData = farmerRepository.getAllFarmers(familyId);
-            filteredFarmers.addSource(allFarmersLiveData, farmers -> {
-                cachedFarmers = farmers != null ? new ArrayList<>(farmers) : new ArrayList<>();
-                applyFiltersAndSort();
+            LiveData<ChangeSet<Farmer>> allFarmers = farmerRepository.getAllFarmerChanges(familyId);
+            farmerChanges.addSource(allFarmers, changes -> {
+                cachedFarmers = changes.getItems();
+                if (changes.isReset()) {
+                    recount();
+                } else {
+                    for (ChangeSet.Change<Farmer> change : changes.getChanges()) {
+                        if (change.getOldItem() != null && filter.matches(change.getOldItem())) filteredCount--;
+                        if (change.getNewItem() != null && filter.matches(change.getNewItem())) filteredCount++;
+                    }
+                }
+                farmerChanges.setValue(changes);
             });
         }
     }
@@ -52,8 +60,29 @@ public class FarmerListViewModel extends ViewModel {
         return familyId;
     }
     
-    public LiveData<List<Farmer>> getFarmers() {
-        return filteredFarmers;
+    public LiveData<ChangeSet<Farmer>> getFarmerChanges() {
+        return farmerChanges;
+    }
+    
+    /**
+     * Whether a farmer passes the current search
+     */
+    public boolean matchesFilter(Farmer farmer) {
+        return filter.matches(farmer);
+    }
+    
+    /**
+     * Order of the current sort mode
+     */
+    public Comparator<Farmer> getComparator() {
+        return filter.comparator();
+    }
+    
+    /**
+     * Number of farmers passing the current search
+     */
+    public int getFilteredCount() {
+        return filteredCount;
     }
     
     public void addFarmer(Farmer farmer) {
@@ -73,26 +102,23 @@ public class FarmerListViewModel extends ViewModel {
     }
     
     public void searchFarmers(String query) {
-        currentSearchQuery = query.toLowerCase().trim();
+        filter.setSearchQuery(query.toLowerCase().trim());
         applyFiltersAndSort();
     }
     
     public void sortByName() {
-        currentSortMode = "name";
+        filter.setSortMode("name");
         applyFiltersAndSort();
     }
     
     public void sortByBalance() {
-        currentSortMode = "balance";
+        filter.setSortMode("balance");
         applyFiltersAndSort();
     }
     
     public void refreshFarmers() {
-        // Trigger re-observation
-        if (allFarmersLiveData != null && allFarmersLiveData.getValue() != null) {
-            cachedFarmers = new ArrayList<>(allFarmersLiveData.getValue());
-            applyFiltersAndSort();
-        }
+        // Re-apply filters to the current result; the listener keeps it up to date
+        applyFiltersAndSort();
     }
     
     /**
@@ -113,41 +139,14 @@ public class FarmerListViewModel extends ViewModel {
     }
     
     private void applyFiltersAndSort() {
-        List<Farmer> result = new ArrayList<>(cachedFarmers);
-        
-        // Default sort if none selected (though "name" is default)
-        if (currentSortMode == null) currentSortMode = "name";
-        
-        // Apply search filter
-        if (!currentSearchQuery.isEmpty()) {
-            List<Farmer> searchResults = new ArrayList<>();
-            for (Farmer farmer : result) {
-                if (farmer.getName().toLowerCase().contains(currentSearchQuery) ||
-                    farmer.getMobile().contains(currentSearchQuery) ||
-                    (farmer.getFarmLocation() != null && farmer.getFarmLocation().toLowerCase().contains(currentSearchQuery))) {
-                    searchResults.add(farmer);
-                }
-            }
-            result = searchResults;
-        }
-        
-        // Apply sorting
-        if ("name".equals(currentSortMode)) {
-            Collections.sort(result, new Comparator<Farmer>() {
-                @Override
-                public int compare(Farmer f1, Farmer f2) {
-                    return f1.getName().compareToIgnoreCase(f2.getName());
-                }
-            });
-        } else if ("balance".equals(currentSortMode)) {
-            Collections.sort(result, new Comparator<Farmer>() {
-                @Override
-                public int compare(Farmer f1, Farmer f2) {
-                    return Double.compare(f2.getBalance(), f1.getBalance()); // Descending order
-                }
-            });
+        recount();
+        farmerChanges.setValue(ChangeSet.reset(cachedFarmers));
+    }
+    
+    private void recount() {
+        filteredCount = 0;
+        for (Farmer farmer : cachedFarmers) {
+            if (filter.matches(farmer)) filteredCount++;
         }
-        
-        filteredFarmers.setValue(result);
     }
 }
@@ -7,18 +7,18 @@ import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.DiffUtil;
-import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.watersupply.R;
 import com.watersupply.data.models.Farmer;
 import com.watersupply.databinding.ItemFarmerBinding;
+import com.watersupply.ui.common.ChangeSetAdapter;
 import com.watersupply.utils.CurrencyFormatter;
 
 /**
  * RecyclerView adapter for Farmer list
  */
-public class FarmerAdapter extends ListAdapter<Farmer, FarmerAdapter.ViewHolder> {
+public class FarmerAdapter extends ChangeSetAdapter<Farmer, FarmerAdapter.ViewHolder> {
     
     private final OnFarmerClickListener listener;
     
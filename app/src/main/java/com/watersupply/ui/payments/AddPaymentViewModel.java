@@ -68,6 +68,7 @@ public class AddPaymentViewModel extends ViewModel {
         String remarks
     ) {
         double oldAmount = originalPayment.getAmount();
+        String oldPaymentDate = originalPayment.getPaymentDate();
         
         originalPayment.setPaymentDate(paymentDate);
         originalPayment.setAmount(newAmount);
@@ -76,6 +77,6 @@ public class AddPaymentViewModel extends ViewModel {
         originalPayment.setRemarks(remarks);
         originalPayment.setUpdatedAt(new java.util.Date());
         
-        paymentRepository.updatePayment(originalPayment, oldAmount);
+        paymentRepository.updatePayment(originalPayment, oldAmount, oldPaymentDate);
     }
 }
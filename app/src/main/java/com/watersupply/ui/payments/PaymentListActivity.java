@@ -16,6 +16,7 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import com.watersupply.R;
 import com.watersupply.databinding.ActivityPaymentListBinding;
 import com.watersupply.data.models.Payment;
+import com.watersupply.ui.common.PrefetchScrollListener;
 import com.watersupply.ui.payments.adapters.PaymentAdapter;
 import com.watersupply.utils.CurrencyFormatter;
 import com.watersupply.utils.DateFormatter;
@@ -37,6 +38,7 @@ public class PaymentListActivity extends AppCompatActivity {
     private ActivityPaymentListBinding binding;
     private PaymentListViewModel viewModel;
     private PaymentAdapter adapter;
+    private PrefetchScrollListener prefetchListener;
     
     // Date filter variables
     private String startDate;
@@ -78,6 +80,10 @@ public class PaymentListActivity extends AppCompatActivity {
         
         binding.paymentRecyclerView.setLayoutManager(new LinearLayoutManager(this));
         binding.paymentRecyclerView.setAdapter(adapter);
+        
+        // Payments in date order are read a page at a time; ask for the next one early
+        prefetchListener = new PrefetchScrollListener(viewModel::canLoadMore, viewModel::loadMore);
+        binding.paymentRecyclerView.addOnScrollListener(prefetchListener);
     }
     
     private void showDeleteConfirmation(Payment payment) {
@@ -106,11 +112,13 @@ public class PaymentListActivity extends AppCompatActivity {
     }
     
     private void observePayments() {
-        viewModel.getPayments().observe(this, payments -> {
+        viewModel.getPaymentChanges().observe(this, changes -> {
             binding.swipeRefresh.setRefreshing(false);
             binding.progressBar.setVisibility(View.GONE);
+            adapter.applyChanges(changes, viewModel::matchesFilter, viewModel.getComparator());
+            binding.paymentRecyclerView.post(() -> prefetchListener.prefetch(binding.paymentRecyclerView));
             
-            if (payments == null || payments.isEmpty()) {
+            if (adapter.getItemCount() == 0) {
                 binding.emptyView.setVisibility(View.VISIBLE);
                 binding.paymentRecyclerView.setVisibility(View.GONE);
                 binding.statsCard.setVisibility(View.GONE);
@@ -118,7 +126,6 @@ public class PaymentListActivity extends AppCompatActivity {
                 binding.emptyView.setVisibility(View.GONE);
                 binding.paymentRecyclerView.setVisibility(View.VISIBLE);
                 binding.statsCard.setVisibility(View.VISIBLE);
-                adapter.submitList(payments);
             }
         });
     }
@@ -262,8 +269,15 @@ public class PaymentListActivity extends AppCompatActivity {
     }
     
     private void exportToCSV() {
-        List<Payment> payments = viewModel.getPayments().getValue();
-        if (payments == null || payments.isEmpty()) {
+        // The list may only hold the loaded pages, so read the whole range for the file
+        viewModel.fetchFilteredPayments()
+            .addOnSuccessListener(this, this::writeCSV)
+            .addOnFailureListener(this, e ->
+                Toast.makeText(this, "Export failed: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+    }
+    
+    private void writeCSV(List<Payment> payments) {
+        if (payments.isEmpty()) {
             Toast.makeText(this, "No payments to export", Toast.LENGTH_SHORT).show();
             return;
         }
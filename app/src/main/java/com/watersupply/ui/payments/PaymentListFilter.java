@@ -0,0 +1,172 @@
+package com.watersupply.ui.payments;
+
+import com.watersupply.data.models.Payment;
+import com.watersupply.utils.EpochDays;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search, date filtering and sorting of the payment list.
+ * Kept free of Android types so it can be benchmarked on the JVM.
+ */
+public class PaymentListFilter {
+    // Inclusive epoch-day bounds, parsed once per range change
+    private boolean dateFilterActive = false;
+    private int startDay = Integer.MIN_VALUE;
+    private int endDay = Integer.MAX_VALUE;
+    private String searchQuery = "";
+    private String currentSortMode = "date"; // "date" or "amount"
+    private Map<String, String> farmerNames;
+
+    public void setDateRange(String startDate, String endDate) {
+        this.dateFilterActive = startDate != null || endDate != null;
+        int start = EpochDays.parse(startDate);
+        int end = EpochDays.parse(endDate);
+        this.startDay = start != EpochDays.NONE ? start : Integer.MIN_VALUE;
+        this.endDay = end != EpochDays.NONE ? end : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @param query lower-case search text
+     */
+    public void setSearchQuery(String query) {
+        this.searchQuery = query;
+    }
+
+    public void setSortMode(String sortMode) {
+        this.currentSortMode = sortMode;
+    }
+
+    public String getSearchQuery() {
+        return searchQuery;
+    }
+
+    public boolean isSortedByAmount() {
+        return "amount".equals(currentSortMode);
+    }
+
+    /**
+     * Farmer names by id, used to search payments that have no denormalized name
+     */
+    public void setFarmerNames(Map<String, String> farmerNames) {
+        this.farmerNames = farmerNames;
+    }
+
+    private static final Comparator<String> BY_ID = Comparator.nullsLast(Comparator.<String>naturalOrder());
+
+    /**
+     * Newest first; ties fall back to the document id so the order is total
+     */
+    public static final Comparator<Payment> BY_DATE = new Comparator<Payment>() {
+        @Override
+        public int compare(Payment p1, Payment p2) {
+            if (p1.getPaymentDate() == null || p2.getPaymentDate() == null) {
+                if (p1.getPaymentDate() != null) return -1;
+                if (p2.getPaymentDate() != null) return 1;
+            } else {
+                int dateComparison = p2.getPaymentDate().compareTo(p1.getPaymentDate()); // Descending
+                if (dateComparison != 0) return dateComparison;
+            }
+            return BY_ID.compare(p1.getId(), p2.getId());
+        }
+    };
+
+    /**
+     * Largest first; ties fall back to the document id so the order is total
+     */
+    public static final Comparator<Payment> BY_AMOUNT = new Comparator<Payment>() {
+        @Override
+        public int compare(Payment p1, Payment p2) {
+            int amountComparison = Double.compare(p2.getAmount(), p1.getAmount()); // Descending
+            if (amountComparison != 0) return amountComparison;
+            return BY_ID.compare(p1.getId(), p2.getId());
+        }
+    };
+
+    /**
+     * Order of the current sort mode. The same instance is returned until the mode changes.
+     */
+    public Comparator<Payment> comparator() {
+        return isSortedByAmount() ? BY_AMOUNT : BY_DATE;
+    }
+
+    /**
+     * Whether the current search or sort has to see every payment in the date range. Otherwise
+     * the list can be read page by page in the server's date order.
+     */
+    public boolean needsAllPayments() {
+        return !searchQuery.isEmpty() || isSortedByAmount();
+    }
+
+    /**
+     * Whether a payment passes the search and date range
+     */
+    public boolean matches(Payment payment) {
+        return matchesSearchQuery(payment) && matchesDateFilter(payment);
+    }
+
+    /**
+     * Payments matching the search and date range, in the current sort order
+     */
+    public List<Payment> apply(List<Payment> payments) {
+        List<Payment> filtered = new ArrayList<>();
+
+        // Apply search and date filters
+        for (Payment payment : payments) {
+            if (matches(payment)) {
+                filtered.add(payment);
+            }
+        }
+
+        // Apply sorting
+        Collections.sort(filtered, comparator());
+
+        return filtered;
+    }
+
+    /**
+     * Check if payment matches search query
+     */
+    public boolean matchesSearchQuery(Payment payment) {
+        if (searchQuery.isEmpty()) {
+            return true;
+        }
+
+        String farmerName = payment.getFarmerName();
+        // Fallback name lookup
+        if (farmerName == null || farmerName.isEmpty()) {
+            if (farmerNames != null && payment.getFarmerId() != null) {
+                farmerName = farmerNames.get(payment.getFarmerId());
+            }
+        }
+
+        String farmerNameLower = farmerName != null ? farmerName.toLowerCase() : "";
+        String methodLower = payment.getPaymentMethod() != null ? payment.getPaymentMethod().toLowerCase() : "";
+
+        return farmerNameLower.contains(searchQuery) || methodLower.contains(searchQuery);
+    }
+
+    /**
+     * Check if payment matches date filter
+     */
+    public boolean matchesDateFilter(Payment payment) {
+        if (!dateFilterActive) {
+            return true; // No filter
+        }
+
+        int day = payment.getEpochDay();
+        return day != EpochDays.NONE && day >= startDay && day <= endDay;
+    }
+
+    public static double totalAmount(List<Payment> payments) {
+        double total = 0.0;
+        for (Payment payment : payments) {
+            total += payment.getAmount();
+        }
+        return total;
+    }
+}
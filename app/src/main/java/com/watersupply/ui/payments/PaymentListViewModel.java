@@ -3,19 +3,21 @@ package com.watersupply.ui.payments;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
 import androidx.lifecycle.ViewModel;
+import com.google.android.gms.tasks.Task;
+import com.watersupply.data.firebase.ChangeSet;
+import com.watersupply.data.firebase.PagedQueryLiveData;
 import com.watersupply.data.models.Payment;
+import com.watersupply.data.repository.AnalyticsRepository;
 import com.watersupply.data.repository.AuthRepository;
 import com.watersupply.data.repository.PaymentRepository;
+import com.watersupply.utils.BillingCalculator;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
+import java.util.Objects;
 
 import javax.inject.Inject;
 import dagger.hilt.android.lifecycle.HiltViewModel;
@@ -25,9 +27,10 @@ public class PaymentListViewModel extends ViewModel {
     private final PaymentRepository paymentRepository;
     private final AuthRepository authRepository;
     private final com.watersupply.data.repository.FarmerRepository farmerRepository;
+    private final AnalyticsRepository analyticsRepository;
     
-    // Filtered payments
-    private final MediatorLiveData<List<Payment>> filteredPayments = new MediatorLiveData<>();
+    // Payment changes; the list applies them with the filter and order below
+    private final MediatorLiveData<ChangeSet<Payment>> paymentChanges = new MediatorLiveData<>();
     private final MutableLiveData<java.util.Map<String, String>> farmerNameMap = new MutableLiveData<>();
     
     // Statistics LiveData
@@ -37,49 +40,113 @@ public class PaymentListViewModel extends ViewModel {
     
     // Cached data for filtering and sorting
     private List<Payment> cachedPayments = new ArrayList<>();
-    private String startDateFilter = null;
-    private String endDateFilter = null;
-    private String searchQuery = "";
-    private String currentSortMode = "date"; // "date" or "amount"
+    private final PaymentListFilter filter = new PaymentListFilter();
+    private String startDate;
+    private String endDate;
     
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+    // Current list source; pager and the server totals are only set while reading pages
+    private LiveData<ChangeSet<Payment>> source;
+    private PagedQueryLiveData<Payment> pager;
+    private LiveData<Integer> countSource;
+    private LiveData<Double> amountSource;
+    private String pagedStartDate;
+    private String pagedEndDate;
+    
+    // Totals of the payments passing the filter, in fixed point: summed over the local query
+    // result, or taken from the server aggregates of the date range while the list is paged
+    private int filteredCount = 0;
+    private long filteredPaise = 0;
     
     @Inject
     public PaymentListViewModel(PaymentRepository paymentRepository, 
                               AuthRepository authRepository, 
-                              com.watersupply.data.repository.FarmerRepository farmerRepository) {
+                              com.watersupply.data.repository.FarmerRepository farmerRepository,
+                              AnalyticsRepository analyticsRepository) {
         this.paymentRepository = paymentRepository;
         this.authRepository = authRepository;
         this.farmerRepository = farmerRepository;
+        this.analyticsRepository = analyticsRepository;
         
         String userId = authRepository.getCurrentUserId();
         String familyId = authRepository.getCurrentFamilyId();
         
         if (userId != null) {
-            LiveData<List<Payment>> allPayments = paymentRepository.getAllPayments(familyId);
-            filteredPayments.addSource(allPayments, payments -> {
-                cachedPayments = payments != null ? payments : new ArrayList<>();
-                applyFiltersAndSort();
-            });
+            connect();
             
             // Load farmer map
             loadFarmerNames(familyId);
         }
     }
     
+    /**
+     * Attach the list source the current filter needs. The default date order reads one page
+     * at a time with server-side totals; search and amount sort need every payment in the range,
+     * so they query the local mirror and total the (already filtered) result.
+     */
+    private void connect() {
+        disconnect();
+        String familyId = authRepository.getCurrentFamilyId();
+        
+        if (filter.needsAllPayments()) {
+            // Search and amount order run as SQL over the local mirror
+            source = Transformations.map(analyticsRepository.searchPayments(familyId, filter.getSearchQuery(),
+                startDate, endDate, filter.isSortedByAmount()), ChangeSet::reset);
+            paymentChanges.addSource(source, changes -> {
+                cachedPayments = changes.getItems();
+                recalculateStatistics();
+                paymentChanges.setValue(changes);
+            });
+            return;
+        }
+        
+        pagedStartDate = startDate;
+        pagedEndDate = endDate;
+        pager = paymentRepository.getPaymentPages(familyId, startDate, endDate, PagedQueryLiveData.DEFAULT_PAGE_SIZE);
+        source = pager;
+        paymentChanges.addSource(pager, changes -> {
+            cachedPayments = changes.getItems();
+            paymentChanges.setValue(changes);
+        });
+        countSource = paymentRepository.getPaymentCount(familyId, startDate, endDate);
+        paymentChanges.addSource(countSource, count -> {
+            filteredCount = count != null ? count : 0;
+            publishStatistics();
+        });
+        amountSource = paymentRepository.getTotalPayments(familyId, startDate, endDate);
+        paymentChanges.addSource(amountSource, amount -> {
+            filteredPaise = BillingCalculator.toPaise(amount != null ? amount : 0.0);
+            publishStatistics();
+        });
+    }
+    
+    private void disconnect() {
+        if (source != null) {
+            paymentChanges.removeSource(source);
+            source = null;
+        }
+        if (countSource != null) {
+            paymentChanges.removeSource(countSource);
+            paymentChanges.removeSource(amountSource);
+            countSource = null;
+            amountSource = null;
+        }
+        pager = null;
+    }
+    
     private void loadFarmerNames(String familyId) {
         // We use observeForever here because we want to maintain the map in the ViewModel
         // In a real LifecycleAware component we would observe in fragment, but for filtering logic here it's easier
         // Note: Transformation.map would be better but requires chaining.
         // Let's just expose the LiveData from repository directly transformed to Map
         LiveData<List<com.watersupply.data.models.Farmer>> farmersLiveData = farmerRepository.getAllFarmers(familyId);
-        filteredPayments.addSource(farmersLiveData, farmers -> {
+        paymentChanges.addSource(farmersLiveData, farmers -> {
              if (farmers != null) {
                 java.util.Map<String, String> map = new java.util.HashMap<>();
                 for (com.watersupply.data.models.Farmer farmer : farmers) {
                     map.put(farmer.getId(), farmer.getName());
                 }
                 farmerNameMap.setValue(map);
+                filter.setFarmerNames(map);
                 // Re-apply filters as names might have updated for search
                 applyFiltersAndSort();
             }
@@ -90,15 +157,51 @@ public class PaymentListViewModel extends ViewModel {
         return farmerNameMap;
     }
     
-    public LiveData<List<Payment>> getPayments() {
-        return filteredPayments;
+    public LiveData<ChangeSet<Payment>> getPaymentChanges() {
+        return paymentChanges;
+    }
+    
+    /**
+     * Whether a payment passes the current search and date range
+     */
+    public boolean matchesFilter(Payment payment) {
+        return filter.matches(payment);
+    }
+    
+    /**
+     * Order of the current sort mode
+     */
+    public Comparator<Payment> getComparator() {
+        return filter.comparator();
+    }
+    
+    /**
+     * Every payment passing the current filters, in the current order, including pages that
+     * have not been loaded yet
+     */
+    public Task<List<Payment>> fetchFilteredPayments() {
+        return paymentRepository.fetchPayments(authRepository.getCurrentFamilyId(), startDate, endDate)
+            .continueWith(task -> filter.apply(task.getResult()));
+    }
+    
+    /**
+     * Load the next page of the list, if it is read page by page
+     */
+    public void loadMore() {
+        if (pager != null) {
+            pager.loadMore();
+        }
+    }
+    
+    public boolean canLoadMore() {
+        return pager != null && pager.canLoadMore();
     }
     
     /**
      * Search payments by farmer ID or payment method
      */
     public void searchPayments(String query) {
-        this.searchQuery = query.toLowerCase();
+        filter.setSearchQuery(query.toLowerCase());
         applyFiltersAndSort();
     }
     
@@ -106,8 +209,9 @@ public class PaymentListViewModel extends ViewModel {
      * Filter payments by date range
      */
     public void filterByDateRange(String startDate, String endDate) {
-        this.startDateFilter = startDate;
-        this.endDateFilter = endDate;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        filter.setDateRange(startDate, endDate);
         applyFiltersAndSort();
     }
     
@@ -115,9 +219,10 @@ public class PaymentListViewModel extends ViewModel {
      * Clear all filters
      */
     public void clearFilter() {
-        this.startDateFilter = null;
-        this.endDateFilter = null;
-        this.searchQuery = "";
+        startDate = null;
+        endDate = null;
+        filter.setDateRange(null, null);
+        filter.setSearchQuery("");
         applyFiltersAndSort();
     }
     
@@ -125,7 +230,7 @@ public class PaymentListViewModel extends ViewModel {
      * Sort by date (descending)
      */
     public void sortByDate() {
-        this.currentSortMode = "date";
+        filter.setSortMode("date");
         applyFiltersAndSort();
     }
     
@@ -133,7 +238,7 @@ public class PaymentListViewModel extends ViewModel {
      * Sort by amount (descending)
      */
     public void sortByAmount() {
-        this.currentSortMode = "amount";
+        filter.setSortMode("amount");
         applyFiltersAndSort();
     }
     
@@ -141,7 +246,11 @@ public class PaymentListViewModel extends ViewModel {
      * Refresh data (triggers re-observation)
      */
     public void refreshData() {
-        applyFiltersAndSort();
+        if (pager != null) {
+            connect(); // Start over from the first page
+        } else {
+            applyFiltersAndSort();
+        }
     }
     
     /**
@@ -176,116 +285,43 @@ public class PaymentListViewModel extends ViewModel {
      * Apply current filters and sorting to cached payments
      */
     private void applyFiltersAndSort() {
-        List<Payment> filtered = new ArrayList<>();
-        
-        // Apply search and date filters
-        for (Payment payment : cachedPayments) {
-            if (matchesSearchQuery(payment) && matchesDateFilter(payment)) {
-                filtered.add(payment);
-            }
+        if (authRepository.getCurrentUserId() == null) {
+            return;
         }
-        
-        // Apply sorting
-        if (currentSortMode == null) currentSortMode = "date";
-        
-        if ("date".equals(currentSortMode)) {
-            Collections.sort(filtered, new Comparator<Payment>() {
-                @Override
-                public int compare(Payment p1, Payment p2) {
-                    if (p1.getPaymentDate() == null) return 1;
-                    if (p2.getPaymentDate() == null) return -1;
-                    return p2.getPaymentDate().compareTo(p1.getPaymentDate()); // Descending
-                }
-            });
-        } else if ("amount".equals(currentSortMode)) {
-            Collections.sort(filtered, new Comparator<Payment>() {
-                @Override
-                public int compare(Payment p1, Payment p2) {
-                    return Double.compare(p2.getAmount(), p1.getAmount()); // Descending
-                }
-            });
+        boolean paged = !filter.needsAllPayments();
+        if (!paged || source == null || pager == null
+                || !(Objects.equals(startDate, pagedStartDate) && Objects.equals(endDate, pagedEndDate))) {
+            // Pages and local queries are bounded by the filter, so a new filter needs a new query
+            connect();
+            return;
         }
-        
-        // Update filtered payments
-        filteredPayments.setValue(filtered);
-        
-        // Calculate statistics
-        calculateStatistics(filtered);
+        paymentChanges.setValue(ChangeSet.reset(cachedPayments));
     }
     
-    /**
-     * Check if payment matches search query
-     */
-    private boolean matchesSearchQuery(Payment payment) {
-        if (searchQuery.isEmpty()) {
-            return true;
-        }
-        
-        String farmerName = payment.getFarmerName();
-        // Fallback name lookup
-        if (farmerName == null || farmerName.isEmpty()) {
-            java.util.Map<String, String> map = farmerNameMap.getValue();
-            if (map != null && payment.getFarmerId() != null) {
-                farmerName = map.get(payment.getFarmerId());
-            }
+    private void recalculateStatistics() {
+        filteredCount = 0;
+        filteredPaise = 0;
+        for (Payment payment : cachedPayments) {
+            count(payment, 1);
         }
-        
-        String farmerNameLower = farmerName != null ? farmerName.toLowerCase() : "";
-        String methodLower = payment.getPaymentMethod() != null ? payment.getPaymentMethod().toLowerCase() : "";
-        
-        return farmerNameLower.contains(searchQuery) || methodLower.contains(searchQuery);
+        publishStatistics();
     }
     
     /**
-     * Check if payment matches date filter
+     * Add (sign 1) or remove (sign -1) a payment's share of the filtered totals
      */
-    private boolean matchesDateFilter(Payment payment) {
-        if (startDateFilter == null && endDateFilter == null) {
-            return true; // No filter
-        }
-        
-        try {
-            Date paymentDate = dateFormat.parse(payment.getPaymentDate());
-            if (paymentDate == null) {
-                return false;
-            }
-            
-            if (startDateFilter != null) {
-                Date startDate = dateFormat.parse(startDateFilter);
-                if (startDate != null && paymentDate.before(startDate)) {
-                    return false;
-                }
-            }
-            
-            if (endDateFilter != null) {
-                Date endDate = dateFormat.parse(endDateFilter);
-                if (endDate != null && paymentDate.after(endDate)) {
-                    return false;
-                }
-            }
-            
-            return true;
-        } catch (ParseException e) {
-            e.printStackTrace();
-            return false;
+    private void count(Payment payment, int sign) {
+        if (payment == null || !filter.matches(payment)) {
+            return;
         }
+        filteredCount += sign;
+        filteredPaise += sign * BillingCalculator.toPaise(payment.getAmount());
     }
     
-    /**
-     * Calculate statistics from filtered payments
-     */
-    private void calculateStatistics(List<Payment> payments) {
-        int count = payments.size();
-        double total = 0.0;
-        
-        for (Payment payment : payments) {
-            total += payment.getAmount();
-        }
-        
-        double average = count > 0 ? total / count : 0.0;
-        
-        totalPayments.setValue(count);
+    private void publishStatistics() {
+        double total = BillingCalculator.fromPaise(filteredPaise);
+        totalPayments.setValue(filteredCount);
         totalAmount.setValue(total);
-        averagePayment.setValue(average);
+        averagePayment.setValue(filteredCount > 0 ? total / filteredCount : 0.0);
     }
 }
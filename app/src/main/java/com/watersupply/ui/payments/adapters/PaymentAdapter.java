@@ -4,14 +4,14 @@ import android.view.LayoutInflater;
 import android.view.ViewGroup;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.DiffUtil;
-import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import com.watersupply.databinding.ItemPaymentBinding;
 import com.watersupply.data.models.Payment;
+import com.watersupply.ui.common.ChangeSetAdapter;
 import com.watersupply.utils.CurrencyFormatter;
 import com.watersupply.utils.DateFormatter;
 
-public class PaymentAdapter extends ListAdapter<Payment, PaymentAdapter.ViewHolder> {
+public class PaymentAdapter extends ChangeSetAdapter<Payment, PaymentAdapter.ViewHolder> {
     private final OnPaymentClickListener listener;
     private boolean isDetailMode = false;
     
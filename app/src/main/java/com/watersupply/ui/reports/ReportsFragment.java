@@ -1,6 +1,8 @@
 package com.watersupply.ui.reports;
 
 import android.app.DatePickerDialog;
+import android.app.ProgressDialog;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.graphics.Canvas;
 import android.graphics.Color;
@@ -27,7 +29,10 @@ import com.watersupply.data.models.Farmer;
 import com.watersupply.data.models.SupplyEntry;
 import com.watersupply.data.models.Payment;
 import com.watersupply.utils.BillingCalculator;
+import com.watersupply.utils.BulkStatementGenerator;
 import com.watersupply.utils.CurrencyFormatter;
+import com.watersupply.utils.EpochDays;
+import com.watersupply.utils.ReportGenerator;
 import com.watersupply.utils.UsageHoursFormatter;
 
 import java.io.File;
@@ -60,6 +65,9 @@ public class ReportsFragment extends Fragment {
     private Calendar endDate = Calendar.getInstance();
     private SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
     private java.util.Map<String, String> farmerNameMap = new java.util.HashMap<>();
+    private ReportGenerator.Job reportJob;     // Report being rendered, if any
+    private BulkStatementGenerator.Job statementJob; // Statement batch being rendered, if any
+    private ProgressDialog reportDialog;
 
     @Nullable
     @Override
@@ -68,8 +76,7 @@ public class ReportsFragment extends Fragment {
         return binding.getRoot();
     }
 
-    private List<SupplyEntry> allSupplyEntries = new ArrayList<>();
-    private List<Payment> allPayments = new ArrayList<>();
+    // Rows of the selected farmer and period, oldest first, as returned by the local mirror
     private List<SupplyEntry> filteredSupplyEntries = new ArrayList<>();
     private List<Payment> filteredPayments = new ArrayList<>();
 
@@ -83,74 +90,44 @@ public class ReportsFragment extends Fragment {
         setupFarmerSelection();
         setupButtons();
         setupChart();
+        observeReport();
         
         // Set default dates (start of month to today)
         startDate.set(Calendar.DAY_OF_MONTH, 1);
         updateDateFields();
         
         // Initial data fetch (for all farmers)
-        fetchData(null);
+        updateReport();
     }
 
-    private void fetchData(String farmerId) {
-        viewModel.getSupplyEntries(farmerId).observe(getViewLifecycleOwner(), entries -> {
-            allSupplyEntries = entries != null ? entries : new ArrayList<>();
-            calculateAndDisplayTotals();
+    private void updateReport() {
+        viewModel.setReportRange(selectedFarmer != null ? selectedFarmer.getId() : null,
+            EpochDays.format(EpochDays.of(startDate)), EpochDays.format(EpochDays.of(endDate)));
+    }
+
+    private void observeReport() {
+        viewModel.getSupplyEntries().observe(getViewLifecycleOwner(), entries -> {
+            filteredSupplyEntries = entries != null ? entries : new ArrayList<>();
         });
         
-        viewModel.getPayments(farmerId).observe(getViewLifecycleOwner(), payments -> {
-            allPayments = payments != null ? payments : new ArrayList<>();
-            calculateAndDisplayTotals();
+        viewModel.getPayments().observe(getViewLifecycleOwner(), payments -> {
+            filteredPayments = payments != null ? payments : new ArrayList<>();
+            updateChartData();
         });
-    }
-
-    private void calculateAndDisplayTotals() {
-        filteredSupplyEntries.clear();
-        filteredPayments.clear();
-        
-        double totalHours = 0;
-        double totalCharges = 0;
-        double totalCollection = 0;
-        
-        Date start = startDate.getTime();
-        Date end = endDate.getTime();
-        
-        // Filter Supply Entries
-        for (SupplyEntry entry : allSupplyEntries) {
-            try {
-                Date entryDate = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).parse(entry.getDate());
-                boolean isDraft = "draft".equalsIgnoreCase(entry.getStatus());
-                if (entryDate != null && !isDraft && !entryDate.before(start) && !entryDate.after(end)) {
-                    filteredSupplyEntries.add(entry);
-                    if (entry.getTotalTimeUsed() != null) {
-                        totalHours = BillingCalculator.addHours(totalHours, entry.getTotalTimeUsed());
-                    }
-                    totalCharges = BillingCalculator.addAmounts(totalCharges, entry.getAmount());
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
         
-        // Filter Payments
-        for (Payment payment : allPayments) {
-            try {
-                Date paymentDate = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).parse(payment.getPaymentDate());
-                if (paymentDate != null && !paymentDate.before(start) && !paymentDate.after(end)) {
-                    filteredPayments.add(payment);
-                    totalCollection = BillingCalculator.addAmounts(totalCollection, payment.getAmount());
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
+        // Totals are SQL aggregates over the same range, in paise and hundredths
+        viewModel.getSupplyTotals().observe(getViewLifecycleOwner(), totals -> {
+            if (totals != null) {
+                binding.tvReportTotalHours.setText(UsageHoursFormatter.format(totals.getHours()));
+                binding.tvReportTotalCharges.setText(CurrencyFormatter.format(totals.getAmount()));
             }
-        }
-        
-        // Update UI
-        binding.tvReportTotalHours.setText(UsageHoursFormatter.format(totalHours));
-        binding.tvReportTotalCharges.setText(CurrencyFormatter.format(totalCharges));
-        binding.tvReportCollection.setText(CurrencyFormatter.format(totalCollection));
+        });
         
-        updateChartData();
+        viewModel.getPaymentTotals().observe(getViewLifecycleOwner(), totals -> {
+            if (totals != null) {
+                binding.tvReportCollection.setText(CurrencyFormatter.format(totals.getAmount()));
+            }
+        });
     }
 
     private void setupDatePickers() {
@@ -162,7 +139,7 @@ public class ReportsFragment extends Fragment {
         DatePickerDialog dialog = new DatePickerDialog(requireContext(), (view, year, month, dayOfMonth) -> {
             calendar.set(year, month, dayOfMonth);
             updateDateFields();
-            calculateAndDisplayTotals(); // Recalculate on date change
+            updateReport(); // Re-query on date change
         }, calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH), calendar.get(Calendar.DAY_OF_MONTH));
         dialog.show();
     }
@@ -190,11 +167,10 @@ public class ReportsFragment extends Fragment {
             binding.actvFarmer.setOnItemClickListener((parent, view, position, id) -> {
                 if (position == 0) {
                     selectedFarmer = null; // All farmers
-                    fetchData(null);
                 } else {
                     selectedFarmer = farmersList.get(position - 1);
-                    fetchData(selectedFarmer.getId());
                 }
+                updateReport();
             });
         });
     }
@@ -262,6 +238,28 @@ public class ReportsFragment extends Fragment {
         layout.addView(card1, params);
         layout.addView(card2, params);
         
+        // Option 3: One statement per farmer, only offered for all farmers
+        com.google.android.material.card.MaterialCardView card3 = null;
+        if (selectedFarmer == null) {
+            card3 = new com.google.android.material.card.MaterialCardView(requireContext());
+            card3.setCardBackgroundColor(Color.WHITE);
+            card3.setStrokeColor(Color.parseColor("#0056b3"));
+            card3.setStrokeWidth(2);
+            card3.setRadius(20);
+            card3.setClickable(true);
+            card3.setFocusable(true);
+            
+            android.widget.TextView tv3 = new android.widget.TextView(requireContext());
+            tv3.setText("Statement for Each Farmer\n(ZIP)");
+            tv3.setPadding(40, 40, 40, 40);
+            tv3.setGravity(android.view.Gravity.CENTER);
+            tv3.setTextSize(16);
+            tv3.setTextColor(Color.parseColor("#0056b3"));
+            tv3.setTypeface(null, Typeface.BOLD);
+            card3.addView(tv3);
+            layout.addView(card3, params);
+        }
+        
         builder.setView(layout);
         builder.setNegativeButton("Cancel", null);
         
@@ -278,14 +276,115 @@ public class ReportsFragment extends Fragment {
             String name = selectedFarmer != null ? selectedFarmer.getName() : "All Farmers";
             String id = selectedFarmer != null ? selectedFarmer.getId() : null;
             
-            com.watersupply.utils.ReportGenerator generator = new com.watersupply.utils.ReportGenerator(requireContext());
-            generator.generateReport("v1", name, id, startDate.getTime(), endDate.getTime(), filteredSupplyEntries, filteredPayments, farmerNameMap);
-            openPdf(generator.getLastReportFile("v1", name));
+            startReport(name, id);
         });
         
+        if (card3 != null) {
+            card3.setOnClickListener(v -> {
+                dialog.dismiss();
+                startStatements();
+            });
+        }
+        
         dialog.show();
     }
 
+    /**
+     * Render the professional report in the background behind a cancellable progress dialog
+     */
+    private void startReport(String name, String id) {
+        if (reportJob != null || statementJob != null) return;
+        
+        ReportGenerator generator = new ReportGenerator(requireContext());
+        ReportGenerator.Job job = generator.generateReport("v1", name, id, startDate.getTime(), endDate.getTime(),
+            filteredSupplyEntries, filteredPayments, farmerNameMap, new ReportGenerator.Callback() {
+                @Override
+                public void onComplete(File file) {
+                    finishReport();
+                    if (binding == null) return;
+                    Toast.makeText(requireContext(), "Report saved: " + file.getName(), Toast.LENGTH_LONG).show();
+                    openPdf(file);
+                }
+
+                @Override
+                public void onFailure(String error) {
+                    finishReport();
+                    if (binding == null) return;
+                    Toast.makeText(requireContext(), "Error saving report: " + error, Toast.LENGTH_SHORT).show();
+                }
+            });
+        reportJob = job;
+        
+        reportDialog = new ProgressDialog(requireContext());
+        reportDialog.setMessage("Generating report...");
+        reportDialog.setCancelable(false);
+        reportDialog.setButton(DialogInterface.BUTTON_NEGATIVE, "Cancel", (d, which) -> {
+            job.cancel();
+            finishReport();
+        });
+        reportDialog.show();
+        
+        job.getProgress().observe(getViewLifecycleOwner(), progress -> {
+            if (progress != null && reportDialog != null && reportJob == job) {
+                reportDialog.setMessage("Generating report... page " + progress.pagesRendered
+                    + " (" + progress.rowsProcessed + " of " + progress.totalRows + " rows)");
+            }
+        });
+    }
+
+    /**
+     * Render a statement for every farmer over the selected period and share them as one zip.
+     * After a failure or cancel, starting again renders only the statements not yet done.
+     */
+    private void startStatements() {
+        if (reportJob != null || statementJob != null) return;
+        
+        BulkStatementGenerator generator = new BulkStatementGenerator(requireContext());
+        BulkStatementGenerator.Job job = generator.generateStatements(startDate.getTime(), endDate.getTime(),
+            filteredSupplyEntries, filteredPayments, farmerNameMap, new ReportGenerator.Callback() {
+                @Override
+                public void onComplete(File file) {
+                    finishReport();
+                    if (binding == null) return;
+                    Toast.makeText(requireContext(), "Statements saved: " + file.getName(), Toast.LENGTH_LONG).show();
+                    shareZip(file);
+                }
+
+                @Override
+                public void onFailure(String error) {
+                    finishReport();
+                    if (binding == null) return;
+                    Toast.makeText(requireContext(), "Error saving statements: " + error, Toast.LENGTH_LONG).show();
+                }
+            });
+        statementJob = job;
+        
+        reportDialog = new ProgressDialog(requireContext());
+        reportDialog.setMessage("Generating statements...");
+        reportDialog.setCancelable(false);
+        reportDialog.setButton(DialogInterface.BUTTON_NEGATIVE, "Cancel", (d, which) -> {
+            job.cancel();
+            finishReport();
+        });
+        reportDialog.show();
+        
+        job.getProgress().observe(getViewLifecycleOwner(), progress -> {
+            if (progress != null && reportDialog != null && statementJob == job) {
+                reportDialog.setMessage("Generating statements... " + progress.done + " of " + progress.total
+                    + (progress.failed > 0 ? " (" + progress.failed + " failed)" : ""));
+            }
+        });
+    }
+
+    private void finishReport() {
+        if (reportDialog != null) {
+            reportDialog.dismiss();
+            reportDialog = null;
+        }
+        reportJob = null;
+        statementJob = null;
+    }
+
     private void exportToCsv(String farmerName) {
         StringBuilder csvData = new StringBuilder();
         csvData.append("Date,Type,Details,Amount\n");
@@ -476,6 +575,15 @@ public class ReportsFragment extends Fragment {
         }
     }
 
+    private void shareZip(File file) {
+        Uri uri = FileProvider.getUriForFile(requireContext(), requireContext().getPackageName() + ".provider", file);
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("application/zip");
+        intent.putExtra(Intent.EXTRA_STREAM, uri);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        startActivity(Intent.createChooser(intent, "Share statements"));
+    }
+
     private void setupChart() {
         LineChart chart = binding.reportsRevenueChart;
         
@@ -535,6 +643,13 @@ public class ReportsFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        if (reportJob != null) {
+            reportJob.cancel();
+        }
+        if (statementJob != null) {
+            statementJob.cancel();
+        }
+        finishReport();
         binding = null;
     }
 }
@@ -1,13 +1,17 @@
 package com.watersupply.ui.reports;
 
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
 import androidx.lifecycle.ViewModel;
 
+import com.watersupply.data.local.LocalTotals;
 import com.watersupply.data.models.Farmer;
+import com.watersupply.data.models.Payment;
+import com.watersupply.data.models.SupplyEntry;
+import com.watersupply.data.repository.AnalyticsRepository;
 import com.watersupply.data.repository.AuthRepository;
 import com.watersupply.data.repository.FarmerRepository;
-import com.watersupply.data.repository.PaymentRepository;
-import com.watersupply.data.repository.SupplyRepository;
 
 import java.util.List;
 
@@ -19,36 +23,77 @@ import dagger.hilt.android.lifecycle.HiltViewModel;
 public class ReportsViewModel extends ViewModel {
 
     private final FarmerRepository farmerRepository;
-    private final SupplyRepository supplyRepository;
-    private final PaymentRepository paymentRepository;
+    private final AnalyticsRepository analyticsRepository;
     private final AuthRepository authRepository;
 
+    // Farmer and period the report covers; every result below follows it
+    private final MutableLiveData<ReportRange> range = new MutableLiveData<>();
+    private final LiveData<List<SupplyEntry>> supplyEntries;
+    private final LiveData<List<Payment>> payments;
+    private final LiveData<LocalTotals> supplyTotals;
+    private final LiveData<LocalTotals> paymentTotals;
+
     @Inject
-    public ReportsViewModel(FarmerRepository farmerRepository, 
-                          SupplyRepository supplyRepository,
-                          PaymentRepository paymentRepository,
+    public ReportsViewModel(FarmerRepository farmerRepository,
+                          AnalyticsRepository analyticsRepository,
                           AuthRepository authRepository) {
         this.farmerRepository = farmerRepository;
-        this.supplyRepository = supplyRepository;
-        this.paymentRepository = paymentRepository;
+        this.analyticsRepository = analyticsRepository;
         this.authRepository = authRepository;
+
+        String familyId = authRepository.getCurrentFamilyId();
+        supplyEntries = Transformations.switchMap(range, r ->
+            analyticsRepository.getSupplyEntries(familyId, r.farmerId, r.startDate, r.endDate));
+        payments = Transformations.switchMap(range, r ->
+            analyticsRepository.getPayments(familyId, r.farmerId, r.startDate, r.endDate));
+        supplyTotals = Transformations.switchMap(range, r ->
+            analyticsRepository.getSupplyTotals(familyId, r.farmerId, r.startDate, r.endDate));
+        paymentTotals = Transformations.switchMap(range, r ->
+            analyticsRepository.getPaymentTotals(familyId, r.farmerId, r.startDate, r.endDate));
     }
 
     public LiveData<List<Farmer>> getAllFarmers() {
         return farmerRepository.getAllFarmers(authRepository.getCurrentFamilyId());
     }
 
-    public LiveData<List<com.watersupply.data.models.SupplyEntry>> getSupplyEntries(String farmerId) {
-        if (farmerId == null || farmerId.isEmpty()) {
-            return supplyRepository.getAllSupplyEntries(authRepository.getCurrentFamilyId());
-        }
-        return supplyRepository.getSupplyEntriesByFarmer(authRepository.getCurrentFamilyId(), farmerId);
+    /**
+     * Select the farmer (null for all farmers) and inclusive yyyy-MM-dd period of the report
+     */
+    public void setReportRange(String farmerId, String startDate, String endDate) {
+        range.setValue(new ReportRange(farmerId, startDate, endDate));
+    }
+
+    /**
+     * Billed supply entries of the report, oldest first
+     */
+    public LiveData<List<SupplyEntry>> getSupplyEntries() {
+        return supplyEntries;
+    }
+
+    /**
+     * Payments of the report, oldest first
+     */
+    public LiveData<List<Payment>> getPayments() {
+        return payments;
+    }
+
+    public LiveData<LocalTotals> getSupplyTotals() {
+        return supplyTotals;
     }
 
-    public LiveData<List<com.watersupply.data.models.Payment>> getPayments(String farmerId) {
-        if (farmerId == null || farmerId.isEmpty()) {
-            return paymentRepository.getAllPayments(authRepository.getCurrentFamilyId());
+    public LiveData<LocalTotals> getPaymentTotals() {
+        return paymentTotals;
+    }
+
+    private static final class ReportRange {
+        final String farmerId;
+        final String startDate;
+        final String endDate;
+
+        ReportRange(String farmerId, String startDate, String endDate) {
+            this.farmerId = farmerId;
+            this.startDate = startDate;
+            this.endDate = endDate;
         }
-        return paymentRepository.getPaymentsByFarmer(authRepository.getCurrentFamilyId(), farmerId);
     }
 }
@@ -1,5 +1,6 @@
 package com.watersupply.ui.settings;
 
+import android.app.ProgressDialog;
 import android.content.Intent;
 import android.os.Bundle;
 import android.text.InputType;
@@ -7,6 +8,8 @@ import android.widget.EditText;
 import android.widget.LinearLayout;
 import android.widget.RadioGroup;
 import android.widget.Toast;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.app.AppCompatDelegate;
@@ -28,6 +31,15 @@ public class SettingsActivity extends AppCompatActivity {
     private SettingsViewModel viewModel;
     private ThemePreference themePreference;
     private AppSettings currentSettings;
+    private ProgressDialog progressDialog;
+    
+    private final ActivityResultLauncher<String[]> importFileLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(),
+            uri -> {
+                if (uri != null) {
+                    viewModel.importData(this, uri);
+                }
+            });
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -124,6 +136,47 @@ public class SettingsActivity extends AppCompatActivity {
                 Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
             }
         });
+        
+        viewModel.getClearProgress().observe(this, progress -> {
+            if (progress == null || progress.done) {
+                hideProgressDialog();
+            } else {
+                showProgressDialog("Deleting records... " + progress.deleted);
+            }
+        });
+
+        viewModel.getExportProgress().observe(this, progress -> {
+            if (progress == null || progress.done) {
+                hideProgressDialog();
+            } else {
+                showProgressDialog("Exporting records... " + progress.written);
+            }
+        });
+
+        viewModel.getImportProgress().observe(this, progress -> {
+            if (progress == null || progress.done) {
+                hideProgressDialog();
+            } else {
+                showProgressDialog("Importing records... " + progress.imported);
+            }
+        });
+    }
+    
+    private void showProgressDialog(String message) {
+        if (progressDialog == null) {
+            progressDialog = new ProgressDialog(this);
+            progressDialog.setCancelable(false);
+        }
+        progressDialog.setMessage(message);
+        if (!progressDialog.isShowing()) {
+            progressDialog.show();
+        }
+    }
+    
+    private void hideProgressDialog() {
+        if (progressDialog != null && progressDialog.isShowing()) {
+            progressDialog.dismiss();
+        }
     }
     
     private void showEditBusinessNameDialog() {
@@ -212,18 +265,9 @@ public class SettingsActivity extends AppCompatActivity {
     private void importData() {
         new AlertDialog.Builder(this)
             .setTitle("Import Data")
-            .setMessage("This will replace all current data. Make sure you have a backup first. Continue?")
-            .setPositiveButton("Import", (dialog, which) -> {
-                viewModel.importData(this, success -> {
-                    runOnUiThread(() -> {
-                        if (success) {
-                            Toast.makeText(this, "Data imported successfully", Toast.LENGTH_SHORT).show();
-                        } else {
-                            Toast.makeText(this, "Failed to import data", Toast.LENGTH_SHORT).show();
-                        }
-                    });
-                });
-            })
+            .setMessage("Farmers, supply entries and payments from the backup file will be added to your current data. Continue?")
+            .setPositiveButton("Import", (dialog, which) ->
+                importFileLauncher.launch(new String[] {"text/csv", "text/comma-separated-values", "text/plain"}))
             .setNegativeButton("Cancel", null)
             .show();
     }
@@ -234,7 +278,6 @@ public class SettingsActivity extends AppCompatActivity {
             .setMessage("This will permanently delete all farmers, supply entries, and payment records. This action cannot be undone!")
             .setPositiveButton("Delete All", (dialog, which) -> {
                 viewModel.clearAllData();
-                Toast.makeText(this, "All data cleared", Toast.LENGTH_SHORT).show();
             })
             .setNegativeButton("Cancel", null)
             .setIcon(android.R.drawable.ic_dialog_alert)
@@ -265,6 +308,7 @@ public class SettingsActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        hideProgressDialog();
         binding = null;
     }
 }
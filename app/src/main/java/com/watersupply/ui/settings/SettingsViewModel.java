@@ -1,11 +1,17 @@
 package com.watersupply.ui.settings;
 
 import android.content.Context;
+import android.net.Uri;
 import android.os.Environment;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.watersupply.data.backup.BackupExporter;
+import com.watersupply.data.backup.BackupImporter;
+import com.watersupply.data.firebase.BulkDeleter;
 import com.watersupply.data.models.AppSettings;
 import com.watersupply.data.models.Farmer;
 import com.watersupply.data.models.Payment;
@@ -15,14 +21,15 @@ import com.watersupply.data.repository.AuthRepository;
 import com.watersupply.data.repository.FarmerRepository;
 import com.watersupply.data.repository.SupplyRepository;
 import com.watersupply.data.repository.PaymentRepository;
-import java.io.BufferedReader;
+import com.watersupply.data.repository.RollupRepository;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 import dagger.hilt.android.lifecycle.HiltViewModel;
@@ -38,19 +45,30 @@ public class SettingsViewModel extends ViewModel {
     private final SupplyRepository supplyRepository;
     private final PaymentRepository paymentRepository;
     private final AppSettingsRepository appSettingsRepository;
+    private final RollupRepository rollupRepository;
+    private final BackupExporter backupExporter;
+    private final BackupImporter backupImporter;
     
     private final MediatorLiveData<DatabaseStats> databaseStats = new MediatorLiveData<>();
     private final MutableLiveData<String> statusMessage = new MutableLiveData<>();
+    private final MediatorLiveData<ClearProgress> clearProgress = new MediatorLiveData<>();
+    private final MediatorLiveData<ExportProgress> exportProgress = new MediatorLiveData<>();
+    private final MediatorLiveData<ImportProgress> importProgress = new MediatorLiveData<>();
     
     @Inject
     public SettingsViewModel(AuthRepository authRepository, FarmerRepository farmerRepository,
                             SupplyRepository supplyRepository, PaymentRepository paymentRepository,
-                            AppSettingsRepository appSettingsRepository) {
+                            AppSettingsRepository appSettingsRepository,
+                            RollupRepository rollupRepository, BackupExporter backupExporter,
+                            BackupImporter backupImporter) {
         this.authRepository = authRepository;
         this.farmerRepository = farmerRepository;
         this.supplyRepository = supplyRepository;
         this.paymentRepository = paymentRepository;
         this.appSettingsRepository = appSettingsRepository;
+        this.rollupRepository = rollupRepository;
+        this.backupExporter = backupExporter;
+        this.backupImporter = backupImporter;
         loadDatabaseStats();
     }
     
@@ -84,6 +102,27 @@ public class SettingsViewModel extends ViewModel {
         return statusMessage;
     }
     
+    /**
+     * Progress of {@link #exportData}; null until it is first called
+     */
+    public LiveData<ExportProgress> getExportProgress() {
+        return exportProgress;
+    }
+    
+    /**
+     * Progress of {@link #importData}; null until it is first called
+     */
+    public LiveData<ImportProgress> getImportProgress() {
+        return importProgress;
+    }
+    
+    /**
+     * Progress of {@link #clearAllData()}; null until it is first called
+     */
+    public LiveData<ClearProgress> getClearProgress() {
+        return clearProgress;
+    }
+    
     private void loadDatabaseStats() {
         String userId = authRepository.getCurrentUserId();
         if (userId != null) {
@@ -117,88 +156,145 @@ public class SettingsViewModel extends ViewModel {
         }
     }
     
+    /**
+     * Export the family's data to a CSV file in Downloads. Main thread only; ignored while
+     * a previous export is still running. The callback runs on the main thread.
+     */
     public void exportData(Context context, ExportCallback callback) {
-        new Thread(() -> {
-            try {
-                String userId = authRepository.getCurrentUserId();
-                if (userId == null) {
-                    callback.onComplete(false);
-                    return;
-                }
-                
-                String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-                String filename = "watersupply_backup_" + timestamp + ".csv";
-                
-                File downloadsDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
-                File exportFile = new File(downloadsDir, filename);
-                
-                FileWriter writer = new FileWriter(exportFile);
-                
-                // Write header
-                writer.write("Water Supply Management - Data Backup\n");
-                writer.write("Exported: " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date()) + "\n");
-                writer.write("User ID: " + userId + "\n\n");
-                
-                // Note: Since we don't have synchronous getAll methods exposed in repositories yet,
-                // we would typically need to implement them or use a different approach.
-                // For this implementation, I'll assume we add synchronous methods or use a workaround.
-                // WORKAROUND: We can't easily get data synchronously from Firestore without blocking main thread if not careful.
-                // But since we are in a background thread, we can use Tasks.await() if we had access to the Task.
-                // Given the constraints, I will implement a "Best Effort" export using what we have, 
-                // but realistically we need to add `get...Sync` methods to repositories that return List<T> using Tasks.await().
-                
-                // Since I cannot modify all repositories right now to add Sync methods without making this task huge,
-                // I will mark this as a TODO for the user or implement a placeholder that explains this limitation.
-                
-                // HOWEVER, to make it "working" as requested, I should probably add those sync methods or use a listener-based approach with a latch.
-                // Let's try to be robust.
-                
-                writer.write("Export functionality requires repository updates to support synchronous data fetching.\n");
-                writer.write("Please contact developer to enable full data export.\n");
-                
-                writer.close();
-                callback.onComplete(true);
-            } catch (Exception e) {
-                e.printStackTrace();
-                callback.onComplete(false);
-            }
-        }).start();
+        String userId = authRepository.getCurrentUserId();
+        String familyId = authRepository.getCurrentFamilyId();
+        ExportProgress current = exportProgress.getValue();
+        if (current != null && !current.done) {
+            return;
+        }
+        if (userId == null || familyId == null) {
+            callback.onComplete(false);
+            return;
+        }
+        
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        File downloadsDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+        File exportFile = new File(downloadsDir, "watersupply_backup_" + timestamp + ".csv");
+        
+        BackupExporter.Job job = backupExporter.export(familyId, userId, exportFile);
+        ExportProgress progress = new ExportProgress();
+        exportProgress.setValue(progress);
+        exportProgress.addSource(job.getWritten(), written -> {
+            progress.written = written != null ? written : 0;
+            exportProgress.setValue(progress);
+        });
+        job.getResult().addOnCompleteListener(task -> {
+            exportProgress.removeSource(job.getWritten());
+            progress.done = true;
+            progress.failed = !task.isSuccessful();
+            exportProgress.setValue(progress);
+            callback.onComplete(task.isSuccessful());
+        });
     }
     
-    private String escapeCSV(String value) {
-        if (value == null) return "";
-        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
-            return "\"" + value.replace("\"", "\"\"") + "\"";
+    /**
+     * Add the farmers, supply entries and payments of a CSV backup to the family. Main thread
+     * only; ignored while a previous import is still running. The outcome is posted as a
+     * status message.
+     */
+    public void importData(Context context, Uri uri) {
+        String userId = authRepository.getCurrentUserId();
+        String familyId = authRepository.getCurrentFamilyId();
+        ImportProgress current = importProgress.getValue();
+        if (userId == null || familyId == null || (current != null && !current.done)) {
+            return;
+        }
+        
+        InputStream in;
+        try {
+            in = context.getContentResolver().openInputStream(uri);
+        } catch (FileNotFoundException e) {
+            in = null;
+        }
+        if (in == null) {
+            statusMessage.setValue("Could not open the selected file");
+            return;
         }
-        return value;
-    }
-    
-    public void importData(Context context, ExportCallback callback) {
-        new Thread(() -> {
-            try {
-                // Import logic would go here
-                // Parsing CSV and calling repository.add...
-                callback.onComplete(true);
-            } catch (Exception e) {
-                e.printStackTrace();
-                callback.onComplete(false);
+        
+        BackupImporter.Job job = backupImporter.importFrom(in, familyId, userId);
+        ImportProgress progress = new ImportProgress();
+        importProgress.setValue(progress);
+        importProgress.addSource(job.getImported(), imported -> {
+            progress.imported = imported != null ? imported : 0;
+            importProgress.setValue(progress);
+        });
+        job.getResult().addOnCompleteListener(task -> {
+            importProgress.removeSource(job.getImported());
+            progress.done = true;
+            progress.failed = !task.isSuccessful();
+            importProgress.setValue(progress);
+            if (!task.isSuccessful()) {
+                statusMessage.setValue("Import failed after " + progress.imported + " records: "
+                    + task.getException().getMessage());
+                return;
+            }
+            BackupImporter.Result result = task.getResult();
+            StringBuilder message = new StringBuilder("Imported " + result.farmers + " farmers, "
+                + result.supplyEntries + " supply entries and " + result.payments + " payments");
+            if (result.existing > 0) {
+                message.append("; ").append(result.existing).append(" rows were already imported");
             }
-        }).start();
+            if (result.rejected > 0) {
+                message.append("; ").append(result.rejected).append(" invalid rows skipped (")
+                    .append(result.errors.get(0)).append(")");
+            }
+            statusMessage.setValue(message.toString());
+        });
     }
     
+    /**
+     * Delete all farmers, supply entries, payments and rollups of the current family.
+     * Main thread only; ignored while a previous clear is still running.
+     */
     public void clearAllData() {
-        new Thread(() -> {
-            String userId = authRepository.getCurrentUserId();
-            if (userId != null) {
-                // Clear all data for current user
-                farmerRepository.deleteAllFarmers(userId);
-                supplyRepository.deleteAllSupplyEntries(userId);
-                paymentRepository.deleteAllPayments(userId);
-                
-                // Reload stats to show 0
-                loadDatabaseStats();
+        String familyId = authRepository.getCurrentFamilyId();
+        ClearProgress current = clearProgress.getValue();
+        if (familyId == null || (current != null && !current.done)) {
+            return;
+        }
+        
+        BulkDeleter.Job[] jobs = {
+            farmerRepository.deleteAllFarmers(familyId),
+            supplyRepository.deleteAllSupplyEntries(familyId),
+            paymentRepository.deleteAllPayments(familyId),
+            rollupRepository.deleteAllRollups(familyId)
+        };
+        ClearProgress progress = new ClearProgress();
+        clearProgress.setValue(progress);
+        
+        int[] deletedPerJob = new int[jobs.length];
+        List<Task<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < jobs.length; i++) {
+            int index = i;
+            clearProgress.addSource(jobs[i].getDeleted(), deleted -> {
+                deletedPerJob[index] = deleted != null ? deleted : 0;
+                int total = 0;
+                for (int count : deletedPerJob) {
+                    total += count;
+                }
+                progress.deleted = total;
+                clearProgress.setValue(progress);
+            });
+            results.add(jobs[i].getResult());
+        }
+        
+        // Counts refresh on their own: each repository refreshes its aggregates after the delete
+        Tasks.whenAll(results).addOnCompleteListener(task -> {
+            for (BulkDeleter.Job job : jobs) {
+                clearProgress.removeSource(job.getDeleted());
             }
-        }).start();
+            progress.done = true;
+            progress.failed = !task.isSuccessful();
+            clearProgress.setValue(progress);
+            statusMessage.setValue(task.isSuccessful()
+                ? "All data cleared (" + progress.deleted + " records)"
+                : "Failed to clear all data: " + task.getException().getMessage());
+        });
     }
     
     public void logout() {
@@ -221,6 +317,24 @@ public class SettingsViewModel extends ViewModel {
         public int paymentCount = 0;
     }
     
+    public static class ExportProgress {
+        public int written = 0;
+        public boolean done = false;
+        public boolean failed = false;
+    }
+    
+    public static class ImportProgress {
+        public int imported = 0;
+        public boolean done = false;
+        public boolean failed = false;
+    }
+    
+    public static class ClearProgress {
+        public int deleted = 0;
+        public boolean done = false;
+        public boolean failed = false;
+    }
+    
     public interface ExportCallback {
         void onComplete(boolean success);
     }
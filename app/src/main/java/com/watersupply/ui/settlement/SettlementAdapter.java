@@ -5,19 +5,19 @@ import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.DiffUtil;
-import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.watersupply.R;
 import com.watersupply.data.models.Settlement;
 import com.watersupply.databinding.ItemSettlementBinding;
+import com.watersupply.ui.common.ChangeSetAdapter;
 import com.watersupply.utils.CurrencyFormatter;
 import com.watersupply.utils.DateFormatter;
 
 /**
  * Adapter for displaying settlement history in RecyclerView
  */
-public class SettlementAdapter extends ListAdapter<Settlement, SettlementAdapter.ViewHolder> {
+public class SettlementAdapter extends ChangeSetAdapter<Settlement, SettlementAdapter.ViewHolder> {
 
     private final OnSettlementClickListener listener;
     private boolean isDetailMode = false;
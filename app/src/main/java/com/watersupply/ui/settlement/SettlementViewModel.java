@@ -58,16 +58,23 @@ public class SettlementViewModel extends ViewModel {
 
         isLoading.setValue(true);
 
+        // A settlement interrupted part way would leave entries half settled; finish it first
+        settlementRepository.recoverInterruptedSettlements(familyId)
+            .addOnCompleteListener(task -> loadUnsettledEntries(farmerId, familyId));
+    }
+
+    private void loadUnsettledEntries(String farmerId, String familyId) {
         // Load unsettled entries
         settlementRepository.getUnsettledSupplyEntries(familyId, farmerId,
             new SettlementRepository.OnDataCallback<List<SupplyEntry>>() {
                 @Override
                 public void onSuccess(List<SupplyEntry> entries) {
                     unsettledEntries.setValue(entries);
-                    double charges = 0;
+                    long chargesPaise = 0;
                     for (SupplyEntry entry : entries) {
-                        charges = BillingCalculator.addAmounts(charges, entry.getAmount());
+                        chargesPaise += BillingCalculator.toPaise(entry.getAmount());
                     }
+                    double charges = BillingCalculator.fromPaise(chargesPaise);
                     totalCharges.setValue(charges);
 
                     // Now load unlinked payments
@@ -88,10 +95,11 @@ public class SettlementViewModel extends ViewModel {
                 @Override
                 public void onSuccess(List<Payment> payments) {
                     unlinkedPayments.setValue(payments);
-                    double prevPayments = 0;
+                    long prevPaymentsPaise = 0;
                     for (Payment p : payments) {
-                        prevPayments = BillingCalculator.addAmounts(prevPayments, p.getAmount());
+                        prevPaymentsPaise += BillingCalculator.toPaise(p.getAmount());
                     }
+                    double prevPayments = BillingCalculator.fromPaise(prevPaymentsPaise);
                     totalPreviousPayments.setValue(prevPayments);
                     outstandingAmount.setValue(
                         BillingCalculator.normalizeAmount(charges - prevPayments));
@@ -37,6 +37,8 @@ public class NewSupplyActivity extends AppCompatActivity {
     private boolean isEditMode = false;
     private SupplyEntry editingEntry;
     private double originalAmount = 0.0;
+    private String originalDate;
+    private Double originalHours;
     
     private String farmerId;
     private String selectedFarmerName;
@@ -63,6 +65,8 @@ public class NewSupplyActivity extends AppCompatActivity {
             farmerId = editingEntry.getFarmerId();
             oldFarmerId = farmerId; // Capture original farmer
             originalAmount = editingEntry.getAmount();
+            originalDate = editingEntry.getDate();
+            originalHours = editingEntry.getTotalTimeUsed();
             binding.toolbar.setTitle("Edit Supply Entry");
             binding.btnSave.setText("Update Entry");
         } else {
@@ -458,7 +462,7 @@ public class NewSupplyActivity extends AppCompatActivity {
             }
             
             if (isEditMode) {
-                viewModel.updateSupplyEntry(entry, originalAmount, oldFarmerId);
+                viewModel.updateSupplyEntry(entry, originalAmount, oldFarmerId, originalDate, originalHours);
             } else {
                 viewModel.saveSupplyEntry(entry);
             }
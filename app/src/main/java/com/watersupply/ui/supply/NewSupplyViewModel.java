@@ -72,13 +72,14 @@ public class NewSupplyViewModel extends ViewModel {
         saveSuccess.postValue(true);
     }
 
-    public void updateSupplyEntry(SupplyEntry entry, double oldAmount, String oldFarmerId) {
+    public void updateSupplyEntry(SupplyEntry entry, double oldAmount, String oldFarmerId,
+                                  String oldDate, Double oldHours) {
         if (!validateEntry(entry)) {
             return;
         }
 
         // Repository now handles the balance update internally
-        supplyRepository.updateSupplyEntry(entry, oldAmount, oldFarmerId);
+        supplyRepository.updateSupplyEntry(entry, oldAmount, oldFarmerId, oldDate, oldHours);
         saveSuccess.postValue(true);
     }
     
@@ -5,11 +5,11 @@ import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.DiffUtil;
-import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.watersupply.data.models.SupplyEntry;
 import com.watersupply.databinding.ItemSupplyEntryBinding;
+import com.watersupply.ui.common.ChangeSetAdapter;
 import com.watersupply.utils.CurrencyFormatter;
 import com.watersupply.utils.DateFormatter;
 import com.watersupply.utils.UsageHoursFormatter;
@@ -19,7 +19,7 @@ import java.util.Locale;
 /**
  * Adapter for displaying supply entries in RecyclerView
  */
-public class SupplyEntryAdapter extends ListAdapter<SupplyEntry, SupplyEntryAdapter.ViewHolder> {
+public class SupplyEntryAdapter extends ChangeSetAdapter<SupplyEntry, SupplyEntryAdapter.ViewHolder> {
     
     private final OnSupplyEntryClickListener listener;
     private boolean isDetailMode = false;
@@ -18,6 +18,7 @@ import com.watersupply.R;
 import com.watersupply.databinding.ActivitySupplyListBinding;
 import com.watersupply.data.models.SupplyEntry;
 import com.watersupply.data.repository.FarmerRepository;
+import com.watersupply.ui.common.PrefetchScrollListener;
 import com.watersupply.utils.DateFormatter;
 import com.watersupply.utils.CurrencyFormatter;
 import com.watersupply.utils.UsageHoursFormatter;
@@ -26,6 +27,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Locale;
 
 import javax.inject.Inject;
@@ -40,6 +42,7 @@ public class SupplyListActivity extends AppCompatActivity {
     private ActivitySupplyListBinding binding;
     private SupplyListViewModel viewModel;
     private SupplyEntryAdapter adapter;
+    private PrefetchScrollListener prefetchListener;
     private String startDate = null;
     private String endDate = null;
     private Calendar calendar = Calendar.getInstance();
@@ -94,6 +97,10 @@ public class SupplyListActivity extends AppCompatActivity {
         
         binding.recyclerView.setLayoutManager(new LinearLayoutManager(this));
         binding.recyclerView.setAdapter(adapter);
+        
+        // Entries are read a page at a time; ask for the next one before the end is reached
+        prefetchListener = new PrefetchScrollListener(viewModel::canLoadMore, viewModel::loadMore);
+        binding.recyclerView.addOnScrollListener(prefetchListener);
     }
     
     private void showDeleteConfirmation(SupplyEntry entry) {
@@ -113,9 +120,11 @@ public class SupplyListActivity extends AppCompatActivity {
     }
     
     private void observeSupplyEntries() {
-        viewModel.getSupplyEntries().observe(this, entries -> {
+        viewModel.getSupplyEntryChanges().observe(this, changes -> {
             binding.progressBar.setVisibility(View.GONE);
-            if (entries == null || entries.isEmpty()) {
+            adapter.applyChanges(changes, viewModel::matchesFilter, viewModel.getComparator());
+            binding.recyclerView.post(() -> prefetchListener.prefetch(binding.recyclerView));
+            if (adapter.getItemCount() == 0) {
                 binding.emptyView.setVisibility(View.VISIBLE);
                 binding.recyclerView.setVisibility(View.GONE);
                 binding.statsCard.setVisibility(View.GONE);
@@ -123,7 +132,6 @@ public class SupplyListActivity extends AppCompatActivity {
                 binding.emptyView.setVisibility(View.GONE);
                 binding.recyclerView.setVisibility(View.VISIBLE);
                 binding.statsCard.setVisibility(View.VISIBLE);
-                adapter.submitList(entries);
             }
         });
     }
@@ -223,43 +231,49 @@ public class SupplyListActivity extends AppCompatActivity {
     }
     
     private void exportToCSV() {
-        viewModel.getSupplyEntries().observe(this, entries -> {
-            if (entries == null || entries.isEmpty()) {
-                Toast.makeText(this, "No data to export", Toast.LENGTH_SHORT).show();
-                return;
-            }
-            
-            new Thread(() -> {
-                try {
-                    String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(System.currentTimeMillis());
-                    String filename = "supply_entries_" + timestamp + ".csv";
-                    
-                    File downloadsDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
-                    File exportFile = new File(downloadsDir, filename);
-                    
-                    FileWriter writer = new FileWriter(exportFile);
-                    writer.write("Date,Farmer,Billing Method,Time Used,Water Used,Rate,Amount\n");
-                    
-                    for (var entry : entries) {
-                        writer.write(String.format(Locale.US, "%s,%s,%s,%s,%.2f,%.2f,%.2f\n",
-                            entry.getDate(),
-                            entry.getFarmerName() != null ? entry.getFarmerName() : "Unknown",
-                            entry.getBillingMethod(),
-                            UsageHoursFormatter.format(
-                                entry.getTotalTimeUsed() != null ? entry.getTotalTimeUsed() : 0.0),
-                            entry.getTotalWaterUsed() != null ? entry.getTotalWaterUsed() : 0.0,
-                            entry.getRate(),
-                            entry.getAmount()));
-                    }
-                    
-                    writer.close();
-                    runOnUiThread(() -> Toast.makeText(this, "Exported to " + filename, Toast.LENGTH_LONG).show());
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    runOnUiThread(() -> Toast.makeText(this, "Export failed: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+        // The list only holds the loaded pages, so read the whole range for the file
+        viewModel.fetchFilteredSupplyEntries()
+            .addOnSuccessListener(this, this::writeCSV)
+            .addOnFailureListener(this, e ->
+                Toast.makeText(this, "Export failed: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+    }
+    
+    private void writeCSV(List<SupplyEntry> entries) {
+        if (entries.isEmpty()) {
+            Toast.makeText(this, "No data to export", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        
+        new Thread(() -> {
+            try {
+                String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(System.currentTimeMillis());
+                String filename = "supply_entries_" + timestamp + ".csv";
+                
+                File downloadsDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+                File exportFile = new File(downloadsDir, filename);
+                
+                FileWriter writer = new FileWriter(exportFile);
+                writer.write("Date,Farmer,Billing Method,Time Used,Water Used,Rate,Amount\n");
+                
+                for (var entry : entries) {
+                    writer.write(String.format(Locale.US, "%s,%s,%s,%s,%.2f,%.2f,%.2f\n",
+                        entry.getDate(),
+                        entry.getFarmerName() != null ? entry.getFarmerName() : "Unknown",
+                        entry.getBillingMethod(),
+                        UsageHoursFormatter.format(
+                            entry.getTotalTimeUsed() != null ? entry.getTotalTimeUsed() : 0.0),
+                        entry.getTotalWaterUsed() != null ? entry.getTotalWaterUsed() : 0.0,
+                        entry.getRate(),
+                        entry.getAmount()));
                 }
-            }).start();
-        });
+                
+                writer.close();
+                runOnUiThread(() -> Toast.makeText(this, "Exported to " + filename, Toast.LENGTH_LONG).show());
+            } catch (Exception e) {
+                e.printStackTrace();
+                runOnUiThread(() -> Toast.makeText(this, "Export failed: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+            }
+        }).start();
     }
     
     @Override
@@ -0,0 +1,106 @@
+package com.watersupply.ui.supply;
+
+import com.watersupply.data.models.SupplyEntry;
+import com.watersupply.utils.BillingCalculator;
+import com.watersupply.utils.EpochDays;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Date filtering, sorting and totals of the supply list.
+ * Kept free of Android types so it can be benchmarked on the JVM.
+ */
+public class SupplyListFilter {
+    // Inclusive epoch-day bounds, parsed once per range change
+    private boolean dateFilterActive = false;
+    private int startDay = Integer.MIN_VALUE;
+    private int endDay = Integer.MAX_VALUE;
+
+    public void setDateRange(String startDate, String endDate) {
+        this.dateFilterActive = startDate != null || endDate != null;
+        int start = EpochDays.parse(startDate);
+        int end = EpochDays.parse(endDate);
+        this.startDay = start != EpochDays.NONE ? start : Integer.MIN_VALUE;
+        this.endDay = end != EpochDays.NONE ? end : Integer.MAX_VALUE;
+    }
+
+    private static final Comparator<String> BY_ID = Comparator.nullsLast(Comparator.<String>naturalOrder());
+
+    /**
+     * Newest first: by date, then by creation time. Ties fall back to the document id, the
+     * order the query returns them in, so the order is total.
+     */
+    public static final Comparator<SupplyEntry> NEWEST_FIRST = new Comparator<SupplyEntry>() {
+        @Override
+        public int compare(SupplyEntry e1, SupplyEntry e2) {
+            // Handle nulls
+            if (e1.getDate() == null || e2.getDate() == null) {
+                if (e1.getDate() != null) return -1;
+                if (e2.getDate() != null) return 1;
+            } else {
+                // Compare dates (descending)
+                int dateComparison = e2.getDate().compareTo(e1.getDate());
+                if (dateComparison != 0) return dateComparison;
+            }
+
+            // Secondary sort by createdAt if available
+            if (e1.getCreatedAt() != null && e2.getCreatedAt() != null) {
+                int createdComparison = e2.getCreatedAt().compareTo(e1.getCreatedAt());
+                if (createdComparison != 0) return createdComparison;
+            }
+            return BY_ID.compare(e1.getId(), e2.getId());
+        }
+    };
+
+    /**
+     * Entries inside the date range, newest first
+     */
+    public List<SupplyEntry> apply(List<SupplyEntry> entries) {
+        List<SupplyEntry> filtered = new ArrayList<>();
+
+        // Apply date range filter
+        for (SupplyEntry entry : entries) {
+            if (matchesDateFilter(entry)) {
+                filtered.add(entry);
+            }
+        }
+
+        // Sort by date descending (default)
+        Collections.sort(filtered, NEWEST_FIRST);
+
+        return filtered;
+    }
+
+    /**
+     * Check if entry matches date filter
+     */
+    public boolean matchesDateFilter(SupplyEntry entry) {
+        if (!dateFilterActive) {
+            return true; // No filter
+        }
+
+        int day = entry.getEpochDay();
+        return day != EpochDays.NONE && day >= startDay && day <= endDay;
+    }
+
+    public static double totalHours(List<SupplyEntry> entries) {
+        long hundredths = 0;
+        for (SupplyEntry entry : entries) {
+            if (entry.getTotalTimeUsed() != null) {
+                hundredths += BillingCalculator.toHundredths(entry.getTotalTimeUsed());
+            }
+        }
+        return BillingCalculator.fromHundredths(hundredths);
+    }
+
+    public static double totalRevenue(List<SupplyEntry> entries) {
+        long paise = 0;
+        for (SupplyEntry entry : entries) {
+            paise += BillingCalculator.toPaise(entry.getAmount());
+        }
+        return BillingCalculator.fromPaise(paise);
+    }
+}
@@ -5,21 +5,17 @@ import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import com.google.android.gms.tasks.Task;
+import com.watersupply.data.firebase.ChangeSet;
+import com.watersupply.data.firebase.PagedQueryLiveData;
 import com.watersupply.data.models.SupplyEntry;
 import com.watersupply.data.repository.AuthRepository;
 import com.watersupply.data.repository.FarmerRepository;
 import com.watersupply.data.repository.SupplyRepository;
-import com.watersupply.utils.BillingCalculator;
 
-import java.util.Collections;
-import java.util.Comparator;
-
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Locale;
 
 import javax.inject.Inject;
 
@@ -31,23 +27,26 @@ import dagger.hilt.android.lifecycle.HiltViewModel;
 @HiltViewModel
 public class SupplyListViewModel extends ViewModel {
     private final SupplyRepository supplyRepository;
-    private final String userId;
     private final String familyId;
     
-    // Filtered supply entries
-    private final MediatorLiveData<List<SupplyEntry>> filteredSupplyEntries = new MediatorLiveData<>();
+    // Supply entry changes; the list applies them with the filter and order below
+    private final MediatorLiveData<ChangeSet<SupplyEntry>> supplyEntryChanges = new MediatorLiveData<>();
     
     // Statistics LiveData
     private final MutableLiveData<Integer> totalEntries = new MutableLiveData<>(0);
     private final MutableLiveData<Double> totalHours = new MutableLiveData<>(0.0);
     private final MutableLiveData<Double> totalRevenue = new MutableLiveData<>(0.0);
     
-    // Cached data for filtering
-    private List<SupplyEntry> cachedSupplyEntries = new ArrayList<>();
-    private String startDateFilter = null;
-    private String endDateFilter = null;
+    // The filter the pages were read with
+    private final SupplyListFilter filter = new SupplyListFilter();
+    private String startDate;
+    private String endDate;
     
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+    // The pages and the server totals of the current date range
+    private PagedQueryLiveData<SupplyEntry> pager;
+    private LiveData<Integer> countSource;
+    private LiveData<Double> hoursSource;
+    private LiveData<Double> revenueSource;
     
     private final FarmerRepository farmerRepository;
     
@@ -55,16 +54,37 @@ public class SupplyListViewModel extends ViewModel {
     public SupplyListViewModel(SupplyRepository supplyRepository, AuthRepository authRepository, FarmerRepository farmerRepository) {
         this.supplyRepository = supplyRepository;
         this.farmerRepository = farmerRepository;
-        this.userId = authRepository.getCurrentUserId();
         this.familyId = authRepository.getCurrentFamilyId();
         
         // Initialize filtered entries
         if (familyId != null) {
-            LiveData<List<SupplyEntry>> allEntries = supplyRepository.getAllSupplyEntries(familyId);
-            filteredSupplyEntries.addSource(allEntries, entries -> {
-                cachedSupplyEntries = entries != null ? entries : new ArrayList<>();
-                applyFilter();
-            });
+            connect();
+        }
+    }
+    
+    /**
+     * Read the current date range page by page. The totals cover the whole range, not just
+     * the loaded pages, so they come from server aggregates.
+     */
+    private void connect() {
+        disconnect();
+        pager = supplyRepository.getSupplyEntryPages(familyId, startDate, endDate, PagedQueryLiveData.DEFAULT_PAGE_SIZE);
+        supplyEntryChanges.addSource(pager, supplyEntryChanges::setValue);
+        countSource = supplyRepository.getSupplyEntryCount(familyId, startDate, endDate);
+        supplyEntryChanges.addSource(countSource, totalEntries::setValue);
+        hoursSource = supplyRepository.getTotalTimeUsed(familyId, startDate, endDate);
+        supplyEntryChanges.addSource(hoursSource, totalHours::setValue);
+        revenueSource = supplyRepository.getTotalRevenue(familyId, startDate, endDate);
+        supplyEntryChanges.addSource(revenueSource, totalRevenue::setValue);
+    }
+    
+    private void disconnect() {
+        if (pager != null) {
+            supplyEntryChanges.removeSource(pager);
+            supplyEntryChanges.removeSource(countSource);
+            supplyEntryChanges.removeSource(hoursSource);
+            supplyEntryChanges.removeSource(revenueSource);
+            pager = null;
         }
     }
     
@@ -73,16 +93,53 @@ public class SupplyListViewModel extends ViewModel {
         return farmerRepository.getAllFarmers(familyId);
     }
     
-    public LiveData<List<SupplyEntry>> getSupplyEntries() {
-        return filteredSupplyEntries;
+    public LiveData<ChangeSet<SupplyEntry>> getSupplyEntryChanges() {
+        return supplyEntryChanges;
+    }
+    
+    /**
+     * Whether an entry passes the current filter
+     */
+    public boolean matchesFilter(SupplyEntry entry) {
+        return filter.matchesDateFilter(entry);
+    }
+    
+    /**
+     * Order of the list, newest first
+     */
+    public Comparator<SupplyEntry> getComparator() {
+        return SupplyListFilter.NEWEST_FIRST;
+    }
+    
+    /**
+     * Every entry passing the current filter, newest first, including pages that have not
+     * been loaded yet
+     */
+    public Task<List<SupplyEntry>> fetchFilteredSupplyEntries() {
+        return supplyRepository.fetchSupplyEntries(familyId, startDate, endDate)
+            .continueWith(task -> filter.apply(task.getResult()));
+    }
+    
+    /**
+     * Load the next page of the list
+     */
+    public void loadMore() {
+        if (pager != null) {
+            pager.loadMore();
+        }
+    }
+    
+    public boolean canLoadMore() {
+        return pager != null && pager.canLoadMore();
     }
     
     /**
      * Filter supply entries by date range
      */
     public void filterByDateRange(String startDate, String endDate) {
-        this.startDateFilter = startDate;
-        this.endDateFilter = endDate;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        filter.setDateRange(startDate, endDate);
         applyFilter();
     }
     
@@ -90,8 +147,9 @@ public class SupplyListViewModel extends ViewModel {
      * Clear all filters
      */
     public void clearFilter() {
-        this.startDateFilter = null;
-        this.endDateFilter = null;
+        startDate = null;
+        endDate = null;
+        filter.setDateRange(null, null);
         applyFilter();
     }
     
@@ -131,98 +189,11 @@ public class SupplyListViewModel extends ViewModel {
     }
     
     /**
-     * Apply current filters to cached entries
+     * Read the pages of the current filter, starting over from the first one
      */
     private void applyFilter() {
-        List<SupplyEntry> filtered = new ArrayList<>();
-        
-        // Apply date range filter
-        for (SupplyEntry entry : cachedSupplyEntries) {
-            if (matchesDateFilter(entry)) {
-                filtered.add(entry);
-            }
-        }
-        
-        // Update filtered entries
-        
-        // Sort by date descending (default)
-        Collections.sort(filtered, new Comparator<SupplyEntry>() {
-            @Override
-            public int compare(SupplyEntry e1, SupplyEntry e2) {
-                // Handle nulls
-                if (e1.getDate() == null) return 1;
-                if (e2.getDate() == null) return -1;
-                
-                // Compare dates (descending)
-                int dateComparison = e2.getDate().compareTo(e1.getDate());
-                if (dateComparison != 0) return dateComparison;
-                
-                // Secondary sort by createdAt if available
-                if (e1.getCreatedAt() != null && e2.getCreatedAt() != null) {
-                    return e2.getCreatedAt().compareTo(e1.getCreatedAt());
-                }
-                return 0;
-            }
-        });
-
-        filteredSupplyEntries.setValue(filtered);
-        
-        // Calculate statistics
-        calculateStatistics(filtered);
-    }
-    
-    /**
-     * Check if entry matches date filter
-     */
-    private boolean matchesDateFilter(SupplyEntry entry) {
-        if (startDateFilter == null && endDateFilter == null) {
-            return true; // No filter
-        }
-        
-        try {
-            Date entryDate = dateFormat.parse(entry.getDate());
-            if (entryDate == null) {
-                return false;
-            }
-            
-            if (startDateFilter != null) {
-                Date startDate = dateFormat.parse(startDateFilter);
-                if (startDate != null && entryDate.before(startDate)) {
-                    return false;
-                }
-            }
-            
-            if (endDateFilter != null) {
-                Date endDate = dateFormat.parse(endDateFilter);
-                if (endDate != null && entryDate.after(endDate)) {
-                    return false;
-                }
-            }
-            
-            return true;
-        } catch (ParseException e) {
-            e.printStackTrace();
-            return false;
-        }
-    }
-    
-    /**
-     * Calculate statistics from filtered entries
-     */
-    private void calculateStatistics(List<SupplyEntry> entries) {
-        int count = entries.size();
-        double hours = 0.0;
-        double revenue = 0.0;
-        
-        for (SupplyEntry entry : entries) {
-            if (entry.getTotalTimeUsed() != null) {
-                hours = BillingCalculator.addHours(hours, entry.getTotalTimeUsed());
-            }
-            revenue = BillingCalculator.addAmounts(revenue, entry.getAmount());
+        if (familyId != null) {
+            connect();
         }
-        
-        totalEntries.setValue(count);
-        totalHours.setValue(hours);
-        totalRevenue.setValue(revenue);
     }
 }
@@ -9,6 +9,12 @@ import java.math.RoundingMode;
 public class BillingCalculator {
     private static final int HOURS_SCALE = 2;
     private static final int MONEY_SCALE = 2;
+
+    // Fixed-point fast path limits, see scaleFast
+    private static final double FAST_PATH_LIMIT = 1e9;
+    private static final double TIE_MARGIN = 1e-4;
+    private static final long PRODUCT_LIMIT = 3_000_000_000L;
+    private static final long NO_FAST_RESULT = Long.MIN_VALUE;
     
     /**
      * Convert meter reading to hours.
@@ -37,6 +43,16 @@ public class BillingCalculator {
      * Calculate amount based on time and rate
      */
     public static double calculateAmount(double hours, double hourlyRate) {
+        long hundredths = scaleFast(hours);
+        long ratePaise = scaleFast(hourlyRate);
+        if (hundredths != NO_FAST_RESULT && ratePaise != NO_FAST_RESULT
+                && Math.abs(hundredths) < PRODUCT_LIMIT && Math.abs(ratePaise) < PRODUCT_LIMIT) {
+            // hours * rate in units of 1/10000, rounded HALF_UP to paise
+            long product = hundredths * ratePaise;
+            long magnitude = Math.abs(product);
+            long paise = magnitude / 100 + (magnitude % 100 >= 50 ? 1 : 0);
+            return (product < 0 ? -paise : paise) / 100.0;
+        }
         return BigDecimal.valueOf(normalizeHours(hours))
             .multiply(BigDecimal.valueOf(normalizeAmount(hourlyRate)))
             .setScale(MONEY_SCALE, RoundingMode.HALF_UP)
@@ -44,18 +60,31 @@ public class BillingCalculator {
     }
 
     public static double normalizeHours(double hours) {
+        long hundredths = scaleFast(hours);
+        if (hundredths != NO_FAST_RESULT) {
+            return fromHundredths(hundredths);
+        }
         return BigDecimal.valueOf(hours)
             .setScale(HOURS_SCALE, RoundingMode.HALF_UP)
             .doubleValue();
     }
 
     public static double normalizeAmount(double amount) {
+        long paise = scaleFast(amount);
+        if (paise != NO_FAST_RESULT) {
+            return fromPaise(paise);
+        }
         return BigDecimal.valueOf(amount)
             .setScale(MONEY_SCALE, RoundingMode.HALF_UP)
             .doubleValue();
     }
 
     public static double subtractPause(double hours, double pauseDuration) {
+        long hundredths = exactHundredths(hours);
+        long pause = exactHundredths(pauseDuration);
+        if (hundredths != NO_FAST_RESULT && pause != NO_FAST_RESULT) {
+            return fromHundredths(Math.max(hundredths - pause, 0));
+        }
         return BigDecimal.valueOf(hours)
             .subtract(BigDecimal.valueOf(pauseDuration))
             .max(BigDecimal.ZERO)
@@ -64,6 +93,11 @@ public class BillingCalculator {
     }
 
     public static double addHours(double total, double hours) {
+        long totalHundredths = exactHundredths(total);
+        long hundredths = scaleFast(hours);
+        if (totalHundredths != NO_FAST_RESULT && hundredths != NO_FAST_RESULT) {
+            return fromHundredths(totalHundredths + hundredths);
+        }
         return BigDecimal.valueOf(total)
             .add(BigDecimal.valueOf(normalizeHours(hours)))
             .setScale(HOURS_SCALE, RoundingMode.HALF_UP)
@@ -71,11 +105,88 @@ public class BillingCalculator {
     }
 
     public static double addAmounts(double total, double amount) {
+        long totalPaise = exactHundredths(total);
+        long paise = scaleFast(amount);
+        if (totalPaise != NO_FAST_RESULT && paise != NO_FAST_RESULT) {
+            return fromPaise(totalPaise + paise);
+        }
         return BigDecimal.valueOf(total)
             .add(BigDecimal.valueOf(normalizeAmount(amount)))
             .setScale(MONEY_SCALE, RoundingMode.HALF_UP)
             .doubleValue();
     }
+
+    /**
+     * Amount as whole paise, rounded the same way as {@link #normalizeAmount(double)}.
+     * Summing paise and converting back with {@link #fromPaise(long)} gives the same
+     * result as chaining {@link #addAmounts(double, double)}.
+     */
+    public static long toPaise(double amount) {
+        long paise = scaleFast(amount);
+        if (paise != NO_FAST_RESULT) {
+            return paise;
+        }
+        return BigDecimal.valueOf(amount)
+            .setScale(MONEY_SCALE, RoundingMode.HALF_UP)
+            .unscaledValue()
+            .longValue();
+    }
+
+    public static double fromPaise(long paise) {
+        return paise / 100.0;
+    }
+
+    /**
+     * Hours as whole hundredths, rounded the same way as {@link #normalizeHours(double)}.
+     */
+    public static long toHundredths(double hours) {
+        long hundredths = scaleFast(hours);
+        if (hundredths != NO_FAST_RESULT) {
+            return hundredths;
+        }
+        return BigDecimal.valueOf(hours)
+            .setScale(HOURS_SCALE, RoundingMode.HALF_UP)
+            .unscaledValue()
+            .longValue();
+    }
+
+    public static double fromHundredths(long hundredths) {
+        return hundredths / 100.0;
+    }
+
+    /**
+     * value * 100 rounded HALF_UP exactly like {@code BigDecimal.valueOf(value).setScale(2, HALF_UP)},
+     * without allocating. BigDecimal.valueOf uses the shortest decimal of the double, which differs
+     * from value * 100 by far less than TIE_MARGIN for |value| below FAST_PATH_LIMIT, so the
+     * rounding direction can only be ambiguous right at a .5 tie. Those, and out of range values,
+     * return NO_FAST_RESULT and go through BigDecimal.
+     */
+    private static long scaleFast(double value) {
+        double magnitude = Math.abs(value);
+        if (!(magnitude < FAST_PATH_LIMIT)) {
+            return NO_FAST_RESULT;
+        }
+        double scaled = magnitude * 100.0;
+        double floor = Math.floor(scaled);
+        double fraction = scaled - floor;
+        if (Math.abs(fraction - 0.5) < TIE_MARGIN) {
+            return NO_FAST_RESULT;
+        }
+        long units = (long) floor + (fraction > 0.5 ? 1 : 0);
+        return value < 0 ? -units : units;
+    }
+
+    /**
+     * Hundredths of a value that already has at most two decimals (such as a running total),
+     * or NO_FAST_RESULT when it has more and must be added with BigDecimal.
+     */
+    private static long exactHundredths(double value) {
+        long units = scaleFast(value);
+        if (units != NO_FAST_RESULT && units / 100.0 == value) {
+            return units;
+        }
+        return NO_FAST_RESULT;
+    }
     
     /**
      * Calculate time difference in hours
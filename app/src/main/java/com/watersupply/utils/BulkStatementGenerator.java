@@ -0,0 +1,452 @@
+package com.watersupply.utils;
+
+import android.content.Context;
+import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.watersupply.data.models.Payment;
+import com.watersupply.data.models.SupplyEntry;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Renders a separate statement for every farmer over one period and zips them, for month-end
+ * billing.
+ *
+ * The period's supply entries and payments are split by farmer in one pass, and the statements
+ * are rendered in parallel on a pool with one background thread per core. Each finished
+ * statement is kept in a staging directory until the zip is written, so if some statements
+ * fail or the batch is cancelled, generating the same period again only renders the rest.
+ * A staged statement is named after a fingerprint of the rows it shows, so one whose rows
+ * have been edited since is rendered again rather than reused. Starting a different period
+ * discards the statements staged for the previous one.
+ */
+public class BulkStatementGenerator {
+
+    private static final String TAG = "BulkStatements";
+    // One batch at a time; each batch fans its statements out to a pool of its own
+    private static final ExecutorService COORDINATOR = Executors.newSingleThreadExecutor(runnable ->
+        new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, TAG));
+    private static final String STAGING_DIR = "statements";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FINGERPRINT_BYTES = 8;
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final SimpleDateFormat batchDateFormat = new SimpleDateFormat("yyyyMMdd", Locale.US);
+    private final SimpleDateFormat fileDateFormat = new SimpleDateFormat("ddMMMyy", Locale.US);
+
+    public BulkStatementGenerator(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Progress of a batch, posted as each statement is finished. Statements staged by an
+     * earlier attempt count as done from the start.
+     */
+    public static class Progress {
+        public final int done;
+        public final int failed;
+        public final int total;
+
+        Progress(int done, int failed, int total) {
+            this.done = done;
+            this.failed = failed;
+            this.total = total;
+        }
+    }
+
+    /**
+     * One batch of statements being rendered
+     */
+    public static final class Job {
+        private final MutableLiveData<Progress> progress = new MutableLiveData<>();
+        // Statements being rendered, so cancelling stops them mid-page
+        private final Set<ReportGenerator.Job> running = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        private volatile boolean cancelled;
+
+        private Job() {
+        }
+
+        public LiveData<Progress> getProgress() {
+            return progress;
+        }
+
+        /**
+         * Stop rendering. Finished statements are kept for the next attempt.
+         */
+        public void cancel() {
+            cancelled = true;
+            for (ReportGenerator.Job statement : running) {
+                statement.cancel();
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * One farmer's rows
+     */
+    private static final class Statement {
+        final String farmerId;
+        final String farmerName;
+        final List<SupplyEntry> supplies = new ArrayList<>();
+        final List<Payment> payments = new ArrayList<>();
+        String fingerprint;
+
+        Statement(String farmerId, String farmerName) {
+            this.farmerId = farmerId;
+            this.farmerName = farmerName;
+        }
+
+        File file(File staging) {
+            return new File(staging, fileName());
+        }
+
+        String fileName() {
+            return safeId(farmerId) + "_" + fingerprint + ".pdf";
+        }
+
+        /**
+         * Hash of the farmer's name and each row's id, last update and amount, so any edit to
+         * the statement's rows changes it. Rows are sorted first, as their order does not
+         * change the statement.
+         */
+        void fingerprint() throws NoSuchAlgorithmException {
+            List<String> rows = new ArrayList<>(supplies.size() + payments.size());
+            for (SupplyEntry entry : supplies) {
+                rows.add("s|" + entry.getId() + "|" + time(entry.getUpdatedAt()) + "|" + entry.getAmount());
+            }
+            for (Payment payment : payments) {
+                rows.add("p|" + payment.getId() + "|" + time(payment.getUpdatedAt()) + "|" + payment.getAmount());
+            }
+            Collections.sort(rows);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(farmerName.getBytes(StandardCharsets.UTF_8));
+            for (String row : rows) {
+                digest.update((byte) '\n');
+                digest.update(row.getBytes(StandardCharsets.UTF_8));
+            }
+            StringBuilder hex = new StringBuilder();
+            byte[] hash = digest.digest();
+            for (int i = 0; i < FINGERPRINT_BYTES; i++) {
+                hex.append(String.format(Locale.US, "%02x", hash[i]));
+            }
+            fingerprint = hex.toString();
+        }
+
+        private static String time(Date date) {
+            return date != null ? String.valueOf(date.getTime()) : "-";
+        }
+    }
+
+    /**
+     * Start rendering a statement for every farmer in {@code farmerNameMap} and every farmer
+     * with rows in the period. The lists are copied, so the caller may keep changing them.
+     * The callback gets the zip file, on the main thread; it is not called if the batch is
+     * cancelled.
+     */
+    public Job generateStatements(Date startDate, Date endDate, List<SupplyEntry> supplies, List<Payment> payments,
+                                  Map<String, String> farmerNameMap, ReportGenerator.Callback callback) {
+        Job job = new Job();
+        List<SupplyEntry> supplyCopy = supplies != null ? new ArrayList<>(supplies) : new ArrayList<>();
+        List<Payment> paymentCopy = payments != null ? new ArrayList<>(payments) : new ArrayList<>();
+        Map<String, String> nameCopy = farmerNameMap != null ? new HashMap<>(farmerNameMap) : new HashMap<>();
+        String batch = batchDateFormat.format(startDate) + "_" + batchDateFormat.format(endDate);
+        COORDINATOR.execute(() -> run(job, batch, startDate, endDate, supplyCopy, paymentCopy, nameCopy, callback));
+        return job;
+    }
+
+    private void run(Job job, String batch, Date startDate, Date endDate, List<SupplyEntry> supplies,
+                     List<Payment> payments, Map<String, String> farmerNameMap, ReportGenerator.Callback callback) {
+        if (job.isCancelled()) {
+            return;
+        }
+        List<Statement> statements = partition(supplies, payments, farmerNameMap);
+        Set<String> staged = new HashSet<>();
+        try {
+            for (Statement statement : statements) {
+                statement.fingerprint();
+                staged.add(statement.fileName());
+            }
+        } catch (NoSuchAlgorithmException e) {
+            Log.e(TAG, "Error fingerprinting statements", e);
+            mainHandler.post(() -> callback.onFailure("Could not fingerprint statements"));
+            return;
+        }
+        File staging = prepareStaging(batch, staged);
+        if (staging == null) {
+            mainHandler.post(() -> callback.onFailure("Could not create " + STAGING_DIR + " directory"));
+            return;
+        }
+
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, TAG + "-render"));
+        CompletionService<Boolean> completion = new ExecutorCompletionService<>(pool);
+        int done = 0;
+        int failed = 0;
+        int submitted = 0;
+        try {
+            for (Statement statement : statements) {
+                if (statement.file(staging).exists()) {
+                    done++; // Rendered by an earlier attempt
+                } else {
+                    completion.submit(() -> render(job, statement, staging, startDate, endDate));
+                    submitted++;
+                }
+            }
+            job.progress.postValue(new Progress(done, failed, statements.size()));
+
+            for (int i = 0; i < submitted; i++) {
+                boolean rendered;
+                try {
+                    rendered = completion.take().get();
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Statement failed", e.getCause());
+                    rendered = false;
+                }
+                if (rendered) done++;
+                else failed++;
+                job.progress.postValue(new Progress(done, failed, statements.size()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.cancel();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (job.isCancelled()) {
+            Log.d(TAG, "Batch cancelled with " + done + " of " + statements.size() + " statements done");
+            return;
+        }
+        if (failed > 0) {
+            String error = failed + " of " + statements.size()
+                + " statements failed. Generate again to finish the rest.";
+            mainHandler.post(() -> callback.onFailure(error));
+            return;
+        }
+
+        File zip = new File(context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS),
+            "Statements_" + fileDateFormat.format(startDate) + "-" + fileDateFormat.format(endDate) + ".zip");
+        try {
+            writeZip(job, statements, staging, zip);
+        } catch (CancellationException e) {
+            Log.d(TAG, "Batch cancelled while zipping");
+            return;
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing " + zip, e);
+            String error = e.getMessage() != null ? e.getMessage() : e.toString();
+            mainHandler.post(() -> callback.onFailure(error));
+            return;
+        }
+        deleteRecursively(staging);
+        mainHandler.post(() -> callback.onComplete(zip));
+    }
+
+    /**
+     * Split the rows by farmer in one pass. Statements are in farmer name order; rows without
+     * a farmer id cannot be attributed and are left out.
+     */
+    private static List<Statement> partition(List<SupplyEntry> supplies, List<Payment> payments,
+                                             Map<String, String> farmerNameMap) {
+        Map<String, Statement> byFarmer = new LinkedHashMap<>();
+        for (Map.Entry<String, String> farmer : farmerNameMap.entrySet()) {
+            statement(byFarmer, farmer.getKey(), farmer.getValue());
+        }
+        for (SupplyEntry entry : supplies) {
+            Statement statement = statement(byFarmer, entry.getFarmerId(), entry.getFarmerName());
+            if (statement != null) statement.supplies.add(entry);
+        }
+        for (Payment payment : payments) {
+            Statement statement = statement(byFarmer, payment.getFarmerId(), payment.getFarmerName());
+            if (statement != null) statement.payments.add(payment);
+        }
+        List<Statement> statements = new ArrayList<>(byFarmer.values());
+        Collections.sort(statements, (a, b) -> a.farmerName.compareToIgnoreCase(b.farmerName));
+        return statements;
+    }
+
+    private static Statement statement(Map<String, Statement> byFarmer, String farmerId, String farmerName) {
+        if (farmerId == null) {
+            return null;
+        }
+        Statement statement = byFarmer.get(farmerId);
+        if (statement == null) {
+            statement = new Statement(farmerId, farmerName != null && !farmerName.isEmpty() ? farmerName : "Unknown");
+            byFarmer.put(farmerId, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Render one statement to the staging directory. Runs on the pool.
+     *
+     * @return whether the statement was written
+     */
+    private boolean render(Job job, Statement statement, File staging, Date startDate, Date endDate) {
+        ReportGenerator.Job report = new ReportGenerator.Job();
+        job.running.add(report);
+        if (job.isCancelled()) {
+            report.cancel();
+        }
+        // Written under a temporary name, so a staged statement is always complete
+        File partial = new File(staging, statement.file(staging).getName() + ".tmp");
+        try {
+            new ReportGenerator(context).writeReport(partial, report, statement.farmerName, statement.farmerId,
+                startDate, endDate, statement.supplies, statement.payments,
+                // Only this farmer, so other farmers' names can't affect how it is drawn
+                Collections.singletonMap(statement.farmerId, statement.farmerName));
+            if (!partial.renameTo(statement.file(staging))) {
+                throw new IOException("Could not rename " + partial);
+            }
+            return true;
+        } catch (CancellationException e) {
+            ReportGenerator.deletePartial(partial);
+            return false;
+        } catch (Exception e) {
+            Log.e(TAG, "Error rendering statement for " + statement.farmerId, e);
+            ReportGenerator.deletePartial(partial);
+            return false;
+        } finally {
+            job.running.remove(report);
+        }
+    }
+
+    private void writeZip(Job job, List<Statement> statements, File staging, File zip) throws IOException {
+        File partial = new File(zip.getPath() + ".tmp");
+        try {
+            try (ZipOutputStream out = new ZipOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(partial), BUFFER_SIZE))) {
+                out.setLevel(Deflater.NO_COMPRESSION); // Page content is already deflated
+                Set<String> names = new HashSet<>();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                for (Statement statement : statements) {
+                    if (job.isCancelled()) {
+                        throw new CancellationException();
+                    }
+                    String base = "Statement_" + entryName(statement);
+                    String name = base + ".pdf";
+                    for (int n = 2; !names.add(name); n++) {
+                        name = base + "_" + n + ".pdf";
+                    }
+                    out.putNextEntry(new ZipEntry(name));
+                    try (InputStream in = new FileInputStream(statement.file(staging))) {
+                        int read;
+                        while ((read = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                        }
+                    }
+                    out.closeEntry();
+                }
+            }
+            if (zip.exists() && !zip.delete()) {
+                throw new IOException("Could not replace " + zip);
+            }
+            if (!partial.renameTo(zip)) {
+                throw new IOException("Could not rename " + partial);
+            }
+        } catch (IOException | RuntimeException e) {
+            ReportGenerator.deletePartial(partial);
+            throw e;
+        }
+    }
+
+    /**
+     * The farmer's name with anything but ASCII letters, digits, '.' and '-' replaced, or their
+     * id when no letters are left, as for a name in another script
+     */
+    private static String entryName(Statement statement) {
+        String name = statement.farmerName.replaceAll("[^a-zA-Z0-9.-]", "_");
+        return name.matches(".*[a-zA-Z].*") ? name : safeId(statement.farmerId);
+    }
+
+    private static String safeId(String farmerId) {
+        return farmerId.replaceAll("[^a-zA-Z0-9_-]", "_");
+    }
+
+    /**
+     * The staging directory of {@code batch}, with any other batch's statements and any
+     * partial or outdated files removed
+     *
+     * @param staged names of the files to keep
+     */
+    private File prepareStaging(String batch, Set<String> staged) {
+        File root = new File(context.getFilesDir(), STAGING_DIR);
+        File[] batches = root.listFiles();
+        if (batches != null) {
+            for (File other : batches) {
+                if (!other.getName().equals(batch)) {
+                    deleteRecursively(other);
+                }
+            }
+        }
+        File staging = new File(root, batch);
+        if (!staging.isDirectory() && !staging.mkdirs()) {
+            return null;
+        }
+        File[] outdated = staging.listFiles((dir, name) -> !staged.contains(name));
+        if (outdated != null) {
+            for (File file : outdated) {
+                deleteRecursively(file);
+            }
+        }
+        return staging;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        if (!file.delete()) {
+            Log.w(TAG, "Could not delete " + file);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.watersupply.utils;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Revenue, hours and entry count per day, sorted by epoch day.
+ *
+ * Days are replaced or removed one at a time as their source changes, and any range of days
+ * (a week, a month, a quarter, a custom range) is answered from the buckets in that range,
+ * without going back to the individual entries.
+ */
+public class DailyTotals {
+    private static final int REVENUE = 0;
+    private static final int HOURS = 1;
+    private static final int COUNT = 2;
+
+    private final TreeMap<Integer, long[]> days = new TreeMap<>();
+
+    /**
+     * Set the totals of a day, replacing previous ones.
+     */
+    public void put(int epochDay, long revenuePaise, long hoursHundredths, long entryCount) {
+        days.put(epochDay, new long[] {revenuePaise, hoursHundredths, entryCount});
+    }
+
+    public void remove(int epochDay) {
+        days.remove(epochDay);
+    }
+
+    public void clear() {
+        days.clear();
+    }
+
+    public int size() {
+        return days.size();
+    }
+
+    public long revenuePaise(int epochDay) {
+        long[] totals = days.get(epochDay);
+        return totals != null ? totals[REVENUE] : 0;
+    }
+
+    public double revenue(int epochDay) {
+        return BillingCalculator.fromPaise(revenuePaise(epochDay));
+    }
+
+    /**
+     * Revenue of the inclusive range of days
+     */
+    public double revenue(int fromDay, int toDay) {
+        return BillingCalculator.fromPaise(sum(fromDay, toDay, REVENUE));
+    }
+
+    public double hours(int fromDay, int toDay) {
+        return BillingCalculator.fromHundredths(sum(fromDay, toDay, HOURS));
+    }
+
+    public long entryCount(int fromDay, int toDay) {
+        return sum(fromDay, toDay, COUNT);
+    }
+
+    private long sum(int fromDay, int toDay, int column) {
+        if (fromDay > toDay) {
+            return 0;
+        }
+        long total = 0;
+        NavigableMap<Integer, long[]> range = days.subMap(fromDay, true, toDay, true);
+        for (Map.Entry<Integer, long[]> day : range.entrySet()) {
+            total += day.getValue()[column];
+        }
+        return total;
+    }
+}
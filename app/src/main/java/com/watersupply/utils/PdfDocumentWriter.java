@@ -0,0 +1,157 @@
+package com.watersupply.utils;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.graphics.pdf.PdfDocument;
+
+import com.watersupply.utils.PdfStreamWriter.TextStyle;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link ReportCanvas} on Android's {@link PdfDocument}, which draws text with the system fonts
+ * and shapes every script, Devanagari and Gujarati included. It holds every page in memory
+ * until {@link #finish}, so reports use it only when their text needs more than the standard
+ * fonts of {@link PdfStreamWriter}.
+ *
+ * Not thread-safe.
+ */
+final class PdfDocumentWriter implements ReportCanvas {
+    private final OutputStream out;
+    private final int pageWidth;
+    private final int pageHeight;
+    private final PdfDocument document = new PdfDocument();
+    private final Map<TextStyle, Paint> textPaints = new HashMap<>();
+    private final Paint fill = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint stroke = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF rect = new RectF();
+    private PdfDocument.Page page;
+    private int pageCount;
+
+    PdfDocumentWriter(OutputStream out, int pageWidth, int pageHeight) {
+        this.out = out;
+        this.pageWidth = pageWidth;
+        this.pageHeight = pageHeight;
+        fill.setStyle(Paint.Style.FILL);
+        stroke.setStyle(Paint.Style.STROKE);
+    }
+
+    @Override
+    public void beginPage() {
+        if (page != null) {
+            throw new IllegalStateException("Page " + pageCount + " is still open");
+        }
+        pageCount++;
+        page = document.startPage(new PdfDocument.PageInfo.Builder(pageWidth, pageHeight, pageCount).create());
+    }
+
+    @Override
+    public void endPage() {
+        document.finishPage(canvasPage());
+        page = null;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        document.writeTo(out);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            // close() throws while a page is open, as after a cancel mid-page, and would then
+            // never release the native document
+            if (page != null) {
+                endPage();
+            }
+            document.close();
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    public float measure(String text, TextStyle style) {
+        return paint(style).measureText(text);
+    }
+
+    @Override
+    public void drawText(String text, float x, float baseline, TextStyle style) {
+        canvas().drawText(text, x, baseline, paint(style));
+    }
+
+    @Override
+    public void drawLine(float x1, float y1, float x2, float y2, int color, float width) {
+        canvas().drawLine(x1, y1, x2, y2, stroke(color, width));
+    }
+
+    @Override
+    public void fillRect(float left, float top, float right, float bottom, int color) {
+        fill.setColor(color);
+        canvas().drawRect(left, top, right, bottom, fill);
+    }
+
+    @Override
+    public void fillRoundRect(float left, float top, float right, float bottom, float radius, int color) {
+        fill.setColor(color);
+        rect.set(left, top, right, bottom);
+        canvas().drawRoundRect(rect, radius, radius, fill);
+    }
+
+    @Override
+    public void strokeRoundRect(float left, float top, float right, float bottom, float radius,
+                                int color, float width) {
+        rect.set(left, top, right, bottom);
+        canvas().drawRoundRect(rect, radius, radius, stroke(color, width));
+    }
+
+    private Paint stroke(int color, float width) {
+        stroke.setColor(color);
+        stroke.setStrokeWidth(width);
+        return stroke;
+    }
+
+    // One paint per style, built on first use
+    private Paint paint(TextStyle style) {
+        Paint paint = textPaints.get(style);
+        if (paint == null) {
+            paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setTypeface(typeface(style.getFont()));
+            paint.setTextSize(style.getSize());
+            paint.setColor(style.getColor());
+            paint.setLetterSpacing(style.getLetterSpacing());
+            switch (style.getAlign()) {
+                case CENTER: paint.setTextAlign(Paint.Align.CENTER); break;
+                case RIGHT: paint.setTextAlign(Paint.Align.RIGHT); break;
+                default: paint.setTextAlign(Paint.Align.LEFT); break;
+            }
+            textPaints.put(style, paint);
+        }
+        return paint;
+    }
+
+    private static Typeface typeface(PdfStreamWriter.Font font) {
+        switch (font) {
+            case HELVETICA_BOLD: return Typeface.DEFAULT_BOLD;
+            case COURIER: return Typeface.MONOSPACE;
+            default: return Typeface.DEFAULT;
+        }
+    }
+
+    private Canvas canvas() {
+        return canvasPage().getCanvas();
+    }
+
+    private PdfDocument.Page canvasPage() {
+        if (page == null) {
+            throw new IllegalStateException("No page is open");
+        }
+        return page;
+    }
+}
@@ -0,0 +1,580 @@
+package com.watersupply.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Minimal PDF writer that streams each page to the output as soon as it is finished, so memory
+ * stays flat however many pages a report has. Unlike android.graphics.pdf.PdfDocument, which
+ * holds every page until writeTo, only the page being drawn is buffered; the cross-reference
+ * table at the end needs one offset per object.
+ *
+ * Supports what the reports draw: text in the standard Helvetica and Courier fonts, lines,
+ * rectangles and rounded rectangles. Coordinates are in points from the top-left corner, as
+ * on an Android Canvas. Text uses WinAnsi encoding; the rupee sign is written as "Rs." and
+ * other characters the standard fonts cannot show become '?'. Check text with
+ * {@link #canEncode} first and draw it with {@link PdfDocumentWriter} when it does not fit.
+ *
+ * Pure Java, so it runs in JVM tests and benchmarks. Not thread-safe.
+ *
+ * Usage: {@link #beginPage()}, draw, {@link #endPage()} for each page, then {@link #finish()}
+ * and {@link #close()}. Closing without finishing leaves an incomplete file.
+ */
+public final class PdfStreamWriter implements ReportCanvas {
+
+    public enum Font {
+        HELVETICA("Helvetica", Metrics.HELVETICA),
+        HELVETICA_BOLD("Helvetica-Bold", Metrics.HELVETICA_BOLD),
+        COURIER("Courier", Metrics.COURIER);
+
+        private final String baseName;
+        private final short[] widths; // Per WinAnsi code, in 1/1000 em
+
+        Font(String baseName, short[] widths) {
+            this.baseName = baseName;
+            this.widths = widths;
+        }
+    }
+
+    public enum Align { LEFT, CENTER, RIGHT }
+
+    /**
+     * Font, size, colour and alignment of a piece of text. Immutable, so one instance can be
+     * shared by every page and thread.
+     */
+    public static final class TextStyle {
+        private final Font font;
+        private final float size;
+        private final int color;
+        private final Align align;
+        private final float letterSpacing;
+        private final float charSpacing;
+
+        public TextStyle(Font font, float size, int color, Align align) {
+            this(font, size, color, align, 0f);
+        }
+
+        /**
+         * @param letterSpacing extra space after each character, in ems
+         */
+        public TextStyle(Font font, float size, int color, Align align, float letterSpacing) {
+            this.font = font;
+            this.size = size;
+            this.color = color;
+            this.align = align;
+            this.letterSpacing = letterSpacing;
+            this.charSpacing = letterSpacing * size;
+        }
+
+        public Font getFont() {
+            return font;
+        }
+
+        public float getSize() {
+            return size;
+        }
+
+        public int getColor() {
+            return color;
+        }
+
+        public Align getAlign() {
+            return align;
+        }
+
+        /**
+         * Extra space after each character, in ems
+         */
+        public float getLetterSpacing() {
+            return letterSpacing;
+        }
+
+        /**
+         * Width of {@code text} in points when drawn in this style
+         */
+        public float measure(String text) {
+            return measureEncoded(toWinAnsi(text));
+        }
+
+        private float measureEncoded(String encoded) {
+            int units = 0;
+            for (int i = 0; i < encoded.length(); i++) {
+                units += font.widths[encoded.charAt(i)];
+            }
+            return units * size / 1000f + charSpacing * encoded.length();
+        }
+    }
+
+    private static final int PAGES_OBJECT = 2;
+    private static final int RESOURCES_OBJECT = 3;
+    private static final int FIRST_FONT_OBJECT = 4;
+    private static final int FIRST_PAGE_OBJECT = FIRST_FONT_OBJECT + Font.values().length;
+    // Control point distance for a quarter circle drawn as a cubic Bézier curve
+    private static final float KAPPA = 0.5523f;
+    private static final int UNSET = Integer.MIN_VALUE;
+
+    private final OutputStream out;
+    private final float pageWidth;
+    private final float pageHeight;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private long written;
+    private long[] offsets = new long[64]; // Byte offset of each object, by object number
+    private int pageCount;
+    private boolean pageOpen;
+    private boolean finished;
+
+    // Content of the page being drawn, reused for every page
+    private byte[] content = new byte[16 * 1024];
+    private int contentSize;
+    private byte[] compressed = new byte[16 * 1024];
+
+    // Graphics state of the page being drawn, to skip operators that change nothing
+    private int fillColor;
+    private int strokeColor;
+    private float lineWidth;
+    private Font currentFont;
+    private float currentSize;
+    private float currentCharSpacing;
+
+    public PdfStreamWriter(OutputStream out, float pageWidth, float pageHeight) throws IOException {
+        this.out = out;
+        this.pageWidth = pageWidth;
+        this.pageHeight = pageHeight;
+
+        // The comment of high bytes marks the file as binary for transfer tools
+        write("%PDF-1.4\n%âãÏÓ\n");
+        StringBuilder fonts = new StringBuilder("<< /Font <<");
+        for (Font font : Font.values()) {
+            fonts.append(" /F").append(font.ordinal() + 1).append(' ')
+                .append(FIRST_FONT_OBJECT + font.ordinal()).append(" 0 R");
+        }
+        writeObject(RESOURCES_OBJECT, fonts.append(" >> >>").toString());
+        for (Font font : Font.values()) {
+            writeObject(FIRST_FONT_OBJECT + font.ordinal(), "<< /Type /Font /Subtype /Type1 /BaseFont /"
+                + font.baseName + " /Encoding /WinAnsiEncoding >>");
+        }
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    @Override
+    public void beginPage() {
+        if (pageOpen || finished) {
+            throw new IllegalStateException(finished ? "Document finished" : "Page already open");
+        }
+        pageOpen = true;
+        contentSize = 0;
+        fillColor = UNSET;
+        strokeColor = UNSET;
+        lineWidth = -1f;
+        currentFont = null;
+        currentCharSpacing = 0f;
+    }
+
+    /**
+     * Compress the page's content and write it out
+     */
+    @Override
+    public void endPage() throws IOException {
+        checkPageOpen();
+        deflater.reset();
+        deflater.setInput(content, 0, contentSize);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+
+        int contentObject = FIRST_PAGE_OBJECT + 2 * pageCount;
+        beginObject(contentObject);
+        write("<< /Length " + length + " /Filter /FlateDecode >>\nstream\n");
+        write(compressed, length);
+        write("\nendstream\nendobj\n");
+        writeObject(contentObject + 1, "<< /Type /Page /Parent " + PAGES_OBJECT + " 0 R /MediaBox [0 0 "
+            + number(pageWidth) + " " + number(pageHeight) + "] /Resources " + RESOURCES_OBJECT
+            + " 0 R /Contents " + contentObject + " 0 R >>");
+        pageCount++;
+        pageOpen = false;
+    }
+
+    /**
+     * Write the page tree, cross-reference table and trailer. Nothing can be drawn afterwards.
+     */
+    @Override
+    public void finish() throws IOException {
+        if (pageOpen) {
+            endPage();
+        }
+        if (finished) {
+            return;
+        }
+        finished = true;
+
+        beginObject(PAGES_OBJECT);
+        write("<< /Type /Pages /Count " + pageCount + " /Kids [");
+        for (int i = 0; i < pageCount; i++) {
+            write((i % 10 == 0 ? "\n" : " ") + (FIRST_PAGE_OBJECT + 2 * i + 1) + " 0 R");
+        }
+        write(" ] >>\nendobj\n");
+        writeObject(1, "<< /Type /Catalog /Pages " + PAGES_OBJECT + " 0 R >>");
+
+        int objects = FIRST_PAGE_OBJECT + 2 * pageCount;
+        long xref = written;
+        write("xref\n0 " + objects + "\n0000000000 65535 f \n");
+        for (int i = 1; i < objects; i++) {
+            String offset = Long.toString(offsets[i]);
+            write("0000000000".substring(offset.length()) + offset + " 00000 n \n");
+        }
+        write("trailer\n<< /Size " + objects + " /Root 1 0 R >>\nstartxref\n" + xref + "\n%%EOF\n");
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        out.close();
+    }
+
+    // ==========================================
+    // Drawing
+    // ==========================================
+
+    @Override
+    public float measure(String text, TextStyle style) {
+        return style.measure(text);
+    }
+
+    @Override
+    public void drawText(String text, float x, float baseline, TextStyle style) {
+        checkPageOpen();
+        String encoded = toWinAnsi(text);
+        if (style.align != Align.LEFT) {
+            float width = style.measureEncoded(encoded);
+            x -= style.align == Align.CENTER ? width / 2f : width;
+        }
+        setFillColor(style.color);
+        append("BT ");
+        if (style.font != currentFont || style.size != currentSize) {
+            currentFont = style.font;
+            currentSize = style.size;
+            append("/F").append(style.font.ordinal() + 1).append(' ').append(style.size, 2).append(" Tf ");
+        }
+        if (style.charSpacing != currentCharSpacing) {
+            currentCharSpacing = style.charSpacing;
+            append(style.charSpacing, 2).append(" Tc ");
+        }
+        append(x, 2).append(' ').append(pageHeight - baseline, 2).append(" Td (");
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            if (c == '(' || c == ')' || c == '\\') {
+                append('\\');
+            }
+            append(c);
+        }
+        append(") Tj ET\n");
+    }
+
+    @Override
+    public void drawLine(float x1, float y1, float x2, float y2, int color, float width) {
+        checkPageOpen();
+        setStroke(color, width);
+        append(x1, 2).append(' ').append(pageHeight - y1, 2).append(" m ")
+            .append(x2, 2).append(' ').append(pageHeight - y2, 2).append(" l S\n");
+    }
+
+    @Override
+    public void fillRect(float left, float top, float right, float bottom, int color) {
+        checkPageOpen();
+        setFillColor(color);
+        appendRect(left, top, right, bottom).append(" f\n");
+    }
+
+    public void strokeRect(float left, float top, float right, float bottom, int color, float width) {
+        checkPageOpen();
+        setStroke(color, width);
+        appendRect(left, top, right, bottom).append(" S\n");
+    }
+
+    @Override
+    public void fillRoundRect(float left, float top, float right, float bottom, float radius, int color) {
+        checkPageOpen();
+        setFillColor(color);
+        appendRoundRect(left, top, right, bottom, radius).append(" f\n");
+    }
+
+    @Override
+    public void strokeRoundRect(float left, float top, float right, float bottom, float radius,
+                                int color, float width) {
+        checkPageOpen();
+        setStroke(color, width);
+        appendRoundRect(left, top, right, bottom, radius).append(" S\n");
+    }
+
+    private void setFillColor(int color) {
+        if (color != fillColor) {
+            fillColor = color;
+            appendColor(color).append(" rg\n");
+        }
+    }
+
+    private void setStroke(int color, float width) {
+        if (color != strokeColor) {
+            strokeColor = color;
+            appendColor(color).append(" RG\n");
+        }
+        if (width != lineWidth) {
+            lineWidth = width;
+            append(width, 2).append(" w\n");
+        }
+    }
+
+    private PdfStreamWriter appendColor(int color) {
+        return append(((color >> 16) & 0xff) / 255f, 3).append(' ')
+            .append(((color >> 8) & 0xff) / 255f, 3).append(' ')
+            .append((color & 0xff) / 255f, 3);
+    }
+
+    private PdfStreamWriter appendRect(float left, float top, float right, float bottom) {
+        return append(left, 2).append(' ').append(pageHeight - bottom, 2).append(' ')
+            .append(right - left, 2).append(' ').append(bottom - top, 2).append(" re");
+    }
+
+    private PdfStreamWriter appendRoundRect(float left, float top, float right, float bottom, float radius) {
+        float r = Math.min(radius, Math.min(right - left, bottom - top) / 2f);
+        float k = r * KAPPA;
+        float b = pageHeight - bottom;
+        float t = pageHeight - top;
+        point(left + r, b).append(" m ");
+        point(right - r, b).append(" l ");
+        point(right - r + k, b).append(' ').point(right, b + r - k).append(' ').point(right, b + r).append(" c ");
+        point(right, t - r).append(" l ");
+        point(right, t - r + k).append(' ').point(right - r + k, t).append(' ').point(right - r, t).append(" c ");
+        point(left + r, t).append(" l ");
+        point(left + r - k, t).append(' ').point(left, t - r + k).append(' ').point(left, t - r).append(" c ");
+        point(left, b + r).append(" l ");
+        point(left, b + r - k).append(' ').point(left + r - k, b).append(' ').point(left + r, b).append(" c h");
+        return this;
+    }
+
+    private PdfStreamWriter point(float x, float y) {
+        return append(x, 2).append(' ').append(y, 2);
+    }
+
+    // ==========================================
+    // Content buffer
+    // ==========================================
+
+    private PdfStreamWriter append(char c) {
+        if (contentSize == content.length) {
+            content = Arrays.copyOf(content, content.length * 2);
+        }
+        content[contentSize++] = (byte) c;
+        return this;
+    }
+
+    private PdfStreamWriter append(String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            append(ascii.charAt(i));
+        }
+        return this;
+    }
+
+    private PdfStreamWriter append(int value) {
+        return append((long) value, 0, 0);
+    }
+
+    /**
+     * Append {@code value} rounded to {@code decimals} places, without trailing zeros and
+     * without the formatting allocations of String.format
+     */
+    private PdfStreamWriter append(float value, int decimals) {
+        long scale = decimals == 3 ? 1000 : 100;
+        long scaled = Math.round((double) value * scale);
+        return append(scaled, scale, decimals);
+    }
+
+    private PdfStreamWriter append(long scaled, long scale, int decimals) {
+        if (scaled < 0) {
+            append('-');
+            scaled = -scaled;
+        }
+        long whole = scale == 0 ? scaled : scaled / scale;
+        long fraction = scale == 0 ? 0 : scaled % scale;
+        long digit = 1;
+        while (digit * 10 <= whole) {
+            digit *= 10;
+        }
+        for (; digit > 0; digit /= 10) {
+            append((char) ('0' + whole / digit % 10));
+        }
+        if (fraction != 0) {
+            append('.');
+            for (int i = 0; i < decimals && fraction != 0; i++) {
+                scale /= 10;
+                append((char) ('0' + fraction / scale));
+                fraction %= scale;
+            }
+        }
+        return this;
+    }
+
+    private void checkPageOpen() {
+        if (!pageOpen) {
+            throw new IllegalStateException("No page open");
+        }
+    }
+
+    // ==========================================
+    // File structure
+    // ==========================================
+
+    private void beginObject(int number) throws IOException {
+        if (number >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(offsets.length * 2, number + 1));
+        }
+        offsets[number] = written;
+        write(number + " 0 obj\n");
+    }
+
+    private void writeObject(int number, String body) throws IOException {
+        beginObject(number);
+        write(body + "\nendobj\n");
+    }
+
+    private void write(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        write(bytes, bytes.length);
+    }
+
+    private void write(byte[] bytes, int length) throws IOException {
+        out.write(bytes, 0, length);
+        written += length;
+    }
+
+    private static String number(float value) {
+        return value == (int) value ? Integer.toString((int) value) : Float.toString(value);
+    }
+
+    /**
+     * {@code text} as WinAnsi codes, one char per byte. Returns {@code text} itself when it is
+     * plain printable ASCII, which is almost every string in a report.
+     */
+    static String toWinAnsi(String text) {
+        int i = 0;
+        while (i < text.length() && text.charAt(i) >= 0x20 && text.charAt(i) < 0x7f) {
+            i++;
+        }
+        if (i == text.length()) {
+            return text;
+        }
+        StringBuilder encoded = new StringBuilder(text.length() + 2).append(text, 0, i);
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (codePoint == '₹') {
+                encoded.append("Rs.");
+            } else {
+                encoded.append(winAnsi(codePoint));
+            }
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Whether the standard fonts can show {@code text}; the rupee sign counts, as "Rs.". Text
+     * that cannot be shown would come out as '?' and needs {@link PdfDocumentWriter} instead.
+     */
+    public static boolean canEncode(String text) {
+        int i = 0;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (codePoint != '₹' && codePoint != '?' && winAnsi(codePoint) == '?') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char winAnsi(int codePoint) {
+        if ((codePoint >= 0x20 && codePoint < 0x7f) || (codePoint >= 0xa0 && codePoint <= 0xff)) {
+            return (char) codePoint;
+        }
+        switch (codePoint) {
+            case '\t':
+            case '\n': return ' ';
+            case '€': return 0x80; // Euro sign
+            case '…': return 0x85; // Ellipsis
+            case '‘': return 0x91;
+            case '’': return 0x92;
+            case '“': return 0x93;
+            case '”': return 0x94;
+            case '•': return 0x95; // Bullet
+            case '–': return 0x96; // En dash
+            case '—': return 0x97; // Em dash
+            case '™': return 0x99; // Trade mark
+            default: return '?';
+        }
+    }
+
+    /**
+     * Glyph widths of the standard fonts, from their Adobe font metrics. Accented Latin-1
+     * letters, which the reports rarely show, use the width of a typical lower-case letter.
+     */
+    private static final class Metrics {
+        static final short[] HELVETICA = widths(556, new int[] {
+            278, 278, 355, 556, 556, 889, 667, 191, 333, 333, 389, 584, 278, 333, 278, 278,  // ' ' to '/'
+            556, 556, 556, 556, 556, 556, 556, 556, 556, 556, 278, 278, 584, 584, 584, 556,  // '0' to '?'
+            1015, 667, 667, 722, 722, 667, 611, 778, 722, 278, 500, 667, 556, 833, 722, 778, // '@' to 'O'
+            667, 778, 722, 667, 611, 722, 667, 944, 667, 667, 611, 278, 278, 278, 469, 556,  // 'P' to '_'
+            333, 556, 556, 500, 556, 556, 278, 556, 556, 222, 222, 500, 222, 833, 556, 556,  // '`' to 'o'
+            556, 556, 333, 500, 278, 556, 500, 722, 500, 500, 500, 334, 260, 334, 584        // 'p' to '~'
+        }, 222, 333, 350, 1000);
+
+        static final short[] HELVETICA_BOLD = widths(611, new int[] {
+            278, 333, 474, 556, 556, 889, 722, 238, 333, 333, 389, 584, 278, 333, 278, 278,
+            556, 556, 556, 556, 556, 556, 556, 556, 556, 556, 333, 333, 584, 584, 584, 611,
+            975, 722, 722, 722, 722, 667, 611, 778, 722, 278, 556, 722, 611, 833, 722, 778,
+            667, 778, 722, 667, 611, 722, 667, 944, 667, 667, 611, 333, 278, 333, 584, 556,
+            333, 556, 611, 556, 611, 556, 333, 611, 611, 278, 278, 556, 278, 889, 611, 611,
+            611, 611, 389, 556, 333, 611, 556, 778, 556, 556, 500, 389, 280, 389, 584
+        }, 278, 500, 350, 1000);
+
+        static final short[] COURIER = fixed(600);
+
+        private static short[] widths(int latin1, int[] ascii, int singleQuote, int doubleQuote,
+                                      int bullet, int emDash) {
+            short[] widths = new short[256];
+            Arrays.fill(widths, (short) latin1);
+            for (int i = 0; i < ascii.length; i++) {
+                widths[0x20 + i] = (short) ascii[i];
+            }
+            widths[0x80] = 556;
+            widths[0x85] = 1000;
+            widths[0x91] = (short) singleQuote;
+            widths[0x92] = (short) singleQuote;
+            widths[0x93] = (short) doubleQuote;
+            widths[0x94] = (short) doubleQuote;
+            widths[0x95] = (short) bullet;
+            widths[0x96] = 556;
+            widths[0x97] = (short) emDash;
+            widths[0x99] = 1000;
+            widths[0xa0] = widths[' '];
+            return widths;
+        }
+
+        private static short[] fixed(int width) {
+            short[] widths = new short[256];
+            Arrays.fill(widths, (short) width);
+            return widths;
+        }
+    }
+}
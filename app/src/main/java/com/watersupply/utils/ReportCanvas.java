@@ -0,0 +1,41 @@
+package com.watersupply.utils;
+
+import com.watersupply.utils.PdfStreamWriter.TextStyle;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * What a report draws on: pages of text, lines and rectangles, in points from the top-left
+ * corner. {@link PdfStreamWriter} streams pages with the standard PDF fonts;
+ * {@link PdfDocumentWriter} draws with the system fonts for text those fonts cannot show.
+ *
+ * Usage: {@link #beginPage()}, draw, {@link #endPage()} for each page, then {@link #finish()}
+ * and {@link #close()}.
+ */
+interface ReportCanvas extends Closeable {
+
+    void beginPage();
+
+    void endPage() throws IOException;
+
+    /**
+     * Write out everything not written yet. Nothing can be drawn afterwards.
+     */
+    void finish() throws IOException;
+
+    /**
+     * Width of {@code text} in points when drawn in {@code style}
+     */
+    float measure(String text, TextStyle style);
+
+    void drawText(String text, float x, float baseline, TextStyle style);
+
+    void drawLine(float x1, float y1, float x2, float y2, int color, float width);
+
+    void fillRect(float left, float top, float right, float bottom, int color);
+
+    void fillRoundRect(float left, float top, float right, float bottom, float radius, int color);
+
+    void strokeRoundRect(float left, float top, float right, float bottom, float radius, int color, float width);
+}
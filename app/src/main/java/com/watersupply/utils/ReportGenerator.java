@@ -1,141 +1,276 @@
 package com.watersupply.utils;
 
 import android.content.Context;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.RectF;
-import android.graphics.Typeface;
-import android.graphics.pdf.PdfDocument;
 import android.os.Environment;
-import android.text.Layout;
-import android.text.StaticLayout;
-import android.text.TextPaint;
-import android.widget.Toast;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
 
 import com.watersupply.data.models.Payment;
 import com.watersupply.data.models.SupplyEntry;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Renders the farmer/family PDF report on a background thread.
+ *
+ * Pages are streamed to the file by {@link PdfStreamWriter} as they are finished, so memory use
+ * does not grow with the length of the report. The standard PDF fonts it uses cover Latin text
+ * only; a report with names in other scripts, such as Devanagari or Gujarati, is drawn with
+ * {@link PdfDocumentWriter} and the system fonts instead. Dates and amounts are formatted in
+ * Locale.US either way, so month names and digits never depend on the device language.
+ *
+ * {@link #generateReport} returns at once with a {@link Job} that reports the pages rendered
+ * and rows processed and can be cancelled between rows. The result is delivered on the main
+ * thread; showing it is up to the caller.
+ */
 public class ReportGenerator {
 
+    private static final String TAG = "ReportGenerator";
+    // One report at a time, below the UI thread's priority so rendering never steals frames
+    private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(runnable ->
+        new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, TAG));
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PAGE_WIDTH = 595;  // A4, in points
+    private static final int PAGE_HEIGHT = 842;
+    private static final int TEXT_CACHE_ENTRIES = 256;
+    // Room left for the right-aligned amount after the details column
+    private static final int AMOUNT_COLUMN_WIDTH = 80;
+    // Farmer name of the report over all farmers, the only one with a farmer column
+    private static final String ALL_FARMERS = "All Farmers";
+
     private final Context context;
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM yyyy", Locale.getDefault());
-    private final SimpleDateFormat shortDateFormat = new SimpleDateFormat("dd MMM yyyy", Locale.getDefault());
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM yyyy", Locale.US);
+    private final SimpleDateFormat shortDateFormat = new SimpleDateFormat("dd MMM yyyy", Locale.US);
     private final SimpleDateFormat fileDateFormat = new SimpleDateFormat("ddMMMyy", Locale.US);
 
     public ReportGenerator(Context context) {
-        this.context = context;
+        this.context = context.getApplicationContext();
     }
 
-    public void generateReport(String format, String farmerName, String farmerId, Date startDate, Date endDate, 
-                               List<SupplyEntry> supplies, List<Payment> payments, 
-                               Map<String, String> farmerNameMap) {
-        
-        if (farmerNameMap == null) farmerNameMap = new java.util.HashMap<>();
-        
-        PdfDocument document = new PdfDocument();
-        PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(595, 842, 1).create(); // A4
+    /**
+     * Called on the main thread when a report ends. Neither method is called for a
+     * cancelled report.
+     */
+    public interface Callback {
+        void onComplete(File file);
+        void onFailure(String error);
+    }
+
+    /**
+     * Progress of a report, posted as each page is finished
+     */
+    public static class Progress {
+        public final int pagesRendered;
+        public final int rowsProcessed;
+        public final int totalRows;
+
+        Progress(int pagesRendered, int rowsProcessed, int totalRows) {
+            this.pagesRendered = pagesRendered;
+            this.rowsProcessed = rowsProcessed;
+            this.totalRows = totalRows;
+        }
+    }
+
+    /**
+     * One report being rendered
+     */
+    public static final class Job {
+        private final MutableLiveData<Progress> progress = new MutableLiveData<>();
+        private volatile boolean cancelled;
+        private int pages;
+        private int rows;
+        private int totalRows;
+
+        Job() {
+        }
+
+        public LiveData<Progress> getProgress() {
+            return progress;
+        }
+
+        /**
+         * Stop rendering at the next row and delete the partial file
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void checkCancelled() {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+        }
+
+        private void pageFinished() {
+            pages++;
+            progress.postValue(new Progress(pages, rows, totalRows));
+        }
+    }
+
+    /**
+     * Start rendering a report. The lists are copied, so the caller may keep changing them.
+     */
+    public Job generateReport(String format, String farmerName, String farmerId, Date startDate, Date endDate,
+                              List<SupplyEntry> supplies, List<Payment> payments,
+                              Map<String, String> farmerNameMap, Callback callback) {
+        Job job = new Job();
+        List<SupplyEntry> supplyCopy = supplies != null ? new ArrayList<>(supplies) : new ArrayList<>();
+        List<Payment> paymentCopy = payments != null ? new ArrayList<>(payments) : new ArrayList<>();
+        Map<String, String> nameCopy = farmerNameMap != null ? new HashMap<>(farmerNameMap) : new HashMap<>();
+        WORKER.execute(() -> render(job, farmerName, farmerId, startDate, endDate,
+            supplyCopy, paymentCopy, nameCopy, callback));
+        return job;
+    }
+
+    private void render(Job job, String farmerName, String farmerId, Date startDate, Date endDate,
+                        List<SupplyEntry> supplies, List<Payment> payments,
+                        Map<String, String> farmerNameMap, Callback callback) {
+        if (job.isCancelled()) {
+            return;
+        }
+        String safeName = farmerName.replaceAll("[^a-zA-Z0-9.-]", "_");
+        String fileName = "Report_" + safeName + "_" + fileDateFormat.format(new Date()) + ".pdf";
+        File file = new File(context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS), fileName);
         
         try {
-            drawV1(document, pageInfo, farmerName, farmerId, startDate, endDate, supplies, payments, farmerNameMap);
-            
-            String safeName = farmerName.replaceAll("[^a-zA-Z0-9.-]", "_");
-            String fileName = "Report_" + safeName + "_" + fileDateFormat.format(new Date()) + ".pdf";
-            File file = new File(context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS), fileName);
-            document.writeTo(new FileOutputStream(file));
-            
-            Toast.makeText(context, "Report saved: " + fileName, Toast.LENGTH_LONG).show();
-            
+            writeReport(file, job, farmerName, farmerId, startDate, endDate, supplies, payments, farmerNameMap);
+            mainHandler.post(() -> callback.onComplete(file));
+        } catch (CancellationException e) {
+            Log.d(TAG, "Report cancelled after " + job.rows + " rows");
+            deletePartial(file);
         } catch (Exception e) {
-            e.printStackTrace();
-            Toast.makeText(context, "Error saving report: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        } finally {
-            document.close();
+            Log.e(TAG, "Error saving report", e);
+            deletePartial(file);
+            String error = e.getMessage() != null ? e.getMessage() : e.toString();
+            mainHandler.post(() -> callback.onFailure(error));
+        }
+    }
+
+    /**
+     * Render one report to {@code file} on the calling thread. Throws CancellationException
+     * if {@code job} is cancelled. A ReportGenerator's date formats are not thread-safe, so
+     * threads rendering in parallel each need their own instance.
+     */
+    void writeReport(File file, Job job, String farmerName, String farmerId, Date startDate, Date endDate,
+                     List<SupplyEntry> supplies, List<Payment> payments,
+                     Map<String, String> farmerNameMap) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+        try (ReportCanvas pdf = fitsStandardFonts(farmerName, supplies, payments, farmerNameMap)
+                ? new PdfStreamWriter(out, PAGE_WIDTH, PAGE_HEIGHT)
+                : new PdfDocumentWriter(out, PAGE_WIDTH, PAGE_HEIGHT)) {
+            drawV1(pdf, job, farmerName, farmerId, startDate, endDate, supplies, payments, farmerNameMap);
+            job.checkCancelled();
+            pdf.finish();
+        }
+    }
+
+    /**
+     * Whether every piece of data text the report draws can be drawn with the standard PDF
+     * fonts: the farmer name in the header, the payment methods, and the row farmer names,
+     * which only the all-farmers report shows. Only these send a report to the in-memory
+     * {@link PdfDocumentWriter}, so a family's other names never do.
+     */
+    static boolean fitsStandardFonts(String farmerName, List<SupplyEntry> supplies, List<Payment> payments,
+                                     Map<String, String> farmerNameMap) {
+        if (!canEncode(farmerName)) return false;
+        boolean isAllFarmers = ALL_FARMERS.equals(farmerName);
+        if (isAllFarmers) {
+            for (SupplyEntry entry : supplies) {
+                if ("draft".equalsIgnoreCase(entry.getStatus())) continue;
+                if (!canEncode(rowFarmerName(entry.getFarmerName(), entry.getFarmerId(), farmerNameMap))) {
+                    return false;
+                }
+            }
+        }
+        for (Payment payment : payments) {
+            if (!canEncode(payment.getPaymentMethod())) return false;
+            if (isAllFarmers
+                    && !canEncode(rowFarmerName(payment.getFarmerName(), payment.getFarmerId(), farmerNameMap))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The farmer name shown on a row: its own, else the one for its farmer id
+     */
+    private static String rowFarmerName(String name, String farmerId, Map<String, String> farmerNameMap) {
+        if ((name == null || name.isEmpty()) && farmerId != null) {
+            name = farmerNameMap.get(farmerId);
+        }
+        return name != null && !name.isEmpty() ? name : "Unknown";
+    }
+
+    private static boolean canEncode(String text) {
+        return text == null || PdfStreamWriter.canEncode(text);
+    }
+
+    static void deletePartial(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Could not delete partial report " + file);
         }
     }
     
     // ==========================================
     // VERSION 1: Original HTML Design Match
     // ==========================================
-    private void drawV1(PdfDocument document, PdfDocument.PageInfo pageInfo, String farmerName, String farmerId,
+    private void drawV1(ReportCanvas pdf, Job job, String farmerName, String farmerId,
                        Date startDate, Date endDate, List<SupplyEntry> supplies, List<Payment> payments,
-                       Map<String, String> farmerNameMap) {
+                       Map<String, String> farmerNameMap) throws IOException {
         
         if (supplies == null) supplies = new ArrayList<>();
         if (payments == null) payments = new ArrayList<>();
         
-        PdfDocument.Page page = document.startPage(pageInfo);
-        Canvas canvas = page.getCanvas();
-        Paint paint = new Paint();
-        TextPaint textPaint = new TextPaint();
+        pdf.beginPage();
         
-        int width = pageInfo.getPageWidth(); // 595
-        int height = pageInfo.getPageHeight(); // 842
+        int width = PAGE_WIDTH; // 595
+        int height = PAGE_HEIGHT; // 842
         int margin = 40; 
         int y = 50;
         
-        // --- Colors ---
-        int colorPrimary = Color.parseColor("#0056b3");
-        int colorRed = Color.parseColor("#d32f2f");
-        int colorDarkGray = Color.parseColor("#333333");
-        int colorLightGray = Color.parseColor("#666666");
-        int colorBgMeta = Color.parseColor("#f8f9fa");
-        int colorBorderCard = Color.parseColor("#e0e0e0");
-        int colorGreenText = Color.parseColor("#2e7d32");
-        int colorFooterBg = Color.parseColor("#eeeeee");
-        
-        // Badge Colors
-        int badgeSupplyBg = Color.parseColor("#e3f2fd");
-        int badgeSupplyText = Color.parseColor("#1565c0");
-        int badgePaymentBg = Color.parseColor("#e8f5e9");
-        int badgePaymentText = Color.parseColor("#2e7d32");
-        
         // --- Header ---
-        paint.setColor(colorPrimary);
-        paint.setTextSize(18); // Reduced from 24
-        paint.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.BOLD));
-        canvas.drawText("💧 Water Supply Manager", margin, y, paint);
-        
-        paint.setTextAlign(Paint.Align.RIGHT);
-        paint.setColor(colorDarkGray);
-        paint.setTextSize(20); // Reduced from 28
-        paint.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.NORMAL));
-        paint.setLetterSpacing(0.05f);
-        canvas.drawText("REPORT", width - margin, y, paint); 
-        paint.setLetterSpacing(0);
-        
-        paint.setColor(colorLightGray);
-        paint.setTextSize(10); // Reduced from 14
-        paint.setTypeface(Typeface.DEFAULT);
-        canvas.drawText("Generated: " + dateFormat.format(new Date()), width - margin, y + 15, paint);
-        paint.setTextAlign(Paint.Align.LEFT);
+        // The standard PDF fonts have no emoji, so the brand is text only
+        pdf.drawText("Water Supply Manager", margin, y, ReportStyle.BRAND);
+        pdf.drawText("REPORT", width - margin, y, ReportStyle.TITLE); 
+        pdf.drawText("Generated: " + dateFormat.format(new Date()), width - margin, y + 15, ReportStyle.GENERATED);
         
         y += 30;
-        paint.setColor(colorPrimary);
-        paint.setStrokeWidth(1);
-        canvas.drawLine(margin, y, width - margin, y, paint);
+        pdf.drawLine(margin, y, width - margin, y, ReportStyle.PRIMARY, 1);
         
         // --- Meta Info ---
         y += 20;
         int metaH = 60; // Reduced height
-        RectF metaRect = new RectF(margin, y, width - margin, y + metaH);
-        paint.setColor(colorBgMeta);
-        paint.setStyle(Paint.Style.FILL);
-        canvas.drawRoundRect(metaRect, 6, 6, paint);
-        
-        paint.setColor(colorPrimary);
-        canvas.drawRect(margin, y, margin + 4, y + metaH, paint);
+        pdf.fillRoundRect(margin, y, width - margin, y + metaH, 6, ReportStyle.META_BACKGROUND);
+        pdf.fillRect(margin, y, margin + 4, y + metaH, ReportStyle.PRIMARY);
         
         int col1X = margin + 20;
         int col2X = margin + 200;
@@ -144,73 +279,55 @@ public class ReportGenerator {
         int labelY = y + 20;
         int valueY = y + 40;
         
-        paint.setColor(colorLightGray);
-        paint.setTextSize(10);
-        canvas.drawText("REPORT FOR", col1X, labelY, paint);
-        canvas.drawText("PERIOD", col2X, labelY, paint);
-        canvas.drawText("STATUS", col3X, labelY, paint);
+        pdf.drawText("REPORT FOR", col1X, labelY, ReportStyle.META_LABEL);
+        pdf.drawText("PERIOD", col2X, labelY, ReportStyle.META_LABEL);
+        pdf.drawText("STATUS", col3X, labelY, ReportStyle.META_LABEL);
         
         // Name
-        textPaint.setColor(colorDarkGray);
-        textPaint.setTextSize(12);
-        textPaint.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.BOLD));
-        
         String dispName = farmerName;
         if (dispName.length() > 25) dispName = dispName.substring(0, 22) + "...";
-        canvas.drawText(dispName, col1X, valueY, textPaint);
+        pdf.drawText(dispName, col1X, valueY, ReportStyle.META_VALUE);
         
         // Period
-        canvas.drawText(shortDateFormat.format(startDate) + " - " + shortDateFormat.format(endDate), col2X, valueY, textPaint);
+        pdf.drawText(shortDateFormat.format(startDate) + " - " + shortDateFormat.format(endDate), col2X, valueY, ReportStyle.META_VALUE);
         
         // Status
-        paint.setColor(colorRed);
-        paint.setTextSize(12);
-        paint.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.BOLD));
-        canvas.drawText("Pending Dues", col3X, valueY, paint); 
+        pdf.drawText("Pending Dues", col3X, valueY, ReportStyle.STATUS); 
         
         y += 80;
         
         // --- Cards ---
-        double totalHours = 0;
-        double totalBilled = 0;
-        if (supplies != null) {
-            for(SupplyEntry s : supplies) {
-                totalHours = BillingCalculator.addHours(totalHours,
-                    s.getTotalTimeUsed() != null ? s.getTotalTimeUsed() : 0.0);
-                totalBilled = BillingCalculator.addAmounts(totalBilled, s.getAmount());
-            }
+        long hundredths = 0;
+        long billedPaise = 0;
+        for (SupplyEntry entry : supplies) {
+            hundredths += BillingCalculator.toHundredths(
+                entry.getTotalTimeUsed() != null ? entry.getTotalTimeUsed() : 0.0);
+            billedPaise += BillingCalculator.toPaise(entry.getAmount());
         }
         
-        double totalPaid = 0;
-        if (payments != null) {
-            for(Payment p : payments) {
-                totalPaid = BillingCalculator.addAmounts(totalPaid, p.getAmount());
-            }
+        long paidPaise = 0;
+        for (Payment payment : payments) {
+            paidPaise += BillingCalculator.toPaise(payment.getAmount());
         }
         
-        double pending = BillingCalculator.normalizeAmount(totalBilled - totalPaid);
+        double totalHours = BillingCalculator.fromHundredths(hundredths);
+        double totalBilled = BillingCalculator.fromPaise(billedPaise);
+        double pending = BillingCalculator.fromPaise(billedPaise - paidPaise);
         
         int gap = 15;
         int cardW = (width - (2*margin) - (2*gap)) / 3;
         int cardH = 60; // Reduced height
         
-        drawCardV2(canvas, margin, y, cardW, cardH, "Total Supply",
-            UsageHoursFormatter.format(totalHours) + " Hrs", false,
-            colorBorderCard, colorLightGray, colorDarkGray);
-         // Count overlay
-        paint.setColor(colorLightGray);
-        paint.setTextSize(9);
-        paint.setTextAlign(Paint.Align.CENTER);
-        paint.setTypeface(Typeface.DEFAULT);
-        canvas.drawText(supplies.size() + " Entries", margin + cardW/2f, y + 50, paint);
+        drawCardV2(pdf, margin, y, cardW, cardH, "Total Supply",
+            UsageHoursFormatter.format(totalHours) + " Hrs", false);
+        // Count overlay
+        pdf.drawText(supplies.size() + " Entries", margin + cardW/2f, y + 50, ReportStyle.CARD_NOTE);
         
-        drawCardV2(canvas, margin + cardW + gap, y, cardW, cardH, "Total Charges",
-            CurrencyFormatter.format(totalBilled), false,
-            colorBorderCard, colorLightGray, colorDarkGray);
+        drawCardV2(pdf, margin + cardW + gap, y, cardW, cardH, "Total Charges",
+            "₹" + String.format(Locale.US, "%.2f", totalBilled), false);
         
-        drawCardV2(canvas, margin + 2*(cardW + gap), y, cardW, cardH, "Pending Due",
-            CurrencyFormatter.format(pending), true, Color.TRANSPARENT,
-            Color.argb(255, 255, 255, 255), Color.WHITE);
+        drawCardV2(pdf, margin + 2*(cardW + gap), y, cardW, cardH, "Pending Due",
+            "₹" + String.format(Locale.US, "%.2f", pending), true);
         
         y += 80;
         
@@ -225,285 +342,160 @@ public class ReportGenerator {
             boolean isSettled;
         }
         
-        boolean isAllFarmers = "All Farmers".equals(farmerName);
+        boolean isAllFarmers = ALL_FARMERS.equals(farmerName);
         
         List<ReportItem> items = new ArrayList<>();
         try {
-            SimpleDateFormat pF = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-            if (supplies != null) {
-                for(SupplyEntry s : supplies) {
-                    if (s.getDate() == null || "draft".equalsIgnoreCase(s.getStatus())) continue;
-                    
-                    ReportItem i = new ReportItem();
-                    Date d = pF.parse(s.getDate());
-                    i.timestamp = d != null ? d.getTime() : 0;
-                    i.date = shortDateFormat.format(d != null ? d : new Date());
-                    
-                    double hrs = s.getTotalTimeUsed() != null ? s.getTotalTimeUsed() : 0.0;
-                    double rate = s.getRate(); // Primitive, safe
-                    i.details = String.format(Locale.US, "%s Hrs @ ₹%.2f/hr",
-                        UsageHoursFormatter.format(hrs), rate);
-                    
-                    String fName = s.getFarmerName();
-                    if ((fName == null || fName.isEmpty()) && s.getFarmerId() != null && farmerNameMap != null) {
-                        fName = farmerNameMap.get(s.getFarmerId());
-                    }
-                    i.farmerName = (fName != null && !fName.isEmpty()) ? fName : "Unknown";
-                    i.amount = BillingCalculator.normalizeAmount(s.getAmount());
-                    i.isPayment = false;
-                    i.isSettled = "settled".equals(s.getSettlementStatus());
-                    items.add(i);
-                }
+            SimpleDateFormat pF = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+            for(SupplyEntry entry : supplies) {
+                if (entry.getDate() == null || "draft".equalsIgnoreCase(entry.getStatus())) continue;
+                
+                ReportItem i = new ReportItem();
+                Date d = pF.parse(entry.getDate());
+                i.timestamp = d != null ? d.getTime() : 0;
+                i.date = shortDateFormat.format(d != null ? d : new Date());
+                
+                double hrs = entry.getTotalTimeUsed() != null ? entry.getTotalTimeUsed() : 0.0;
+                double rate = entry.getRate(); // Primitive, safe
+                i.details = String.format(Locale.US, "%s Hrs @ ₹%.2f/hr",
+                    UsageHoursFormatter.format(hrs), rate);
+                
+                i.farmerName = rowFarmerName(entry.getFarmerName(), entry.getFarmerId(), farmerNameMap);
+                i.amount = BillingCalculator.normalizeAmount(entry.getAmount());
+                i.isPayment = false;
+                i.isSettled = "settled".equals(entry.getSettlementStatus());
+                items.add(i);
             }
-            if (payments != null) {
-                for(Payment p : payments) {
-                    ReportItem i = new ReportItem();
-                    Date d = pF.parse(p.getPaymentDate());
-                    i.timestamp = d != null ? d.getTime() : 0;
-                    i.date = shortDateFormat.format(d != null ? d : new Date());
-                    i.details = p.getPaymentMethod() != null ? p.getPaymentMethod() : "Payment";
-                    String fName = p.getFarmerName();
-                    if ((fName == null || fName.isEmpty()) && p.getFarmerId() != null && farmerNameMap != null) {
-                        fName = farmerNameMap.get(p.getFarmerId());
-                    }
-                    i.farmerName = (fName != null && !fName.isEmpty()) ? fName : "Unknown";
-                    i.amount = BillingCalculator.normalizeAmount(p.getAmount());
-                    i.isPayment = true;
-                    i.isSettled = p.getSettlementId() != null;
-                    items.add(i);
-                }
+            for(Payment p : payments) {
+                ReportItem i = new ReportItem();
+                Date d = pF.parse(p.getPaymentDate());
+                i.timestamp = d != null ? d.getTime() : 0;
+                i.date = shortDateFormat.format(d != null ? d : new Date());
+                i.details = p.getPaymentMethod() != null ? p.getPaymentMethod() : "Payment";
+                i.farmerName = rowFarmerName(p.getFarmerName(), p.getFarmerId(), farmerNameMap);
+                i.amount = BillingCalculator.normalizeAmount(p.getAmount());
+                i.isPayment = true;
+                i.isSettled = p.getSettlementId() != null;
+                items.add(i);
             }
             Collections.sort(items, (o1, o2) -> Long.compare(o1.timestamp, o2.timestamp));
         } catch(Exception e){}
+        job.totalRows = items.size();
 
-        // Header
         int rowH = 30; // Reduced row height
         
-        paint.setColor(colorPrimary);
-        paint.setStyle(Paint.Style.FILL);
-        canvas.drawRect(margin, y, width - margin, y + rowH, paint);
-        
-        paint.setColor(Color.WHITE);
-        paint.setTextSize(11);
-        paint.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.BOLD)); 
-        
         // Layout Config
-        int tY = y + 20;
         int c1 = margin + 10; // Date
         int c2 = isAllFarmers ? margin + 110 : 0; // Farmer (only if all)
         int c3 = isAllFarmers ? margin + 220 : margin + 130; // Type
         int c4 = isAllFarmers ? margin + 290 : margin + 210; // Details
         int c5 = width - margin - 10; // Amount (Right aligned)
         
-        canvas.drawText("Date", c1, tY, paint);
-        if (isAllFarmers) canvas.drawText("Farmer", c2, tY, paint);
-        canvas.drawText("Type", c3, tY, paint);
-        canvas.drawText("Details", c4, tY, paint);
-        paint.setTextAlign(Paint.Align.RIGHT);
-        canvas.drawText("Amount", c5, tY, paint);
-        paint.setTextAlign(Paint.Align.LEFT);
-        
+        // Farmer names and details repeat from row to row; lay each distinct one out once,
+        // ellipsized to its column
+        TextCache farmerCells = new TextCache(pdf, ReportStyle.CELL, c3 - c2 - 8, TEXT_CACHE_ENTRIES);
+        int detailsWidth = c5 - c4 - AMOUNT_COLUMN_WIDTH;
+        TextCache supplyDetails = new TextCache(pdf, ReportStyle.CELL, detailsWidth, TEXT_CACHE_ENTRIES);
+        TextCache paymentDetails = new TextCache(pdf, ReportStyle.PAYMENT_CELL, detailsWidth, TEXT_CACHE_ENTRIES);
+        // Badge labels never change, so they are measured once
+        float supplyBadgeWidth = pdf.measure(ReportStyle.SUPPLY_LABEL, ReportStyle.SUPPLY_BADGE);
+        float paymentBadgeWidth = pdf.measure(ReportStyle.PAYMENT_LABEL, ReportStyle.PAYMENT_BADGE);
+        
+        drawTableHeader(pdf, y, rowH, margin, width, isAllFarmers, c1, c2, c3, c4, c5);
         y += rowH;
         
         boolean isEven = false;
-        paint.setTextSize(10);
-        paint.setTypeface(Typeface.DEFAULT);
         
         for (ReportItem item : items) {
+             job.checkCancelled();
              if (y > height - 60) {
-                 drawFooter(canvas, width, height, paint);
-                 document.finishPage(page);
-                 page = document.startPage(pageInfo);
-                 canvas = page.getCanvas();
+                 drawFooter(pdf, width, height);
+                 pdf.endPage();
+                 job.pageFinished();
+                 pdf.beginPage();
                  y = 50;
                  
-                 // Re-Header
-                 paint.setColor(colorPrimary);
-                 paint.setStyle(Paint.Style.FILL);
-                 canvas.drawRect(margin, y, width - margin, y + rowH, paint);
-                 paint.setColor(Color.WHITE);
-                 paint.setTextSize(11); // Header size
-                 paint.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.BOLD));
-                 
-                 canvas.drawText("Date", c1, y + 20, paint);
-                 if (isAllFarmers) canvas.drawText("Farmer", c2, y + 20, paint);
-                 canvas.drawText("Type", c3, y + 20, paint);
-                 canvas.drawText("Details", c4, y + 20, paint);
-                 paint.setTextAlign(Paint.Align.RIGHT);
-                 canvas.drawText("Amount", c5, y + 20, paint);
-                 paint.setTextAlign(Paint.Align.LEFT);
+                 drawTableHeader(pdf, y, rowH, margin, width, isAllFarmers, c1, c2, c3, c4, c5);
                  y += rowH;
-                 
-                 paint.setTextSize(10); // Reset for rows
-                 paint.setTypeface(Typeface.DEFAULT);
              }
              
              if (isEven) {
-                 paint.setColor(colorBgMeta);
-                 paint.setStyle(Paint.Style.FILL);
-                 canvas.drawRect(margin, y, width - margin, y + rowH, paint);
+                 pdf.fillRect(margin, y, width - margin, y + rowH, ReportStyle.META_BACKGROUND);
              }
              
-             paint.setColor(colorDarkGray);
-             canvas.drawText(item.date, c1, y + 20, paint);
+             pdf.drawText(item.date, c1, y + 20, ReportStyle.CELL);
              
              if (isAllFarmers) {
-                 String f = item.farmerName;
-                 if (f != null && f.length() > 15) {
-                     f = f.substring(0, 13) + "..";
-                 } else if (f == null) {
-                     f = "";
-                 }
-                 canvas.drawText(f, c2, y + 20, paint);
+                 pdf.drawText(farmerCells.fit(item.farmerName), c2, y + 20, ReportStyle.CELL);
              }
              
              boolean paymentRow = item.isPayment;
              
-             if (!paymentRow) drawBadge(canvas, "Supply", c3, y + 8, badgeSupplyBg, badgeSupplyText);
-             else drawBadge(canvas, "Payment", c3, y + 8, badgePaymentBg, badgePaymentText);
+             if (!paymentRow) drawBadge(pdf, ReportStyle.SUPPLY_LABEL, c3, y + 8, ReportStyle.BADGE_SUPPLY_BACKGROUND, ReportStyle.SUPPLY_BADGE, supplyBadgeWidth);
+             else drawBadge(pdf, ReportStyle.PAYMENT_LABEL, c3, y + 8, ReportStyle.BADGE_PAYMENT_BACKGROUND, ReportStyle.PAYMENT_BADGE, paymentBadgeWidth);
              
              if (item.isSettled) {
-                 paint.setColor(colorGreenText);
-                 paint.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.BOLD));
-                 canvas.drawText("✓", c3 + 60, y + 20, paint);
-                 paint.setTypeface(Typeface.DEFAULT);
+                 drawCheckMark(pdf, c3 + 60, y + 20);
              }
              
-             if (paymentRow) paint.setColor(colorGreenText);
-             else paint.setColor(colorDarkGray);
-             
-             String det = item.details;
-             int maxLen = isAllFarmers ? 25 : 40;
-             if (det.length() > maxLen) det = det.substring(0, maxLen) + "..";
-             canvas.drawText(det, c4, y + 20, paint);
-             
-             paint.setTextAlign(Paint.Align.RIGHT);
-             paint.setTypeface(Typeface.create(Typeface.MONOSPACE, Typeface.NORMAL));
+             if (paymentRow) pdf.drawText(paymentDetails.fit(item.details), c4, y + 20, ReportStyle.PAYMENT_CELL);
+             else pdf.drawText(supplyDetails.fit(item.details), c4, y + 20, ReportStyle.CELL);
              
-             if (paymentRow) canvas.drawText("-₹" + String.format(Locale.US, "%.2f", item.amount), c5, y + 20, paint);
-             else canvas.drawText("₹" + String.format(Locale.US, "%.2f", item.amount), c5, y + 20, paint);
+             if (paymentRow) pdf.drawText("-₹" + String.format(Locale.US, "%.2f", item.amount), c5, y + 20, ReportStyle.PAYMENT_AMOUNT);
+             else pdf.drawText("₹" + String.format(Locale.US, "%.2f", item.amount), c5, y + 20, ReportStyle.AMOUNT);
              
-             paint.setTextAlign(Paint.Align.LEFT);
-             paint.setTypeface(Typeface.DEFAULT);
-             
-             paint.setColor(Color.parseColor("#eeeeee"));
-             paint.setStyle(Paint.Style.STROKE); 
-             paint.setStrokeWidth(1);
-             canvas.drawLine(margin, y + rowH, width - margin, y + rowH, paint);
-             paint.setStyle(Paint.Style.FILL);
+             pdf.drawLine(margin, y + rowH, width - margin, y + rowH, ReportStyle.FOOTER_BACKGROUND, 1);
              
              y += rowH;
              isEven = !isEven;
+             job.rows++;
         }
         
         // Final Footer Total
         y += 10;
-        paint.setColor(colorFooterBg);
-        paint.setStyle(Paint.Style.FILL);
-        canvas.drawRect(margin, y, width - margin, y + 35, paint);
-        
-        paint.setColor(colorDarkGray); 
-        paint.setTextSize(12);
-        paint.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.BOLD));
-        paint.setTextAlign(Paint.Align.RIGHT);
-        canvas.drawText("Total Outstanding Balance:", width - margin - 120, y + 22, paint); 
+        pdf.fillRect(margin, y, width - margin, y + 35, ReportStyle.FOOTER_BACKGROUND);
+        pdf.drawText("Total Outstanding Balance:", width - margin - 120, y + 22, ReportStyle.TOTAL_LABEL); 
+        pdf.drawText("₹" + String.format(Locale.US, "%.2f", pending), width - margin - 10, y + 22, ReportStyle.TOTAL_VALUE);
         
-        paint.setColor(colorRed); 
-        canvas.drawText("₹" + String.format(Locale.US, "%.2f", pending), width - margin - 10, y + 22, paint);
-        
-        drawFooter(canvas, width, height, paint);
-        document.finishPage(page);
+        drawFooter(pdf, width, height);
+        pdf.endPage();
+        job.pageFinished();
     }
 
-    private void drawCardV2(Canvas canvas, int x, int y, int w, int h, String title, String val, boolean highlight, int borderColor, int titleColor, int valColor) {
-        Paint p = new Paint();
-        p.setColor(highlight ? Color.parseColor("#0056b3") : Color.WHITE);
-        p.setStyle(Paint.Style.FILL);
-        
-        RectF cardRect = new RectF(x, y, x + w, y + h);
-        canvas.drawRoundRect(cardRect, 6, 6, p); // Smaller radius
-        
-        if (!highlight) {
-            Paint border = new Paint();
-            border.setStyle(Paint.Style.STROKE);
-            border.setColor(borderColor);
-            border.setStrokeWidth(1);
-            canvas.drawRoundRect(cardRect, 6, 6, border);
-        }
-        
-        Paint textP = new Paint();
-        textP.setColor(titleColor);
-        textP.setTextSize(10); // Smaller title
-        textP.setTextAlign(Paint.Align.CENTER);
-        textP.setTypeface(Typeface.DEFAULT); 
-        canvas.drawText(title.toUpperCase(), x + w/2f, y + 20, textP);
-        
-        textP.setTextSize(18); // Smaller value
-        textP.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.BOLD));
-        textP.setColor(valColor);
-        canvas.drawText(val, x + w/2f, y + 42, textP);
+    private void drawTableHeader(ReportCanvas pdf, int y, int rowH, int margin, int width, boolean isAllFarmers,
+                                 int c1, int c2, int c3, int c4, int c5) {
+        pdf.fillRect(margin, y, width - margin, y + rowH, ReportStyle.PRIMARY);
+        pdf.drawText("Date", c1, y + 20, ReportStyle.TABLE_HEADER);
+        if (isAllFarmers) pdf.drawText("Farmer", c2, y + 20, ReportStyle.TABLE_HEADER);
+        pdf.drawText("Type", c3, y + 20, ReportStyle.TABLE_HEADER);
+        pdf.drawText("Details", c4, y + 20, ReportStyle.TABLE_HEADER);
+        pdf.drawText("Amount", c5, y + 20, ReportStyle.TABLE_HEADER_RIGHT);
     }
-    
-    // Highlighted Card style
-    private void drawCard(Canvas canvas, int x, int y, int w, int h, String title, String val, boolean highlight, int borderColor, int titleColor, int valColor) {
-        Paint p = new Paint();
-        p.setColor(highlight ? Color.parseColor("#0056b3") : Color.WHITE);
-        p.setStyle(Paint.Style.FILL);
-        
-        RectF cardRect = new RectF(x, y, x + w, y + h);
-        canvas.drawRoundRect(cardRect, 8, 8, p);
+
+    private void drawCardV2(ReportCanvas pdf, int x, int y, int w, int h, String title, String val, boolean highlight) {
+        pdf.fillRoundRect(x, y, x + w, y + h, 6, highlight ? ReportStyle.PRIMARY : ReportStyle.WHITE); // Smaller radius
         
         if (!highlight) {
-            Paint border = new Paint();
-            border.setStyle(Paint.Style.STROKE);
-            border.setColor(borderColor);
-            border.setStrokeWidth(1);
-            canvas.drawRoundRect(cardRect, 8, 8, border);
+            pdf.strokeRoundRect(x, y, x + w, y + h, 6, ReportStyle.CARD_BORDER, 1);
         }
         
-        Paint textP = new Paint();
-        textP.setColor(titleColor);
-        textP.setTextSize(13);
-        textP.setTextAlign(Paint.Align.CENTER);
-        textP.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.NORMAL)); 
-        canvas.drawText(title.toUpperCase(), x + w/2f, y + 25, textP);
-        
-        textP.setTextSize(24);
-        textP.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.BOLD));
-        textP.setColor(valColor);
-        canvas.drawText(val, x + w/2f, y + 55, textP);
+        pdf.drawText(title.toUpperCase(), x + w/2f, y + 20, highlight ? ReportStyle.CARD_HIGHLIGHT_TITLE : ReportStyle.CARD_TITLE);
+        pdf.drawText(val, x + w/2f, y + 42, highlight ? ReportStyle.CARD_HIGHLIGHT_VALUE : ReportStyle.CARD_VALUE);
     }
     
-    private void drawBadge(Canvas canvas, String text, int x, int y, int bgColor, int textColor) {
-        Paint p = new Paint();
-        p.setColor(bgColor);
-        p.setStyle(Paint.Style.FILL);
-        
-        Paint t = new Paint();
-        t.setColor(textColor);
-        t.setTextSize(11);
-        t.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.BOLD));
-        
-        float textW = t.measureText(text);
-        RectF r = new RectF(x, y, x + textW + 16, y + 20); 
-        canvas.drawRoundRect(r, 4, 4, p);
+    private void drawBadge(ReportCanvas pdf, String text, int x, int y, int fill, PdfStreamWriter.TextStyle textStyle, float textW) {
+        pdf.fillRoundRect(x, y, x + textW + 16, y + 20, 4, fill); 
         
-        canvas.drawText(text, x + 8, y + 14, t);
+        pdf.drawText(text, x + 8, y + 14, textStyle);
     }
     
-    private void drawFooter(Canvas canvas, int width, int height, Paint paint) {
-        paint.setStyle(Paint.Style.FILL);
-        paint.setColor(Color.parseColor("#999999"));
-        paint.setTextSize(12);
-        paint.setTypeface(Typeface.DEFAULT);
-        paint.setTextAlign(Paint.Align.CENTER);
-        canvas.drawText("Generated by Water Supply Management App • Developed by Aasav Chauhan", width / 2f, height - 35, paint);
+    // The standard PDF fonts have no check mark glyph, so it is drawn as two strokes
+    private void drawCheckMark(ReportCanvas pdf, int x, int baseline) {
+        pdf.drawLine(x, baseline - 4, x + 3, baseline - 1, ReportStyle.GREEN, 1.5f);
+        pdf.drawLine(x + 3, baseline - 1, x + 9, baseline - 8, ReportStyle.GREEN, 1.5f);
     }
     
-    public File getLastReportFile(String format, String farmerName) {
-         // Return matching filename logic
-         String safeName = farmerName.replaceAll("[^a-zA-Z0-9.-]", "_");
-         String fileName = "Report_" + safeName + "_" + fileDateFormat.format(new Date()) + ".pdf";
-         return new File(context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS), fileName);
+    private void drawFooter(ReportCanvas pdf, int width, int height) {
+        pdf.drawText("Generated by Water Supply Management App • Developed by Aasav Chauhan", width / 2f, height - 35, ReportStyle.FOOTER);
     }
 }
@@ -0,0 +1,68 @@
+package com.watersupply.utils;
+
+import com.watersupply.utils.PdfStreamWriter.Align;
+import com.watersupply.utils.PdfStreamWriter.Font;
+import com.watersupply.utils.PdfStreamWriter.TextStyle;
+
+/**
+ * Colours and text styles of the PDF report. Text styles are immutable, so they are built once
+ * and shared by every page, card and row.
+ */
+final class ReportStyle {
+    static final int PRIMARY = 0xff0056b3;
+    static final int RED = 0xffd32f2f;
+    static final int DARK_GRAY = 0xff333333;
+    static final int LIGHT_GRAY = 0xff666666;
+    static final int WHITE = 0xffffffff;
+    static final int META_BACKGROUND = 0xfff8f9fa;
+    static final int CARD_BORDER = 0xffe0e0e0;
+    static final int GREEN = 0xff2e7d32;
+    static final int FOOTER_BACKGROUND = 0xffeeeeee;
+    static final int FOOTER_TEXT = 0xff999999;
+    static final int BADGE_SUPPLY_BACKGROUND = 0xffe3f2fd;
+    static final int BADGE_SUPPLY_TEXT = 0xff1565c0;
+    static final int BADGE_PAYMENT_BACKGROUND = 0xffe8f5e9;
+    static final int BADGE_PAYMENT_TEXT = 0xff2e7d32;
+
+    private static final Font BOLD = Font.HELVETICA_BOLD;
+    private static final Font NORMAL = Font.HELVETICA;
+    private static final Font MONOSPACE = Font.COURIER;
+
+    // Header
+    static final TextStyle BRAND = new TextStyle(BOLD, 18, PRIMARY, Align.LEFT);
+    static final TextStyle TITLE = new TextStyle(NORMAL, 20, DARK_GRAY, Align.RIGHT, 0.05f);
+    static final TextStyle GENERATED = new TextStyle(NORMAL, 10, LIGHT_GRAY, Align.RIGHT);
+
+    // Meta box
+    static final TextStyle META_LABEL = new TextStyle(NORMAL, 10, LIGHT_GRAY, Align.LEFT);
+    static final TextStyle META_VALUE = new TextStyle(BOLD, 12, DARK_GRAY, Align.LEFT);
+    static final TextStyle STATUS = new TextStyle(BOLD, 12, RED, Align.LEFT);
+
+    // Summary cards
+    static final TextStyle CARD_TITLE = new TextStyle(NORMAL, 10, LIGHT_GRAY, Align.CENTER);
+    static final TextStyle CARD_HIGHLIGHT_TITLE = new TextStyle(NORMAL, 10, WHITE, Align.CENTER);
+    static final TextStyle CARD_VALUE = new TextStyle(BOLD, 18, DARK_GRAY, Align.CENTER);
+    static final TextStyle CARD_HIGHLIGHT_VALUE = new TextStyle(BOLD, 18, WHITE, Align.CENTER);
+    static final TextStyle CARD_NOTE = new TextStyle(NORMAL, 9, LIGHT_GRAY, Align.CENTER);
+
+    // Table
+    static final TextStyle TABLE_HEADER = new TextStyle(BOLD, 11, WHITE, Align.LEFT);
+    static final TextStyle TABLE_HEADER_RIGHT = new TextStyle(BOLD, 11, WHITE, Align.RIGHT);
+    static final TextStyle CELL = new TextStyle(NORMAL, 10, DARK_GRAY, Align.LEFT);
+    static final TextStyle PAYMENT_CELL = new TextStyle(NORMAL, 10, GREEN, Align.LEFT);
+    static final TextStyle AMOUNT = new TextStyle(MONOSPACE, 10, DARK_GRAY, Align.RIGHT);
+    static final TextStyle PAYMENT_AMOUNT = new TextStyle(MONOSPACE, 10, GREEN, Align.RIGHT);
+    static final TextStyle SUPPLY_BADGE = new TextStyle(BOLD, 11, BADGE_SUPPLY_TEXT, Align.LEFT);
+    static final TextStyle PAYMENT_BADGE = new TextStyle(BOLD, 11, BADGE_PAYMENT_TEXT, Align.LEFT);
+
+    // Totals and footer
+    static final TextStyle TOTAL_LABEL = new TextStyle(BOLD, 12, DARK_GRAY, Align.RIGHT);
+    static final TextStyle TOTAL_VALUE = new TextStyle(BOLD, 12, RED, Align.RIGHT);
+    static final TextStyle FOOTER = new TextStyle(NORMAL, 12, FOOTER_TEXT, Align.CENTER);
+
+    static final String SUPPLY_LABEL = "Supply";
+    static final String PAYMENT_LABEL = "Payment";
+
+    private ReportStyle() {
+    }
+}
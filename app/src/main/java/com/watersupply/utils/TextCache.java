@@ -0,0 +1,64 @@
+package com.watersupply.utils;
+
+import com.watersupply.utils.PdfStreamWriter.TextStyle;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of strings fitted to a table cell, for report text that repeats
+ * from row to row (farmer names, payment methods). Text wider than the cell is cut and ends
+ * with an ellipsis.
+ *
+ * Not thread-safe.
+ */
+final class TextCache {
+    private static final String ELLIPSIS = "…";
+
+    private final ReportCanvas canvas;
+    private final TextStyle style;
+    private final float cellWidth;
+    private final Map<String, String> fitted;
+
+    /**
+     * @param canvas measures the text, in the fonts it will be drawn with
+     */
+    TextCache(ReportCanvas canvas, TextStyle style, float cellWidth, int maxEntries) {
+        this.canvas = canvas;
+        this.style = style;
+        this.cellWidth = cellWidth;
+        this.fitted = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * {@code text}, shortened if needed to fit the cell
+     */
+    String fit(String text) {
+        String line = fitted.get(text);
+        if (line == null) {
+            line = ellipsize(text);
+            fitted.put(text, line);
+        }
+        return line;
+    }
+
+    private String ellipsize(String text) {
+        if (canvas.measure(text, style) <= cellWidth) {
+            return text;
+        }
+        float available = cellWidth - canvas.measure(ELLIPSIS, style);
+        int end = text.length();
+        while (end > 0 && canvas.measure(text.substring(0, end), style) > available) {
+            end--;
+        }
+        if (end > 0 && Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end).trim() + ELLIPSIS;
+    }
+}
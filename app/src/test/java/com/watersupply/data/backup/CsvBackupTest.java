@@ -0,0 +1,48 @@
+package com.watersupply.data.backup;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CsvBackupTest {
+    private static CsvBackup.Reader reader(String csv) {
+        return new CsvBackup.Reader(new BufferedReader(new StringReader(csv)));
+    }
+
+    @Test
+    public void escapedCellsReadBackUnchanged() throws IOException {
+        List<String> cells = Arrays.asList("plain", "a,b", "say \"hi\"", "two\nlines", "");
+        StringBuilder line = new StringBuilder();
+        for (String cell : cells) {
+            if (line.length() > 0) line.append(',');
+            line.append(CsvBackup.escapeCSV(cell));
+        }
+
+        CsvBackup.Reader reader = reader(line + "\nnext,row\n");
+        assertEquals(cells, reader.readRecord());
+        assertEquals(2, reader.getLineNumber());
+        assertEquals(Arrays.asList("next", "row"), reader.readRecord());
+        assertNull(reader.readRecord());
+    }
+
+    @Test(expected = IOException.class)
+    public void unterminatedQuoteFails() throws IOException {
+        reader("\"open,cell\nstill open\n").readRecord();
+    }
+
+    @Test
+    public void format_writesPlainNumbersDatesAndLists() {
+        assertEquals("12500000", CsvBackup.format(1.25e7, CsvBackup.newDateFormat()));
+        assertEquals("1970-01-01T00:00:01.000Z", CsvBackup.format(new Date(1000), CsvBackup.newDateFormat()));
+        assertEquals("a;b", CsvBackup.format(Arrays.asList("a", "b"), CsvBackup.newDateFormat()));
+        assertEquals("", CsvBackup.format(null, CsvBackup.newDateFormat()));
+    }
+}
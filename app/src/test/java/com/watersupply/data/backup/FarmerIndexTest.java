@@ -0,0 +1,52 @@
+package com.watersupply.data.backup;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FarmerIndexTest {
+    private static FarmerIndex family() {
+        FarmerIndex farmers = new FarmerIndex();
+        farmers.add("f1", "Ramesh Patel");
+        farmers.add("f2", "रमेश पटेल");
+        return farmers;
+    }
+
+    @Test
+    public void familyIdsResolveToThemselves() {
+        assertEquals("f1", family().resolve("f1", null));
+        assertEquals("f2", family().resolve("f2", "Someone Else"));
+    }
+
+    @Test
+    public void backupIdsAreMatchedByNameAndRemembered() {
+        FarmerIndex farmers = family();
+
+        assertEquals("f1", farmers.resolve("backup1", "  ramesh PATEL "));
+        assertEquals("f1", farmers.resolve("backup1", null)); // Later rows may omit the name
+        assertEquals("f2", farmers.resolve("backup2", "रमेश पटेल"));
+    }
+
+    @Test
+    public void mappedBackupIdsWinOverNames() {
+        FarmerIndex farmers = family();
+        farmers.map("backup1", "f2");
+
+        assertEquals("f2", farmers.resolve("backup1", "Ramesh Patel"));
+    }
+
+    @Test
+    public void unknownFarmersAreNotResolved() {
+        FarmerIndex farmers = family();
+
+        assertNull(farmers.resolve("backup9", "Suresh"));
+        assertNull(farmers.resolve("backup9", null));
+        assertNull(farmers.resolve(null, null));
+
+        farmers.add("f3", "Suresh");
+        farmers.map("backup9", "f3");
+        assertEquals("f3", farmers.resolve("backup9", null));
+        assertEquals("Suresh", farmers.name("f3"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.watersupply.data.backup;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ImportRowTest {
+    private static ImportRow row(String... cells) {
+        List<String> header = Arrays.asList("id", "date", "amount", "billingMethod", "remarks");
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i), i);
+        }
+        return new ImportRow(columns, Arrays.asList(cells));
+    }
+
+    private static void assertRejected(String message, ImportRowCheck check) {
+        try {
+            check.run();
+            fail("Expected " + message);
+        } catch (ImportRow.InvalidException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    private interface ImportRowCheck {
+        void run() throws ImportRow.InvalidException;
+    }
+
+    @Test
+    public void cellsAreTrimmedAndEmptyOrMissingCellsAreNull() throws ImportRow.InvalidException {
+        ImportRow row = row(" a1 ", "2024-03-05", "  ", "meter");
+
+        assertEquals("a1", row.get("id"));
+        assertNull(row.get("amount"));
+        assertNull(row.get("remarks")); // Past the end of a short row
+        assertNull(row.get("unknown"));
+        assertEquals(12.5, row.getNumber("amount", 12.5), 0);
+        assertRejected("Missing amount", () -> row.requireNumber("amount"));
+        assertRejected("Missing remarks", () -> row.require("remarks"));
+    }
+
+    @Test
+    public void numbersMustBeFiniteAndNotNegative() throws ImportRow.InvalidException {
+        assertEquals(250.75, row("a1", "2024-03-05", "250.75").requireNumber("amount"), 0);
+        assertRejected("Invalid amount: -1", () -> row("a1", "2024-03-05", "-1").getNumber("amount"));
+        assertRejected("Invalid amount: NaN", () -> row("a1", "2024-03-05", "NaN").getNumber("amount"));
+        assertRejected("Invalid amount: 1e400", () -> row("a1", "2024-03-05", "1e400").getNumber("amount"));
+        assertRejected("Invalid amount: ₹10", () -> row("a1", "2024-03-05", "₹10").getNumber("amount"));
+    }
+
+    @Test
+    public void datesMustBeIsoDays() throws ImportRow.InvalidException {
+        assertEquals("2024-03-05", row("a1", "2024-03-05").requireDate("date"));
+        assertRejected("Invalid date: 05/03/2024", () -> row("a1", "05/03/2024").requireDate("date"));
+        assertRejected("Invalid date: 2024-13-01", () -> row("a1", "2024-13-01").requireDate("date"));
+        assertRejected("Invalid date: 2024-03-05T10:00", () -> row("a1", "2024-03-05T10:00").requireDate("date"));
+        assertRejected("Missing date", () -> row("a1", "").requireDate("date"));
+    }
+
+    @Test
+    public void oneOfMatchesIgnoringCaseAndDefaultsWhenEmpty() throws ImportRow.InvalidException {
+        assertEquals("meter", row("a1", "", "", "METER").oneOf("billingMethod", "time", "time", "meter"));
+        assertEquals("time", row("a1", "", "", "").oneOf("billingMethod", "time", "time", "meter"));
+        assertRejected("Invalid billingMethod: flow",
+            () -> row("a1", "", "", "flow").oneOf("billingMethod", "time", "time", "meter"));
+    }
+
+    @Test
+    public void importedIdIsStablePerFamilyAndBackupId() {
+        String id = row("a1").importedId("family1");
+
+        assertEquals(id, row(" a1 ").importedId("family1"));
+        assertNotEquals(id, row("a1").importedId("family2"));
+        assertNotEquals(id, row("a2").importedId("family1"));
+        assertTrue(id, id.matches("[0-9a-f]{40}"));
+        assertTrue(row("a/b").importedId("family1").matches("[0-9a-f]{40}"));
+        assertNull(row("", "2024-03-05").importedId("family1"));
+    }
+
+    @Test
+    public void exportedIdIsTheBackupIdWhenItCanNameADocument() {
+        assertEquals("a1", row(" a1 ").exportedId());
+        assertNull(row("a/b").exportedId());
+        assertNull(row("..").exportedId());
+        assertNull(row("__a1__").exportedId());
+        assertNull(row("", "2024-03-05").exportedId());
+    }
+}
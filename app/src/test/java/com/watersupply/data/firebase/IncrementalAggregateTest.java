@@ -0,0 +1,173 @@
+package com.watersupply.data.firebase;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.watersupply.utils.BillingCalculator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class IncrementalAggregateTest {
+    // Unsettled amounts in column 0, settled ones in column 1
+    private static final IncrementalAggregate.Contribution BY_STATUS = (doc, out) ->
+        out["settled".equals(doc.getString("settlementStatus")) ? 1 : 0] =
+            BillingCalculator.toPaise(IncrementalAggregate.number(doc, "amount"));
+
+    private final IncrementalAggregate aggregate = new IncrementalAggregate(2, (doc, out) -> { });
+    private final IncrementalAggregate byStatus = new IncrementalAggregate(2, BY_STATUS);
+    // The query's documents as the server has them, by id
+    private final Map<String, QueryDocumentSnapshot> server = new LinkedHashMap<>();
+
+    @Test
+    public void addedDocumentsAreSummed() {
+        aggregate.put("a", new long[] {21587, 123});
+        aggregate.put("b", new long[] {38084, 217});
+
+        assertEquals(59671, aggregate.sum(0));
+        assertEquals(340, aggregate.sum(1));
+        assertEquals(2, aggregate.count());
+    }
+
+    @Test
+    public void modifiedDocumentReplacesItsOldContribution() {
+        aggregate.put("a", new long[] {10000, 100});
+        aggregate.put("b", new long[] {5000, 50});
+        aggregate.put("a", new long[] {12500, 125});
+
+        assertEquals(17500, aggregate.sum(0));
+        assertEquals(175, aggregate.sum(1));
+        assertEquals(2, aggregate.count());
+    }
+
+    @Test
+    public void removedDocumentIsTakenBackOut() {
+        aggregate.put("a", new long[] {10000, 100});
+        aggregate.put("b", new long[] {5000, 50});
+        aggregate.remove("a");
+        aggregate.remove("missing");
+
+        assertEquals(5000, aggregate.sum(0));
+        assertEquals(50, aggregate.sum(1));
+        assertEquals(1, aggregate.count());
+    }
+
+    @Test
+    public void changeSetsMatchFullRecompute() {
+        byStatus.accept(initial(
+            document("a", 120.50, "unsettled"),
+            document("b", 80.25, "unsettled"),
+            document("c", 300.00, "settled")), true);
+        assertMatchesRecompute();
+
+        byStatus.accept(write(DocumentChange.Type.ADDED, document("d", 45.75, "unsettled")), false);
+        assertMatchesRecompute();
+
+        byStatus.accept(write(DocumentChange.Type.MODIFIED, document("a", 130.10, "unsettled")), false);
+        assertMatchesRecompute();
+
+        byStatus.accept(write(DocumentChange.Type.MODIFIED, document("b", 80.25, "settled")), false);
+        assertMatchesRecompute();
+
+        byStatus.accept(write(DocumentChange.Type.REMOVED, server.get("c")), false);
+        assertMatchesRecompute();
+        assertEquals(3, byStatus.count());
+    }
+
+    @Test
+    public void modifiedChangeMovesDocumentBetweenColumns() {
+        byStatus.accept(initial(document("a", 100.00, "unsettled"), document("b", 50.00, "unsettled")), true);
+
+        byStatus.apply(write(DocumentChange.Type.MODIFIED, document("a", 100.00, "settled")));
+
+        assertEquals(5000, byStatus.sum(0));
+        assertEquals(10000, byStatus.sum(1));
+        assertEquals(2, byStatus.count());
+        assertMatchesRecompute();
+    }
+
+    @Test
+    public void initialSnapshotRebuildsFromEveryDocument() {
+        // State left over from an earlier listener, no longer in the query
+        byStatus.put("gone", new long[] {99999, 99999});
+        byStatus.accept(write(DocumentChange.Type.ADDED, document("a", 10.00, "unsettled")), false);
+
+        // A late subscriber's first snapshot lists all documents, with changes only since the cache
+        server.put("b", document("b", 20.00, "settled"));
+        byStatus.accept(snapshot(Collections.emptyList()), true);
+
+        assertEquals(1000, byStatus.sum(0));
+        assertEquals(2000, byStatus.sum(1));
+        assertEquals(2, byStatus.count());
+        assertMatchesRecompute();
+    }
+
+    private void assertMatchesRecompute() {
+        long[] sums = new long[2];
+        for (QueryDocumentSnapshot document : server.values()) {
+            long[] values = new long[2];
+            BY_STATUS.extract(document, values);
+            sums[0] += values[0];
+            sums[1] += values[1];
+        }
+        assertEquals(sums[0], byStatus.sum(0));
+        assertEquals(sums[1], byStatus.sum(1));
+        assertEquals(server.size(), byStatus.count());
+    }
+
+    /**
+     * The first snapshot of a query: every document, each as an ADDED change
+     */
+    private QuerySnapshot initial(QueryDocumentSnapshot... documents) {
+        List<DocumentChange> changes = new ArrayList<>();
+        for (QueryDocumentSnapshot document : documents) {
+            server.put(document.getId(), document);
+            changes.add(change(DocumentChange.Type.ADDED, document));
+        }
+        return snapshot(changes);
+    }
+
+    /**
+     * Apply one change to the server's documents and return the snapshot carrying it
+     */
+    private QuerySnapshot write(DocumentChange.Type type, QueryDocumentSnapshot document) {
+        if (type == DocumentChange.Type.REMOVED) {
+            server.remove(document.getId());
+        } else {
+            server.put(document.getId(), document);
+        }
+        return snapshot(Collections.singletonList(change(type, document)));
+    }
+
+    private QuerySnapshot snapshot(List<DocumentChange> changes) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(new ArrayList<DocumentSnapshot>(server.values()));
+        when(snapshot.getDocumentChanges()).thenReturn(changes);
+        return snapshot;
+    }
+
+    private static DocumentChange change(DocumentChange.Type type, QueryDocumentSnapshot document) {
+        DocumentChange change = mock(DocumentChange.class);
+        when(change.getType()).thenReturn(type);
+        when(change.getDocument()).thenReturn(document);
+        return change;
+    }
+
+    private static QueryDocumentSnapshot document(String id, double amount, String settlementStatus) {
+        QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+        when(document.getId()).thenReturn(id);
+        when(document.getDouble("amount")).thenReturn(amount);
+        when(document.getString("settlementStatus")).thenReturn(settlementStatus);
+        return document;
+    }
+}
@@ -0,0 +1,58 @@
+package com.watersupply.data.local;
+
+import com.watersupply.data.models.Payment;
+import com.watersupply.data.models.SupplyEntry;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LocalEntityTest {
+
+    @Test
+    public void supplyEntryIsStoredInFixedPoint() {
+        SupplyEntry entry = new SupplyEntry("user", "farmer", "Ramesh");
+        entry.setId("e1");
+        entry.setDate("2024-03-05");
+        entry.setTotalTimeUsed(2.75);
+        entry.setAmount(412.5);
+        entry.setCreatedAt(new Date(1_700_000_000_000L));
+
+        SupplyEntryEntity entity = SupplyEntryEntity.from(entry);
+        assertEquals(275L, (long) entity.totalTimeUsed);
+        assertEquals(41250L, entity.amount);
+
+        SupplyEntry copy = entity.toModel();
+        assertEquals("e1", copy.getId());
+        assertEquals("2024-03-05", copy.getDate());
+        assertEquals(2.75, copy.getTotalTimeUsed(), 0.0);
+        assertEquals(412.5, copy.getAmount(), 0.0);
+        assertEquals(1_700_000_000_000L, copy.getCreatedAt().getTime());
+    }
+
+    @Test
+    public void missingHoursAndDatesStayNull() {
+        SupplyEntry entry = new SupplyEntry();
+        entry.setId("e2");
+
+        SupplyEntryEntity entity = SupplyEntryEntity.from(entry);
+        assertNull(entity.totalTimeUsed);
+
+        SupplyEntry copy = entity.toModel();
+        assertNull(copy.getTotalTimeUsed());
+        assertNull(copy.getCreatedAt());
+    }
+
+    @Test
+    public void paymentAmountRoundTrips() {
+        Payment payment = new Payment("user", "farmer", "Ramesh", 0.1 + 0.2);
+        payment.setId("p1");
+
+        PaymentEntity entity = PaymentEntity.from(payment);
+        assertEquals(30L, entity.amount);
+        assertEquals(0.3, entity.toModel().getAmount(), 0.0);
+    }
+}
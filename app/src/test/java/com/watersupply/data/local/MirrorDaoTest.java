@@ -0,0 +1,48 @@
+package com.watersupply.data.local;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MirrorDaoTest {
+
+    private static final class RecordingDao extends MirrorDao<String> {
+        final List<List<String>> deletes = new ArrayList<>();
+
+        @Override
+        public void upsert(List<String> entities) {
+        }
+
+        @Override
+        public void deleteByIds(List<String> ids) {
+            deletes.add(new ArrayList<>(ids));
+        }
+
+        @Override
+        public void deleteFamily(String familyId) {
+        }
+
+        @Override
+        public void deleteOtherFamilies(String familyId) {
+        }
+    }
+
+    @Test
+    public void largeDeletesStayUnderTheBindVariableLimit() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 1201; i++) {
+            ids.add("id" + i);
+        }
+        RecordingDao dao = new RecordingDao();
+        dao.delete(ids);
+
+        assertEquals(3, dao.deletes.size());
+        assertEquals(MirrorDao.MAX_IDS_PER_DELETE, dao.deletes.get(0).size());
+        assertEquals(MirrorDao.MAX_IDS_PER_DELETE, dao.deletes.get(1).size());
+        assertEquals(201, dao.deletes.get(2).size());
+        assertEquals("id1200", dao.deletes.get(2).get(200));
+    }
+}
@@ -0,0 +1,152 @@
+package com.watersupply.utils;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the fixed-point fast paths of BillingCalculator against the BigDecimal
+ * implementation they replaced, including HALF_UP ties and values near them.
+ */
+public class BillingCalculatorEquivalenceTest {
+    private static final int RANDOM_SAMPLES = 200_000;
+
+    @Test
+    public void normalizeMatchesBigDecimal() {
+        for (double value : samples()) {
+            assertEquals("normalizeAmount(" + value + ")",
+                referenceScale(value), BillingCalculator.normalizeAmount(value), 0.0);
+            assertEquals("normalizeHours(" + value + ")",
+                referenceScale(value), BillingCalculator.normalizeHours(value), 0.0);
+            assertEquals("toPaise(" + value + ")",
+                referenceUnits(value), BillingCalculator.toPaise(value));
+            assertEquals("toHundredths(" + value + ")",
+                referenceUnits(value), BillingCalculator.toHundredths(value));
+        }
+    }
+
+    @Test
+    public void additionMatchesBigDecimal() {
+        List<Double> values = samples();
+        for (int i = 0; i + 1 < values.size(); i++) {
+            double total = values.get(i);
+            double value = values.get(i + 1);
+            assertEquals("addAmounts(" + total + ", " + value + ")",
+                referenceAdd(total, value), BillingCalculator.addAmounts(total, value), 0.0);
+            assertEquals("addHours(" + total + ", " + value + ")",
+                referenceAdd(total, value), BillingCalculator.addHours(total, value), 0.0);
+        }
+    }
+
+    @Test
+    public void subtractPauseMatchesBigDecimal() {
+        List<Double> values = samples();
+        for (int i = 0; i + 1 < values.size(); i++) {
+            double hours = values.get(i);
+            double pause = values.get(i + 1);
+            double expected = BigDecimal.valueOf(hours)
+                .subtract(BigDecimal.valueOf(pause))
+                .max(BigDecimal.ZERO)
+                .setScale(2, RoundingMode.HALF_UP)
+                .doubleValue();
+            assertEquals("subtractPause(" + hours + ", " + pause + ")",
+                expected, BillingCalculator.subtractPause(hours, pause), 0.0);
+        }
+    }
+
+    @Test
+    public void calculateAmountMatchesBigDecimal() {
+        List<Double> values = samples();
+        for (int i = 0; i + 1 < values.size(); i++) {
+            double hours = values.get(i);
+            double rate = values.get(i + 1);
+            double expected = BigDecimal.valueOf(referenceScale(hours))
+                .multiply(BigDecimal.valueOf(referenceScale(rate)))
+                .setScale(2, RoundingMode.HALF_UP)
+                .doubleValue();
+            assertEquals("calculateAmount(" + hours + ", " + rate + ")",
+                expected, BillingCalculator.calculateAmount(hours, rate), 0.0);
+        }
+    }
+
+    @Test
+    public void runningTotalsMatchChainedBigDecimal() {
+        Random random = new Random(42);
+        double expected = 0.0;
+        double chained = 0.0;
+        long paise = 0;
+        for (int i = 0; i < 100_000; i++) {
+            double amount = random.nextInt(5_000_000) / 100.0 + random.nextInt(3) * 0.005;
+            expected = referenceAdd(expected, amount);
+            chained = BillingCalculator.addAmounts(chained, amount);
+            paise += BillingCalculator.toPaise(amount);
+        }
+
+        assertEquals(expected, chained, 0.0);
+        assertEquals(expected, BillingCalculator.fromPaise(paise), 0.0);
+    }
+
+    @Test
+    public void tiesRoundAwayFromZero() {
+        assertEquals(1.01, BillingCalculator.normalizeAmount(1.005), 0.0);
+        assertEquals(2.68, BillingCalculator.normalizeAmount(2.675), 0.0);
+        assertEquals(-2.68, BillingCalculator.normalizeAmount(-2.675), 0.0);
+        assertEquals(13, BillingCalculator.toPaise(0.125));
+        assertEquals(-13, BillingCalculator.toPaise(-0.125));
+    }
+
+    private static List<Double> samples() {
+        List<Double> values = new ArrayList<>();
+        double[] edges = {
+            0.0, -0.0, 0.005, -0.005, 0.015, 0.125, 1.005, 2.675, 1.115, 1.125, 8.345, 0.29, 0.57,
+            1.23, 175.505, 99.999, 215.87, 380.84, 0.1, 0.2, 0.3, 1e-9, 123456.785,
+            999_999_999.995, 1e9, 1e9 + 0.005, 4.5e15, -1e12, Double.MIN_VALUE, 1e300
+        };
+        for (double edge : edges) {
+            values.add(edge);
+            values.add(-edge);
+            values.add(Math.nextUp(edge));
+            values.add(Math.nextDown(edge));
+        }
+
+        Random random = new Random(7);
+        for (int i = 0; i < RANDOM_SAMPLES; i++) {
+            switch (i % 4) {
+                case 0: // amounts as entered: two decimals
+                    values.add((random.nextInt(20_000_000) - 1_000_000) / 100.0);
+                    break;
+                case 1: // exact ties
+                    values.add((random.nextInt(2_000_000) * 10 + 5) / 1000.0);
+                    break;
+                case 2: // arbitrary precision, e.g. time differences
+                    values.add(random.nextDouble() * 10_000 - 100);
+                    break;
+                default: // three decimals, as typed into rate fields
+                    values.add(random.nextInt(100_000_000) / 1000.0);
+                    break;
+            }
+        }
+        return values;
+    }
+
+    private static double referenceScale(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    private static long referenceUnits(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    private static double referenceAdd(double total, double value) {
+        return BigDecimal.valueOf(total)
+            .add(BigDecimal.valueOf(referenceScale(value)))
+            .setScale(2, RoundingMode.HALF_UP)
+            .doubleValue();
+    }
+}
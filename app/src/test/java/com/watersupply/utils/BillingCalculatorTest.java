@@ -34,4 +34,20 @@ public class BillingCalculatorTest {
         assertEquals(3.40, totalHours, 0.0);
         assertEquals(596.71, totalAmount, 0.0);
     }
+
+    @Test
+    public void fixedPointTotalsMatchChainedAddition() {
+        double[] amounts = {215.87, 380.84, 0.1, 0.2, 175.505, 99.999};
+        double chained = 0.0;
+        long paise = 0;
+        for (double amount : amounts) {
+            chained = BillingCalculator.addAmounts(chained, amount);
+            paise += BillingCalculator.toPaise(amount);
+        }
+
+        assertEquals(chained, BillingCalculator.fromPaise(paise), 0.0);
+        assertEquals(BillingCalculator.addHours(1.23, 2.166),
+            BillingCalculator.fromHundredths(
+                BillingCalculator.toHundredths(1.23) + BillingCalculator.toHundredths(2.166)), 0.0);
+    }
 }
@@ -0,0 +1,24 @@
+package com.watersupply.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DailyTotalsTest {
+    @Test
+    public void rangesAreInclusiveAndFollowRemovals() {
+        DailyTotals totals = new DailyTotals();
+        int day = EpochDays.parse("2025-03-01");
+        totals.put(day - 1, 10_000, 150, 1);
+        totals.put(day, 21_587, 123, 2);
+        totals.put(day + 6, 38_084, 217, 1);
+
+        assertEquals(596.71, totals.revenue(day, day + 6), 0.0);
+        assertEquals(3.40, totals.hours(day, day + 6), 0.0);
+        assertEquals(3, totals.entryCount(day, day + 6));
+
+        totals.remove(day + 6);
+        assertEquals(215.87, totals.revenue(day, day + 6), 0.0);
+        assertEquals(0.0, totals.revenue(day + 1), 0.0);
+    }
+}
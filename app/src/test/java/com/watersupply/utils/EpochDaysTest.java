@@ -0,0 +1,39 @@
+package com.watersupply.utils;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+
+public class EpochDaysTest {
+    @Test
+    public void parseMatchesLocalDate() {
+        for (long day = LocalDate.of(1999, 1, 1).toEpochDay(); day <= LocalDate.of(2101, 1, 1).toEpochDay(); day++) {
+            String date = LocalDate.ofEpochDay(day).toString();
+            assertEquals(date, day, EpochDays.parse(date));
+            assertEquals(date, EpochDays.format((int) day));
+        }
+    }
+
+    @Test
+    public void parseReadsOnlyTheDatePart() {
+        assertEquals(EpochDays.parse("2025-03-01"), EpochDays.parse("2025-03-01T10:15:00.000Z"));
+    }
+
+    @Test
+    public void malformedDatesSortBeforeEveryDay() {
+        assertEquals(EpochDays.NONE, EpochDays.parse(null));
+        assertEquals(EpochDays.NONE, EpochDays.parse("01/03/2025"));
+        assertEquals(EpochDays.NONE, EpochDays.parse("2025-13-01"));
+        assertEquals(EpochDays.NONE, EpochDays.parse("2025-3-1"));
+    }
+
+    @Test
+    public void calendarIgnoresTimeOfDay() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2024, Calendar.FEBRUARY, 29, 23, 59, 59);
+        assertEquals(EpochDays.parse("2024-02-29"), EpochDays.of(calendar));
+    }
+}
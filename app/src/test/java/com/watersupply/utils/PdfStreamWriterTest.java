@@ -0,0 +1,95 @@
+package com.watersupply.utils;
+
+import com.watersupply.utils.PdfStreamWriter.Align;
+import com.watersupply.utils.PdfStreamWriter.Font;
+import com.watersupply.utils.PdfStreamWriter.TextStyle;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PdfStreamWriterTest {
+    private static final TextStyle TEXT = new TextStyle(Font.HELVETICA, 10, 0xff333333, Align.LEFT);
+
+    private static String write(int pages) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PdfStreamWriter pdf = new PdfStreamWriter(out, 595, 842)) {
+            for (int i = 0; i < pages; i++) {
+                pdf.beginPage();
+                pdf.fillRoundRect(40, 50, 555, 110, 6, 0xfff8f9fa);
+                pdf.drawLine(40, 120, 555, 120, 0xff0056b3, 1);
+                pdf.drawText("Page (" + (i + 1) + ") ₹10", 40, 140, TEXT);
+                pdf.endPage();
+            }
+            pdf.finish();
+        }
+        return new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void crossReferenceTablePointsAtEveryObject() throws IOException {
+        String pdf = write(3);
+
+        assertTrue(pdf.startsWith("%PDF-1.4\n"));
+        assertTrue(pdf.endsWith("%%EOF\n"));
+        assertTrue(pdf.contains("/Type /Pages /Count 3"));
+
+        Matcher startXref = Pattern.compile("startxref\n(\\d+)\n").matcher(pdf);
+        assertTrue(startXref.find());
+        int xref = Integer.parseInt(startXref.group(1));
+        assertTrue(pdf.startsWith("xref\n0 13\n", xref));
+
+        Matcher entry = Pattern.compile("(\\d{10}) 00000 n \n").matcher(pdf);
+        int object = 1;
+        for (int from = xref; entry.find(from); from = entry.end(), object++) {
+            int offset = Integer.parseInt(entry.group(1));
+            assertTrue("object " + object, pdf.startsWith(object + " 0 obj\n", offset));
+        }
+        assertEquals(13, object);
+    }
+
+    @Test
+    public void pageContentIsCompressedAndTextEscaped() throws Exception {
+        String pdf = write(1);
+        Matcher stream = Pattern.compile("/Length (\\d+) /Filter /FlateDecode >>\nstream\n").matcher(pdf);
+        assertTrue(stream.find());
+        byte[] compressed = pdf.substring(stream.end(), stream.end() + Integer.parseInt(stream.group(1)))
+            .getBytes(StandardCharsets.ISO_8859_1);
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        byte[] content = new byte[4096];
+        String page = new String(content, 0, inflater.inflate(content), StandardCharsets.ISO_8859_1);
+        inflater.end();
+
+        assertTrue(page, page.contains("/F1 10 Tf 40 702 Td (Page \\(1\\) Rs.10) Tj ET"));
+        assertTrue(page, page.contains("40 722 m 555 722 l S"));
+    }
+
+    @Test
+    public void measureUsesStandardFontMetrics() {
+        assertEquals(9.44f, TEXT.measure("Hi"), 0.001f);
+        assertEquals(12f, new TextStyle(Font.COURIER, 10, 0, Align.RIGHT).measure("Rs"), 0.001f);
+        assertEquals("Rs.5 ?", PdfStreamWriter.toWinAnsi("₹5 ✓"));
+        assertEquals("plain", PdfStreamWriter.toWinAnsi("plain"));
+    }
+
+    @Test
+    public void nonLatinTextIsNotEncodable() {
+        assertTrue(PdfStreamWriter.canEncode("Ramesh Patel ₹1,200.50 (cash?)"));
+        assertTrue(PdfStreamWriter.canEncode("José Müller"));
+        assertFalse(PdfStreamWriter.canEncode("रमेश पटेल"));
+        assertFalse(PdfStreamWriter.canEncode("રમેશ પટેલ"));
+        assertFalse(PdfStreamWriter.canEncode("Ramesh ✓"));
+        assertEquals("???? ????", PdfStreamWriter.toWinAnsi("रमेश पटेल"));
+    }
+}
@@ -0,0 +1,46 @@
+// JVM microbenchmarks for the framework-free parts of the app.
+// Run with: ./gradlew :benchmark:jmh   (results in benchmark/build/results/jmh)
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+sourceSets {
+    main {
+        java {
+            // Benchmarked code is compiled straight from the app sources, so there is no copy to drift
+            srcDir("../app/src/main/java")
+            // src/main/java only holds stand-ins for the Firestore model annotations
+            include("com/google/firebase/firestore/**")
+            include("com/watersupply/data/models/Farmer.java")
+            include("com/watersupply/data/models/Payment.java")
+            include("com/watersupply/data/models/Rollup.java")
+            include("com/watersupply/data/models/SupplyEntry.java")
+            include("com/watersupply/utils/BillingCalculator.java")
+            include("com/watersupply/utils/CurrencyFormatter.java")
+            include("com/watersupply/utils/DailyTotals.java")
+            include("com/watersupply/utils/DateFormatter.java")
+            include("com/watersupply/utils/EpochDays.java")
+            include("com/watersupply/utils/PdfStreamWriter.java")
+            include("com/watersupply/utils/ReportCanvas.java")
+            include("com/watersupply/utils/UsageHoursFormatter.java")
+            include("com/watersupply/ui/supply/SupplyListFilter.java")
+            include("com/watersupply/ui/payments/PaymentListFilter.java")
+            include("com/watersupply/ui/farmers/FarmerListFilter.java")
+            include("com/watersupply/ui/dashboard/RevenueTrend.java")
+        }
+    }
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+}
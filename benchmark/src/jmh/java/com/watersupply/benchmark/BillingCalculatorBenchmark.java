@@ -0,0 +1,107 @@
+package com.watersupply.benchmark;
+
+import com.watersupply.data.models.SupplyEntry;
+import com.watersupply.utils.BillingCalculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Totals over a list of entries, the loop every list screen and report runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BillingCalculatorBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private double[] amounts;
+    private double[] hours;
+    private double[] rates;
+
+    @Setup
+    public void setUp() {
+        List<SupplyEntry> entries = SyntheticData.supplyEntries(size, System.currentTimeMillis());
+        amounts = new double[size];
+        hours = new double[size];
+        rates = new double[size];
+        for (int i = 0; i < size; i++) {
+            SupplyEntry entry = entries.get(i);
+            amounts[i] = entry.getAmount();
+            hours[i] = entry.getTotalTimeUsed();
+            rates[i] = entry.getRate();
+        }
+    }
+
+    @Benchmark
+    public double addAmounts() {
+        double total = 0.0;
+        for (double amount : amounts) {
+            total = BillingCalculator.addAmounts(total, amount);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double sumPaise() {
+        long paise = 0;
+        for (double amount : amounts) {
+            paise += BillingCalculator.toPaise(amount);
+        }
+        return BillingCalculator.fromPaise(paise);
+    }
+
+    /**
+     * The per-call BigDecimal arithmetic addAmounts used before the fixed-point fast path.
+     */
+    @Benchmark
+    public double addAmountsBigDecimalBaseline() {
+        double total = 0.0;
+        for (double amount : amounts) {
+            total = BigDecimal.valueOf(total)
+                .add(BigDecimal.valueOf(BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).doubleValue()))
+                .setScale(2, RoundingMode.HALF_UP)
+                .doubleValue();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double addHours() {
+        double total = 0.0;
+        for (double value : hours) {
+            total = BillingCalculator.addHours(total, value);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double calculateAmount() {
+        double total = 0.0;
+        for (int i = 0; i < size; i++) {
+            total += BillingCalculator.calculateAmount(hours[i], rates[i]);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double subtractPause() {
+        double total = 0.0;
+        for (double value : hours) {
+            total += BillingCalculator.subtractPause(value, 0.25);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,65 @@
+package com.watersupply.benchmark;
+
+import com.watersupply.data.models.SupplyEntry;
+import com.watersupply.utils.CurrencyFormatter;
+import com.watersupply.utils.DateFormatter;
+import com.watersupply.utils.UsageHoursFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting one row's values, as list adapters and reports do for every entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FormatterBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private List<SupplyEntry> entries;
+
+    @Setup
+    public void setUp() {
+        entries = SyntheticData.supplyEntries(size, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public void currency(Blackhole blackhole) {
+        for (SupplyEntry entry : entries) {
+            blackhole.consume(CurrencyFormatter.format(entry.getAmount()));
+        }
+    }
+
+    @Benchmark
+    public void usageHours(Blackhole blackhole) {
+        for (SupplyEntry entry : entries) {
+            blackhole.consume(UsageHoursFormatter.format(entry.getTotalTimeUsed()));
+        }
+    }
+
+    @Benchmark
+    public void date(Blackhole blackhole) {
+        for (SupplyEntry entry : entries) {
+            blackhole.consume(DateFormatter.format(entry.getDate()));
+        }
+    }
+
+    @Benchmark
+    public void datePattern(Blackhole blackhole) {
+        for (SupplyEntry entry : entries) {
+            blackhole.consume(DateFormatter.format(entry.getDate(), "dd/MM/yyyy"));
+        }
+    }
+}
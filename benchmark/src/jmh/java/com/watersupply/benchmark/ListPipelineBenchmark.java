@@ -0,0 +1,131 @@
+package com.watersupply.benchmark;
+
+import com.watersupply.data.models.Farmer;
+import com.watersupply.data.models.Payment;
+import com.watersupply.data.models.SupplyEntry;
+import com.watersupply.ui.dashboard.RevenueTrend;
+import com.watersupply.ui.farmers.FarmerListFilter;
+import com.watersupply.ui.payments.PaymentListFilter;
+import com.watersupply.ui.supply.SupplyListFilter;
+import com.watersupply.utils.DailyTotals;
+import com.watersupply.utils.EpochDays;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The filter/sort/aggregate pipelines the list ViewModels and the dashboard run on
+ * every snapshot and every filter change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ListPipelineBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private long now;
+    private List<SupplyEntry> entries;
+    private List<Payment> payments;
+    private List<Farmer> farmers;
+    private DailyTotals dailyTotals;
+    private int todayEpochDay;
+    private String monthAgo;
+    private String today;
+
+    @Setup
+    public void setUp() {
+        now = System.currentTimeMillis();
+        entries = SyntheticData.supplyEntries(size, now);
+        payments = SyntheticData.payments(size, now);
+        farmers = SyntheticData.farmers(size);
+        dailyTotals = SyntheticData.dailyTotals(entries);
+        List<String> dates = SyntheticData.lastYearDates(now);
+        today = dates.get(0);
+        todayEpochDay = EpochDays.parse(today);
+        monthAgo = dates.get(29);
+    }
+
+    @Benchmark
+    public void supplyListUnfiltered(Blackhole blackhole) {
+        SupplyListFilter filter = new SupplyListFilter();
+        List<SupplyEntry> result = filter.apply(entries);
+        blackhole.consume(result);
+        blackhole.consume(SupplyListFilter.totalHours(result));
+        blackhole.consume(SupplyListFilter.totalRevenue(result));
+    }
+
+    @Benchmark
+    public void supplyListLastMonth(Blackhole blackhole) {
+        SupplyListFilter filter = new SupplyListFilter();
+        filter.setDateRange(monthAgo, today);
+        List<SupplyEntry> result = filter.apply(entries);
+        blackhole.consume(result);
+        blackhole.consume(SupplyListFilter.totalHours(result));
+        blackhole.consume(SupplyListFilter.totalRevenue(result));
+    }
+
+    @Benchmark
+    public void paymentListByDate(Blackhole blackhole) {
+        PaymentListFilter filter = new PaymentListFilter();
+        filter.setDateRange(monthAgo, today);
+        List<Payment> result = filter.apply(payments);
+        blackhole.consume(result);
+        blackhole.consume(PaymentListFilter.totalAmount(result));
+    }
+
+    @Benchmark
+    public void paymentListSearchByAmount(Blackhole blackhole) {
+        PaymentListFilter filter = new PaymentListFilter();
+        filter.setFarmerNames(SyntheticData.farmerNames());
+        filter.setSearchQuery("patel");
+        filter.setSortMode("amount");
+        List<Payment> result = filter.apply(payments);
+        blackhole.consume(result);
+        blackhole.consume(PaymentListFilter.totalAmount(result));
+    }
+
+    @Benchmark
+    public List<Farmer> farmerListByName() {
+        return new FarmerListFilter().apply(farmers);
+    }
+
+    @Benchmark
+    public List<Farmer> farmerListSearchByBalance() {
+        FarmerListFilter filter = new FarmerListFilter();
+        filter.setSearchQuery("village 1");
+        filter.setSortMode("balance");
+        return filter.apply(farmers);
+    }
+
+    @Benchmark
+    public Map<String, Double> revenueTrendWeek() {
+        return RevenueTrend.build(dailyTotals, RevenueTrend.PERIOD_WEEK, todayEpochDay);
+    }
+
+    @Benchmark
+    public Map<String, Double> revenueTrendMonth() {
+        return RevenueTrend.build(dailyTotals, RevenueTrend.PERIOD_MONTH, todayEpochDay);
+    }
+
+    @Benchmark
+    public Map<String, Double> revenueTrendQuarter() {
+        return RevenueTrend.build(dailyTotals, RevenueTrend.PERIOD_QUARTER, todayEpochDay);
+    }
+
+    @Benchmark
+    public Map<String, Double> revenueTrendLastYear() {
+        return RevenueTrend.build(dailyTotals, todayEpochDay - 364, todayEpochDay);
+    }
+}
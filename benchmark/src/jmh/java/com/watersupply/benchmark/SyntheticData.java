@@ -0,0 +1,135 @@
+package com.watersupply.benchmark;
+
+import com.watersupply.data.models.Farmer;
+import com.watersupply.data.models.Payment;
+import com.watersupply.data.models.SupplyEntry;
+import com.watersupply.utils.BillingCalculator;
+import com.watersupply.utils.DailyTotals;
+import com.watersupply.utils.EpochDays;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic datasets shaped like a family's Firestore data: entries spread over the
+ * last year, amounts with two decimals, a few hundred farmers.
+ */
+final class SyntheticData {
+    static final String FAMILY_ID = "family";
+    private static final int DAYS = 365;
+    private static final String[] NAMES = {
+        "Ramesh Patel", "Suresh Shah", "Mahesh Desai", "Dinesh Joshi", "Kalpesh Mehta",
+        "Jignesh Parmar", "Hitesh Solanki", "Nilesh Chauhan", "Bhavesh Rathod", "Paresh Vyas"
+    };
+    private static final String[] METHODS = {"Cash", "UPI", "Bank Transfer", "Cheque"};
+
+    private SyntheticData() {
+    }
+
+    static List<String> lastYearDates(long now) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        Calendar calendar = Calendar.getInstance();
+        List<String> dates = new ArrayList<>(DAYS);
+        for (int i = 0; i < DAYS; i++) {
+            calendar.setTimeInMillis(now);
+            calendar.add(Calendar.DAY_OF_YEAR, -i);
+            dates.add(format.format(calendar.getTime()));
+        }
+        return dates;
+    }
+
+    static List<Farmer> farmers(int size) {
+        Random random = new Random(size);
+        List<Farmer> farmers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Farmer farmer = new Farmer();
+            farmer.setId("farmer" + i);
+            farmer.setFamilyId(FAMILY_ID);
+            farmer.setName(NAMES[i % NAMES.length] + " " + i);
+            farmer.setMobile(String.valueOf(9_000_000_000L + random.nextInt(1_000_000_000)));
+            farmer.setFarmLocation(i % 3 == 0 ? null : "Village " + (i % 50));
+            farmer.setDefaultRate(100 + random.nextInt(100));
+            farmer.setBalance(random.nextInt(5_000_000) / 100.0);
+            farmers.add(farmer);
+        }
+        return farmers;
+    }
+
+    static List<SupplyEntry> supplyEntries(int size, long now) {
+        Random random = new Random(size);
+        List<String> dates = lastYearDates(now);
+        List<SupplyEntry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            SupplyEntry entry = new SupplyEntry("user", "farmer" + (i % 300), NAMES[i % NAMES.length]);
+            entry.setId("entry" + i);
+            entry.setFamilyId(FAMILY_ID);
+            entry.setDate(dates.get(random.nextInt(dates.size())));
+            double hours = random.nextInt(1_000) / 100.0;
+            double rate = 100 + random.nextInt(10_000) / 100.0;
+            entry.setTotalTimeUsed(hours);
+            entry.setRate(rate);
+            entry.setAmount(BillingCalculator.calculateAmount(hours, rate));
+            entry.setCreatedAt(new Date(now - random.nextInt(DAYS) * 86_400_000L));
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    static List<Payment> payments(int size, long now) {
+        Random random = new Random(size);
+        List<String> dates = lastYearDates(now);
+        List<Payment> payments = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Payment payment = new Payment();
+            payment.setId("payment" + i);
+            payment.setFamilyId(FAMILY_ID);
+            payment.setFarmerId("farmer" + (i % 300));
+            // About a third of older payments have no denormalized name
+            payment.setFarmerName(i % 3 == 0 ? null : NAMES[i % NAMES.length]);
+            payment.setPaymentDate(dates.get(random.nextInt(dates.size())));
+            payment.setAmount(random.nextInt(2_000_000) / 100.0);
+            payment.setPaymentMethod(METHODS[i % METHODS.length]);
+            payments.add(payment);
+        }
+        return payments;
+    }
+
+    static Map<String, String> farmerNames() {
+        Map<String, String> names = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            names.put("farmer" + i, NAMES[i % NAMES.length]);
+        }
+        return names;
+    }
+
+    /**
+     * The day index the dashboard builds from the daily rollup documents of these entries
+     */
+    static DailyTotals dailyTotals(List<SupplyEntry> entries) {
+        Map<Integer, long[]> byDay = new HashMap<>();
+        for (SupplyEntry entry : entries) {
+            int day = EpochDays.parse(entry.getDate());
+            long[] totals = byDay.get(day);
+            if (totals == null) {
+                totals = new long[3];
+                byDay.put(day, totals);
+            }
+            totals[0] += BillingCalculator.toPaise(entry.getAmount());
+            totals[1] += BillingCalculator.toHundredths(entry.getTotalTimeUsed());
+            totals[2]++;
+        }
+        DailyTotals dailyTotals = new DailyTotals();
+        for (Map.Entry<Integer, long[]> day : byDay.entrySet()) {
+            long[] totals = day.getValue();
+            dailyTotals.put(day.getKey(), totals[0], totals[1], totals[2]);
+        }
+        return dailyTotals;
+    }
+}
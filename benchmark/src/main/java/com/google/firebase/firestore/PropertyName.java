@@ -0,0 +1,16 @@
+package com.google.firebase.firestore;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Compile-time stand-in for the Firestore annotation of the same name, so the app models
+ * build on the plain JVM without the Android Firestore SDK.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface PropertyName {
+    String value();
+}